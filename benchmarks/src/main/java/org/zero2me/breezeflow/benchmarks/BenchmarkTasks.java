@@ -0,0 +1,76 @@
+package org.zero2me.breezeflow.benchmarks;
+
+import org.openjdk.jmh.infra.Blackhole;
+import org.zero2me.breezeflow.core.Task;
+
+/**
+ * Minimal tasks used by the benchmarks.
+ * Task classes must be public with a public no-argument constructor so that
+ * the workflow task factory can instantiate them.
+ */
+public final class BenchmarkTasks {
+
+    private BenchmarkTasks() {
+        // Holder class - prevent instantiation
+    }
+
+    /**
+     * Task that does nothing, used to measure pure framework overhead.
+     */
+    public static class NoopTask extends Task {
+        @Override
+        protected boolean preCheck() {
+            return true;
+        }
+
+        @Override
+        protected void invoke() {
+            // Intentionally empty
+        }
+    }
+
+    /**
+     * Task that burns a configurable amount of CPU.
+     */
+    public static class CpuTask extends Task {
+        /**
+         * Amount of work per invocation, in JMH {@link Blackhole#consumeCPU(long)} tokens.
+         */
+        public static volatile long tokens = 1000;
+
+        @Override
+        protected boolean preCheck() {
+            return true;
+        }
+
+        @Override
+        protected void invoke() {
+            Blackhole.consumeCPU(tokens);
+        }
+    }
+
+    /**
+     * Task that blocks for a configurable time, simulating an I/O call.
+     */
+    public static class SleepTask extends Task {
+        /**
+         * Time each invocation blocks for, in milliseconds.
+         */
+        public static volatile long sleepMillis = 10;
+
+        @Override
+        protected boolean preCheck() {
+            return true;
+        }
+
+        @Override
+        protected void invoke() {
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while sleeping", e);
+            }
+        }
+    }
+}
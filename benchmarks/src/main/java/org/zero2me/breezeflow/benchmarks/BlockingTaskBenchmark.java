@@ -0,0 +1,77 @@
+package org.zero2me.breezeflow.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zero2me.breezeflow.core.ExecutorType;
+import org.zero2me.breezeflow.core.ParallelContainer;
+import org.zero2me.breezeflow.core.Workflow;
+import org.zero2me.breezeflow.core.WorkflowExecutionException;
+import org.zero2me.breezeflow.core.WorkflowExecutors;
+
+/**
+ * Throughput of a ParallelContainer whose children block (simulated I/O).
+ *
+ * Compares the platform-thread pools with the virtual-thread executor. Run it on
+ * Java 21+ for VIRTUAL to use virtual threads; older runtimes fall back to a cached pool.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlockingTaskBenchmark {
+
+    @Param({"FIXED", "CACHED", "VIRTUAL"})
+    public ExecutorType executorType;
+
+    @Param({"16"})
+    public int threadPoolSize;
+
+    @Param({"1000"})
+    public int width;
+
+    @Param({"10"})
+    public long sleepMillis;
+
+    private Workflow workflow;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkTasks.SleepTask.sleepMillis = sleepMillis;
+        workflow = new Workflow();
+        workflow.getSessionConfig().setExecutorType(executorType);
+        workflow.getSessionConfig().setThreadPoolSize(threadPoolSize);
+        ParallelContainer parallel = (ParallelContainer) workflow.buildTask(ParallelContainer.class, "blocking");
+        for (int i = 0; i < width; i++) {
+            parallel.addTask(workflow.buildTask(BenchmarkTasks.SleepTask.class, "io" + i));
+        }
+        workflow.addTask(parallel);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        WorkflowExecutors.shutdown();
+    }
+
+    /**
+     * One operation is one container run; multiply by {@code width} for tasks per second.
+     */
+    @Benchmark
+    public void runBlockingContainer() throws WorkflowExecutionException {
+        workflow.run();
+    }
+}
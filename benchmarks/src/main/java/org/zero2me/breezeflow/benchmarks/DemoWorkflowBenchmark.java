@@ -0,0 +1,76 @@
+package org.zero2me.breezeflow.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zero2me.breezeflow.core.Workflow;
+import org.zero2me.breezeflow.core.WorkflowDefinition;
+import org.zero2me.breezeflow.core.WorkflowExecutionException;
+import org.zero2me.breezeflow.core.WorkflowExecutors;
+import org.zero2me.breezeflow.tutorial.DemoWorkflow;
+
+/**
+ * End-to-end throughput of the tutorial's DemoWorkflow.
+ *
+ * {@code newWorkflow} builds the workflow for every run, {@code definitionRun} copies
+ * it from a compiled definition; the contended variant runs several workflows at once.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DemoWorkflowBenchmark {
+
+    private WorkflowDefinition definition;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        definition = WorkflowDefinition.compile(DemoWorkflow.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        WorkflowExecutors.shutdown();
+    }
+
+    private static Workflow seed(Workflow workflow) {
+        workflow.getSessionContext().setVariable("SEARCH_KEY", "license");
+        return workflow;
+    }
+
+    @Benchmark
+    public Workflow newWorkflow() throws WorkflowExecutionException {
+        Workflow workflow = seed(new DemoWorkflow());
+        workflow.run();
+        return workflow;
+    }
+
+    @Benchmark
+    public Workflow definitionRun() throws WorkflowExecutionException {
+        Workflow workflow = seed(definition.newRun());
+        workflow.run();
+        return workflow;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Workflow definitionRunContended() throws WorkflowExecutionException {
+        Workflow workflow = seed(definition.newRun());
+        workflow.run();
+        return workflow;
+    }
+}
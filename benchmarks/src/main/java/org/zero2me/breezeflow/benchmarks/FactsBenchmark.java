@@ -0,0 +1,95 @@
+package org.zero2me.breezeflow.benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zero2me.breezeflow.core.Facts;
+
+/**
+ * Facts get/put cost at various store sizes, single-threaded and under contention.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FactsBenchmark {
+
+    @Param({"10", "100", "500"})
+    public int size;
+
+    private Facts facts;
+    private String[] names;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        facts = new Facts();
+        names = new String[size];
+        for (int i = 0; i < size; i++) {
+            names[i] = "FACT_" + i;
+            facts.put(names[i], Boolean.TRUE);
+        }
+    }
+
+    private String randomName() {
+        return names[ThreadLocalRandom.current().nextInt(size)];
+    }
+
+    @Benchmark
+    public Object get() {
+        return facts.get(randomName());
+    }
+
+    @Benchmark
+    public void put() {
+        facts.put(randomName(), Boolean.TRUE);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object getContended() {
+        return facts.get(randomName());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void putContended() {
+        facts.put(randomName(), Boolean.TRUE);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long incrementContended() {
+        return facts.increment("COUNTER");
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public Object mixedReaders() {
+        return facts.get(randomName());
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public void mixedWriter() {
+        facts.put(randomName(), Boolean.FALSE);
+    }
+}
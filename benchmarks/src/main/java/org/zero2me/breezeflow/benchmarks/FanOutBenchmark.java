@@ -0,0 +1,69 @@
+package org.zero2me.breezeflow.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zero2me.breezeflow.core.ParallelContainer;
+import org.zero2me.breezeflow.core.Workflow;
+import org.zero2me.breezeflow.core.WorkflowExecutionException;
+import org.zero2me.breezeflow.core.WorkflowExecutors;
+
+/**
+ * Fan-out/fan-in cost of a single ParallelContainer at different widths and pool sizes.
+ *
+ * With {@code tokens = 0} the children do nothing and the result is pure dispatch and
+ * join overhead; larger values show how the pool size scales CPU-bound children.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FanOutBenchmark {
+
+    @Param({"2", "16", "128"})
+    public int width;
+
+    @Param({"1", "4", "8"})
+    public int threadPoolSize;
+
+    @Param({"0"})
+    public long tokens;
+
+    private Workflow workflow;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkTasks.CpuTask.tokens = tokens;
+        workflow = new Workflow();
+        workflow.getSessionConfig().setThreadPoolSize(threadPoolSize);
+        ParallelContainer parallel = (ParallelContainer) workflow.buildTask(ParallelContainer.class, "fan_out");
+        for (int i = 0; i < width; i++) {
+            parallel.addTask(workflow.buildTask(BenchmarkTasks.CpuTask.class, "child" + i));
+        }
+        workflow.addTask(parallel);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        WorkflowExecutors.shutdown();
+    }
+
+    @Benchmark
+    public void fanOutFanIn() throws WorkflowExecutionException {
+        workflow.run();
+    }
+}
@@ -0,0 +1,93 @@
+package org.zero2me.breezeflow.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zero2me.breezeflow.core.ExecutorType;
+import org.zero2me.breezeflow.core.ParallelContainer;
+import org.zero2me.breezeflow.core.Task;
+import org.zero2me.breezeflow.core.Workflow;
+import org.zero2me.breezeflow.core.WorkflowExecutionException;
+import org.zero2me.breezeflow.core.WorkflowExecutors;
+
+/**
+ * Compares the executor modes on wide and deep trees of parallel containers.
+ *
+ * WIDE is a single ParallelContainer with {@code leaves} children.
+ * DEEP is a binary tree of nested ParallelContainers with {@code leaves} leaves,
+ * which is where blocking joins on a fixed pool and cooperative fork/join joins differ.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelContainerBenchmark {
+
+    @Param({"FIXED", "WORK_STEALING"})
+    public ExecutorType executorType;
+
+    @Param({"4"})
+    public int threadPoolSize;
+
+    @Param({"WIDE", "DEEP"})
+    public String shape;
+
+    @Param({"64"})
+    public int leaves;
+
+    @Param({"1000"})
+    public long tokens;
+
+    private Workflow workflow;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkTasks.CpuTask.tokens = tokens;
+        workflow = new Workflow();
+        workflow.getSessionConfig().setExecutorType(executorType);
+        workflow.getSessionConfig().setThreadPoolSize(threadPoolSize);
+        if ("WIDE".equals(shape)) {
+            ParallelContainer parallel = (ParallelContainer) workflow.buildTask(ParallelContainer.class, "wide");
+            for (int i = 0; i < leaves; i++) {
+                parallel.addTask(workflow.buildTask(BenchmarkTasks.CpuTask.class, "leaf" + i));
+            }
+            workflow.addTask(parallel);
+        } else {
+            workflow.addTask(buildDeep(leaves));
+        }
+    }
+
+    private Task buildDeep(int remaining) {
+        if (remaining <= 1) {
+            return workflow.buildTask(BenchmarkTasks.CpuTask.class, "leaf");
+        }
+        ParallelContainer node = (ParallelContainer) workflow.buildTask(ParallelContainer.class, "node");
+        node.addTask(buildDeep(remaining / 2));
+        node.addTask(buildDeep(remaining - remaining / 2));
+        return node;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        WorkflowExecutors.shutdown();
+    }
+
+    @Benchmark
+    public void runTree() throws WorkflowExecutionException {
+        workflow.run();
+    }
+}
@@ -0,0 +1,63 @@
+package org.zero2me.breezeflow.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zero2me.breezeflow.core.SequentialContainer;
+import org.zero2me.breezeflow.core.Workflow;
+import org.zero2me.breezeflow.core.WorkflowExecutionException;
+
+/**
+ * Chains of no-op tasks run by a SequentialContainer, flat or nested one container per link.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SequentialContainerBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int length;
+
+    @Param({"FLAT", "NESTED"})
+    public String shape;
+
+    private Workflow workflow;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        workflow = new Workflow();
+        if ("FLAT".equals(shape)) {
+            for (int i = 0; i < length; i++) {
+                workflow.addTask(BenchmarkTasks.NoopTask.class, "link" + i);
+            }
+            return;
+        }
+        SequentialContainer outer = (SequentialContainer) workflow.buildTask(SequentialContainer.class, "chain");
+        workflow.addTask(outer);
+        for (int i = 0; i < length; i++) {
+            SequentialContainer inner = (SequentialContainer) workflow.buildTask(SequentialContainer.class, "chain" + i);
+            inner.addTask(workflow.buildTask(BenchmarkTasks.NoopTask.class, "link" + i));
+            outer.addTask(inner);
+            outer = inner;
+        }
+    }
+
+    @Benchmark
+    public void runChain() throws WorkflowExecutionException {
+        workflow.run();
+    }
+}
@@ -0,0 +1,84 @@
+package org.zero2me.breezeflow.benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zero2me.breezeflow.core.SessionContext;
+
+/**
+ * SessionContext variable access at various context sizes, single-threaded and under contention.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SessionContextBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int size;
+
+    private SessionContext context;
+    private String[] names;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SessionContext();
+        names = new String[size];
+        for (int i = 0; i < size; i++) {
+            names[i] = "VAR_" + i;
+            context.setVariable(names[i], i);
+        }
+    }
+
+    private String randomName() {
+        return names[ThreadLocalRandom.current().nextInt(size)];
+    }
+
+    @Benchmark
+    public Object getVariable() {
+        return context.getVariable(randomName());
+    }
+
+    @Benchmark
+    public void setVariable() {
+        context.setVariable(randomName(), Boolean.TRUE);
+    }
+
+    @Benchmark
+    public Boolean hasVariable() {
+        return context.hasVariable(randomName());
+    }
+
+    @Benchmark
+    public Map<String, Object> snapshot() {
+        return context.snapshot();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object getVariableContended() {
+        return context.getVariable(randomName());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void setVariableContended() {
+        context.setVariable(randomName(), Boolean.TRUE);
+    }
+}
@@ -0,0 +1,161 @@
+package org.zero2me.breezeflow.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zero2me.breezeflow.core.Facts;
+import org.zero2me.breezeflow.core.SessionContext;
+import org.zero2me.breezeflow.core.StateCodec;
+
+/**
+ * Snapshot of Facts and SessionContext with StateCodec, plain and compressed, against
+ * Java serialization and Jackson JSON of the same state, from a few facts to about
+ * a hundred megabytes of encoded state.
+ *
+ * The state mixes longs, doubles, booleans, strings from a small set of values and
+ * double arrays. JSON decoding does not restore the value types, so it does less work
+ * than the binary formats.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class SnapshotCodecBenchmark {
+
+    @Param({"10", "10000", "1000000"})
+    public int facts;
+
+    private static final TypeReference<Map<String, Object>> STATE = new TypeReference<Map<String, Object>>() { };
+
+    private Facts state;
+    private SessionContext context;
+    private StateCodec codec;
+    private StateCodec compressedCodec;
+    private ObjectMapper json;
+
+    private byte[] codecSnapshot;
+    private byte[] compressedSnapshot;
+    private byte[] serializedSnapshot;
+    private byte[] jsonSnapshot;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        state = new Facts();
+        for (int i = 0; i < facts; i++) {
+            String name = "fact_" + i;
+            switch (i % 5) {
+                case 0:
+                    state.put(name, (long) i * 31);
+                    break;
+                case 1:
+                    state.put(name, "status-" + (i % 8));
+                    break;
+                case 2:
+                    state.put(name, i / 7.0d);
+                    break;
+                case 3:
+                    state.put(name, i % 2 == 0);
+                    break;
+                default:
+                    double[] samples = new double[32];
+                    for (int j = 0; j < samples.length; j++) {
+                        samples[j] = i + j / 32.0d;
+                    }
+                    state.put(name, samples);
+            }
+        }
+        context = new SessionContext();
+        context.setVariable("user", "benchmark");
+        context.setVariable("attempt", 1);
+
+        codec = new StateCodec();
+        compressedCodec = new StateCodec();
+        compressedCodec.setCompressed(true);
+        json = new ObjectMapper();
+
+        codecSnapshot = encodeCodec();
+        compressedSnapshot = encodeCodecCompressed();
+        serializedSnapshot = encodeJavaSerialization();
+        jsonSnapshot = encodeJson();
+        System.out.printf("%nSnapshot sizes for %d facts: codec %d, compressed %d, serialization %d, json %d bytes%n",
+                facts, codecSnapshot.length, compressedSnapshot.length, serializedSnapshot.length, jsonSnapshot.length);
+    }
+
+    private Map<String, Object> asMap() {
+        Map<String, Object> map = state.asMap();
+        map.putAll(context.snapshot());
+        return map;
+    }
+
+    @Benchmark
+    public byte[] encodeCodec() throws IOException {
+        return codec.toBytes(state, context);
+    }
+
+    @Benchmark
+    public byte[] encodeCodecCompressed() throws IOException {
+        return compressedCodec.toBytes(state, context);
+    }
+
+    @Benchmark
+    public byte[] encodeJavaSerialization() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(new HashMap<>(asMap()));
+        }
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] encodeJson() throws IOException {
+        return json.writeValueAsBytes(asMap());
+    }
+
+    @Benchmark
+    public Facts decodeCodec() throws IOException {
+        Facts restored = new Facts();
+        codec.fromBytes(codecSnapshot, restored, new SessionContext());
+        return restored;
+    }
+
+    @Benchmark
+    public Facts decodeCodecCompressed() throws IOException {
+        Facts restored = new Facts();
+        compressedCodec.fromBytes(compressedSnapshot, restored, new SessionContext());
+        return restored;
+    }
+
+    @Benchmark
+    public Object decodeJavaSerialization() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serializedSnapshot))) {
+            return in.readObject();
+        }
+    }
+
+    @Benchmark
+    public Map<String, Object> decodeJson() throws IOException {
+        return json.readValue(jsonSnapshot, STATE);
+    }
+}
@@ -0,0 +1,97 @@
+package org.zero2me.breezeflow.benchmarks;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.zero2me.breezeflow.core.SequentialContainer;
+import org.zero2me.breezeflow.core.Task;
+import org.zero2me.breezeflow.core.Workflow;
+import org.zero2me.breezeflow.core.WorkflowEventType;
+import org.zero2me.breezeflow.core.WorkflowExecutionException;
+import org.zero2me.breezeflow.core.WorkflowListener;
+
+/**
+ * Bytes allocated per steady-state task execution, for a single task and for a
+ * sequential container, with metrics on and no listener interested in events.
+ *
+ * Run it with the GC profiler to see {@code gc.alloc.rate.norm}, or through its main
+ * method, which fails if either benchmark allocates:
+ * {@code java -cp benchmarks/target/benchmarks.jar org.zero2me.breezeflow.benchmarks.TaskAllocationBenchmark}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaskAllocationBenchmark {
+
+    /**
+     * Largest allocation per operation still considered allocation-free, in bytes;
+     * leaves room for measurement noise.
+     */
+    private static final double MAX_BYTES_PER_OP = 8.0;
+
+    private Task task;
+    private Task chain;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Workflow workflow = new Workflow(new WorkflowListener(new WorkflowEventType[0]) {
+        });
+        task = workflow.buildTask(BenchmarkTasks.NoopTask.class, "noop");
+        SequentialContainer sequential = (SequentialContainer) workflow.buildTask(SequentialContainer.class, "chain");
+        for (int i = 0; i < 10; i++) {
+            sequential.addTask(workflow.buildTask(BenchmarkTasks.NoopTask.class, "link" + i));
+        }
+        chain = sequential;
+    }
+
+    @Benchmark
+    public void taskRun() throws WorkflowExecutionException {
+        task.run();
+    }
+
+    @Benchmark
+    public void sequentialChainRun() throws WorkflowExecutionException {
+        chain.run();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(TaskAllocationBenchmark.class.getSimpleName() + "\\.(taskRun|sequentialChainRun)$")
+                .addProfiler(GCProfiler.class)
+                .build();
+        Collection<RunResult> results = new Runner(options).run();
+        boolean allocates = false;
+        for (RunResult result : results) {
+            Result<?> allocation = result.getSecondaryResults().get("gc.alloc.rate.norm");
+            if (allocation == null) {
+                throw new IllegalStateException("GC profiler did not report gc.alloc.rate.norm");
+            }
+            System.out.printf("%s allocates %.1f B/op%n", result.getParams().getBenchmark(), allocation.getScore());
+            allocates |= allocation.getScore() > MAX_BYTES_PER_OP;
+        }
+        if (allocates) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package org.zero2me.breezeflow.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zero2me.breezeflow.core.ParallelContainer;
+import org.zero2me.breezeflow.core.Task;
+import org.zero2me.breezeflow.core.Workflow;
+
+/**
+ * Cost of building tasks through the workflow's task factory.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaskFactoryBenchmark {
+
+    private Workflow workflow;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        workflow = new Workflow();
+    }
+
+    @Benchmark
+    public Task buildTask() {
+        return workflow.buildTask(BenchmarkTasks.NoopTask.class, "noop");
+    }
+
+    @Benchmark
+    public Task buildContainer() {
+        return workflow.buildTask(ParallelContainer.class, "parallel");
+    }
+
+    @Benchmark
+    public Workflow newWorkflow() {
+        return new Workflow();
+    }
+}
@@ -0,0 +1,64 @@
+package org.zero2me.breezeflow.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zero2me.breezeflow.core.Task;
+import org.zero2me.breezeflow.core.Workflow;
+import org.zero2me.breezeflow.core.WorkflowExecutionException;
+import org.zero2me.breezeflow.core.WorkflowMetrics;
+
+/**
+ * Framework overhead of running a single task that does nothing.
+ *
+ * {@code taskRun} measures the task lifecycle alone (termination and cancellation checks,
+ * pre check, events, metrics); {@code workflowRun} adds the workflow and its root container.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaskRunBenchmark {
+
+    @Param({"true", "false"})
+    public boolean metrics;
+
+    private Workflow workflow;
+    private Task task;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        WorkflowMetrics.getInstance().setEnabled(metrics);
+        workflow = new Workflow();
+        task = workflow.addTask(BenchmarkTasks.NoopTask.class, "noop");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        WorkflowMetrics.getInstance().setEnabled(true);
+    }
+
+    @Benchmark
+    public void taskRun() throws WorkflowExecutionException {
+        task.run();
+    }
+
+    @Benchmark
+    public void workflowRun() throws WorkflowExecutionException {
+        workflow.run();
+    }
+}
@@ -0,0 +1,87 @@
+package org.zero2me.breezeflow.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zero2me.breezeflow.core.BooleanKey;
+import org.zero2me.breezeflow.core.Facts;
+import org.zero2me.breezeflow.core.IntKey;
+import org.zero2me.breezeflow.core.SessionContext;
+import org.zero2me.breezeflow.core.TypedKey;
+
+/**
+ * Typed-key versus string-keyed access to Facts and SessionContext.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TypedKeyBenchmark {
+
+    private static final BooleanKey DONE = TypedKey.booleanKey("BENCH_TYPED_DONE");
+    private static final IntKey COUNT = TypedKey.intKey("BENCH_TYPED_COUNT");
+
+    private Facts facts;
+    private SessionContext context;
+    private int counter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        facts = new Facts();
+        context = new SessionContext();
+        for (int i = 0; i < 100; i++) {
+            facts.put("BENCH_FACT_" + i, Boolean.TRUE);
+            context.setVariable("BENCH_VAR_" + i, i);
+        }
+        facts.put("BENCH_STRING_DONE", Boolean.TRUE);
+        facts.put(DONE, true);
+        context.setVariable("BENCH_STRING_COUNT", 1);
+        context.setVariable(COUNT, 1);
+    }
+
+    @Benchmark
+    public boolean factIsTrueString() {
+        return facts.isTrue("BENCH_STRING_DONE");
+    }
+
+    @Benchmark
+    public boolean factIsTrueTyped() {
+        return facts.isTrue(DONE);
+    }
+
+    @Benchmark
+    public void factPutString() {
+        facts.put("BENCH_STRING_DONE", Boolean.TRUE);
+    }
+
+    @Benchmark
+    public void factPutTyped() {
+        facts.put(DONE, true);
+    }
+
+    @Benchmark
+    public int variableRoundTripString() {
+        int value = (Integer) context.getVariable("BENCH_STRING_COUNT");
+        context.setVariable("BENCH_STRING_COUNT", ++counter & 0xFFFF);
+        return value;
+    }
+
+    @Benchmark
+    public int variableRoundTripTyped() {
+        int value = context.getVariable(COUNT);
+        context.setVariable(COUNT, ++counter & 0xFFFF);
+        return value;
+    }
+}
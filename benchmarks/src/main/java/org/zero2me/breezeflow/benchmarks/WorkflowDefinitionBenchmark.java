@@ -0,0 +1,80 @@
+package org.zero2me.breezeflow.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zero2me.breezeflow.core.SequentialContainer;
+import org.zero2me.breezeflow.core.Task;
+import org.zero2me.breezeflow.core.Workflow;
+import org.zero2me.breezeflow.core.WorkflowDefinition;
+import org.zero2me.breezeflow.core.WorkflowExecutionException;
+
+/**
+ * Per-request cost of building a workflow from scratch versus starting a run
+ * from a compiled {@link WorkflowDefinition}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorkflowDefinitionBenchmark {
+
+    /**
+     * Workflow with two sequential stages of ten no-op tasks each.
+     */
+    public static class TwentyTaskWorkflow extends Workflow {
+        @Override
+        protected void buildWorkflow() {
+            for (int stage = 0; stage < 2; stage++) {
+                SequentialContainer container = (SequentialContainer) buildTask(SequentialContainer.class, "stage" + stage);
+                for (int i = 0; i < 10; i++) {
+                    container.addTask(buildTask(BenchmarkTasks.NoopTask.class, "noop" + i));
+                }
+                addTask(container);
+            }
+        }
+    }
+
+    private WorkflowDefinition definition;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        definition = WorkflowDefinition.compile(TwentyTaskWorkflow.class);
+    }
+
+    @Benchmark
+    public Workflow createFromClass() {
+        return new TwentyTaskWorkflow();
+    }
+
+    @Benchmark
+    public Workflow createFromDefinition() {
+        return definition.newRun();
+    }
+
+    @Benchmark
+    public Task runFromClass() throws WorkflowExecutionException {
+        Workflow workflow = new TwentyTaskWorkflow();
+        workflow.run();
+        return workflow.getRootContainer();
+    }
+
+    @Benchmark
+    public Task runFromDefinition() throws WorkflowExecutionException {
+        Workflow workflow = definition.newRun();
+        workflow.run();
+        return workflow.getRootContainer();
+    }
+}
@@ -0,0 +1,46 @@
+package org.zero2me.breezeflow.common;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread factory producing sequentially named threads.
+ * Threads are named {@code <prefix>-<n>} and can be created as daemon threads
+ * so that shared pools never keep the JVM alive on their own.
+ * The same naming scheme is applied to {@link ForkJoinPool} worker threads.
+ */
+public final class NamedThreadFactory implements ThreadFactory, ForkJoinPool.ForkJoinWorkerThreadFactory {
+
+    private final String prefix;
+    private final boolean daemon;
+    private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+    /**
+     * Creates a new thread factory.
+     *
+     * @param prefix the thread name prefix
+     * @param daemon whether created threads are daemon threads
+     */
+    public NamedThreadFactory(String prefix, boolean daemon) {
+        ValidationUtils.requireNonEmpty(prefix, "prefix");
+        this.prefix = prefix;
+        this.daemon = daemon;
+    }
+
+    @Override
+    public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, prefix + "-" + threadNumber.getAndIncrement());
+        thread.setDaemon(daemon);
+        return thread;
+    }
+
+    @Override
+    public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName(prefix + "-" + threadNumber.getAndIncrement());
+        thread.setDaemon(daemon);
+        return thread;
+    }
+}
@@ -0,0 +1,60 @@
+package org.zero2me.breezeflow.core;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Base class for tasks whose work completes asynchronously.
+ *
+ * An AsyncTask implements {@link #invokeAsync()} and returns a future that completes
+ * when its work is done, for example when a non-blocking I/O call answers. Containers
+ * running asynchronously (see {@link Workflow#runAsync()}) compose that future without
+ * holding a thread while the work is in flight. When the task is run synchronously
+ * through {@link #run()}, the calling thread waits for the future.
+ *
+ * Implementations must not block in {@link #invokeAsync()}, since it may be called
+ * on any thread, including the completion thread of another task.
+ */
+public abstract class AsyncTask extends Task {
+
+    /**
+     * Protected constructor - only TaskFactory and subclasses can create Task instances.
+     */
+    protected AsyncTask() {
+        super();
+    }
+
+    /**
+     * Starts the asynchronous work of this task.
+     *
+     * @return a future completed when the work has finished
+     */
+    @Override
+    protected abstract CompletableFuture<Void> invokeAsync();
+
+    /**
+     * Runs the asynchronous work and waits for it to finish.
+     *
+     * @throws RuntimeException if the work fails or if waiting is interrupted
+     */
+    @Override
+    protected final void invoke() {
+        try {
+            WorkflowExecutors.managedGet(invokeAsync());
+        } catch (ExecutionException e) {
+            Throwable cause = unwrap(e);
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Asynchronous task interrupted", e);
+        }
+    }
+
+    @Override
+    boolean isNonBlocking() {
+        return true;
+    }
+}
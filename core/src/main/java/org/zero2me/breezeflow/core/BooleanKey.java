@@ -0,0 +1,12 @@
+package org.zero2me.breezeflow.core;
+
+/**
+ * Typed key for a boolean value, stored packed in a bitset.
+ * Created through {@link TypedKey#booleanKey(String)}.
+ */
+public final class BooleanKey extends TypedKey<Boolean> {
+
+    BooleanKey(String name, int slot) {
+        super(name, Kind.BOOLEAN, Boolean.class, slot);
+    }
+}
@@ -0,0 +1,31 @@
+package org.zero2me.breezeflow.core;
+
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+import lombok.Data;
+
+/**
+ * Configuration class for an {@link OutputCache}.
+ */
+@Data
+public class CacheConfig {
+  /**
+   * Maximum total weight of the cached entries. With the default weigher the weight
+   * is the estimated heap size of the input values and outputs of the entries in bytes.
+   * Default value is 64 MiB.
+   */
+  private long maximumWeight = 64L * 1024 * 1024;
+
+  /**
+   * Time after which a cached entry expires, in milliseconds, 0 for no expiry.
+   * Default value is 0.
+   */
+  private long ttlMillis = 0L;
+
+  /**
+   * Computes the weight of the input values, the output variables or the output facts of
+   * one entry, each given by name; null to estimate their heap size.
+   */
+  private ToLongFunction<Map<String, Object>> weigher;
+}
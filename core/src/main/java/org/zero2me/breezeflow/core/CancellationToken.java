@@ -0,0 +1,306 @@
+package org.zero2me.breezeflow.core;
+
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cooperative cancellation signal shared by the tasks of a scope.
+ *
+ * Every workflow run owns a root token; containers running children concurrently open a
+ * child scope with {@link #child()}, so the first failing child cancels its siblings without
+ * affecting the rest of the run, while cancelling a scope also cancels every nested scope.
+ * {@link Task#terminate()} cancels the root token of the run.
+ *
+ * A scope can carry a deadline (see {@link #withTimeout}); nested scopes inherit the
+ * remaining budget of their parent, and a scope whose own deadline passes is cancelled
+ * by the shared {@link WheelTimer} and reports {@link #isTimedOut()}.
+ *
+ * Tasks poll the token cheaply with {@link #isCancelled()} or {@link #throwIfCancelled()}
+ * inside long-running loops. Threads executing children of a parallel scope are also
+ * interrupted when the scope is cancelled, so blocking calls return early.
+ */
+public final class CancellationToken {
+    private final CancellationToken parent;
+    private final Registration parentRegistration;
+    private final Set<Registration> callbacks = ConcurrentHashMap.newKeySet();
+    private final long deadlineNanos;
+    private volatile WheelTimer.Timeout timeout;
+    private volatile boolean cancelled;
+    private volatile boolean timedOut;
+    private volatile String reason;
+
+    /**
+     * Creates a root token.
+     */
+    public CancellationToken() {
+        this.parent = null;
+        this.parentRegistration = null;
+        this.deadlineNanos = Long.MAX_VALUE;
+    }
+
+    private CancellationToken(CancellationToken parent, long deadlineNanos) {
+        this.parent = parent;
+        this.deadlineNanos = deadlineNanos;
+        this.parentRegistration = parent.onCancel(() -> cancel(parent.getReason()));
+    }
+
+    /**
+     * Creates a child scope. The child is cancelled whenever this token is cancelled,
+     * but cancelling the child does not affect this token.
+     * Call {@link #close()} on the child once the scope has finished.
+     *
+     * @return the child token
+     */
+    public CancellationToken child() {
+        return new CancellationToken(this, deadlineNanos);
+    }
+
+    /**
+     * Creates a child scope with a deadline. The child expires after the timeout or
+     * with this token, whichever comes first; only a child whose own timeout elapses
+     * reports {@link #isTimedOut()}. Call {@link #close()} on the child once the scope
+     * has finished, which also releases its timer.
+     *
+     * @param timeout the timeout
+     * @param unit the time unit of the timeout
+     * @return the child token
+     */
+    public CancellationToken withTimeout(long timeout, TimeUnit unit) {
+        long now = System.nanoTime();
+        long remaining = getRemaining(TimeUnit.NANOSECONDS, now);
+        long budget = unit.toNanos(timeout);
+        if (budget >= remaining) {
+            // The inherited deadline is the tighter one
+            return child();
+        }
+        CancellationToken child = new CancellationToken(this, now + budget);
+        child.timeout = WheelTimer.shared().schedule(child::expire, budget, TimeUnit.NANOSECONDS);
+        return child;
+    }
+
+    /**
+     * Gets the parent scope.
+     *
+     * @return the parent token, or null for a root token
+     */
+    CancellationToken getParent() {
+        return parent;
+    }
+
+    /**
+     * Gets the root token of the scope hierarchy.
+     *
+     * @return the root token
+     */
+    public CancellationToken root() {
+        CancellationToken token = this;
+        while (token.parent != null) {
+            token = token.parent;
+        }
+        return token;
+    }
+
+    /**
+     * Checks whether this scope has been cancelled.
+     *
+     * @return true if cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Checks whether this scope was cancelled because its own deadline passed.
+     *
+     * @return true if timed out
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * Checks whether this scope or one of its parents has a deadline.
+     *
+     * @return true if a deadline applies
+     */
+    public boolean hasDeadline() {
+        return deadlineNanos != Long.MAX_VALUE;
+    }
+
+    /**
+     * Gets the time left before the deadline of this scope.
+     *
+     * @param unit the time unit of the result
+     * @return the remaining time, zero if the deadline has passed,
+     * or {@link Long#MAX_VALUE} if no deadline applies
+     */
+    public long getRemaining(TimeUnit unit) {
+        return unit.convert(getRemaining(TimeUnit.NANOSECONDS, System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    private long getRemaining(TimeUnit unit, long now) {
+        if (!hasDeadline()) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0L, deadlineNanos - now);
+    }
+
+    /**
+     * Gets the reason given when this scope was cancelled.
+     *
+     * @return the reason, or null if not cancelled
+     */
+    public String getReason() {
+        return reason;
+    }
+
+    /**
+     * Throws if this scope has been cancelled.
+     *
+     * @throws CancellationException if cancelled
+     */
+    public void throwIfCancelled() {
+        if (cancelled) {
+            throw new CancellationException(reason);
+        }
+    }
+
+    /**
+     * Cancels this scope and all nested scopes.
+     *
+     * @param reason the reason for the cancellation
+     * @return true if this call cancelled the scope, false if it was already cancelled
+     */
+    public boolean cancel(String reason) {
+        return cancel(reason, false);
+    }
+
+    private boolean cancel(String reason, boolean expired) {
+        synchronized (this) {
+            if (cancelled) {
+                return false;
+            }
+            this.reason = reason;
+            timedOut = expired;
+            cancelled = true;
+        }
+        for (Registration registration : callbacks) {
+            registration.fire();
+        }
+        return true;
+    }
+
+    /**
+     * Registers a callback run once when this scope is cancelled.
+     * If the scope is already cancelled the callback runs immediately.
+     *
+     * @param callback the callback
+     * @return the registration, to be closed when the callback is no longer needed
+     */
+    public Registration onCancel(Runnable callback) {
+        Registration registration = new Registration(this, callback);
+        callbacks.add(registration);
+        if (cancelled) {
+            registration.fire();
+        }
+        return registration;
+    }
+
+    /**
+     * Detaches this scope from its parent and releases its deadline timer.
+     * Cancellation state is kept.
+     */
+    public void close() {
+        WheelTimer.Timeout pendingTimeout = timeout;
+        if (pendingTimeout != null) {
+            pendingTimeout.cancel();
+        }
+        if (parentRegistration != null) {
+            parentRegistration.close();
+        }
+    }
+
+    /**
+     * Cancels this scope when its own deadline passes.
+     */
+    private void expire() {
+        cancel("deadline exceeded", true);
+    }
+
+    /**
+     * Runs work on the current thread, interrupting the thread if this scope is
+     * cancelled while the work is running. An interrupt caused by the cancellation
+     * is cleared before returning, so it cannot leak into later work on the thread.
+     *
+     * @param work the work to run
+     */
+    void runInterruptibly(Runnable work) {
+        Thread thread = Thread.currentThread();
+        Registration registration = onCancel(thread::interrupt);
+        try {
+            work.run();
+        } finally {
+            if (registration.close()) {
+                Thread.interrupted();
+            }
+        }
+    }
+
+    /**
+     * Handle of a cancellation callback.
+     */
+    public static final class Registration {
+        private static final int ACTIVE = 0;
+        private static final int FIRING = 1;
+        private static final int FIRED = 2;
+        private static final int CLOSED = 3;
+
+        private final CancellationToken token;
+        private final Runnable callback;
+        private final AtomicInteger state = new AtomicInteger(ACTIVE);
+
+        private Registration(CancellationToken token, Runnable callback) {
+            this.token = token;
+            this.callback = callback;
+        }
+
+        private void fire() {
+            if (state.compareAndSet(ACTIVE, FIRING)) {
+                try {
+                    callback.run();
+                } finally {
+                    state.set(FIRED);
+                    token.callbacks.remove(this);
+                }
+            }
+        }
+
+        /**
+         * Unregisters the callback, waiting for it to finish if it is running.
+         *
+         * @return true if the callback has run, false if it was unregistered before running
+         */
+        public boolean close() {
+            token.callbacks.remove(this);
+            if (state.compareAndSet(ACTIVE, CLOSED)) {
+                return false;
+            }
+            while (state.get() == FIRING) {
+                Thread.onSpinWait();
+            }
+            return state.get() == FIRED;
+        }
+
+        /**
+         * Unregisters the callback without waiting for it if it is running.
+         * Safe to call from the callback itself.
+         */
+        void dispose() {
+            token.callbacks.remove(this);
+            state.compareAndSet(ACTIVE, CLOSED);
+        }
+    }
+}
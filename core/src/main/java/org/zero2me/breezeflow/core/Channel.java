@@ -0,0 +1,310 @@
+package org.zero2me.breezeflow.core;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import lombok.Getter;
+
+import org.zero2me.breezeflow.common.ValidationUtils;
+
+/**
+ * Bounded channel streaming records from producer tasks to consumer tasks.
+ *
+ * Producers and consumers typically run side by side in a {@link ParallelContainer} and
+ * find the channel in the session context. A producer sends records as it reads them;
+ * {@link #send(Object)} blocks while the channel is full, so a slow consumer slows the
+ * producer down and at most {@link #getCapacity()} records are held in memory. Every
+ * record is received by exactly one consumer.
+ *
+ * The producer ends the stream with {@link #close()}: consumers receive the records still
+ * buffered and then the end of the stream. A producer that fails calls {@link #fail(Throwable)}
+ * instead: buffered records are dropped and consumers get a {@link ChannelClosedException}
+ * with the failure as cause. Sending to a closed channel throws the same exception.
+ *
+ * Blocked sends and receives end when the thread is interrupted, which is how a cancelled
+ * container stops its children, with a RuntimeException. On a work-stealing pool they wait
+ * through {@link ForkJoinPool#managedBlock}, so the pool can start a thread for a stage
+ * that has not run yet. A channel carries one stream and is not reused.
+ *
+ * @param <T> the type of the records
+ */
+public final class Channel<T> {
+    /**
+     * Maximum number of buffered records.
+     */
+    @Getter
+    private final int capacity;
+
+    private final Object[] buffer;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition notEmpty = lock.newCondition();
+    private int head;
+    private int count;
+    private boolean closed;
+    private Throwable failure;
+
+    /**
+     * Creates a channel.
+     *
+     * @param capacity maximum number of buffered records
+     * @throws IllegalArgumentException if the capacity is not positive
+     */
+    public Channel(int capacity) {
+        ValidationUtils.requirePositive(capacity, "capacity");
+        this.capacity = capacity;
+        this.buffer = new Object[capacity];
+    }
+
+    /**
+     * Sends a record, waiting while the channel is full.
+     *
+     * @param record the record, must not be null
+     * @throws ChannelClosedException if the channel is closed
+     * @throws RuntimeException if the thread is interrupted while waiting
+     */
+    public void send(T record) {
+        ValidationUtils.requireNonNull(record, "record");
+        lock.lock();
+        try {
+            while (count == capacity && !closed) {
+                await(notFull);
+            }
+            ensureOpen();
+            enqueue(record);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Channel send interrupted", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sends a record, waiting at most the given time while the channel is full.
+     *
+     * @param record the record, must not be null
+     * @param timeout maximum time to wait
+     * @param unit the time unit of the timeout
+     * @return true if the record was sent, false if the channel stayed full
+     * @throws ChannelClosedException if the channel is closed
+     * @throws RuntimeException if the thread is interrupted while waiting
+     */
+    public boolean offer(T record, long timeout, TimeUnit unit) {
+        ValidationUtils.requireNonNull(record, "record");
+        long nanos = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (count == capacity && !closed) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = awaitNanos(notFull, nanos);
+            }
+            ensureOpen();
+            enqueue(record);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Channel send interrupted", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Receives the next record, waiting while the channel is empty.
+     *
+     * @return the record, or null at the end of the stream
+     * @throws ChannelClosedException if the producer failed
+     * @throws RuntimeException if the thread is interrupted while waiting
+     */
+    public T receive() {
+        lock.lock();
+        try {
+            while (count == 0 && !closed) {
+                await(notEmpty);
+            }
+            return dequeue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Channel receive interrupted", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Receives the next record, waiting at most the given time while the channel is empty.
+     *
+     * @param timeout maximum time to wait
+     * @param unit the time unit of the timeout
+     * @return the record, or null at the end of the stream or if no record arrived in time
+     * (see {@link #isDrained()})
+     * @throws ChannelClosedException if the producer failed
+     * @throws RuntimeException if the thread is interrupted while waiting
+     */
+    public T poll(long timeout, TimeUnit unit) {
+        long nanos = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (count == 0 && !closed) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = awaitNanos(notEmpty, nanos);
+            }
+            return dequeue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Channel receive interrupted", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Receives records until the end of the stream, passing each to the action.
+     *
+     * @param action the action for each record
+     * @throws ChannelClosedException if the producer failed
+     * @throws RuntimeException if the thread is interrupted while waiting
+     */
+    public void forEach(Consumer<? super T> action) {
+        for (T record = receive(); record != null; record = receive()) {
+            action.accept(record);
+        }
+    }
+
+    /**
+     * Ends the stream. Records already sent are still received.
+     * Closing a closed channel has no effect.
+     */
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ends the stream with a failure. Buffered records are dropped and consumers
+     * receive a {@link ChannelClosedException} caused by the failure.
+     * Has no effect if the channel is already closed.
+     *
+     * @param cause the failure of the producer
+     */
+    public void fail(Throwable cause) {
+        ValidationUtils.requireNonNull(cause, "cause");
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            failure = cause;
+            closed = true;
+            for (int i = 0; i < count; i++) {
+                buffer[(head + i) % capacity] = null;
+            }
+            count = 0;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Checks whether the stream has ended and all records have been received.
+     *
+     * @return true if no record will be received any more
+     */
+    public boolean isDrained() {
+        lock.lock();
+        try {
+            return closed && count == 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of buffered records.
+     *
+     * @return the number of records sent but not yet received
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits on a condition of the lock, as managed blocking on a fork/join worker thread.
+     */
+    private static void await(Condition condition) throws InterruptedException {
+        blocking(() -> {
+            condition.await();
+            return null;
+        });
+    }
+
+    /**
+     * Waits on a condition of the lock at most the given time, as managed blocking on a
+     * fork/join worker thread.
+     *
+     * @return the remaining time in nanoseconds
+     */
+    private static long awaitNanos(Condition condition, long nanos) throws InterruptedException {
+        return blocking(() -> condition.awaitNanos(nanos));
+    }
+
+    private static <R> R blocking(Callable<R> wait) throws InterruptedException {
+        try {
+            return WorkflowExecutors.runBlocking(wait);
+        } catch (InterruptedException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("Unexpected failure while waiting on channel", e);
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new ChannelClosedException(failure != null ? "Channel failed" : "Channel closed", failure);
+        }
+    }
+
+    private void enqueue(T record) {
+        buffer[(head + count) % capacity] = record;
+        count++;
+        notEmpty.signal();
+    }
+
+    @SuppressWarnings("unchecked")
+    private T dequeue() {
+        if (count == 0) {
+            if (failure != null) {
+                throw new ChannelClosedException("Producer failed: " + failure.getMessage(), failure);
+            }
+            return null;
+        }
+        T record = (T) buffer[head];
+        buffer[head] = null;
+        head = (head + 1) % capacity;
+        count--;
+        notFull.signal();
+        return record;
+    }
+}
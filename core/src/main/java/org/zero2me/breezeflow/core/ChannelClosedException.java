@@ -0,0 +1,20 @@
+package org.zero2me.breezeflow.core;
+
+/**
+ * Exception thrown when a record is sent to a closed {@link Channel}, or received from
+ * a channel whose producer failed. In the latter case the producer's failure is the cause.
+ */
+public class ChannelClosedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a new ChannelClosedException with the specified detail message and cause.
+     *
+     * @param message the detail message
+     * @param cause the failure of the producer, may be null
+     */
+    public ChannelClosedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,83 @@
+package org.zero2me.breezeflow.core;
+
+import java.util.List;
+
+/**
+ * Task processing one chunk of the input of a {@link MapContainer}.
+ *
+ * The container copies a template instance of the task for every chunk, hands it the
+ * chunk and collects the returned partial result. Retries, timeouts, metrics and
+ * tracing apply to each chunk like to any other task. Fields set on the template are
+ * shared by all copies, which run concurrently; override {@link #copyFields()} to give
+ * each copy its own mutable fields.
+ *
+ * @param <T> the type of the input elements
+ * @param <R> the type of the partial results
+ */
+public abstract class ChunkTask<T, R> extends Task {
+    /**
+     * Elements of the chunk of the current execution.
+     */
+    private List<T> chunk;
+
+    /**
+     * Partial result of the current execution.
+     */
+    private R result;
+
+    /**
+     * Whether {@link #process(List)} returned for the current chunk; false if the
+     * execution was skipped or cancelled before.
+     */
+    private boolean processed;
+
+    /**
+     * Processes a chunk of the input.
+     *
+     * @param chunk consecutive elements of the input, not to be modified
+     * @return the partial result of the chunk
+     */
+    protected abstract R process(List<T> chunk);
+
+    @Override
+    protected final void invoke() {
+        result = process(chunk);
+        processed = true;
+    }
+
+    /**
+     * Performs pre-execution checks.
+     * For ChunkTask, this always returns true; the container has checked its input.
+     *
+     * @return true, indicating that the chunk can always be processed
+     */
+    @Override
+    protected boolean preCheck() {
+        return true;
+    }
+
+    /**
+     * Starts the copy without the chunk and result of the task it was copied from.
+     */
+    @Override
+    protected void copyFields() {
+        super.copyFields();
+        chunk = null;
+        result = null;
+        processed = false;
+    }
+
+    @SuppressWarnings("unchecked")
+    void setChunk(List<?> chunk) {
+        this.chunk = (List<T>) chunk;
+        this.processed = false;
+    }
+
+    R getResult() {
+        return result;
+    }
+
+    boolean isProcessed() {
+        return processed;
+    }
+}
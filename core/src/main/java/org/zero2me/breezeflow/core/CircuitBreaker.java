@@ -0,0 +1,178 @@
+package org.zero2me.breezeflow.core;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import lombok.Getter;
+import org.slf4j.Logger;
+
+import org.zero2me.breezeflow.common.LogFactory;
+import org.zero2me.breezeflow.common.ValidationUtils;
+
+/**
+ * Circuit breaker shared by all tasks of a class.
+ *
+ * While the circuit is closed every call goes through. After
+ * {@link CircuitBreakerConfig#getFailureThreshold()} consecutive failures the circuit
+ * opens and calls fail immediately with a {@link CircuitOpenException} instead of
+ * hitting the failing dependency. Once {@link CircuitBreakerConfig#getOpenDurationMillis()}
+ * has elapsed a single trial call is let through: its success closes the circuit and
+ * its failure opens it again. Outcomes of calls that started before the last state
+ * change are ignored, so a slow call from before the circuit opened cannot close it.
+ */
+public final class CircuitBreaker {
+    /**
+     * Logger instance for this class.
+     */
+    private static final Logger logger = LogFactory.getLogger(CircuitBreaker.class);
+
+    /**
+     * Breakers keyed by task class.
+     */
+    private static final Map<Class<?>, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    /**
+     * States of a circuit.
+     */
+    public enum State {
+        /** Calls go through. */
+        CLOSED,
+        /** Calls fail immediately. */
+        OPEN,
+        /** A trial call is in flight. */
+        HALF_OPEN
+    }
+
+    @Getter
+    private final String name;
+    private final int failureThreshold;
+    private final long openDurationNanos;
+
+    @Getter
+    private volatile State state = State.CLOSED;
+    private volatile int consecutiveFailures;
+    private long openedAt;
+
+    /**
+     * Number of state changes so far; written after the state, so a reader that sees
+     * a new epoch also sees the new state.
+     */
+    private volatile long epoch;
+
+    private CircuitBreaker(String name, CircuitBreakerConfig config) {
+        ValidationUtils.requirePositive(config.getFailureThreshold(), "failureThreshold");
+        this.name = name;
+        this.failureThreshold = config.getFailureThreshold();
+        this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(config.getOpenDurationMillis());
+    }
+
+    /**
+     * Gets the breaker of a task class, creating it with the default configuration if needed.
+     *
+     * @param taskClass the task class
+     * @return the shared breaker
+     */
+    public static CircuitBreaker of(Class<? extends Task> taskClass) {
+        return of(taskClass, new CircuitBreakerConfig());
+    }
+
+    /**
+     * Gets the breaker of a task class, creating it with the given configuration if needed.
+     * The configuration of the first call for a class wins.
+     *
+     * @param taskClass the task class
+     * @param config the configuration used if the breaker is created
+     * @return the shared breaker
+     */
+    public static CircuitBreaker of(Class<? extends Task> taskClass, CircuitBreakerConfig config) {
+        ValidationUtils.requireNonNull(taskClass, "taskClass");
+        ValidationUtils.requireNonNull(config, "config");
+        return breakers.computeIfAbsent(taskClass, type -> new CircuitBreaker(type.getName(), config));
+    }
+
+    /**
+     * Checks whether a call may go through, claiming the trial call if the open period is over.
+     *
+     * @return the permit of the call, to pass to the outcome methods, or -1 if the call
+     *         may not go through
+     */
+    long tryAcquire() {
+        // Read the epoch first: if the state changes in between, the permit is stale and ignored
+        long permit = epoch;
+        if (state == State.CLOSED) {
+            return permit;
+        }
+        synchronized (this) {
+            if (state == State.OPEN && System.nanoTime() - openedAt >= openDurationNanos) {
+                transition(State.HALF_OPEN);
+                logger.info("circuit {} half-open, letting a trial call through", name);
+                return epoch;
+            }
+            return state == State.CLOSED ? epoch : -1L;
+        }
+    }
+
+    /**
+     * Records a successful call.
+     *
+     * @param permit the permit returned by {@link #tryAcquire()} for the call
+     */
+    void onSuccess(long permit) {
+        if (state == State.CLOSED && consecutiveFailures == 0) {
+            return;
+        }
+        synchronized (this) {
+            if (permit != epoch) {
+                return;
+            }
+            consecutiveFailures = 0;
+            if (state != State.CLOSED) {
+                transition(State.CLOSED);
+                logger.info("circuit {} closed", name);
+            }
+        }
+    }
+
+    /**
+     * Records a failed call.
+     *
+     * @param permit the permit returned by {@link #tryAcquire()} for the call
+     */
+    synchronized void onFailure(long permit) {
+        if (permit != epoch) {
+            return;
+        }
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            transition(State.OPEN);
+            openedAt = System.nanoTime();
+            logger.warn("circuit {} opened after {} consecutive failures", name, consecutiveFailures);
+        }
+    }
+
+    /**
+     * Records a call that was cancelled before it could succeed or fail.
+     * A cancelled trial call gives the trial back, so the next call is let through.
+     *
+     * @param permit the permit returned by {@link #tryAcquire()} for the call
+     */
+    synchronized void onCancelled(long permit) {
+        if (permit == epoch && state == State.HALF_OPEN) {
+            transition(State.OPEN);
+        }
+    }
+
+    /**
+     * Closes the circuit and forgets past failures.
+     */
+    public synchronized void reset() {
+        consecutiveFailures = 0;
+        transition(State.CLOSED);
+    }
+
+    private void transition(State next) {
+        state = next;
+        epoch++;
+    }
+}
@@ -0,0 +1,21 @@
+package org.zero2me.breezeflow.core;
+
+import lombok.Data;
+
+/**
+ * Configuration class for a {@link CircuitBreaker}.
+ */
+@Data
+public class CircuitBreakerConfig {
+  /**
+   * Number of consecutive failures that open the circuit.
+   * Default value is 5 failures.
+   */
+  private int failureThreshold = 5;
+
+  /**
+   * Time the circuit stays open before a trial call is let through, in milliseconds.
+   * Default value is 30 seconds.
+   */
+  private long openDurationMillis = 30000L;
+}
@@ -0,0 +1,18 @@
+package org.zero2me.breezeflow.core;
+
+/**
+ * Exception thrown when a task is short-circuited by an open {@link CircuitBreaker}.
+ */
+public class CircuitOpenException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a new CircuitOpenException with the specified detail message.
+     *
+     * @param message the detail message
+     */
+    public CircuitOpenException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,387 @@
+package org.zero2me.breezeflow.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import lombok.Getter;
+
+/**
+ * Latency analysis of a traced workflow run.
+ *
+ * The critical path is the chain of spans that bounded the run: starting from the end
+ * of the workflow, each span on the path is the child that finished last before the
+ * point reached so far, so a path through a parallel container that ran short of
+ * threads includes the children the last one queued behind. Spans off the path have
+ * slack, the time they could have been delayed without delaying the run.
+ *
+ * The report also estimates the ideal latency with unlimited threads (sequential
+ * containers add up their children, concurrent containers take their slowest child)
+ * and from it the speedup more threads could give, which is an upper bound for
+ * {@link DagContainer}s whose dependencies serialize some children. For concurrent
+ * containers it reports how long the threads running the children sat idle.
+ *
+ * Create reports with {@link #analyze(WorkflowTrace)}, e.g. from the trace consumer
+ * (see {@link SessionConfig#setTraceConsumer}).
+ */
+public final class CriticalPathReport {
+    /**
+     * The analyzed trace.
+     */
+    @Getter
+    private final WorkflowTrace trace;
+
+    /**
+     * Spans on the critical path, ordered by start time.
+     */
+    @Getter
+    private final List<TraceSpan> criticalPath;
+
+    /**
+     * Utilization of every container running its children concurrently.
+     */
+    @Getter
+    private final List<ContainerUtilization> concurrentContainers;
+
+    private final Map<Long, List<TraceSpan>> children;
+    private final Set<Long> critical;
+    private final Map<Long, Long> slack;
+    private final long latencyNanos;
+    private final long workNanos;
+    private final long idealNanos;
+
+    private CriticalPathReport(WorkflowTrace trace) {
+        this.trace = trace;
+        this.children = new HashMap<>();
+        for (TraceSpan span : trace.getSpans()) {
+            children.computeIfAbsent(span.getParentSpanId(), k -> new ArrayList<>()).add(span);
+        }
+        TraceSpan root = trace.getRoot();
+        this.critical = new HashSet<>();
+        this.slack = new HashMap<>();
+        List<TraceSpan> path = new ArrayList<>();
+        List<ContainerUtilization> containers = new ArrayList<>();
+        walk(root, true, 0L, path, containers);
+        path.sort((a, b) -> Long.compare(a.getStartNanos(), b.getStartNanos()));
+        this.criticalPath = Collections.unmodifiableList(path);
+        this.concurrentContainers = Collections.unmodifiableList(containers);
+        this.latencyNanos = root.getEndNanos() - root.getStartNanos();
+        this.workNanos = work(root);
+        this.idealNanos = ideal(root);
+    }
+
+    /**
+     * Analyzes a traced run.
+     *
+     * @param trace the trace of the run
+     * @return the report
+     * @throws IllegalArgumentException if the trace is null
+     */
+    public static CriticalPathReport analyze(WorkflowTrace trace) {
+        if (trace == null) {
+            throw new IllegalArgumentException("trace cannot be null");
+        }
+        return new CriticalPathReport(trace);
+    }
+
+    private List<TraceSpan> childrenOf(TraceSpan span) {
+        return children.getOrDefault(span.getSpanId(), Collections.emptyList());
+    }
+
+    /**
+     * Marks the critical chain among the children of a span and computes the slack of
+     * the others, then descends into every child.
+     */
+    private void walk(TraceSpan span, boolean onPath, long inheritedSlack,
+                      List<TraceSpan> path, List<ContainerUtilization> containers) {
+        if (onPath) {
+            critical.add(span.getSpanId());
+            path.add(span);
+        } else {
+            slack.put(span.getSpanId(), inheritedSlack);
+        }
+        List<TraceSpan> kids = childrenOf(span);
+        if (kids.isEmpty()) {
+            return;
+        }
+        if (span.isConcurrent()) {
+            containers.add(new ContainerUtilization(span, kids));
+        }
+
+        // Walk back from the end of the span, each time taking the child that finished last
+        Set<Long> chain = new HashSet<>();
+        List<TraceSpan> chainByStart = new ArrayList<>();
+        long cursor = span.getEndNanos();
+        while (true) {
+            TraceSpan last = null;
+            for (TraceSpan kid : kids) {
+                if (!chain.contains(kid.getSpanId()) && kid.getEndNanos() <= cursor
+                        && (last == null || kid.getEndNanos() > last.getEndNanos())) {
+                    last = kid;
+                }
+            }
+            if (last == null) {
+                break;
+            }
+            chain.add(last.getSpanId());
+            chainByStart.add(0, last);
+            cursor = last.getStartNanos();
+        }
+
+        for (TraceSpan kid : kids) {
+            if (chain.contains(kid.getSpanId())) {
+                walk(kid, onPath, inheritedSlack, path, containers);
+                continue;
+            }
+            // Slack until the next span of the chain starts, or until the parent ends
+            long until = span.getEndNanos();
+            for (TraceSpan next : chainByStart) {
+                if (next.getStartNanos() >= kid.getEndNanos()) {
+                    until = next.getStartNanos();
+                    break;
+                }
+            }
+            walk(kid, false, inheritedSlack + Math.max(0L, until - kid.getEndNanos()), path, containers);
+        }
+    }
+
+    private long work(TraceSpan span) {
+        List<TraceSpan> kids = childrenOf(span);
+        if (kids.isEmpty()) {
+            return span.getEndNanos() - span.getStartNanos();
+        }
+        long total = 0L;
+        for (TraceSpan kid : kids) {
+            total += work(kid);
+        }
+        return total;
+    }
+
+    private long ideal(TraceSpan span) {
+        List<TraceSpan> kids = childrenOf(span);
+        if (kids.isEmpty()) {
+            return span.getEndNanos() - span.getStartNanos();
+        }
+        long result = 0L;
+        for (TraceSpan kid : kids) {
+            long value = ideal(kid);
+            result = span.isConcurrent() ? Math.max(result, value) : result + value;
+        }
+        return result;
+    }
+
+    /**
+     * Checks whether a span is on the critical path.
+     *
+     * @param span the span
+     * @return true if the span bounded the latency of the run
+     */
+    public boolean isCritical(TraceSpan span) {
+        return critical.contains(span.getSpanId());
+    }
+
+    /**
+     * Gets the slack of a span: how long it could have been delayed without delaying the run.
+     *
+     * @param span the span
+     * @param unit the time unit of the result
+     * @return the slack, 0 for spans on the critical path
+     */
+    public long getSlack(TraceSpan span, TimeUnit unit) {
+        return unit.convert(slack.getOrDefault(span.getSpanId(), 0L), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the latency of the run.
+     *
+     * @param unit the time unit of the result
+     * @return the duration of the workflow span
+     */
+    public long getLatency(TimeUnit unit) {
+        return unit.convert(latencyNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the total time spent in tasks without children.
+     *
+     * @param unit the time unit of the result
+     * @return the sum of the durations of all leaf spans
+     */
+    public long getWork(TimeUnit unit) {
+        return unit.convert(workNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the latency the run would have with unlimited threads and no engine overhead.
+     *
+     * @param unit the time unit of the result
+     * @return the ideal latency
+     */
+    public long getIdealLatency(TimeUnit unit) {
+        return unit.convert(idealNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the speedup unlimited threads could give over the measured latency.
+     *
+     * @return latency divided by ideal latency, at least 1
+     */
+    public double getMaxSpeedup() {
+        return idealNanos > 0 ? Math.max(1.0, (double) latencyNanos / idealNanos) : 1.0;
+    }
+
+    /**
+     * Gets the average number of tasks that could run at the same time.
+     *
+     * @return work divided by ideal latency
+     */
+    public double getAvailableParallelism() {
+        return idealNanos > 0 ? (double) workNanos / idealNanos : 1.0;
+    }
+
+    /**
+     * Renders the task tree as a Graphviz DOT graph annotated with durations, slack and
+     * idle time. Spans on the critical path are drawn in red.
+     *
+     * @return the DOT source
+     */
+    public String toDot() {
+        StringBuilder dot = new StringBuilder(512);
+        dot.append("digraph \"").append(trace.getWorkflowId()).append("\" {\n")
+                .append("  rankdir=LR;\n")
+                .append("  node [shape=box, fontname=\"Helvetica\", fontsize=10];\n");
+        Map<Long, ContainerUtilization> utilization = new HashMap<>();
+        for (ContainerUtilization container : concurrentContainers) {
+            utilization.put(container.getSpan().getSpanId(), container);
+        }
+        for (TraceSpan span : trace.getSpans()) {
+            StringBuilder label = new StringBuilder()
+                    .append(span.getName()).append("\\n").append(span.getKind()).append("\\n")
+                    .append(millis(span.getEndNanos() - span.getStartNanos()));
+            if (span.getOutcome() != TraceSpan.Outcome.COMPLETED) {
+                label.append(' ').append(span.getOutcome());
+            }
+            if (!isCritical(span)) {
+                label.append("\\nslack ").append(millis(slack.getOrDefault(span.getSpanId(), 0L)));
+            }
+            ContainerUtilization container = utilization.get(span.getSpanId());
+            if (container != null) {
+                label.append("\\nidle ").append(millis(container.getIdle(TimeUnit.NANOSECONDS)))
+                        .append(" on ").append(container.getThreads()).append(" threads");
+            }
+            dot.append("  s").append(span.getSpanId()).append(" [label=\"")
+                    .append(label.toString().replace("\"", "\\\"")).append('"');
+            if (isCritical(span)) {
+                dot.append(", color=red, penwidth=2");
+            }
+            dot.append("];\n");
+            if (span.getParentSpanId() != 0L) {
+                dot.append("  s").append(span.getParentSpanId()).append(" -> s").append(span.getSpanId());
+                if (isCritical(span)) {
+                    dot.append(" [color=red, penwidth=2]");
+                }
+                dot.append(";\n");
+            }
+        }
+        return dot.append("}\n").toString();
+    }
+
+    /**
+     * Renders the report as text.
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(512);
+        text.append(String.format(Locale.ROOT, "Workflow %s: latency %s, work %s, ideal latency %s, "
+                        + "max speedup %.2fx, available parallelism %.2f%n", trace.getWorkflowId(),
+                millis(latencyNanos), millis(workNanos), millis(idealNanos), getMaxSpeedup(),
+                getAvailableParallelism()));
+        text.append("Critical path:").append(System.lineSeparator());
+        for (TraceSpan span : criticalPath) {
+            text.append("  ").append(span.getKind()).append(' ').append(span.getName()).append(' ')
+                    .append(millis(span.getEndNanos() - span.getStartNanos())).append(System.lineSeparator());
+        }
+        text.append("Slack:").append(System.lineSeparator());
+        for (TraceSpan span : trace.getSpans()) {
+            if (!isCritical(span)) {
+                text.append("  ").append(span.getKind()).append(' ').append(span.getName()).append(' ')
+                        .append(millis(slack.getOrDefault(span.getSpanId(), 0L))).append(System.lineSeparator());
+            }
+        }
+        text.append("Concurrent containers:").append(System.lineSeparator());
+        for (ContainerUtilization container : concurrentContainers) {
+            text.append("  ").append(container).append(System.lineSeparator());
+        }
+        return text.toString();
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f ms", nanos / 1_000_000.0);
+    }
+
+    /**
+     * Thread utilization of a container running its children concurrently.
+     */
+    public static final class ContainerUtilization {
+        /**
+         * Span of the container.
+         */
+        @Getter
+        private final TraceSpan span;
+
+        /**
+         * Number of distinct threads the children started on.
+         */
+        @Getter
+        private final int threads;
+
+        private final long busyNanos;
+        private final long idleNanos;
+
+        ContainerUtilization(TraceSpan span, List<TraceSpan> children) {
+            Set<Long> threadIds = new HashSet<>();
+            long busy = 0L;
+            for (TraceSpan child : children) {
+                threadIds.add(child.getThreadId());
+                busy += child.getEndNanos() - child.getStartNanos();
+            }
+            this.span = span;
+            this.threads = threadIds.size();
+            this.busyNanos = busy;
+            this.idleNanos = Math.max(0L, threads * (span.getEndNanos() - span.getStartNanos()) - busy);
+        }
+
+        /**
+         * Gets the time the threads spent running children.
+         *
+         * @param unit the time unit of the result
+         * @return the sum of the durations of the children
+         */
+        public long getBusy(TimeUnit unit) {
+            return unit.convert(busyNanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Gets the time the threads sat idle while the container was running.
+         *
+         * @param unit the time unit of the result
+         * @return threads times container duration minus busy time
+         */
+        public long getIdle(TimeUnit unit) {
+            return unit.convert(idleNanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public String toString() {
+            long total = busyNanos + idleNanos;
+            return String.format(Locale.ROOT, "%s: %d threads, busy %s, idle %s (%.0f%%)", span.getName(), threads,
+                    millis(busyNanos), millis(idleNanos), total > 0 ? 100.0 * idleNanos / total : 0.0);
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package org.zero2me.breezeflow.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import lombok.Getter;
+
+/**
+ * A container that executes tasks according to explicit dependencies.
+ *
+ * DagContainer is a specialized Task whose children form a directed acyclic graph.
+ * Each task declares the tasks it depends on and is dispatched to the shared executor
+ * (see {@link WorkflowExecutors}) the instant all of its predecessors have completed,
+ * instead of waiting at a container barrier. Cycles are rejected when a dependency is added.
+ * If any task fails, the container's cancellation scope is cancelled: no further tasks
+ * are dispatched, tasks in flight are interrupted, and the container fails once they
+ * have finished.
+ */
+public class DagContainer extends Task {
+    /**
+     * List of tasks in this container, in the order they were added.
+     */
+    @Getter
+    private List<Task> tasks = new ArrayList<>();
+
+    /**
+     * Direct dependencies of each task, keyed by task identity.
+     */
+    private Map<Task, Set<Task>> dependencies = new IdentityHashMap<>();
+
+    /**
+     * Package-private constructor - only TaskFactory can create DagContainer instances.
+     * This enforces the factory pattern for task creation.
+     */
+    DagContainer() {
+        super();
+    }
+
+    /**
+     * Adds a task to this container.
+     * The task will be dispatched once all of the given dependencies have completed,
+     * or immediately if it has none.
+     *
+     * @param task the task to add
+     * @param dependsOn tasks that must complete first, all already added to this container
+     * @throws IllegalArgumentException if the task was already added or a dependency is unknown
+     */
+    public void addTask(Task task, Task... dependsOn) {
+        if (dependencies.containsKey(task)) {
+            throw new IllegalArgumentException("Task already added to DAG container: " + task.getName());
+        }
+        tasks.add(task);
+        dependencies.put(task, new LinkedHashSet<>());
+        for (Task dependency : dependsOn) {
+            addDependency(task, dependency);
+        }
+    }
+
+    /**
+     * Declares that a task depends on another task of this container.
+     *
+     * @param task the dependent task
+     * @param dependsOn the task that must complete first
+     * @throws IllegalArgumentException if either task is not in this container
+     *                                  or the dependency would introduce a cycle
+     */
+    public void addDependency(Task task, Task dependsOn) {
+        if (!dependencies.containsKey(task)) {
+            throw new IllegalArgumentException("Task not in DAG container: " + task.getName());
+        }
+        if (!dependencies.containsKey(dependsOn)) {
+            throw new IllegalArgumentException("Dependency not in DAG container: " + dependsOn.getName());
+        }
+        if (task == dependsOn || dependsOnTransitively(dependsOn, task)) {
+            throw new IllegalArgumentException(String.format("Dependency %s -> %s would introduce a cycle",
+                    task.getName(), dependsOn.getName()));
+        }
+        dependencies.get(task).add(dependsOn);
+    }
+
+    /**
+     * Gets the direct dependencies of a task.
+     *
+     * @param task the task
+     * @return an unmodifiable view of the task's dependencies, empty if the task is unknown
+     */
+    public Set<Task> getDependencies(Task task) {
+        Set<Task> deps = dependencies.get(task);
+        return deps == null ? Collections.emptySet() : Collections.unmodifiableSet(deps);
+    }
+
+    /**
+     * Copies this container, its children and their dependencies for a new workflow run.
+     */
+    @Override
+    Task copyForRun(Facts facts, SessionContext sessionContext,
+                    SessionConfig sessionConfig, WorkflowListener listener) {
+        DagContainer copy = (DagContainer) super.copyForRun(facts, sessionContext, sessionConfig, listener);
+        Map<Task, Task> copies = new IdentityHashMap<>();
+        copy.tasks.replaceAll(task -> {
+            Task taskCopy = task.copyForRun(facts, sessionContext, sessionConfig, listener);
+            copies.put(task, taskCopy);
+            return taskCopy;
+        });
+        copy.dependencies.clear();
+        for (Map.Entry<Task, Set<Task>> entry : dependencies.entrySet()) {
+            Set<Task> deps = new LinkedHashSet<>();
+            for (Task dependency : entry.getValue()) {
+                deps.add(copies.get(dependency));
+            }
+            copy.dependencies.put(copies.get(entry.getKey()), deps);
+        }
+        return copy;
+    }
+
+    /**
+     * Gives the copy its own task list and dependency map.
+     */
+    @Override
+    protected void copyFields() {
+        super.copyFields();
+        tasks = new ArrayList<>(tasks);
+        dependencies = new IdentityHashMap<>();
+    }
+
+    /**
+     * Checks whether {@code from} depends on {@code target}, directly or transitively.
+     */
+    private boolean dependsOnTransitively(Task from, Task target) {
+        Set<Task> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Task> stack = new ArrayDeque<>();
+        stack.push(from);
+        while (!stack.isEmpty()) {
+            Task current = stack.pop();
+            if (current == target) {
+                return true;
+            }
+            if (visited.add(current)) {
+                stack.addAll(dependencies.get(current));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Executes all tasks in this container in dependency order.
+     * Tasks without pending dependencies are dispatched to the shared executor; each
+     * completion dispatches the successors whose dependencies are now all complete.
+     * While waiting, the calling thread runs dispatched tasks that no pool thread has
+     * picked up yet, so nesting this container inside others cannot starve the pool.
+     * A task whose preCheck() fails counts as completed for its successors.
+     *
+     * @throws RuntimeException if any task fails during execution or if execution is interrupted
+     */
+    @Override
+    public void invoke() {
+        if (tasks.isEmpty()) {
+            return;
+        }
+
+        ExecutorService executor = WorkflowExecutors.getExecutor(sessionConfig);
+
+        logger.info("Starting DAG container ({}:{}) execution with {} tasks.",
+                        getId(), getName(), tasks.size());
+        publish(WorkflowEventType.TASK_STARTED, "DAG container");
+
+        Run run = new Run(executor);
+        try {
+            run.execute();
+        } finally {
+            run.scope.close();
+        }
+
+        logger.info("Completed DAG container ({}:{}) execution.", getId(), getName());
+        publish(WorkflowEventType.TASK_COMPLETED, "DAG container");
+    }
+
+    /**
+     * Executes all tasks in this container in dependency order without blocking.
+     * Each task is started when its predecessors have completed; blocking tasks are
+     * handed to the shared executor, so no thread waits while tasks are in flight.
+     *
+     * @return a future completed when all tasks have completed
+     */
+    @Override
+    protected CompletableFuture<Void> invokeAsync() {
+        if (tasks.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        ExecutorService executor = WorkflowExecutors.getExecutor(sessionConfig);
+
+        logger.info("Starting DAG container ({}:{}) async execution with {} tasks.",
+                        getId(), getName(), tasks.size());
+        publish(WorkflowEventType.TASK_STARTED, "DAG container");
+
+        Run run = new Run(executor);
+        return run.executeAsync().whenComplete((result, error) -> run.scope.close()).thenRun(() -> {
+            logger.info("Completed DAG container ({}:{}) execution.", getId(), getName());
+            publish(WorkflowEventType.TASK_COMPLETED, "DAG container");
+        });
+    }
+
+    @Override
+    boolean isNonBlocking() {
+        return true;
+    }
+
+    @Override
+    boolean isConcurrent() {
+        return true;
+    }
+
+    /**
+     * Scheduling state of a single container invocation.
+     */
+    private final class Run {
+        private final ExecutorService executor;
+        private final CancellationToken scope = getCancellationToken().child();
+        private final TaskDispatcher dispatcher;
+        private final int[][] successors;
+        private final AtomicInteger[] pending;
+        private final AtomicInteger completed = new AtomicInteger();
+        private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+        /**
+         * Tasks started but not yet finished, for asynchronous execution.
+         */
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Run(ExecutorService executor) {
+            this.executor = executor;
+            this.dispatcher = new TaskDispatcher(executor);
+            int size = tasks.size();
+            for (Task task : tasks) {
+                adopt(task, scope);
+            }
+            Map<Task, Integer> index = new IdentityHashMap<>();
+            for (int i = 0; i < size; i++) {
+                index.put(tasks.get(i), i);
+            }
+            List<List<Integer>> edges = new ArrayList<>(size);
+            pending = new AtomicInteger[size];
+            for (int i = 0; i < size; i++) {
+                edges.add(new ArrayList<>());
+                pending[i] = new AtomicInteger(dependencies.get(tasks.get(i)).size());
+            }
+            for (int i = 0; i < size; i++) {
+                for (Task dependency : dependencies.get(tasks.get(i))) {
+                    edges.get(index.get(dependency)).add(i);
+                }
+            }
+            successors = new int[size][];
+            for (int i = 0; i < size; i++) {
+                successors[i] = edges.get(i).stream().mapToInt(Integer::intValue).toArray();
+            }
+        }
+
+        void execute() {
+            // Collect the roots first - dispatching may already release successors
+            List<Integer> roots = new ArrayList<>();
+            for (int i = 0; i < tasks.size(); i++) {
+                if (pending[i].get() == 0) {
+                    roots.add(i);
+                }
+            }
+            for (int root : roots) {
+                dispatch(root);
+            }
+
+            try {
+                dispatcher.awaitIdle();
+            } catch (InterruptedException e) {
+                scope.cancel("DAG execution interrupted");
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("DAG execution interrupted", e);
+            }
+
+            RuntimeException error = failure.get();
+            if (error != null) {
+                throw new RuntimeException("DAG task execution failed", error);
+            }
+            if (completed.get() != tasks.size()) {
+                throw new IllegalStateException(String.format("DAG container %s:%s completed only %d of %d tasks",
+                        getId(), getName(), completed.get(), tasks.size()));
+            }
+        }
+
+        CompletableFuture<Void> executeAsync() {
+            List<Integer> roots = new ArrayList<>();
+            for (int i = 0; i < tasks.size(); i++) {
+                if (pending[i].get() == 0) {
+                    roots.add(i);
+                }
+            }
+            // Count all roots in flight first, so that an early completion cannot finish the run
+            inFlight.set(roots.size());
+            for (int root : roots) {
+                startAsync(root);
+            }
+            return done;
+        }
+
+        private void startAsync(int i) {
+            Task.startAsync(tasks.get(i), executor).whenComplete((result, error) -> onCompleted(i, error));
+        }
+
+        private void onCompleted(int i, Throwable error) {
+            if (error != null) {
+                recordFailure(tasks.get(i), Task.unwrap(error));
+            } else {
+                completed.incrementAndGet();
+                if (failure.get() == null) {
+                    for (int successor : successors[i]) {
+                        if (pending[successor].decrementAndGet() == 0) {
+                            inFlight.incrementAndGet();
+                            startAsync(successor);
+                        }
+                    }
+                }
+            }
+            if (inFlight.decrementAndGet() == 0) {
+                RuntimeException cause = failure.get();
+                if (cause != null) {
+                    done.completeExceptionally(new RuntimeException("DAG task execution failed", cause));
+                } else if (completed.get() != tasks.size()) {
+                    done.completeExceptionally(new IllegalStateException(String.format(
+                            "DAG container %s:%s completed only %d of %d tasks",
+                            getId(), getName(), completed.get(), tasks.size())));
+                } else {
+                    done.complete(null);
+                }
+            }
+        }
+
+        private void dispatch(int i) {
+            dispatcher.dispatch(() -> runTask(i));
+        }
+
+        private void runTask(int i) {
+            Task task = tasks.get(i);
+            scope.runInterruptibly(() -> dispatcher.runTask(task, error -> {
+                if (error != null) {
+                    recordFailure(task, error);
+                    return;
+                }
+                completed.incrementAndGet();
+                if (failure.get() == null) {
+                    for (int successor : successors[i]) {
+                        if (pending[successor].decrementAndGet() == 0) {
+                            dispatch(successor);
+                        }
+                    }
+                }
+            }));
+        }
+
+        /**
+         * Records the first failure and cancels the tasks still in flight.
+         */
+        private void recordFailure(Task task, Throwable error) {
+            if (failure.compareAndSet(null, new RuntimeException("Task execution failed: " + task.getId(), error))) {
+                scope.cancel(String.format("task %s:%s failed", task.getId(), task.getName()));
+            }
+        }
+    }
+
+    /**
+     * Performs pre-execution checks.
+     * For DagContainer, this always returns true as there are no
+     * specific preconditions for execution.
+     *
+     * @return true, indicating that the container can always be executed
+     */
+    @Override
+    protected boolean preCheck() {
+        return true;
+    }
+}
@@ -16,6 +16,31 @@ public class DefaultWorkflowListener extends WorkflowListener {
    */
   private Logger logger = LogFactory.getLogger(DefaultWorkflowListener.class);
   
+  /**
+   * Checks whether events of a type are logged. No event is created while INFO
+   * logging is disabled for this class.
+   *
+   * @param type the event type
+   * @return true if INFO logging is enabled and the type is of interest
+   */
+  @Override
+  public boolean isInterested(WorkflowEventType type) {
+    return logger.isInfoEnabled() && super.isInterested(type);
+  }
+
+  /**
+   * Handles workflow events by logging them at the INFO level.
+   * The description is only rendered if INFO logging is enabled.
+   *
+   * @param event the workflow event
+   */
+  @Override
+  protected void handle(WorkflowEvent event) {
+    if (logger.isInfoEnabled()) {
+      logger.info("Event: {} Description: {}", event.getType(), event.getDescription());
+    }
+  }
+
   /**
    * Handles workflow events by logging them at the INFO level.
    * 
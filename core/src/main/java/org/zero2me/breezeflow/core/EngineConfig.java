@@ -0,0 +1,39 @@
+package org.zero2me.breezeflow.core;
+
+import lombok.Data;
+
+/**
+ * Configuration class for a {@link WorkflowEngine}.
+ * This class holds the admission control parameters of the engine, such as
+ * the number of runs executed concurrently and the size of the submission queue.
+ */
+@Data
+public class EngineConfig {
+  /**
+   * Maximum number of workflow runs executed concurrently.
+   * Default value is the number of available processors.
+   */
+  private int maxConcurrentRuns = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * Maximum number of submitted runs waiting for a free run slot.
+   * Default value is 1000 runs.
+   */
+  private int queueCapacity = 1000;
+
+  /**
+   * Policy applied when a run is submitted while the queue is full.
+   * Default value is {@link RejectionPolicy#ABORT}.
+   */
+  private RejectionPolicy rejectionPolicy = RejectionPolicy.ABORT;
+
+  /**
+   * Prefix for the names of the threads executing workflow runs.
+   */
+  private String threadNamePrefix = "breezeflow-engine";
+
+  /**
+   * Whether the engine creates daemon threads.
+   */
+  private boolean daemonThreads = true;
+}
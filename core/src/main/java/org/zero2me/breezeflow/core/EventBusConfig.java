@@ -0,0 +1,38 @@
+package org.zero2me.breezeflow.core;
+
+import lombok.Data;
+
+/**
+ * Configuration class for a listener subscribed to a {@link WorkflowEventBus}.
+ */
+@Data
+public class EventBusConfig {
+  /**
+   * Number of events buffered for the listener, rounded up to a power of two.
+   * Default value is 1024 events.
+   */
+  private int bufferSize = 1024;
+
+  /**
+   * Maximum number of events handed to the listener at once.
+   * Default value is 256 events.
+   */
+  private int batchSize = 256;
+
+  /**
+   * Policy applied when the buffer is full.
+   * Default value is {@link OverflowPolicy#BLOCK}.
+   */
+  private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+
+  /**
+   * One in this many events is kept under {@link OverflowPolicy#SAMPLE} once the buffer is half full.
+   * Default value is 10.
+   */
+  private int sampleRate = 10;
+
+  /**
+   * Prefix for the name of the thread delivering events to the listener.
+   */
+  private String threadNamePrefix = "breezeflow-events";
+}
@@ -0,0 +1,513 @@
+package org.zero2me.breezeflow.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import lombok.Getter;
+import org.slf4j.Logger;
+
+import org.zero2me.breezeflow.common.LogFactory;
+import org.zero2me.breezeflow.common.NamedThreadFactory;
+import org.zero2me.breezeflow.common.ValidationUtils;
+
+/**
+ * Append-only journal of a workflow run, used to resume the run after a crash.
+ *
+ * The journal records the start of a run, the completion of every task of the
+ * workflow's root container together with the changes it made to the facts and the
+ * session context, and the end of the run. {@link Workflow#resume()} replays the
+ * journal to rebuild the state and continues after the last journaled task.
+ *
+ * Records are appended to memory-mapped segment files, so an append is a memory copy
+ * and survives a JVM crash immediately. A background thread forces the segments to the
+ * storage device every {@link JournalConfig#getGroupCommitMillis()} milliseconds, which
+ * commits all records appended in the meantime at once. Every record carries a checksum,
+ * so a torn record at the end of the journal is ignored on replay.
+ *
+ * Values are encoded with the {@link StateCodec} of the {@link JournalConfig}, where
+ * codecs for user types can be registered. If a value cannot be encoded the journal stops
+ * recording the run, and a resume repeats the tasks from that point on. Values that need
+ * Java serialization count as such unless the codec has a serial filter to read them back,
+ * which must allow their classes. Only the facts and session variables written through
+ * their setters are recorded, encoded when the task completes; a value mutated in place
+ * must be set again for the change to be recorded.
+ *
+ * A journal belongs to one workflow at a time; starting a new run clears it.
+ */
+public final class ExecutionJournal implements Closeable {
+    /**
+     * Logger instance for this class.
+     */
+    private static final Logger logger = LogFactory.getLogger(ExecutionJournal.class);
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final int FRAME_HEADER = 8;
+
+    private static final byte RUN_STARTED = 1;
+    private static final byte TASK_COMPLETED = 2;
+    private static final byte RUN_FINISHED = 3;
+
+    /**
+     * Directory holding the segment files.
+     */
+    @Getter
+    private final Path directory;
+
+    private final JournalConfig config;
+    private final ScheduledExecutorService committer;
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private int segmentNumber;
+    private boolean dirty;
+    private boolean recording;
+    private boolean closed;
+
+    private ExecutionJournal(Path directory, JournalConfig config) throws IOException {
+        this.directory = directory;
+        this.config = config;
+        Files.createDirectories(directory);
+        List<Path> segments = segments();
+        if (segments.isEmpty()) {
+            openSegment(1);
+        } else {
+            Path last = segments.get(segments.size() - 1);
+            openSegment(segmentNumber(last));
+            segment.position(endOfRecords(segment));
+        }
+        this.committer = Executors.newSingleThreadScheduledExecutor(
+                new NamedThreadFactory(config.getThreadNamePrefix(), true));
+        committer.scheduleWithFixedDelay(this::commit, config.getGroupCommitMillis(),
+                config.getGroupCommitMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens a journal with the default configuration, creating the directory if needed.
+     *
+     * @param directory the directory of the journal
+     * @return the journal
+     * @throws IOException if the journal cannot be opened
+     */
+    public static ExecutionJournal open(Path directory) throws IOException {
+        return open(directory, new JournalConfig());
+    }
+
+    /**
+     * Opens a journal, creating the directory if needed.
+     *
+     * @param directory the directory of the journal
+     * @param config the journal configuration
+     * @return the journal
+     * @throws IOException if the journal cannot be opened
+     * @throws IllegalArgumentException if the configuration is invalid
+     */
+    public static ExecutionJournal open(Path directory, JournalConfig config) throws IOException {
+        ValidationUtils.requireNonNull(directory, "directory");
+        ValidationUtils.requireNonNull(config, "config");
+        ValidationUtils.requirePositive(config.getSegmentSize(), "segmentSize");
+        ValidationUtils.requirePositive(config.getGroupCommitMillis(), "groupCommitMillis");
+        ValidationUtils.requireNonNull(config.getCodec(), "codec");
+        return new ExecutionJournal(directory, config);
+    }
+
+    /**
+     * Clears the journal and records the start of a new run with its initial state.
+     * If the initial state cannot be encoded, the run is not recorded.
+     *
+     * @param workflowId id of the run
+     * @param facts facts at the start of the run
+     * @param context session variables at the start of the run
+     */
+    synchronized void startRun(String workflowId, Map<String, Object> facts, Map<String, Object> context) {
+        recording = false;
+        try {
+            closeSegment();
+            for (Path file : segments()) {
+                Files.delete(file);
+            }
+            openSegment(1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to clear journal in " + directory, e);
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            writeString(out, workflowId);
+            out.writeLong(System.currentTimeMillis());
+            writeDelta(out, Collections.emptyList(), facts, Collections.emptyList(), context);
+            append(RUN_STARTED, bytes.toByteArray());
+            recording = true;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("journal in {} does not record workflow {}: {}", directory, workflowId, e.getMessage());
+        }
+    }
+
+    /**
+     * Continues recording a run recovered from this journal.
+     */
+    synchronized void continueRun() {
+        recording = true;
+    }
+
+    /**
+     * Records the completion of a task of the root container with the changes made
+     * to the facts and the session context since the previous record. The values are
+     * encoded before this method returns.
+     *
+     * @param index position of the task in the root container
+     * @param name name of the task
+     * @param removedFacts names of the removed facts
+     * @param facts new values of the written facts
+     * @param removedContext names of the removed session variables
+     * @param context new values of the written session variables
+     * @return true if the completion was recorded
+     */
+    boolean taskCompleted(int index, String name, Collection<String> removedFacts, Map<String, Object> facts,
+                          Collection<String> removedContext, Map<String, Object> context) {
+        byte[] payload;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(index);
+            writeString(out, name);
+            writeDelta(out, removedFacts, facts, removedContext, context);
+            payload = bytes.toByteArray();
+        } catch (IOException e) {
+            stopRecording(name, e);
+            return false;
+        }
+        synchronized (this) {
+            if (!recording || closed) {
+                return false;
+            }
+            try {
+                append(TASK_COMPLETED, payload);
+            } catch (RuntimeException e) {
+                stopRecording(name, e);
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Stops recording the current run, so that a resume repeats the tasks from here on.
+     */
+    private synchronized void stopRecording(String task, Exception cause) {
+        recording = false;
+        logger.warn("journal in {} stops recording at task {}: {}", directory, task, cause.getMessage());
+    }
+
+    /**
+     * Records the end of the current run.
+     *
+     * @param succeeded whether the run completed successfully
+     */
+    synchronized void runFinished(boolean succeeded) {
+        if (closed) {
+            return;
+        }
+        append(RUN_FINISHED, new byte[] {(byte) (succeeded ? 1 : 0)});
+        recording = false;
+        commit();
+    }
+
+    /**
+     * Replays the journal.
+     *
+     * @return the state of the last recorded run, or null if the journal is empty
+     */
+    synchronized Recovery recover() {
+        Recovery recovery = null;
+        try {
+            for (Path file : segments()) {
+                MappedByteBuffer buffer = segmentNumber(file) == segmentNumber ? segment.duplicate() : map(file);
+                buffer.position(0);
+                byte[] record;
+                while ((record = nextRecord(buffer)) != null) {
+                    DataInputStream in = new DataInputStream(new ByteArrayInputStream(record, 1, record.length - 1));
+                    switch (record[0]) {
+                        case RUN_STARTED:
+                            recovery = new Recovery(readString(in));
+                            in.readLong();
+                            readDelta(in, config.getCodec(), recovery);
+                            break;
+                        case TASK_COMPLETED:
+                            if (recovery != null) {
+                                recovery.apply(in, config.getCodec());
+                            }
+                            break;
+                        case RUN_FINISHED:
+                            if (recovery != null) {
+                                recovery.finished = true;
+                                recovery.succeeded = in.readByte() == 1;
+                            }
+                            break;
+                        default:
+                            throw new IOException("Unknown journal record type " + record[0]);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to replay journal in " + directory, e);
+        }
+        return recovery;
+    }
+
+    /**
+     * Forces all appended records to the storage device.
+     */
+    public synchronized void flush() {
+        dirty = true;
+        commit();
+    }
+
+    /**
+     * Forces all appended records to the storage device and releases the journal.
+     */
+    @Override
+    public void close() {
+        committer.shutdown();
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            commit();
+            try {
+                closeSegment();
+            } catch (IOException e) {
+                logger.warn("failed to close journal in {}: {}", directory, e.getMessage());
+            }
+            closed = true;
+        }
+    }
+
+    /**
+     * Forces the current segment if records were appended since the last commit.
+     */
+    private synchronized void commit() {
+        if (dirty && segment != null) {
+            segment.force();
+            dirty = false;
+        }
+    }
+
+    /**
+     * Appends a record, moving to a new segment if it does not fit into the current one.
+     * The length is written last, so a record is only visible once it is complete.
+     */
+    private void append(byte type, byte[] payload) {
+        if (closed) {
+            throw new IllegalStateException("Journal in " + directory + " is closed");
+        }
+        int length = payload.length + 1;
+        if (FRAME_HEADER + length > config.getSegmentSize()) {
+            throw new IllegalArgumentException(String.format(
+                    "Journal record of %d bytes does not fit into a segment of %d bytes", length, config.getSegmentSize()));
+        }
+        try {
+            if (segment.remaining() < FRAME_HEADER + length) {
+                segment.force();
+                closeSegment();
+                openSegment(segmentNumber + 1);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open journal segment in " + directory, e);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload);
+        int position = segment.position();
+        segment.position(position + 4);
+        segment.putInt((int) crc.getValue());
+        segment.put(type);
+        segment.put(payload);
+        segment.putInt(position, length);
+        dirty = true;
+    }
+
+    /**
+     * Reads the next complete record, or returns null at the end of the records.
+     */
+    private static byte[] nextRecord(MappedByteBuffer buffer) {
+        int position = buffer.position();
+        if (buffer.limit() - position < FRAME_HEADER) {
+            return null;
+        }
+        int length = buffer.getInt(position);
+        if (length <= 0 || length > buffer.limit() - position - FRAME_HEADER) {
+            return null;
+        }
+        int checksum = buffer.getInt(position + 4);
+        byte[] record = new byte[length];
+        buffer.position(position + FRAME_HEADER);
+        buffer.get(record);
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        if ((int) crc.getValue() != checksum) {
+            // Torn write at the end of the journal
+            buffer.position(position);
+            return null;
+        }
+        return record;
+    }
+
+    private static int endOfRecords(MappedByteBuffer buffer) {
+        buffer.position(0);
+        while (nextRecord(buffer) != null) {
+            // Skip complete records
+        }
+        return buffer.position();
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static int segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private void openSegment(int number) throws IOException {
+        Path file = directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = Math.max(channel.size(), config.getSegmentSize());
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        segmentNumber = number;
+    }
+
+    private void closeSegment() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+            segment = null;
+        }
+    }
+
+    private static MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel readChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return readChannel.map(FileChannel.MapMode.READ_ONLY, 0, readChannel.size());
+        }
+    }
+
+    /**
+     * Writes the removed names and the new values of the facts and session variables.
+     * The values come last because the codec reads ahead.
+     */
+    private void writeDelta(DataOutputStream out, Collection<String> removedFacts, Map<String, Object> facts,
+                            Collection<String> removedContext, Map<String, Object> context) throws IOException {
+        writeNames(out, removedFacts);
+        writeNames(out, removedContext);
+        config.getCodec().writeMaps(facts, context, out, true);
+    }
+
+    private static void writeNames(DataOutputStream out, Collection<String> names) throws IOException {
+        out.writeInt(names.size());
+        for (String name : names) {
+            writeString(out, name);
+        }
+    }
+
+    private static void readDelta(DataInputStream in, StateCodec codec, Recovery recovery) throws IOException {
+        int removedFacts = in.readInt();
+        for (int i = 0; i < removedFacts; i++) {
+            recovery.facts.remove(readString(in));
+        }
+        int removedContext = in.readInt();
+        for (int i = 0; i < removedContext; i++) {
+            recovery.context.remove(readString(in));
+        }
+        List<Map<String, Object>> changed = codec.readMaps(in);
+        recovery.facts.putAll(changed.get(0));
+        recovery.context.putAll(changed.get(1));
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * State of the last run recorded in a journal.
+     */
+    static final class Recovery {
+        /**
+         * Id of the recorded run.
+         */
+        @Getter
+        private final String workflowId;
+
+        /**
+         * Names of the completed tasks of the root container, in order.
+         */
+        private final List<String> completedTasks = new ArrayList<>();
+
+        @Getter
+        private final Map<String, Object> facts = new HashMap<>();
+
+        @Getter
+        private final Map<String, Object> context = new HashMap<>();
+
+        @Getter
+        private boolean finished;
+
+        @Getter
+        private boolean succeeded;
+
+        private Recovery(String workflowId) {
+            this.workflowId = workflowId;
+        }
+
+        private void apply(DataInputStream in, StateCodec codec) throws IOException {
+            int index = in.readInt();
+            String name = readString(in);
+            if (index != completedTasks.size()) {
+                throw new IOException(String.format("Journal records task %d after %d completed tasks",
+                        index, completedTasks.size()));
+            }
+            readDelta(in, codec, this);
+            completedTasks.add(name);
+            finished = false;
+        }
+
+        List<String> getCompletedTasks() {
+            return Collections.unmodifiableList(completedTasks);
+        }
+    }
+}
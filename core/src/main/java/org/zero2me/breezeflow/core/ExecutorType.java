@@ -0,0 +1,37 @@
+package org.zero2me.breezeflow.core;
+
+/**
+ * Enumeration of the executor kinds that can back parallel task execution.
+ * The executor is selected through {@link SessionConfig#setExecutorType(ExecutorType)}
+ * and is shared by all containers and workflow runs using the same configuration.
+ */
+public enum ExecutorType {
+    /**
+     * Fixed-size thread pool sized by {@link SessionConfig#getThreadPoolSize()}.
+     */
+    FIXED,
+
+    /**
+     * Unbounded pool that creates threads on demand and reuses idle ones.
+     */
+    CACHED,
+
+    /**
+     * Work-stealing {@link java.util.concurrent.ForkJoinPool} with a parallelism of
+     * {@link SessionConfig#getThreadPoolSize()}. Parallel containers fork their children
+     * and join them cooperatively, so nested containers do not multiply threads.
+     */
+    WORK_STEALING,
+
+    /**
+     * Executor starting a virtual thread per task, for tasks that mostly block on I/O.
+     * Requires Java 21; on older runtimes a cached platform-thread pool is used instead.
+     */
+    VIRTUAL,
+
+    /**
+     * Caller-supplied executor taken from {@link SessionConfig#getCustomExecutor()}.
+     * Its lifecycle is owned by the caller and is never shut down by BreezeFlow.
+     */
+    CUSTOM
+}
@@ -0,0 +1,17 @@
+package org.zero2me.breezeflow.core;
+
+/**
+ * Listener notified when a fact is added to or replaced in a {@link Facts} repository.
+ *
+ * Listeners are called synchronously on the thread that changed the fact,
+ * so implementations should return quickly and must not block.
+ */
+@FunctionalInterface
+public interface FactListener {
+    /**
+     * Called after a fact has been added or replaced.
+     *
+     * @param fact the new fact
+     */
+    void onFactChanged(Fact<?> fact);
+}
@@ -1,9 +1,41 @@
 package org.zero2me.breezeflow.core;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
 
+/**
+ * Thread-safe repository of facts, indexed by fact name.
+ *
+ * Facts are kept in a concurrent hash index so that lookups are O(1) and tasks
+ * running in parallel can read and write facts without external locking. Besides
+ * plain put/get, the repository offers atomic read-modify-write operations
+ * (putIfAbsent, compute, merge, compareAndSet and counters).
+ *
+ * Facts declared through {@link TypedKey} are stored in array slots instead: reads and
+ * writes through the typed overloads are indexed, unboxed and cast-free, and boolean facts
+ * are packed into a bitset. String-keyed methods remain available for every fact; for names
+ * registered as typed keys they are routed to the same slot, boxing on the way. A value of
+ * another type than the registered key is stored by name instead, and the typed overloads
+ * treat the fact as absent while it is there. Switching a name between the two storages
+ * is not atomic with concurrent writes of the same name.
+ */
 public class Facts implements Iterable<Fact<?>> {
-    private final Set<Fact<?>> facts = new HashSet<>();
+    private final ConcurrentHashMap<String, Fact<?>> facts = new ConcurrentHashMap<>();
+    private final List<FactListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Storage of the typed facts, created on first typed write.
+     */
+    private volatile SlotStore slots;
+
+    /**
+     * Names of the facts written or removed since tracking started, null while changes
+     * are not tracked (see {@link #trackChanges(boolean)}).
+     */
+    private volatile Set<String> changedNames;
 
     /**
      * Add a fact, replacing any fact with the same name.
@@ -14,10 +46,6 @@ public class Facts implements Iterable<Fact<?>> {
     public <T> void put(String name, T value) {
         Objects.requireNonNull(name, "fact name must not be null");
         Objects.requireNonNull(value, "fact value must not be null");
-        Fact<?> retrievedFact = getFact(name);
-        if (retrievedFact != null) {
-            remove(retrievedFact);
-        }
         add(new Fact<>(name, value));
     }
 
@@ -28,11 +56,380 @@ public class Facts implements Iterable<Fact<?>> {
      */
     public <T> void add(Fact<T> fact) {
         Objects.requireNonNull(fact, "fact must not be null");
-        Fact<?> retrievedFact = getFact(fact.getName());
-        if (retrievedFact != null) {
-            remove(retrievedFact);
+        TypedKey<?> key = TypedKey.lookup(fact.getName());
+        if (key != null && key.accepts(fact.getValue())) {
+            slots().setBoxed(key, fact.getValue());
+            facts.remove(fact.getName());
+        } else {
+            facts.put(fact.getName(), fact);
+            if (key != null) {
+                removeSlot(key);
+            }
+        }
+        fireFactChanged(fact);
+    }
+
+    /**
+     * Atomically add a fact if no fact with the same name exists.
+     *
+     * @param name of the fact to add, must not be null
+     * @param value of the fact to add, must not be null
+     * @param <T> type of the fact's value
+     * @return the value of the existing fact, or null if the fact was added
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T putIfAbsent(String name, T value) {
+        Objects.requireNonNull(name, "fact name must not be null");
+        Objects.requireNonNull(value, "fact value must not be null");
+        TypedKey<?> key = route(name, value);
+        if (key != null) {
+            while (true) {
+                T existing = (T) migrate(key);
+                if (existing != null) {
+                    return existing;
+                }
+                if (slots.compareAndSetBoxed(key, null, value)) {
+                    fireFactChanged(new Fact<>(name, value));
+                    return null;
+                }
+            }
+        }
+        Object typed = getTypedValue(name);
+        if (typed != null) {
+            return (T) typed;
+        }
+        Fact<T> fact = new Fact<>(name, value);
+        Fact<?> existing = facts.putIfAbsent(name, fact);
+        if (existing != null) {
+            return (T) existing.getValue();
+        }
+        fireFactChanged(fact);
+        return null;
+    }
+
+    /**
+     * Atomically compute a new value for a fact from its current value.
+     * The remapping function is called at most once, while no other thread can
+     * modify the same fact; it should be short and must not modify other facts.
+     * For facts declared through a typed key the update is an optimistic
+     * compare-and-set loop, so the function may be called again under contention.
+     *
+     * @param name of the fact, must not be null
+     * @param remapping function receiving the name and the current value (null if absent),
+     *                  returning the new value, or null to remove the fact
+     * @param <T> type of the fact's value
+     * @return the new value, or null if the fact was removed
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T compute(String name, BiFunction<String, T, T> remapping) {
+        Objects.requireNonNull(name, "fact name must not be null");
+        Objects.requireNonNull(remapping, "remapping function must not be null");
+        TypedKey<?> typedKey = route(name, null);
+        if (typedKey != null) {
+            while (true) {
+                T current = (T) migrate(typedKey);
+                T value = remapping.apply(name, current);
+                if (value == null) {
+                    if (current != null) {
+                        slots.remove(typedKey);
+                        markChanged(name);
+                    }
+                    return null;
+                }
+                if (!typedKey.accepts(value)) {
+                    add(new Fact<>(name, value));
+                    return value;
+                }
+                if (slots.compareAndSetBoxed(typedKey, current, value)) {
+                    fireFactChanged(new Fact<>(name, value));
+                    return value;
+                }
+            }
+        }
+        Fact<?> updated = facts.compute(name, (key, current) -> {
+            T value = remapping.apply(key, current == null ? null : (T) current.getValue());
+            return value == null ? null : new Fact<>(key, value);
+        });
+        if (updated == null) {
+            markChanged(name);
+            return null;
+        }
+        fireFactChanged(updated);
+        return (T) updated.getValue();
+    }
+
+    /**
+     * Atomically merge a value into a fact. If the fact is absent it is set to the
+     * given value, otherwise it is set to the result of the merge function.
+     *
+     * @param name of the fact, must not be null
+     * @param value the value to merge, must not be null
+     * @param merger function combining the current and the given value
+     * @param <T> type of the fact's value
+     * @return the new value of the fact
+     */
+    public <T> T merge(String name, T value, BinaryOperator<T> merger) {
+        Objects.requireNonNull(value, "fact value must not be null");
+        Objects.requireNonNull(merger, "merge function must not be null");
+        return this.<T>compute(name, (key, current) -> current == null ? value : merger.apply(current, value));
+    }
+
+    /**
+     * Atomically set a fact to a new value if its current value equals the expected one.
+     *
+     * @param name of the fact, must not be null
+     * @param expected the expected current value, or null to require that the fact is absent
+     * @param newValue the new value, must not be null
+     * @param <T> type of the fact's value
+     * @return true if the fact was updated
+     */
+    public <T> boolean compareAndSet(String name, T expected, T newValue) {
+        Objects.requireNonNull(name, "fact name must not be null");
+        Objects.requireNonNull(newValue, "fact value must not be null");
+        Fact<T> fact = new Fact<>(name, newValue);
+        boolean updated;
+        TypedKey<?> key = route(name, newValue);
+        Object typed = key == null ? getTypedValue(name) : null;
+        if (key != null) {
+            migrate(key);
+            updated = slots.compareAndSetBoxed(key, expected, newValue);
+        } else if (typed != null) {
+            // The current value sits in the slot of a key that does not accept the new value
+            updated = typed.equals(expected);
+            if (updated) {
+                add(fact);
+                return true;
+            }
+        } else if (expected == null) {
+            updated = facts.putIfAbsent(name, fact) == null;
+        } else {
+            // Fact equality only considers the name, so the value is compared inside the update
+            boolean[] swapped = new boolean[1];
+            facts.computeIfPresent(name, (factName, current) -> {
+                if (!expected.equals(current.getValue())) {
+                    return current;
+                }
+                swapped[0] = true;
+                return fact;
+            });
+            updated = swapped[0];
+        }
+        if (updated) {
+            fireFactChanged(fact);
+        }
+        return updated;
+    }
+
+    /**
+     * Atomically add a delta to a numeric counter fact, creating it with the delta if absent.
+     *
+     * @param name of the counter fact, must not be null
+     * @param delta the value to add
+     * @return the updated counter value
+     */
+    public long addAndGet(String name, long delta) {
+        TypedKey<?> typedKey = route(name, null);
+        if (typedKey instanceof IntKey) {
+            return addAndGet((IntKey) typedKey, Math.toIntExact(delta));
+        }
+        if (typedKey instanceof LongKey) {
+            return addAndGet((LongKey) typedKey, delta);
+        }
+        Number value = this.<Number>compute(name, (key, current) ->
+                current == null ? delta : current.longValue() + delta);
+        return value.longValue();
+    }
+
+    /**
+     * Atomically increment a numeric counter fact, creating it with 1 if absent.
+     *
+     * @param name of the counter fact, must not be null
+     * @return the updated counter value
+     */
+    public long increment(String name) {
+        return addAndGet(name, 1L);
+    }
+
+    /**
+     * Set a boolean fact.
+     *
+     * @param key the fact key, must not be null
+     * @param value the fact value
+     */
+    public void put(BooleanKey key, boolean value) {
+        slots().setBoolean(key.getSlot(), value);
+        fireTypedFactChanged(key);
+    }
+
+    /**
+     * Set an int fact.
+     *
+     * @param key the fact key, must not be null
+     * @param value the fact value
+     */
+    public void put(IntKey key, int value) {
+        slots().setLong(key.getSlot(), value);
+        fireTypedFactChanged(key);
+    }
+
+    /**
+     * Set a long fact.
+     *
+     * @param key the fact key, must not be null
+     * @param value the fact value
+     */
+    public void put(LongKey key, long value) {
+        slots().setLong(key.getSlot(), value);
+        fireTypedFactChanged(key);
+    }
+
+    /**
+     * Set a reference fact.
+     *
+     * @param key the fact key, must not be null
+     * @param value the fact value, must not be null
+     * @param <T> type of the fact's value
+     */
+    public <T> void put(RefKey<T> key, T value) {
+        Objects.requireNonNull(value, "fact value must not be null");
+        slots().setReference(key.getSlot(), value);
+        fireTypedFactChanged(key);
+    }
+
+    /**
+     * Judge if a boolean fact is passed.
+     *
+     * @param key the fact key, must not be null
+     * @return true if the fact is present and true
+     */
+    public boolean isTrue(BooleanKey key) {
+        SlotStore store = slots;
+        if (store != null && store.isTrue(key.getSlot())) {
+            return true;
+        }
+        return (store == null || !store.contains(key)) && isTrueInMap(key.getName());
+    }
+
+    /**
+     * Get the value of an int fact.
+     *
+     * @param key the fact key, must not be null
+     * @return the fact value, or 0 if the fact is absent
+     */
+    public int get(IntKey key) {
+        SlotStore store = slots;
+        if (store != null && store.hasNumeric(key.getSlot())) {
+            return (int) store.getLong(key.getSlot());
+        }
+        Integer value = fromMap(key);
+        return value != null ? value : 0;
+    }
+
+    /**
+     * Get the value of a long fact.
+     *
+     * @param key the fact key, must not be null
+     * @return the fact value, or 0 if the fact is absent
+     */
+    public long get(LongKey key) {
+        SlotStore store = slots;
+        if (store != null && store.hasNumeric(key.getSlot())) {
+            return store.getLong(key.getSlot());
+        }
+        Long value = fromMap(key);
+        return value != null ? value : 0L;
+    }
+
+    /**
+     * Get the value of a reference fact.
+     *
+     * @param key the fact key, must not be null
+     * @param <T> type of the fact's value
+     * @return the fact value, or null if the fact is absent
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(RefKey<T> key) {
+        SlotStore store = slots;
+        if (store != null) {
+            Object value = store.getReference(key.getSlot());
+            if (value != null) {
+                return (T) value;
+            }
+        }
+        return fromMap(key);
+    }
+
+    /**
+     * Check whether a typed fact is present.
+     *
+     * @param key the fact key, must not be null
+     * @return true if the fact is present
+     */
+    public boolean contains(TypedKey<?> key) {
+        SlotStore store = slots;
+        return (store != null && store.contains(key)) || facts.containsKey(key.getName());
+    }
+
+    /**
+     * Atomically add a delta to an int counter fact, creating it with the delta if absent.
+     *
+     * @param key the counter key, must not be null
+     * @param delta the value to add
+     * @return the updated counter value
+     * @throws ArithmeticException if the result overflows an int; the counter is left unchanged
+     */
+    public int addAndGet(IntKey key, int delta) {
+        migrate(key);
+        int value = slots.addAndGetInt(key.getSlot(), delta);
+        fireTypedFactChanged(key);
+        return value;
+    }
+
+    /**
+     * Atomically add a delta to a long counter fact, creating it with the delta if absent.
+     *
+     * @param key the counter key, must not be null
+     * @param delta the value to add
+     * @return the updated counter value
+     */
+    public long addAndGet(LongKey key, long delta) {
+        migrate(key);
+        long value = slots.addAndGetLong(key.getSlot(), delta);
+        fireTypedFactChanged(key);
+        return value;
+    }
+
+    /**
+     * Remove a typed fact.
+     *
+     * @param key the fact key, must not be null
+     */
+    public void remove(TypedKey<?> key) {
+        SlotStore store = slots;
+        if (store != null) {
+            store.remove(key);
         }
-        facts.add(fact);
+        facts.remove(key.getName());
+        markChanged(key.getName());
+    }
+
+    /**
+     * Register a listener notified whenever a fact is added or replaced.
+     *
+     * @param listener to register, must not be null
+     */
+    public void addListener(FactListener listener) {
+        Objects.requireNonNull(listener, "listener must not be null");
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregister a listener.
+     *
+     * @param listener to unregister
+     */
+    public void removeListener(FactListener listener) {
+        listeners.remove(listener);
     }
 
     /**
@@ -42,9 +439,12 @@ public class Facts implements Iterable<Fact<?>> {
      */
     public void remove(String factName) {
         Objects.requireNonNull(factName, "fact name must not be null");
-        Fact<?> fact = getFact(factName);
-        if (fact != null) {
-            remove(fact);
+        TypedKey<?> key = TypedKey.lookup(factName);
+        if (key != null) {
+            remove(key);
+        } else {
+            facts.remove(factName);
+            markChanged(factName);
         }
     }
 
@@ -55,7 +455,7 @@ public class Facts implements Iterable<Fact<?>> {
      */
     public <T> void remove(Fact<T> fact) {
         Objects.requireNonNull(fact, "fact must not be null");
-        facts.remove(fact);
+        remove(fact.getName());
     }
 
     /**
@@ -70,7 +470,11 @@ public class Facts implements Iterable<Fact<?>> {
     @SuppressWarnings("unchecked")
     public <T> T get(String factName) {
         Objects.requireNonNull(factName, "fact name must not be null");
-        Fact<?> fact = getFact(factName);
+        Object value = getTypedValue(factName);
+        if (value != null) {
+            return (T) value;
+        }
+        Fact<?> fact = facts.get(factName);
         if (fact != null) {
             return (T) fact.getValue();
         }
@@ -85,10 +489,11 @@ public class Facts implements Iterable<Fact<?>> {
      */
     public Fact<?> getFact(String factName) {
         Objects.requireNonNull(factName, "fact name must not be null");
-        return facts.stream()
-                .filter(fact -> fact.getName().equals(factName))
-                .findFirst()
-                .orElse(null);
+        Object value = getTypedValue(factName);
+        if (value != null) {
+            return new Fact<>(factName, value);
+        }
+        return facts.get(factName);
     }
 
     /**
@@ -98,8 +503,12 @@ public class Facts implements Iterable<Fact<?>> {
      * @return true if passed, false if failed
      */
     public boolean isTrue(String factName) {
-        Boolean success = get(factName);
-        return success != null && success == true;
+        Objects.requireNonNull(factName, "fact name must not be null");
+        TypedKey<?> key = TypedKey.lookup(factName);
+        if (key instanceof BooleanKey) {
+            return isTrue((BooleanKey) key);
+        }
+        return isTrueInMap(factName);
     }
 
     /**
@@ -110,7 +519,7 @@ public class Facts implements Iterable<Fact<?>> {
      */
     public Map<String, Object> asMap() {
         Map<String, Object> map = new HashMap<>();
-        for (Fact<?> fact : facts) {
+        for (Fact<?> fact : this) {
             map.put(fact.getName(), fact.getValue());
         }
         return map;
@@ -118,25 +527,47 @@ public class Facts implements Iterable<Fact<?>> {
 
     /**
      * Return an iterator on the set of facts. It is not intended to remove
-     * facts using this iterator outside of the rules engine (aka other than doing it through rules)
+     * facts using this iterator outside of the rules engine (aka other than doing it through rules).
+     * The iterator is weakly consistent and never throws ConcurrentModificationException.
+     * Typed facts are included as a snapshot taken when the iterator is created.
      *
      * @return an iterator on the set of facts
      */
     @Override
     public Iterator<Fact<?>> iterator() {
-        return facts.iterator();
+        SlotStore store = slots;
+        if (store == null) {
+            return facts.values().iterator();
+        }
+        List<Fact<?>> snapshot = new ArrayList<>();
+        store.forEach((key, value) -> snapshot.add(new Fact<>(key.getName(), value)));
+        for (Fact<?> fact : facts.values()) {
+            TypedKey<?> key = TypedKey.lookup(fact.getName());
+            if (key == null || !store.contains(key)) {
+                snapshot.add(fact);
+            }
+        }
+        return snapshot.iterator();
     }
 
     /**
      * Clear facts.
      */
     public void clear() {
+        Set<String> changed = changedNames;
+        if (changed != null) {
+            changed.addAll(asMap().keySet());
+        }
+        SlotStore store = slots;
+        if (store != null) {
+            store.clear();
+        }
         facts.clear();
     }
 
     @Override
     public String toString() {
-        Iterator<Fact<?>> iterator = facts.iterator();
+        Iterator<Fact<?>> iterator = iterator();
         StringBuilder stringBuilder = new StringBuilder("[");
         while (iterator.hasNext()) {
             stringBuilder.append(iterator.next().toString());
@@ -147,4 +578,149 @@ public class Facts implements Iterable<Fact<?>> {
         stringBuilder.append("]");
         return stringBuilder.toString();
     }
+
+    /**
+     * Starts or stops tracking the names of written and removed facts. Starting
+     * discards the names tracked so far.
+     *
+     * @param enabled whether to track changes
+     */
+    void trackChanges(boolean enabled) {
+        changedNames = enabled ? ConcurrentHashMap.newKeySet() : null;
+    }
+
+    /**
+     * Returns the names of the facts written or removed since the previous call and
+     * stops reporting them until they change again.
+     *
+     * @return the changed names, empty if changes are not tracked
+     */
+    Set<String> drainChanges() {
+        Set<String> changed = changedNames;
+        if (changed == null || changed.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<String> drained = new HashSet<>();
+        for (Iterator<String> iterator = changed.iterator(); iterator.hasNext(); ) {
+            drained.add(iterator.next());
+            iterator.remove();
+        }
+        return drained;
+    }
+
+    private void markChanged(String name) {
+        Set<String> changed = changedNames;
+        if (changed != null) {
+            changed.add(name);
+        }
+    }
+
+    /**
+     * Gets the slot storage, creating it on first use.
+     */
+    private SlotStore slots() {
+        SlotStore store = slots;
+        if (store == null) {
+            synchronized (this) {
+                store = slots;
+                if (store == null) {
+                    store = new SlotStore();
+                    slots = store;
+                }
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Gets the slot value of a name registered as a typed key.
+     *
+     * @return the boxed value, or null if the name is not typed or has no slot value
+     */
+    private Object getTypedValue(String factName) {
+        SlotStore store = slots;
+        if (store == null) {
+            return null;
+        }
+        TypedKey<?> key = TypedKey.lookup(factName);
+        return key != null ? store.getBoxed(key) : null;
+    }
+
+    /**
+     * Gets the typed key a string-keyed update of a name goes through.
+     *
+     * @param value the value to store, or null if not known yet
+     * @return the registered key, or null if the name is not typed, the value does not have the
+     * key type or the fact is currently stored by name with a value of another type
+     */
+    private TypedKey<?> route(String name, Object value) {
+        TypedKey<?> key = TypedKey.lookup(name);
+        if (key == null || (value != null && !key.accepts(value))) {
+            return null;
+        }
+        Fact<?> untyped = facts.get(name);
+        return untyped == null || key.accepts(untyped.getValue()) ? key : null;
+    }
+
+    /**
+     * Moves a fact stored by name before its typed key was registered into the key's slot.
+     *
+     * @return the current value of the fact, boxed, or null if absent
+     */
+    private Object migrate(TypedKey<?> key) {
+        SlotStore store = slots();
+        Object value = store.getBoxed(key);
+        if (value == null) {
+            Fact<?> fact = facts.get(key.getName());
+            if (fact != null && key.accepts(fact.getValue()) && facts.remove(key.getName(), fact)) {
+                store.compareAndSetBoxed(key, null, fact.getValue());
+                value = store.getBoxed(key);
+            }
+        }
+        return value;
+    }
+
+    private void removeSlot(TypedKey<?> key) {
+        SlotStore store = slots;
+        if (store != null) {
+            store.remove(key);
+        }
+    }
+
+    /**
+     * Gets the value of a typed fact that was stored by name before its key was registered,
+     * ignoring a value of another type.
+     */
+    private <T> T fromMap(TypedKey<T> key) {
+        Fact<?> fact = facts.get(key.getName());
+        return fact != null && key.accepts(fact.getValue()) ? key.checkValue(fact.getValue()) : null;
+    }
+
+    private boolean isTrueInMap(String factName) {
+        Fact<?> fact = facts.get(factName);
+        return fact != null && Boolean.TRUE.equals(fact.getValue());
+    }
+
+    /**
+     * Notify the registered listeners of a changed typed fact; the fact is only
+     * materialized when someone is listening.
+     */
+    private void fireTypedFactChanged(TypedKey<?> key) {
+        markChanged(key.getName());
+        if (!listeners.isEmpty()) {
+            fireFactChanged(new Fact<>(key.getName(), slots.getBoxed(key)));
+        }
+    }
+
+    /**
+     * Notify the registered listeners of a new or replaced fact.
+     *
+     * @param fact the new fact
+     */
+    private void fireFactChanged(Fact<?> fact) {
+        markChanged(fact.getName());
+        for (FactListener listener : listeners) {
+            listener.onFactChanged(fact);
+        }
+    }
 }
@@ -0,0 +1,32 @@
+package org.zero2me.breezeflow.core;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates ids for tasks and workflow runs.
+ *
+ * Ids are a random 64-bit node id drawn once per process followed by a monotonic
+ * sequence number, e.g. {@code task_5c1e0b7a3f9a1c07-1b}. Every process starts its
+ * sequence at 1, so uniqueness across processes rests on the node id alone: with 64
+ * random bits, a collision among a million processes has a probability below 10^-7.
+ * An id costs one atomic increment, instead of the secure random draw of a UUID.
+ */
+final class IdGenerator {
+    private static final String NODE = String.format("%016x", new SecureRandom().nextLong());
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private IdGenerator() {
+        // Utility class - prevent instantiation
+    }
+
+    /**
+     * Generates a new id.
+     *
+     * @param prefix the prefix of the id, e.g. "task"
+     * @return the id
+     */
+    static String next(String prefix) {
+        return prefix + '_' + NODE + '-' + Long.toHexString(SEQUENCE.incrementAndGet());
+    }
+}
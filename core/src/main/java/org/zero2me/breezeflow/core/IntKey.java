@@ -0,0 +1,12 @@
+package org.zero2me.breezeflow.core;
+
+/**
+ * Typed key for a primitive int value.
+ * Created through {@link TypedKey#intKey(String)}.
+ */
+public final class IntKey extends TypedKey<Integer> {
+
+    IntKey(String name, int slot) {
+        super(name, Kind.INT, Integer.class, slot);
+    }
+}
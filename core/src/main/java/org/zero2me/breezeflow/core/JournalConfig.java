@@ -0,0 +1,34 @@
+package org.zero2me.breezeflow.core;
+
+import lombok.Data;
+
+/**
+ * Configuration class for an {@link ExecutionJournal}.
+ */
+@Data
+public class JournalConfig {
+  /**
+   * Size of each memory-mapped segment file in bytes. A record must fit in one segment.
+   * Default value is 64 MiB.
+   */
+  private int segmentSize = 64 * 1024 * 1024;
+
+  /**
+   * Interval in milliseconds at which appended records are forced to the storage device
+   * together (group commit). Records survive a JVM crash as soon as they are appended;
+   * this interval bounds what an operating system crash or power loss can lose.
+   * Default value is 10 ms.
+   */
+  private long groupCommitMillis = 10L;
+
+  /**
+   * Prefix for the name of the thread forcing the journal to the storage device.
+   */
+  private String threadNamePrefix = "breezeflow-journal";
+
+  /**
+   * Codec encoding the facts and session variables in the journal.
+   * Register codecs for user types on it before the journal is opened.
+   */
+  private StateCodec codec = new StateCodec();
+}
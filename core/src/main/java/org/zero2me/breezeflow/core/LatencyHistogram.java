@@ -0,0 +1,133 @@
+package org.zero2me.breezeflow.core;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations in nanoseconds.
+ *
+ * Values are counted in log-linear buckets: every power of two is split into eight
+ * sub-buckets, so percentiles are reported with at most 12.5% relative error over the
+ * whole range of long values using a fixed array of 512 counters. Recording is a few
+ * atomic increments and never allocates or locks.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos the duration in nanoseconds, negative values are counted as zero
+     */
+    public void record(long nanos) {
+        long value = Math.max(0L, nanos);
+        counts.incrementAndGet(index(value));
+        count.increment();
+        sum.add(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // Retry until the maximum is at least this value
+        }
+    }
+
+    private static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return ((exponent - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) | subBucket;
+    }
+
+    private static long upperBound(int index) {
+        if (index < SUB_BUCKETS - 1) {
+            return index;
+        }
+        if (index == BUCKETS - 1) {
+            return Long.MAX_VALUE;
+        }
+        int next = index + 1;
+        int exponent = (next >>> SUB_BUCKET_BITS) + SUB_BUCKET_BITS - 1;
+        long lower = (long) (SUB_BUCKETS | (next & (SUB_BUCKETS - 1))) << (exponent - SUB_BUCKET_BITS);
+        return lower - 1;
+    }
+
+    /**
+     * Gets the number of recorded values.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Gets the mean of the recorded values.
+     *
+     * @param unit the time unit of the result
+     * @return the mean, or 0 if nothing was recorded
+     */
+    public double getMean(TimeUnit unit) {
+        long n = count.sum();
+        return n == 0 ? 0.0 : (double) sum.sum() / n / unit.toNanos(1);
+    }
+
+    /**
+     * Gets the largest recorded value.
+     *
+     * @param unit the time unit of the result
+     * @return the maximum
+     */
+    public double getMax(TimeUnit unit) {
+        return (double) max.get() / unit.toNanos(1);
+    }
+
+    /**
+     * Gets a percentile of the recorded values.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @param unit the time unit of the result
+     * @return the upper bound of the bucket holding the percentile, or 0 if nothing was recorded
+     */
+    public double getPercentile(double percentile, TimeUnit unit) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0.0;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return (double) Math.min(upperBound(i), max.get()) / unit.toNanos(1);
+            }
+        }
+        return getMax(unit);
+    }
+
+    /**
+     * Forgets all recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0L);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0L);
+    }
+}
@@ -0,0 +1,12 @@
+package org.zero2me.breezeflow.core;
+
+/**
+ * Typed key for a primitive long value.
+ * Created through {@link TypedKey#longKey(String)}.
+ */
+public final class LongKey extends TypedKey<Long> {
+
+    LongKey(String name, int slot) {
+        super(name, Kind.LONG, Long.class, slot);
+    }
+}
@@ -0,0 +1,342 @@
+package org.zero2me.breezeflow.core;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BinaryOperator;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * A container that processes a collection in parallel chunks and reduces the results.
+ *
+ * MapContainer is a specialized Task that reads its input from a session variable holding
+ * a collection or an array, or from an integer range. It splits the input into chunks of
+ * consecutive elements, runs a copy of a {@link ChunkTask} template for each chunk on the
+ * shared executor and combines the partial results in input order with a reducer. The result
+ * is stored in a session variable; without a reducer the list of partial results is stored.
+ *
+ * Unless a chunk size is set, the input is split into about four chunks per executor thread,
+ * which balances uneven chunks while keeping the number of task copies small regardless of
+ * the input size. Like in a {@link ParallelContainer}, the first failing chunk cancels the
+ * others and fails the container. The result is only stored if every chunk completed: if the
+ * run is cancelled or the session terminated while chunks are pending, the container is
+ * cancelled and its output is not set.
+ */
+public class MapContainer extends Task {
+    /**
+     * Number of chunks per executor thread when the chunk size is chosen automatically.
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /**
+     * Name of the session variable holding the input collection or array.
+     */
+    @Getter
+    private String input;
+
+    /**
+     * Input range, used if no input variable is set.
+     */
+    private List<Integer> range;
+
+    /**
+     * Template copied for every chunk.
+     */
+    @Getter
+    private ChunkTask<?, ?> template;
+
+    /**
+     * Combines two partial results, null to store the list of partial results.
+     */
+    private BinaryOperator<Object> reducer;
+
+    /**
+     * Name of the session variable the result is stored in.
+     */
+    @Getter
+    @Setter
+    private String output;
+
+    /**
+     * Number of elements per chunk, 0 to choose it from the input size and executor.
+     */
+    @Getter
+    private int chunkSize;
+
+    /**
+     * Package-private constructor - only TaskFactory can create MapContainer instances.
+     * This enforces the factory pattern for task creation.
+     */
+    MapContainer() {
+        super();
+    }
+
+    /**
+     * Sets the session variable holding the input, a {@link Collection} or an array.
+     *
+     * @param variableName the variable name
+     */
+    public void setInput(String variableName) {
+        this.input = variableName;
+        this.range = null;
+    }
+
+    /**
+     * Uses a range of integers as input instead of a session variable.
+     *
+     * @param fromInclusive the first element
+     * @param toExclusive the end of the range
+     * @throws IllegalArgumentException if the range is negative or has more than Integer.MAX_VALUE elements
+     */
+    public void setRange(int fromInclusive, int toExclusive) {
+        if (toExclusive < fromInclusive || (long) toExclusive - fromInclusive > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("Invalid range [%d, %d)", fromInclusive, toExclusive));
+        }
+        this.range = new IntRange(fromInclusive, toExclusive);
+        this.input = null;
+    }
+
+    /**
+     * Sets the task template copied for every chunk.
+     *
+     * @param template the template, built through the workflow or task factory
+     */
+    public void setTemplate(ChunkTask<?, ?> template) {
+        this.template = template;
+    }
+
+    /**
+     * Sets the function combining two partial results. It is applied in input order
+     * and must be associative.
+     *
+     * @param reducer the reducer, null to store the list of partial results
+     * @param <R> the type of the partial results
+     */
+    @SuppressWarnings("unchecked")
+    public <R> void setReducer(BinaryOperator<R> reducer) {
+        this.reducer = (BinaryOperator<Object>) reducer;
+    }
+
+    /**
+     * Sets the number of elements per chunk.
+     *
+     * @param chunkSize the chunk size, 0 to choose it from the input size and executor
+     * @throws IllegalArgumentException if the chunk size is negative
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize < 0) {
+            throw new IllegalArgumentException("chunkSize must not be negative");
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Copies this container and its template for a new workflow run.
+     */
+    @Override
+    Task copyForRun(Facts facts, SessionContext sessionContext,
+                    SessionConfig sessionConfig, WorkflowListener listener) {
+        MapContainer copy = (MapContainer) super.copyForRun(facts, sessionContext, sessionConfig, listener);
+        if (copy.template != null) {
+            copy.template = (ChunkTask<?, ?>) template.copyForRun(facts, sessionContext, sessionConfig, listener);
+        }
+        return copy;
+    }
+
+    /**
+     * Processes the chunks of the input in parallel and stores the reduced result.
+     *
+     * @throws IllegalStateException if the container is not configured or the input is not a collection
+     * @throws RuntimeException if any chunk fails during execution or if execution is interrupted
+     */
+    @Override
+    public void invoke() {
+        if (template == null || output == null) {
+            throw new IllegalStateException(String.format("Map container %s needs a template and an output", getName()));
+        }
+        List<?> elements = resolveInput();
+        if (elements.isEmpty()) {
+            logger.info("Map container ({}:{}) has no input, {} not set.", getId(), getName(), output);
+            return;
+        }
+
+        ExecutorService executor = WorkflowExecutors.getExecutor(sessionConfig);
+        int size = chunkSize > 0 ? chunkSize : adaptiveChunkSize(elements.size(), executor);
+        int chunkCount = (elements.size() + size - 1) / size;
+
+        logger.info("Starting map container ({}:{}) execution with {} elements in {} chunks.",
+                        getId(), getName(), elements.size(), chunkCount);
+        publish(WorkflowEventType.TASK_STARTED, "Map container");
+
+        Object[] partials = new Object[chunkCount];
+        CancellationToken scope = getCancellationToken().child();
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        AtomicInteger completed = new AtomicInteger();
+        TaskDispatcher dispatcher = new TaskDispatcher(executor);
+        try {
+            for (int i = 0; i < chunkCount; i++) {
+                ChunkTask<?, ?> chunk = (ChunkTask<?, ?>) template.copyForRun(facts, sessionContext, sessionConfig, listener);
+                chunk.setChunk(elements.subList(i * size, Math.min(elements.size(), (i + 1) * size)));
+                adopt(chunk, scope);
+                int index = i;
+                dispatcher.dispatch(() -> runChunk(dispatcher, chunk, index, partials, completed, scope, failure));
+            }
+            dispatcher.awaitIdle();
+        } catch (InterruptedException e) {
+            scope.cancel("Map execution interrupted");
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Map execution interrupted", e);
+        } finally {
+            scope.close();
+        }
+
+        RuntimeException error = failure.get();
+        if (error != null) {
+            throw new RuntimeException("Map chunk execution failed", error);
+        }
+        if (completed.get() < chunkCount) {
+            String reason = String.format("%d of %d chunks of map container %s did not complete",
+                    chunkCount - completed.get(), chunkCount, getName());
+            if (getCancellationToken().isCancelled()) {
+                // Reported as a cancellation of this container by run()
+                throw new CancellationException(reason);
+            }
+            if (sessionContext.isTerminated()) {
+                logger.info("{}, {} not set.", reason, output);
+                return;
+            }
+            throw new IllegalStateException(reason);
+        }
+        sessionContext.setVariable(output, reduce(partials));
+
+        logger.info("Completed map container ({}:{}) execution.", getId(), getName());
+        publish(WorkflowEventType.TASK_COMPLETED, "Map container");
+    }
+
+    private static void runChunk(TaskDispatcher dispatcher, ChunkTask<?, ?> chunk, int index, Object[] partials,
+                                 AtomicInteger completed, CancellationToken scope,
+                                 AtomicReference<RuntimeException> failure) {
+        scope.runInterruptibly(() -> dispatcher.runTask(chunk, error -> {
+            if (error == null) {
+                // A skipped or cancelled chunk returns normally without a result
+                if (chunk.isProcessed()) {
+                    partials[index] = chunk.getResult();
+                    completed.incrementAndGet();
+                }
+            } else if (failure.compareAndSet(null, new RuntimeException("Chunk " + index + " failed: " + chunk.getId(), error))) {
+                scope.cancel(String.format("chunk %d of %s failed", index, chunk.getName()));
+            }
+        }));
+    }
+
+    /**
+     * Resolves the input as a list with random access, without copying lists and ranges.
+     */
+    private List<?> resolveInput() {
+        if (range != null) {
+            return range;
+        }
+        if (input == null) {
+            throw new IllegalStateException(String.format("Map container %s needs an input or a range", getName()));
+        }
+        Object value = sessionContext.getVariable(input);
+        if (value == null) {
+            throw new IllegalStateException(String.format("Input %s of map container %s is not set", input, getName()));
+        }
+        if (value instanceof List && value instanceof RandomAccess) {
+            return (List<?>) value;
+        }
+        if (value instanceof Collection) {
+            return new ArrayList<>((Collection<?>) value);
+        }
+        if (value instanceof Object[]) {
+            return Arrays.asList((Object[]) value);
+        }
+        throw new IllegalStateException(String.format("Input %s of map container %s is a %s, not a collection or array",
+                input, getName(), value.getClass().getName()));
+    }
+
+    /**
+     * Chooses a chunk size giving about {@value #CHUNKS_PER_THREAD} chunks per executor thread.
+     * Pools without a useful bound, such as cached ones, are counted as many threads as the
+     * configured pool size or the available processors, whichever is larger.
+     */
+    private int adaptiveChunkSize(int elements, ExecutorService executor) {
+        int threads;
+        if (executor instanceof ForkJoinPool) {
+            threads = ((ForkJoinPool) executor).getParallelism();
+        } else if (executor instanceof ThreadPoolExecutor) {
+            int estimate = Math.max(sessionConfig.getThreadPoolSize(), Runtime.getRuntime().availableProcessors());
+            threads = Math.min(((ThreadPoolExecutor) executor).getMaximumPoolSize(), estimate);
+        } else {
+            threads = Math.max(1, sessionConfig.getThreadPoolSize());
+        }
+        // The calling thread helps with pending chunks
+        long chunks = ((long) threads + 1) * CHUNKS_PER_THREAD;
+        return (int) Math.max(1, (elements + chunks - 1) / chunks);
+    }
+
+    private Object reduce(Object[] partials) {
+        if (reducer == null) {
+            return new ArrayList<>(Arrays.asList(partials));
+        }
+        Object result = partials[0];
+        for (int i = 1; i < partials.length; i++) {
+            result = reducer.apply(result, partials[i]);
+        }
+        return result;
+    }
+
+    @Override
+    boolean isConcurrent() {
+        return true;
+    }
+
+    /**
+     * Performs pre-execution checks.
+     * For MapContainer, this always returns true; the configuration is checked on execution.
+     *
+     * @return true, indicating that the container can always be executed
+     */
+    @Override
+    protected boolean preCheck() {
+        return true;
+    }
+
+    /**
+     * Range of integers as a list, without materializing the elements.
+     */
+    private static final class IntRange extends AbstractList<Integer> implements RandomAccess {
+        private final int from;
+        private final int size;
+
+        IntRange(int from, int to) {
+            this.from = from;
+            this.size = to - from;
+        }
+
+        @Override
+        public Integer get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of range of size " + size);
+            }
+            return from + index;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,426 @@
+package org.zero2me.breezeflow.core;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+import javax.management.ObjectName;
+
+import lombok.Getter;
+import org.slf4j.Logger;
+
+import org.zero2me.breezeflow.common.LogFactory;
+import org.zero2me.breezeflow.common.ValidationUtils;
+
+/**
+ * Cache of task outputs shared across workflow runs.
+ *
+ * A task that is a deterministic function of a few session variables or facts declares
+ * them as inputs (see {@link Task#declareInputs(String...)}) and the variables or facts it
+ * produces as outputs (see {@link Task#declareOutputs(String...)}). With a cache set
+ * (see {@link Task#setOutputCache(OutputCache)}), an execution whose task and input values
+ * match a cached entry writes the cached outputs instead of calling {@code invoke()};
+ * otherwise the outputs are cached once the task has completed. Input values are compared
+ * with {@code equals}, arrays by content. Lists, sets, maps and arrays among them are copied
+ * when the key is built; input values of other mutable types must not be mutated once they
+ * have been used. Output lists, sets, maps and arrays are copied when they are cached and
+ * again when they are restored, so runs can modify them freely; restored collections are
+ * {@link ArrayList}, {@link LinkedHashSet} and {@link LinkedHashMap} instances. Output values
+ * of other mutable types are shared by every run that restores them.
+ *
+ * The cache is bounded by the total weight of its entries, the estimated heap size of the
+ * input and output values by default (see {@link CacheConfig}). When it is full the least
+ * recently used entries are evicted; entries older than the configured time to live are
+ * dropped on access. Hit, miss, eviction and expiry counts are available through this class and as
+ * an MXBean under the {@code org.zero2me.breezeflow} JMX domain.
+ */
+public final class OutputCache implements OutputCacheMXBean {
+    /**
+     * Logger instance for this class.
+     */
+    private static final Logger logger = LogFactory.getLogger(OutputCache.class);
+
+    /**
+     * Caches keyed by name.
+     */
+    private static final Map<String, OutputCache> caches = new ConcurrentHashMap<>();
+
+    /**
+     * Estimated heap size of an entry without its inputs and outputs, in bytes.
+     */
+    private static final long ENTRY_OVERHEAD = 128L;
+
+    /**
+     * Number of elements of a key before the input values: the task class and name.
+     */
+    private static final int KEY_PREFIX = 2;
+
+    @Getter
+    private final String name;
+
+    @Getter
+    private final long maximumWeight;
+
+    private final long ttlNanos;
+    private final ToLongFunction<Map<String, Object>> weigher;
+
+    /**
+     * Entries in access order, guarded by this cache.
+     */
+    private final LinkedHashMap<List<Object>, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+
+    private OutputCache(String name, CacheConfig config) {
+        ValidationUtils.requirePositive(config.getMaximumWeight(), "maximumWeight");
+        if (config.getTtlMillis() < 0) {
+            throw new IllegalArgumentException("ttlMillis must not be negative");
+        }
+        this.name = name;
+        this.maximumWeight = config.getMaximumWeight();
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(config.getTtlMillis());
+        this.weigher = config.getWeigher() != null ? config.getWeigher() : OutputCache::estimateSize;
+        WorkflowMetrics.register(WorkflowMetrics.JMX_DOMAIN + ":type=OutputCache,name=" + ObjectName.quote(name), this);
+    }
+
+    /**
+     * Gets the cache with the given name, creating it with the default configuration if needed.
+     *
+     * @param name the cache name
+     * @return the shared cache
+     */
+    public static OutputCache of(String name) {
+        return of(name, new CacheConfig());
+    }
+
+    /**
+     * Gets the cache with the given name, creating it with the given configuration if needed.
+     * The configuration of the first call for a name wins.
+     *
+     * @param name the cache name
+     * @param config the configuration used if the cache is created
+     * @return the shared cache
+     * @throws IllegalArgumentException if the configuration is invalid
+     */
+    public static OutputCache of(String name, CacheConfig config) {
+        ValidationUtils.requireNonEmpty(name, "name");
+        ValidationUtils.requireNonNull(config, "config");
+        return caches.computeIfAbsent(name, key -> new OutputCache(key, config));
+    }
+
+    /**
+     * How {@link #copyOf(Object, Copy)} copies a value.
+     */
+    private enum Copy {
+        /** Unmodifiable collections, arrays wrapped to compare by content. */
+        KEY,
+        /** Unmodifiable collections, arrays copied. */
+        STORED,
+        /** Modifiable collections, arrays copied. */
+        RESTORED
+    }
+
+    /**
+     * Builds the key of an execution from the task and the current values of its inputs.
+     * Lists, sets, maps and arrays are copied, so later changes to the inputs do not change the key.
+     *
+     * @param task the task
+     * @return the key
+     */
+    static List<Object> keyOf(Task task) {
+        List<String> inputs = task.getInputKeys();
+        List<Object> key = new ArrayList<>(inputs.size() + KEY_PREFIX);
+        key.add(task.getClass().getName());
+        key.add(task.getName());
+        for (String input : inputs) {
+            key.add(copyOf(valueOf(input, task.facts, task.sessionContext), Copy.KEY));
+        }
+        return key;
+    }
+
+    /**
+     * Writes the cached outputs of an execution, if any.
+     *
+     * @param key the key of the execution
+     * @param facts the facts to write output facts to
+     * @param context the session context to write output variables to
+     * @return true if the outputs were found
+     */
+    boolean restore(List<Object> key, Facts facts, SessionContext context) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null && ttlNanos > 0 && System.nanoTime() - entry.createdAt >= ttlNanos) {
+                remove(key, entry);
+                expired.increment();
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.increment();
+            return false;
+        }
+        hits.increment();
+        entry.variables.forEach((name, value) -> context.setVariable(name, copyOf(value, Copy.RESTORED)));
+        entry.facts.forEach((name, value) -> facts.put(name, copyOf(value, Copy.RESTORED)));
+        return true;
+    }
+
+    /**
+     * Caches the outputs of a completed execution. Nothing is cached if an output is
+     * missing or the entry alone exceeds the maximum weight.
+     *
+     * @param key the key of the execution, built before it ran
+     * @param inputs names of the input variables or facts, in the order of the key
+     * @param outputs names of the output variables or facts
+     * @param facts the facts of the run
+     * @param context the session context of the run
+     */
+    void store(List<Object> key, List<String> inputs, List<String> outputs, Facts facts, SessionContext context) {
+        Map<String, Object> variables = new HashMap<>();
+        Map<String, Object> outputFacts = new HashMap<>();
+        for (String output : outputs) {
+            Object value = context.getVariable(output);
+            if (value != null) {
+                variables.put(output, copyOf(value, Copy.STORED));
+                continue;
+            }
+            value = facts.get(output);
+            if (value == null) {
+                logger.debug("output {} missing, not caching {}", output, key);
+                return;
+            }
+            outputFacts.put(output, copyOf(value, Copy.STORED));
+        }
+        Map<String, Object> inputValues = new HashMap<>();
+        for (int i = 0; i < inputs.size(); i++) {
+            inputValues.put(inputs.get(i), key.get(KEY_PREFIX + i));
+        }
+        long entryWeight = weigher.applyAsLong(inputValues) + weigher.applyAsLong(variables)
+                + weigher.applyAsLong(outputFacts) + ENTRY_OVERHEAD;
+        if (entryWeight > maximumWeight) {
+            return;
+        }
+        Entry entry = new Entry(variables, outputFacts, entryWeight, System.nanoTime());
+        synchronized (this) {
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                weight -= previous.weight;
+            }
+            weight += entryWeight;
+            Iterator<Map.Entry<List<Object>, Entry>> eldest = entries.entrySet().iterator();
+            while (weight > maximumWeight && eldest.hasNext()) {
+                Map.Entry<List<Object>, Entry> victim = eldest.next();
+                eldest.remove();
+                weight -= victim.getValue().weight;
+                evictions.increment();
+            }
+        }
+    }
+
+    private void remove(List<Object> key, Entry entry) {
+        entries.remove(key);
+        weight -= entry.weight;
+    }
+
+    private static Object valueOf(String name, Facts facts, SessionContext context) {
+        Object value = context.getVariable(name);
+        return value != null ? value : facts.get(name);
+    }
+
+    /**
+     * Copies lists, sets, maps and arrays, including nested ones, into collections with the
+     * same equality; other values are returned as they are.
+     */
+    private static Object copyOf(Object value, Copy mode) {
+        boolean readOnly = mode != Copy.RESTORED;
+        if (value instanceof List) {
+            List<Object> copy = new ArrayList<>(((List<?>) value).size());
+            for (Object element : (List<?>) value) {
+                copy.add(copyOf(element, mode));
+            }
+            return readOnly ? Collections.unmodifiableList(copy) : copy;
+        } else if (value instanceof Set) {
+            Set<Object> copy = new LinkedHashSet<>();
+            for (Object element : (Set<?>) value) {
+                copy.add(copyOf(element, mode));
+            }
+            return readOnly ? Collections.unmodifiableSet(copy) : copy;
+        } else if (value instanceof Map) {
+            Map<Object, Object> copy = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                copy.put(copyOf(entry.getKey(), mode), copyOf(entry.getValue(), mode));
+            }
+            return readOnly ? Collections.unmodifiableMap(copy) : copy;
+        } else if (value != null && value.getClass().isArray()) {
+            Object copy = copyArray(value);
+            return mode == Copy.KEY ? new ArrayValue(copy) : copy;
+        }
+        return value;
+    }
+
+    /**
+     * Copies an array, including nested arrays; other elements are shared.
+     */
+    private static Object copyArray(Object array) {
+        int length = Array.getLength(array);
+        Object copy = Array.newInstance(array.getClass().getComponentType(), length);
+        if (array instanceof Object[]) {
+            Object[] source = (Object[]) array;
+            Object[] target = (Object[]) copy;
+            for (int i = 0; i < length; i++) {
+                Object element = source[i];
+                target[i] = element != null && element.getClass().isArray() ? copyArray(element) : element;
+            }
+        } else {
+            System.arraycopy(array, 0, copy, 0, length);
+        }
+        return copy;
+    }
+
+    @Override
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    @Override
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    @Override
+    public long getExpiredCount() {
+        return expired.sum();
+    }
+
+    @Override
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    @Override
+    public synchronized void invalidateAll() {
+        entries.clear();
+        weight = 0;
+    }
+
+    /**
+     * Estimates the heap size of the inputs or outputs of an entry in bytes.
+     *
+     * @param values the input or output values by name
+     * @return the estimated size
+     */
+    static long estimateSize(Map<String, Object> values) {
+        long size = 0;
+        for (Map.Entry<String, Object> output : values.entrySet()) {
+            size += 32 + estimateSize(output.getKey()) + estimateSize(output.getValue());
+        }
+        return size;
+    }
+
+    private static long estimateSize(Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value instanceof String) {
+            return 40 + 2L * ((String) value).length();
+        } else if (value instanceof Number || value instanceof Boolean || value instanceof Character) {
+            return 16;
+        } else if (value instanceof byte[]) {
+            return 16 + ((byte[]) value).length;
+        } else if (value instanceof int[]) {
+            return 16 + 4L * ((int[]) value).length;
+        } else if (value instanceof long[]) {
+            return 16 + 8L * ((long[]) value).length;
+        } else if (value instanceof double[]) {
+            return 16 + 8L * ((double[]) value).length;
+        } else if (value instanceof ArrayValue) {
+            return 16 + estimateSize(((ArrayValue) value).array);
+        } else if (value instanceof Collection) {
+            long size = 40;
+            for (Object element : (Collection<?>) value) {
+                size += 8 + estimateSize(element);
+            }
+            return size;
+        } else if (value instanceof Map) {
+            long size = 48;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                size += 32 + estimateSize(entry.getKey()) + estimateSize(entry.getValue());
+            }
+            return size;
+        }
+        return 64;
+    }
+
+    /**
+     * Array input value of a key, compared by content.
+     */
+    private static final class ArrayValue {
+        private final Object array;
+
+        ArrayValue(Object array) {
+            this.array = array;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ArrayValue
+                    && Arrays.deepEquals(new Object[] {array}, new Object[] {((ArrayValue) o).array});
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.deepHashCode(new Object[] {array});
+        }
+    }
+
+    /**
+     * Cached outputs of one execution.
+     */
+    private static final class Entry {
+        private final Map<String, Object> variables;
+        private final Map<String, Object> facts;
+        private final long weight;
+        private final long createdAt;
+
+        Entry(Map<String, Object> variables, Map<String, Object> facts, long weight, long createdAt) {
+            this.variables = variables;
+            this.facts = facts;
+            this.weight = weight;
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package org.zero2me.breezeflow.core;
+
+/**
+ * JMX view of an {@link OutputCache}.
+ */
+public interface OutputCacheMXBean {
+    /** Name of the cache. */
+    String getName();
+
+    /** Number of executions answered from the cache. */
+    long getHitCount();
+
+    /** Number of executions that found no valid entry. */
+    long getMissCount();
+
+    /** Fraction of lookups answered from the cache, 0 before the first lookup. */
+    double getHitRate();
+
+    /** Number of entries evicted to stay within the maximum weight. */
+    long getEvictionCount();
+
+    /** Number of entries dropped because their time to live had passed. */
+    long getExpiredCount();
+
+    /** Number of cached entries. */
+    int getSize();
+
+    /** Total weight of the cached entries. */
+    long getWeight();
+
+    /** Maximum total weight of the cached entries. */
+    long getMaximumWeight();
+
+    /** Removes all entries. */
+    void invalidateAll();
+}
@@ -0,0 +1,24 @@
+package org.zero2me.breezeflow.core;
+
+/**
+ * Enumeration of the policies applied by a {@link WorkflowEventBus} when a listener's
+ * buffer cannot take a new event because the listener is falling behind.
+ */
+public enum OverflowPolicy {
+    /**
+     * Make the publishing task wait until the buffer has room. No event is lost.
+     */
+    BLOCK,
+
+    /**
+     * Drop the new event.
+     */
+    DROP,
+
+    /**
+     * Once the buffer is half full, keep only one in
+     * {@link EventBusConfig#getSampleRate()} events and drop the new event if the
+     * buffer is full. Failure events are never sampled out.
+     */
+    SAMPLE
+}
@@ -2,7 +2,13 @@ package org.zero2me.breezeflow.core;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
 
 import lombok.Getter;
 
@@ -10,8 +16,13 @@ import lombok.Getter;
  * A container that executes tasks in parallel using a thread pool.
  * 
  * ParallelContainer is a specialized Task that can contain and execute other tasks
- * concurrently. It uses a configurable thread pool to run tasks in parallel, which
- * can significantly improve performance for independent tasks.
+ * concurrently. It runs tasks on the executor shared by all containers and workflow
+ * runs (see {@link WorkflowExecutors}), which can significantly improve performance
+ * for independent tasks.
+ *
+ * The children run in their own cancellation scope (see {@link CancellationToken}):
+ * the first failing child cancels the scope, which interrupts the siblings still running
+ * and skips those not yet started.
  */
 public class ParallelContainer extends Task {
     /**
@@ -20,20 +31,12 @@ public class ParallelContainer extends Task {
     @Getter
     private List<Task> tasks = new ArrayList<>();
     
-    /**
-     * The size of the thread pool to use for parallel execution.
-     * If set to a value <= 0, the container will use the thread pool size from
-     * the session configuration, or the number of available processors if not configured.
-     */
-    private int threadPoolSize = -1;
-
     /**
      * Package-private constructor - only TaskFactory can create ParallelContainer instances.
      * This enforces the factory pattern for task creation.
-     * The threadPoolSize will be set from sessionConfig during injection.
      */
     ParallelContainer() {
-        // threadPoolSize will be set from sessionConfig during injection
+        super();
     }
 
     /**
@@ -47,9 +50,32 @@ public class ParallelContainer extends Task {
     }
 
     /**
-     * Executes all tasks in this container in parallel using a thread pool.
-     * The method determines the appropriate thread pool size, creates the pool,
-     * submits all tasks for execution, and waits for all tasks to complete.
+     * Copies this container and its children for a new workflow run.
+     */
+    @Override
+    Task copyForRun(Facts facts, SessionContext sessionContext,
+                    SessionConfig sessionConfig, WorkflowListener listener) {
+        ParallelContainer copy = (ParallelContainer) super.copyForRun(facts, sessionContext, sessionConfig, listener);
+        copy.tasks.replaceAll(task -> task.copyForRun(facts, sessionContext, sessionConfig, listener));
+        return copy;
+    }
+
+    /**
+     * Gives the copy its own task list.
+     */
+    @Override
+    protected void copyFields() {
+        super.copyFields();
+        tasks = new ArrayList<>(tasks);
+    }
+
+    /**
+     * Executes all tasks in this container in parallel on the shared executor.
+     * The executor is resolved from the session configuration through
+     * {@link WorkflowExecutors}, so no threads are created or destroyed per invocation.
+     * On a work-stealing executor children are forked and joined cooperatively;
+     * on other executors the calling thread runs any child that no pool thread has
+     * picked up yet, which keeps nested containers from starving a bounded shared pool.
      * If any task fails, an exception is thrown.
      * 
      * @throws RuntimeException if any task fails during execution or if execution is interrupted
@@ -60,91 +86,209 @@ public class ParallelContainer extends Task {
             return;
         }
 
-        // Determine thread pool size
-        int poolSize = threadPoolSize;
-        if (poolSize <= 0 && sessionConfig != null) {
-            poolSize = sessionConfig.getThreadPoolSize();
-        }
-        if (poolSize <= 0) {
-            poolSize = Runtime.getRuntime().availableProcessors();
-        }
+        ExecutorService executor = WorkflowExecutors.getExecutor(sessionConfig);
 
-        // Create thread pool
-        logger.info("Creating thread pool with size: {}", poolSize);
-        ExecutorService executor = createThreadPool(poolSize);
-        
-        try {
-            logger.info("Starting parallel container ({}:{}) execution with {} tasks.", 
-                            getId(), getName(), tasks.size());
-            listener.notify(WorkflowEventType.TASK_STARTED, 
-                    String.format("Parallel container %s:%s started", getId(), getName()));
+        logger.info("Starting parallel container ({}:{}) execution with {} tasks.", 
+                        getId(), getName(), tasks.size());
+        publish(WorkflowEventType.TASK_STARTED, "Parallel container");
 
-            // Submit all tasks to the thread pool
-            List<Future<?>> futures = new ArrayList<>();
+        CancellationToken scope = getCancellationToken().child();
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        try {
             for (Task task : tasks) {
-                Future<?> future = executor.submit(() -> {
-                    try {
-                        task.run();
-                    } catch (Exception e) {
-                        throw new RuntimeException("Task execution failed: " + task.getId(), e);
-                    }
-                });
-                futures.add(future);
+                adopt(task, scope);
             }
-            
-            // Wait for all tasks to complete
-            for (Future<?> future : futures) {
-                try {
-                    future.get();
-                } catch (ExecutionException e) {
-                    throw new RuntimeException("Parallel task execution failed", e.getCause());
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    throw new RuntimeException("Parallel execution interrupted", e);
-                }
+            if (executor instanceof ForkJoinPool) {
+                invokeForkJoin((ForkJoinPool) executor, scope, failure);
+            } else {
+                invokePooled(executor, scope, failure);
             }
-
-            logger.info("Completed parallel container ({}:{}) execution.", getId(), getName());
-            listener.notify(WorkflowEventType.TASK_COMPLETED, 
-                    String.format("Parallel container %s:%s completed", getId(), getName()));
         } finally {
-            // Shutdown the thread pool
-            executor.shutdown();
+            scope.close();
+        }
+
+        RuntimeException error = failure.get();
+        if (error != null) {
+            throw new RuntimeException("Parallel task execution failed", error);
+        }
+
+        logger.info("Completed parallel container ({}:{}) execution.", getId(), getName());
+        publish(WorkflowEventType.TASK_COMPLETED, "Parallel container");
+    }
+
+    /**
+     * Runs a child task in the container's scope. The first failure is recorded
+     * and cancels the scope; later failures are consequences of the cancellation.
+     *
+     * @param task the child task
+     * @param scope the cancellation scope of the children
+     * @param failure holder of the first failure
+     */
+    private static void runChild(Task task, CancellationToken scope, AtomicReference<RuntimeException> failure) {
+        scope.runInterruptibly(() -> {
             try {
-                if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
-                    executor.shutdownNow();
-                }
-            } catch (InterruptedException e) {
-                executor.shutdownNow();
-                Thread.currentThread().interrupt();
+                task.run();
+            } catch (Exception e) {
+                recordFailure(task, e, scope, failure);
             }
+        });
+    }
+
+    /**
+     * Records the failure of a child task if it is the first one, and cancels the scope.
+     *
+     * @param error the failure, or null if the task has finished
+     */
+    private static void recordFailure(Task task, Throwable error, CancellationToken scope,
+                                      AtomicReference<RuntimeException> failure) {
+        if (error != null
+                && failure.compareAndSet(null, new RuntimeException("Task execution failed: " + task.getId(), error))) {
+            scope.cancel(String.format("sibling task %s:%s failed", task.getId(), task.getName()));
         }
     }
 
     /**
-     * Creates a thread pool with the specified size.
-     * 
-     * @param poolSize the size of the thread pool
-     * @return the created ExecutorService
+     * Runs all child tasks on a thread pool executor.
+     * Before waiting for any child, the calling thread runs every child that no pool
+     * thread has picked up yet, so children waiting on each other (for example through a
+     * {@link Channel}) are not stranded in the queue of a busy or small pool. Children with
+     * a retry policy do not hold a thread between attempts (see {@link TaskDispatcher}).
+     *
+     * @param executor the executor to submit the children to
+     * @param scope the cancellation scope of the children
+     * @param failure holder of the first failure
      */
-    private ExecutorService createThreadPool(int poolSize) {
-        return new ThreadPoolExecutor(
-            poolSize,                    // core pool size
-            poolSize,                    // maximum pool size
-            60L,                         // keep alive time
-            TimeUnit.SECONDS,            // time unit
-            new LinkedBlockingQueue<>(), // work queue
-            new ThreadFactory() {
-                private int threadNumber = 1;
+    private void invokePooled(ExecutorService executor, CancellationToken scope,
+                              AtomicReference<RuntimeException> failure) {
+        TaskDispatcher dispatcher = new TaskDispatcher(executor);
+        for (Task task : tasks) {
+            dispatcher.dispatch(() -> scope.runInterruptibly(() ->
+                    dispatcher.runTask(task, error -> recordFailure(task, error, scope, failure))));
+        }
+
+        // Runs the children no pool thread has started yet, then waits for the others
+        try {
+            dispatcher.awaitIdle();
+        } catch (InterruptedException e) {
+            scope.cancel("parallel execution interrupted");
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Parallel execution interrupted", e);
+        }
+    }
+
+    /**
+     * Runs all child tasks as fork/join actions on a work-stealing pool.
+     * When already running inside the pool, the children are forked from the current
+     * worker and joined cooperatively: a joining worker executes pending children itself
+     * instead of blocking, so the total number of threads stays bounded by the pool
+     * parallelism regardless of how deeply containers are nested.
+     *
+     * @param pool the work-stealing pool
+     * @param scope the cancellation scope of the children
+     * @param failure holder of the first failure
+     */
+    private void invokeForkJoin(ForkJoinPool pool, CancellationToken scope,
+                                AtomicReference<RuntimeException> failure) {
+        List<ChildAction> actions = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            actions.add(new ChildAction(task, scope, failure));
+        }
+
+        if (ForkJoinTask.getPool() == pool) {
+            ForkJoinTask.invokeAll(actions);
+        } else {
+            pool.invoke(new RecursiveAction() {
+                private static final long serialVersionUID = 1L;
+
                 @Override
-                public Thread newThread(Runnable r) {
-                    Thread thread = new Thread(r, "breezeflow-parallel-" + threadNumber++);
-                    thread.setDaemon(false);
-                    return thread;
+                protected void compute() {
+                    ForkJoinTask.invokeAll(actions);
                 }
-            },
-            new ThreadPoolExecutor.CallerRunsPolicy() // rejection policy
-        );
+            });
+        }
+    }
+
+    /**
+     * Fork/join action running a single child task.
+     * Failures are recorded instead of thrown so that every action completes normally.
+     */
+    private static final class ChildAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Task task;
+        private final transient CancellationToken scope;
+        private final transient AtomicReference<RuntimeException> failure;
+        private final long queuedAt = System.nanoTime();
+
+        ChildAction(Task task, CancellationToken scope, AtomicReference<RuntimeException> failure) {
+            this.task = task;
+            this.scope = scope;
+            this.failure = failure;
+        }
+
+        @Override
+        protected void compute() {
+            WorkflowMetrics.getInstance().queueWait(queuedAt);
+            runChild(task, scope, failure);
+        }
+    }
+
+    /**
+     * Executes all tasks in this container in parallel without blocking.
+     * Blocking children are started on the shared executor and asynchronous children
+     * on the current thread; the container completes when all children have completed,
+     * without any thread waiting for them.
+     *
+     * @return a future completed when all tasks have completed
+     */
+    @Override
+    protected CompletableFuture<Void> invokeAsync() {
+        if (tasks.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        ExecutorService executor = WorkflowExecutors.getExecutor(sessionConfig);
+
+        logger.info("Starting parallel container ({}:{}) async execution with {} tasks.",
+                        getId(), getName(), tasks.size());
+        publish(WorkflowEventType.TASK_STARTED, "Parallel container");
+
+        CancellationToken scope = getCancellationToken().child();
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        CompletableFuture<?>[] children = new CompletableFuture<?>[tasks.size()];
+        for (Task task : tasks) {
+            adopt(task, scope);
+        }
+        for (int i = 0; i < children.length; i++) {
+            Task task = tasks.get(i);
+            children[i] = startAsync(task, executor).whenComplete((result, error) -> {
+                if (error != null && failure.compareAndSet(null,
+                        new RuntimeException("Task execution failed: " + task.getId(), unwrap(error)))) {
+                    scope.cancel(String.format("sibling task %s:%s failed", task.getId(), task.getName()));
+                }
+            });
+        }
+        // Wait for every child, including cancelled ones, before completing
+        return CompletableFuture.allOf(children).handle((result, ignored) -> {
+            scope.close();
+            RuntimeException error = failure.get();
+            if (error != null) {
+                throw new CompletionException(new RuntimeException("Parallel task execution failed", error));
+            }
+            logger.info("Completed parallel container ({}:{}) execution.", getId(), getName());
+            publish(WorkflowEventType.TASK_COMPLETED, "Parallel container");
+            return null;
+        });
+    }
+
+    @Override
+    boolean isNonBlocking() {
+        return true;
+    }
+
+    @Override
+    boolean isConcurrent() {
+        return true;
     }
 
     /**
@@ -0,0 +1,212 @@
+package org.zero2me.breezeflow.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import lombok.Getter;
+
+/**
+ * A container that triggers tasks from changes in the workflow facts.
+ *
+ * ReactiveContainer is a specialized Task whose children declare the facts they require
+ * (see {@link Task#requireFacts(String...)} and {@link Task#requireAnyFact(String...)}).
+ * The container subscribes to the {@link Facts} repository and dispatches each task to the
+ * shared executor as soon as all of its required facts, and one fact of each of its
+ * alternative groups, are true, so work starts as early as the data allows without manual
+ * ordering.
+ * Tasks without required facts are dispatched immediately.
+ *
+ * The container completes once no triggered task is running any more. Tasks whose required
+ * facts never became true by then are skipped. If any task fails, the container's
+ * cancellation scope is cancelled: no further tasks are triggered, tasks in flight are
+ * interrupted, and the container fails once they have finished.
+ */
+public class ReactiveContainer extends Task {
+    /**
+     * List of tasks in this container, in the order they were added.
+     */
+    @Getter
+    private List<Task> tasks = new ArrayList<>();
+
+    /**
+     * Package-private constructor - only TaskFactory can create ReactiveContainer instances.
+     * This enforces the factory pattern for task creation.
+     */
+    ReactiveContainer() {
+        super();
+    }
+
+    /**
+     * Adds a task to this container.
+     * The task will be triggered once all of its required facts are true.
+     *
+     * @param task the task to add
+     */
+    public void addTask(Task task) {
+        tasks.add(task);
+    }
+
+    /**
+     * Copies this container and its children for a new workflow run.
+     */
+    @Override
+    Task copyForRun(Facts facts, SessionContext sessionContext,
+                    SessionConfig sessionConfig, WorkflowListener listener) {
+        ReactiveContainer copy = (ReactiveContainer) super.copyForRun(facts, sessionContext, sessionConfig, listener);
+        copy.tasks.replaceAll(task -> task.copyForRun(facts, sessionContext, sessionConfig, listener));
+        return copy;
+    }
+
+    /**
+     * Gives the copy its own task list.
+     */
+    @Override
+    protected void copyFields() {
+        super.copyFields();
+        tasks = new ArrayList<>(tasks);
+    }
+
+    /**
+     * Executes the tasks of this container as their required facts become true.
+     *
+     * @throws RuntimeException if any task fails during execution or if execution is interrupted
+     */
+    @Override
+    public void invoke() {
+        if (tasks.isEmpty()) {
+            return;
+        }
+
+        ExecutorService executor = WorkflowExecutors.getExecutor(sessionConfig);
+
+        logger.info("Starting reactive container ({}:{}) execution with {} tasks.",
+                        getId(), getName(), tasks.size());
+        publish(WorkflowEventType.TASK_STARTED, "Reactive container");
+
+        new Run(executor).execute();
+
+        logger.info("Completed reactive container ({}:{}) execution.", getId(), getName());
+        publish(WorkflowEventType.TASK_COMPLETED, "Reactive container");
+    }
+
+    /**
+     * Trigger state of a single container invocation.
+     */
+    private final class Run implements FactListener {
+        private final TaskDispatcher dispatcher;
+        private final CancellationToken scope = getCancellationToken().child();
+        private final AtomicBoolean[] fired;
+        private final Map<String, List<Integer>> waitingByFact = new HashMap<>();
+        private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+        Run(ExecutorService executor) {
+            this.dispatcher = new TaskDispatcher(executor);
+            this.fired = new AtomicBoolean[tasks.size()];
+            for (int i = 0; i < tasks.size(); i++) {
+                adopt(tasks.get(i), scope);
+                fired[i] = new AtomicBoolean(false);
+                for (String fact : tasks.get(i).getRequiredFacts()) {
+                    waitingByFact.computeIfAbsent(fact, k -> new ArrayList<>()).add(i);
+                }
+                for (Set<String> group : tasks.get(i).getRequiredAnyFacts()) {
+                    for (String fact : group) {
+                        waitingByFact.computeIfAbsent(fact, k -> new ArrayList<>()).add(i);
+                    }
+                }
+            }
+        }
+
+        void execute() {
+            // Subscribe before the first evaluation so that no fact change is missed
+            facts.addListener(this);
+            try {
+                for (int i = 0; i < tasks.size(); i++) {
+                    tryFire(i);
+                }
+                dispatcher.awaitIdle();
+            } catch (InterruptedException e) {
+                scope.cancel("Reactive execution interrupted");
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Reactive execution interrupted", e);
+            } finally {
+                facts.removeListener(this);
+                scope.close();
+            }
+
+            RuntimeException error = failure.get();
+            if (error != null) {
+                throw new RuntimeException("Reactive task execution failed", error);
+            }
+            for (int i = 0; i < tasks.size(); i++) {
+                if (!fired[i].get()) {
+                    Task task = tasks.get(i);
+                    logger.warn("task {}:{} skipped, required facts {} and any of {} never became true",
+                            task.getId(), task.getName(), task.getRequiredFacts(), task.getRequiredAnyFacts());
+                }
+            }
+        }
+
+        @Override
+        public void onFactChanged(Fact<?> fact) {
+            List<Integer> waiting = waitingByFact.get(fact.getName());
+            if (waiting == null || !Boolean.TRUE.equals(fact.getValue())) {
+                return;
+            }
+            for (int i : waiting) {
+                tryFire(i);
+            }
+        }
+
+        private void tryFire(int i) {
+            if (fired[i].get() || failure.get() != null) {
+                return;
+            }
+            Task task = tasks.get(i);
+            for (String fact : task.getRequiredFacts()) {
+                if (!facts.isTrue(fact)) {
+                    return;
+                }
+            }
+            for (Set<String> group : task.getRequiredAnyFacts()) {
+                if (group.stream().noneMatch(facts::isTrue)) {
+                    return;
+                }
+            }
+            if (fired[i].compareAndSet(false, true)) {
+                dispatcher.dispatch(() -> runTask(task));
+            }
+        }
+
+        private void runTask(Task task) {
+            scope.runInterruptibly(() -> dispatcher.runTask(task, error -> {
+                if (error != null
+                        && failure.compareAndSet(null, new RuntimeException("Task execution failed: " + task.getId(), error))) {
+                    scope.cancel(String.format("task %s:%s failed", task.getId(), task.getName()));
+                }
+            }));
+        }
+    }
+
+    @Override
+    boolean isConcurrent() {
+        return true;
+    }
+
+    /**
+     * Performs pre-execution checks.
+     * For ReactiveContainer, this always returns true as there are no
+     * specific preconditions for execution.
+     *
+     * @return true, indicating that the container can always be executed
+     */
+    @Override
+    protected boolean preCheck() {
+        return true;
+    }
+}
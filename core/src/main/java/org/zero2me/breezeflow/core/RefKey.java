@@ -0,0 +1,15 @@
+package org.zero2me.breezeflow.core;
+
+/**
+ * Typed key for an object reference.
+ * Created through {@link TypedKey#refKey(String, Class)}.
+ *
+ * @param <T> the value type
+ */
+public final class RefKey<T> extends TypedKey<T> {
+
+    @SuppressWarnings("unchecked")
+    RefKey(String name, Class<?> type, int slot) {
+        super(name, Kind.REFERENCE, (Class<T>) type, slot);
+    }
+}
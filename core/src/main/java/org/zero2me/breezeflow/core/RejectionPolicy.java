@@ -0,0 +1,30 @@
+package org.zero2me.breezeflow.core;
+
+/**
+ * Enumeration of the policies applied by a {@link WorkflowEngine} when a run is
+ * submitted while all run slots are busy and the submission queue is full.
+ */
+public enum RejectionPolicy {
+    /**
+     * Reject the new run; its future fails with a
+     * {@link java.util.concurrent.RejectedExecutionException}.
+     */
+    ABORT,
+
+    /**
+     * Run the new run on the submitting thread, slowing down the submitter.
+     */
+    CALLER_RUNS,
+
+    /**
+     * Block the submitting thread until the queue has room.
+     */
+    BLOCK,
+
+    /**
+     * Shed the oldest queued run, failing its future, and queue the new run.
+     * If no run is queued, for example with a queue capacity of 0, the new run is
+     * rejected as with {@link #ABORT}.
+     */
+    DISCARD_OLDEST
+}
@@ -0,0 +1,115 @@
+package org.zero2me.breezeflow.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+import lombok.Data;
+
+/**
+ * Retry policy of a task.
+ * This class holds how often a failed {@link Task#invoke()} is attempted again and
+ * how long to wait in between: the backoff grows exponentially from
+ * {@link #initialBackoffMillis} up to {@link #maxBackoffMillis}, and a random share
+ * of up to {@link #jitter} is taken off each delay so that retries of many runs do
+ * not hit a recovering dependency at the same moment.
+ */
+@Data
+public class RetryPolicy {
+  /**
+   * Maximum number of attempts, including the first one.
+   * Default value is 3 attempts.
+   */
+  private int maxAttempts = 3;
+
+  /**
+   * Delay before the first retry in milliseconds.
+   * Default value is 100 milliseconds.
+   */
+  private long initialBackoffMillis = 100L;
+
+  /**
+   * Upper bound of the delay between attempts in milliseconds.
+   * Default value is 10 seconds.
+   */
+  private long maxBackoffMillis = 10000L;
+
+  /**
+   * Factor applied to the delay after every retry.
+   * Default value is 2.
+   */
+  private double backoffMultiplier = 2.0;
+
+  /**
+   * Fraction of each delay that is randomized, between 0 and 1.
+   * Default value is 0.5, i.e. delays are picked between half and all of the backoff.
+   */
+  private double jitter = 0.5;
+
+  /**
+   * Filter selecting the failures that are retried.
+   * Default value retries every failure.
+   */
+  private Predicate<Throwable> retryOn = error -> true;
+
+  /**
+   * Restricts retries to failures of the given types or their subclasses.
+   *
+   * @param types the retryable exception types
+   * @return this policy
+   */
+  @SafeVarargs
+  public final RetryPolicy retryOn(Class<? extends Throwable>... types) {
+    // Copy the elements rather than keep the varargs array, which callers may still hold
+    List<Class<? extends Throwable>> retryable = new ArrayList<>(types.length);
+    for (Class<? extends Throwable> type : types) {
+      retryable.add(type);
+    }
+    retryOn = error -> retryable.stream().anyMatch(type -> type.isInstance(error));
+    return this;
+  }
+
+  /**
+   * Sets the maximum number of attempts, including the first one.
+   *
+   * @param maxAttempts the number of attempts, at least 1
+   * @throws IllegalArgumentException if maxAttempts is less than 1
+   */
+  public void setMaxAttempts(int maxAttempts) {
+    if (maxAttempts < 1) {
+      throw new IllegalArgumentException("maxAttempts must be at least 1, was " + maxAttempts);
+    }
+    this.maxAttempts = maxAttempts;
+  }
+
+  /**
+   * Sets the fraction of each delay that is randomized.
+   *
+   * @param jitter the fraction, between 0 and 1
+   * @throws IllegalArgumentException if jitter is outside [0, 1]
+   */
+  public void setJitter(double jitter) {
+    if (!(jitter >= 0.0 && jitter <= 1.0)) {
+      throw new IllegalArgumentException("jitter must be between 0 and 1, was " + jitter);
+    }
+    this.jitter = jitter;
+  }
+
+  /**
+   * Gets the delay before the next attempt.
+   *
+   * @param attempt the number of the attempt that failed, starting at 1
+   * @param error the failure of that attempt
+   * @return the delay in milliseconds, or -1 if the failure is not retried
+   */
+  long nextDelayMillis(int attempt, Throwable error) {
+    if (attempt >= maxAttempts || error instanceof CircuitOpenException || !retryOn.test(error)) {
+      return -1L;
+    }
+    double backoff = Math.min(maxBackoffMillis,
+        initialBackoffMillis * Math.pow(backoffMultiplier, attempt - 1));
+    double randomized = backoff * (1.0 - jitter * ThreadLocalRandom.current().nextDouble());
+    return Math.max(0L, (long) randomized);
+  }
+}
@@ -1,7 +1,12 @@
 package org.zero2me.breezeflow.core;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.IntConsumer;
 
 import lombok.Getter;
 
@@ -17,7 +22,18 @@ public class SequentialContainer extends Task {
      * List of tasks to be executed sequentially.
      */
     @Getter
-    private List<Task> tasks = new LinkedList<>();
+    private List<Task> tasks = new ArrayList<>();
+
+    /**
+     * Position of the first task to run, greater than 0 when a workflow resumes
+     * a journaled run (see {@link Workflow#resume()}).
+     */
+    private int startIndex;
+
+    /**
+     * Called with the position of each task that completed, null if not needed.
+     */
+    private IntConsumer checkpoint;
     
     /**
      * Package-private constructor - only TaskFactory can create SequentialContainer instances.
@@ -57,6 +73,40 @@ public class SequentialContainer extends Task {
                 .findFirst().orElse(null);
     }
 
+    /**
+     * Sets the task to start from and the callback for completed tasks.
+     * Tasks before the start position are not run.
+     *
+     * @param startIndex position of the first task to run
+     * @param checkpoint called with the position of each completed task, may be null
+     */
+    void startFrom(int startIndex, IntConsumer checkpoint) {
+        this.startIndex = startIndex;
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Copies this container and its children for a new workflow run.
+     */
+    @Override
+    SequentialContainer copyForRun(Facts facts, SessionContext sessionContext,
+                                   SessionConfig sessionConfig, WorkflowListener listener) {
+        SequentialContainer copy = (SequentialContainer) super.copyForRun(facts, sessionContext, sessionConfig, listener);
+        copy.tasks.replaceAll(task -> task.copyForRun(facts, sessionContext, sessionConfig, listener));
+        return copy;
+    }
+
+    /**
+     * Gives the copy its own task list and no resume position.
+     */
+    @Override
+    protected void copyFields() {
+        super.copyFields();
+        tasks = new ArrayList<>(tasks);
+        startIndex = 0;
+        checkpoint = null;
+    }
+
     /**
      * Executes all tasks in this container sequentially.
      * Tasks are executed in the order they were added. If a task fails,
@@ -70,23 +120,81 @@ public class SequentialContainer extends Task {
             return;
         }
 
-        logger.info("Starting sequential container ({}:{}) execution with {} tasks.", 
-                        getId(), getName(), tasks.size());
-        listener.notify(WorkflowEventType.TASK_STARTED, 
-                String.format("Sequential container %s:%s started", getId(), getName()));
+        if (logger.isInfoEnabled()) {
+            // Guarded, since the three arguments are passed as a varargs array
+            logger.info("Starting sequential container ({}:{}) execution with {} tasks.",
+                            getId(), getName(), tasks.size());
+        }
+        publish(WorkflowEventType.TASK_STARTED, "Sequential container");
 
-        for (Task task : tasks) {
+        CancellationToken token = getCancellationToken();
+        // Indexed loop over the array list, so a steady-state run allocates no iterator
+        for (int index = startIndex; index < tasks.size(); index++) {
+            Task task = tasks.get(index);
+            adopt(task, token);
             try {
                 task.run();
             } catch (WorkflowExecutionException e) {
                 logger.error("Sequential task execution failed for task: {}", task.getId(), e);
                 throw new RuntimeException("Sequential task execution failed for task: " + task.getId(), e);
             }
+            if (checkpoint != null) {
+                checkpoint.accept(index);
+            }
         }
 
         logger.info("Completed sequential container ({}:{}) execution.", getId(), getName());
-        listener.notify(WorkflowEventType.TASK_COMPLETED, 
-                String.format("Sequential container %s:%s completed", getId(), getName()));
+        publish(WorkflowEventType.TASK_COMPLETED, "Sequential container");
+    }
+
+    /**
+     * Executes all tasks in this container sequentially without blocking.
+     * Each task is started when the previous one has completed; blocking tasks are
+     * handed to the shared executor, so no thread waits while a child is in flight.
+     * If a task fails, the remaining tasks are not started.
+     *
+     * @return a future completed when all tasks have completed
+     */
+    @Override
+    protected CompletableFuture<Void> invokeAsync() {
+        if (tasks.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        ExecutorService executor = WorkflowExecutors.getExecutor(sessionConfig);
+
+        logger.info("Starting sequential container ({}:{}) async execution with {} tasks.",
+                        getId(), getName(), tasks.size());
+        publish(WorkflowEventType.TASK_STARTED, "Sequential container");
+
+        CancellationToken token = getCancellationToken();
+        CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+        IntConsumer completed = checkpoint;
+        for (ListIterator<Task> it = tasks.listIterator(startIndex); it.hasNext(); ) {
+            int index = it.nextIndex();
+            Task task = it.next();
+            adopt(task, token);
+            chain = chain.thenCompose(ignored -> startAsync(task, executor).handle((result, error) -> {
+                if (error != null) {
+                    logger.error("Sequential task execution failed for task: {}", task.getId(), unwrap(error));
+                    throw new CompletionException(new RuntimeException(
+                            "Sequential task execution failed for task: " + task.getId(), unwrap(error)));
+                }
+                if (completed != null) {
+                    completed.accept(index);
+                }
+                return null;
+            }));
+        }
+        return chain.thenRun(() -> {
+            logger.info("Completed sequential container ({}:{}) execution.", getId(), getName());
+            publish(WorkflowEventType.TASK_COMPLETED, "Sequential container");
+        });
+    }
+
+    @Override
+    boolean isNonBlocking() {
+        return true;
     }
 
     /**
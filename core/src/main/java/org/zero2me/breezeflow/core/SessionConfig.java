@@ -1,5 +1,8 @@
 package org.zero2me.breezeflow.core;
 
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+
 import lombok.Data;
 
 /**
@@ -14,4 +17,63 @@ public class SessionConfig {
    * Default value is 2 threads.
    */
   private int threadPoolSize = 2;
+
+  /**
+   * The kind of executor used for parallel task execution.
+   * Default value is a fixed-size pool.
+   */
+  private ExecutorType executorType = ExecutorType.FIXED;
+
+  /**
+   * The executor used when {@link #executorType} is {@link ExecutorType#CUSTOM}.
+   */
+  private ExecutorService customExecutor;
+
+  /**
+   * Prefix for the names of the threads created by the shared executor.
+   */
+  private String threadNamePrefix = "breezeflow-parallel";
+
+  /**
+   * Whether the shared executor creates daemon threads.
+   * Daemon threads let the JVM exit without an explicit shutdown of the executors.
+   */
+  private boolean daemonThreads = true;
+
+  /**
+   * Maximum time in milliseconds to wait for running tasks when the shared
+   * executors are shut down.
+   */
+  private long shutdownTimeoutMillis = 5000L;
+
+  /**
+   * Fraction of workflow runs that record a {@link WorkflowTrace}, between 0 and 1.
+   * Default value is 0, which disables tracing.
+   */
+  private double traceSampleRate = 0.0;
+
+  /**
+   * Receives the trace of every sampled run once the run has finished, may be null.
+   * Called on the thread finishing the run; exceptions are logged and ignored.
+   */
+  private Consumer<WorkflowTrace> traceConsumer;
+
+  /**
+   * Creates a copy of this configuration. The custom executor and the trace consumer
+   * are shared, not copied.
+   *
+   * @return a new configuration with the same settings
+   */
+  public SessionConfig copy() {
+    SessionConfig copy = new SessionConfig();
+    copy.setThreadPoolSize(threadPoolSize);
+    copy.setExecutorType(executorType);
+    copy.setCustomExecutor(customExecutor);
+    copy.setThreadNamePrefix(threadNamePrefix);
+    copy.setDaemonThreads(daemonThreads);
+    copy.setShutdownTimeoutMillis(shutdownTimeoutMillis);
+    copy.setTraceSampleRate(traceSampleRate);
+    copy.setTraceConsumer(traceConsumer);
+    return copy;
+  }
 }
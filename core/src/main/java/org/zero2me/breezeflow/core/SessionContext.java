@@ -1,9 +1,21 @@
 package org.zero2me.breezeflow.core;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 
 /**
  * Represents the execution context for a workflow session.
@@ -11,14 +23,72 @@ import lombok.Data;
  * SessionContext provides a thread-safe storage for variables that need to be
  * shared between tasks during workflow execution. It acts as a shared memory
  * space where tasks can store and retrieve data as the workflow progresses.
+ *
+ * Variables declared through {@link TypedKey} are stored in array slots, so the
+ * typed overloads read and write them without hashing, boxing or casts. The
+ * string-keyed methods remain available and are routed to the same slot for names
+ * registered as typed keys; {@link #getContextData()} is a view of all variables and
+ * {@link #snapshot()} a copy of them. Equality and hash code cover all variables too.
+ * A string-keyed value whose type does not match the registered key is stored by
+ * name, and the typed overloads treat the variable as absent.
  */
 @Data
 public class SessionContext {
+    /**
+     * Name of the variable set when a task terminates the session (see {@link Task#terminate()}).
+     */
+    public static final String SESSION_TERMINATED = "SYS_SESSION_TERMINATED";
+
     /**
      * Thread-safe map to store context variables.
      */
     private final Map<String, Object> contextData = new ConcurrentHashMap<>();
 
+    /**
+     * View over the map and the typed slots, returned by {@link #getContextData()}.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final Map<String, Object> variables = new VariablesView();
+
+    /**
+     * Id of the workflow run this session belongs to, reported in workflow events.
+     */
+    @Setter(AccessLevel.PACKAGE)
+    @EqualsAndHashCode.Exclude
+    private volatile String workflowId;
+
+    /**
+     * Storage of the typed variables, created on first typed write.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private volatile SlotStore slots;
+
+    /**
+     * Mirror of the {@link #SESSION_TERMINATED} variable, checked by every task start
+     * without a map lookup.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private volatile boolean terminated;
+
+    /**
+     * Names of the variables set or removed since tracking started, null while changes
+     * are not tracked (see {@link #trackChanges(boolean)}).
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private volatile Set<String> changedNames;
+
     /**
      * Sets a variable in the execution context.
      * If a variable with the same name already exists, it will be overwritten.
@@ -27,7 +97,39 @@ public class SessionContext {
      * @param value the variable value
      */
     public void setVariable(String name, Object value) {
+        if (SESSION_TERMINATED.equals(name)) {
+            terminated = Boolean.TRUE.equals(value);
+        }
+        markChanged(name);
+        TypedKey<?> key = TypedKey.lookup(name);
+        if (key != null) {
+            if (value == null) {
+                removeVariable(key);
+                return;
+            }
+            if (key.accepts(value)) {
+                slots().setBoxed(key, value);
+                contextData.remove(name);
+                return;
+            }
+        }
         contextData.put(name, value);
+        if (key != null) {
+            // A value of another type than the registered key is kept by name only
+            SlotStore store = slots;
+            if (store != null) {
+                store.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Checks whether a task has terminated the session.
+     *
+     * @return true if the {@link #SESSION_TERMINATED} variable is true
+     */
+    boolean isTerminated() {
+        return terminated;
     }
 
     /**
@@ -37,6 +139,16 @@ public class SessionContext {
      * @return the variable value, or null if not found
      */
     public Object getVariable(String name) {
+        SlotStore store = slots;
+        if (store != null) {
+            TypedKey<?> key = TypedKey.lookup(name);
+            if (key != null) {
+                Object value = store.getBoxed(key);
+                if (value != null) {
+                    return value;
+                }
+            }
+        }
         return contextData.get(name);
     }
 
@@ -47,6 +159,318 @@ public class SessionContext {
      * @return {@code true} if the variable name exists, {@code false} otherwise
      */
     public Boolean hasVariable(String name) {
-        return contextData.containsKey(name);
+        return getVariable(name) != null || contextData.containsKey(name);
+    }
+
+    /**
+     * Sets a boolean variable.
+     *
+     * @param key the variable key
+     * @param value the variable value
+     */
+    public void setVariable(BooleanKey key, boolean value) {
+        slots().setBoolean(key.getSlot(), value);
+        markChanged(key.getName());
+    }
+
+    /**
+     * Sets an int variable.
+     *
+     * @param key the variable key
+     * @param value the variable value
+     */
+    public void setVariable(IntKey key, int value) {
+        slots().setLong(key.getSlot(), value);
+        markChanged(key.getName());
+    }
+
+    /**
+     * Sets a long variable.
+     *
+     * @param key the variable key
+     * @param value the variable value
+     */
+    public void setVariable(LongKey key, long value) {
+        slots().setLong(key.getSlot(), value);
+        markChanged(key.getName());
+    }
+
+    /**
+     * Sets a reference variable; a null value removes the variable.
+     *
+     * @param key the variable key
+     * @param value the variable value
+     * @param <T> the variable type
+     */
+    public <T> void setVariable(RefKey<T> key, T value) {
+        if (value == null) {
+            removeVariable(key);
+        } else {
+            slots().setReference(key.getSlot(), value);
+            markChanged(key.getName());
+        }
+    }
+
+    /**
+     * Gets a boolean variable.
+     *
+     * @param key the variable key
+     * @return the variable value, or false if not found
+     */
+    public boolean getVariable(BooleanKey key) {
+        SlotStore store = slots;
+        if (store != null && store.contains(key)) {
+            return store.isTrue(key.getSlot());
+        }
+        return Boolean.TRUE.equals(fromMap(key));
+    }
+
+    /**
+     * Gets an int variable.
+     *
+     * @param key the variable key
+     * @return the variable value, or 0 if not found
+     */
+    public int getVariable(IntKey key) {
+        SlotStore store = slots;
+        if (store != null && store.hasNumeric(key.getSlot())) {
+            return (int) store.getLong(key.getSlot());
+        }
+        Integer value = fromMap(key);
+        return value != null ? value : 0;
+    }
+
+    /**
+     * Gets a long variable.
+     *
+     * @param key the variable key
+     * @return the variable value, or 0 if not found
+     */
+    public long getVariable(LongKey key) {
+        SlotStore store = slots;
+        if (store != null && store.hasNumeric(key.getSlot())) {
+            return store.getLong(key.getSlot());
+        }
+        Long value = fromMap(key);
+        return value != null ? value : 0L;
+    }
+
+    /**
+     * Gets a reference variable.
+     *
+     * @param key the variable key
+     * @param <T> the variable type
+     * @return the variable value, or null if not found
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getVariable(RefKey<T> key) {
+        SlotStore store = slots;
+        if (store != null) {
+            Object value = store.getReference(key.getSlot());
+            if (value != null) {
+                return (T) value;
+            }
+        }
+        return fromMap(key);
+    }
+
+    /**
+     * Checks whether a typed variable is present in the execution context.
+     *
+     * @param key the variable key
+     * @return {@code true} if the variable exists, {@code false} otherwise
+     */
+    public boolean hasVariable(TypedKey<?> key) {
+        SlotStore store = slots;
+        return (store != null && store.contains(key)) || contextData.containsKey(key.getName());
+    }
+
+    /**
+     * Removes a typed variable from the execution context.
+     *
+     * @param key the variable key
+     */
+    public void removeVariable(TypedKey<?> key) {
+        SlotStore store = slots;
+        if (store != null) {
+            store.remove(key);
+        }
+        contextData.remove(key.getName());
+        markChanged(key.getName());
+    }
+
+    /**
+     * Removes a variable from the execution context.
+     *
+     * @param name the variable name
+     */
+    public void removeVariable(String name) {
+        if (SESSION_TERMINATED.equals(name)) {
+            terminated = false;
+        }
+        TypedKey<?> key = TypedKey.lookup(name);
+        if (key != null) {
+            removeVariable(key);
+        } else {
+            contextData.remove(name);
+            markChanged(name);
+        }
+    }
+
+    /**
+     * Returns a copy of all variables, including those stored through typed keys.
+     *
+     * @return a copy of the current variables
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> copy = new HashMap<>(contextData);
+        SlotStore store = slots;
+        if (store != null) {
+            store.forEach((key, value) -> copy.put(key.getName(), value));
+        }
+        return copy;
+    }
+
+    /**
+     * Returns a live view of all variables, including those stored through typed keys.
+     * Changes made through the view go through {@link #setVariable(String, Object)} and
+     * {@link #removeVariable(String)}; iterating the view iterates a {@link #snapshot()}.
+     *
+     * @return a view of the variables
+     */
+    public Map<String, Object> getContextData() {
+        return variables;
+    }
+
+    /**
+     * Starts or stops tracking the names of set and removed variables. Starting
+     * discards the names tracked so far.
+     *
+     * @param enabled whether to track changes
+     */
+    void trackChanges(boolean enabled) {
+        changedNames = enabled ? ConcurrentHashMap.newKeySet() : null;
+    }
+
+    /**
+     * Returns the names of the variables set or removed since the previous call and
+     * stops reporting them until they change again.
+     *
+     * @return the changed names, empty if changes are not tracked
+     */
+    Set<String> drainChanges() {
+        Set<String> changed = changedNames;
+        if (changed == null || changed.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<String> drained = new HashSet<>();
+        for (Iterator<String> iterator = changed.iterator(); iterator.hasNext(); ) {
+            drained.add(iterator.next());
+            iterator.remove();
+        }
+        return drained;
+    }
+
+    private void markChanged(String name) {
+        Set<String> changed = changedNames;
+        if (changed != null) {
+            changed.add(name);
+        }
+    }
+
+    /**
+     * Gets the slot storage, creating it on first use.
+     */
+    private SlotStore slots() {
+        SlotStore store = slots;
+        if (store == null) {
+            synchronized (this) {
+                store = slots;
+                if (store == null) {
+                    store = new SlotStore();
+                    slots = store;
+                }
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Gets the value of a typed variable that was set by name before its key was registered,
+     * ignoring a value of another type.
+     */
+    private <T> T fromMap(TypedKey<T> key) {
+        Object value = contextData.get(key.getName());
+        return value != null && key.accepts(value) ? key.checkValue(value) : null;
+    }
+
+    /**
+     * Map view of all variables, reading and writing through the session context.
+     */
+    private final class VariablesView extends AbstractMap<String, Object> {
+        @Override
+        public Object get(Object name) {
+            return name instanceof String ? getVariable((String) name) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object name) {
+            return name instanceof String && hasVariable((String) name);
+        }
+
+        @Override
+        public Object put(String name, Object value) {
+            Object previous = getVariable(name);
+            setVariable(name, value);
+            return previous;
+        }
+
+        @Override
+        public Object remove(Object name) {
+            if (!(name instanceof String)) {
+                return null;
+            }
+            Object previous = getVariable((String) name);
+            removeVariable((String) name);
+            return previous;
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<Entry<String, Object>>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    Iterator<Entry<String, Object>> entries = snapshot().entrySet().iterator();
+                    return new Iterator<Entry<String, Object>>() {
+                        private Entry<String, Object> current;
+
+                        @Override
+                        public boolean hasNext() {
+                            return entries.hasNext();
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            current = entries.next();
+                            return new SimpleImmutableEntry<>(current);
+                        }
+
+                        @Override
+                        public void remove() {
+                            if (current == null) {
+                                throw new IllegalStateException();
+                            }
+                            removeVariable(current.getKey());
+                            current = null;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return snapshot().size();
+                }
+            };
+        }
     }
 }
@@ -0,0 +1,455 @@
+package org.zero2me.breezeflow.core;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
+
+import org.zero2me.breezeflow.core.TypedKey.Kind;
+
+/**
+ * Slot-indexed storage backing the typed keys of {@link Facts} and {@link SessionContext}.
+ *
+ * Each storage class (booleans, numerics, references) is addressed by the slot of its
+ * {@link TypedKey}. Booleans are packed two bits per slot (present, value) into a bitset,
+ * int and long values are stored unboxed in long pages with a presence and busy bitset, and
+ * references are stored in reference pages where null means absent. Pages are allocated
+ * lazily and never copied, so concurrent writers cannot lose updates.
+ */
+final class SlotStore {
+    private static final int PAGE_SHIFT = 6;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int MAX_PAGES = 64;
+
+    /**
+     * Maximum number of keys per storage class.
+     */
+    static final int MAX_SLOTS = PAGE_SIZE * MAX_PAGES;
+
+    private static final int BOOLEAN_ABSENT = 0;
+    private static final int BOOLEAN_FALSE = 1;
+    private static final int BOOLEAN_TRUE = 3;
+
+    /**
+     * Boolean states, 32 slots per word: bit 0 = present, bit 1 = value.
+     */
+    private final AtomicLongArray booleans = new AtomicLongArray(MAX_SLOTS / 32);
+
+    private static final long NUMERIC_PRESENT = 1L;
+    private static final long NUMERIC_BUSY = 2L;
+    private static final long NUMERIC_STATE_MASK = 3L;
+    private static final long NUMERIC_PRESENT_BITS = 0x5555555555555555L;
+
+    private final AtomicReferenceArray<AtomicLongArray> numericPages = new AtomicReferenceArray<>(MAX_PAGES);
+
+    /**
+     * Numeric slot states, 32 slots per word: bit 0 = present, bit 1 = busy. A writer sets
+     * the busy bit before touching the value and clears it when done, so presence and value
+     * change together.
+     */
+    private final AtomicLongArray numericStates = new AtomicLongArray(MAX_SLOTS / 32);
+
+    private final AtomicReferenceArray<AtomicReferenceArray<Object>> referencePages =
+            new AtomicReferenceArray<>(MAX_PAGES);
+
+    // ---- booleans ----
+
+    int booleanState(int slot) {
+        return (int) (booleans.get(slot >>> 5) >>> ((slot & 31) << 1)) & 3;
+    }
+
+    boolean isTrue(int slot) {
+        return booleanState(slot) == BOOLEAN_TRUE;
+    }
+
+    void setBoolean(int slot, boolean value) {
+        setBooleanState(slot, value ? BOOLEAN_TRUE : BOOLEAN_FALSE);
+    }
+
+    private void setBooleanState(int slot, int state) {
+        int index = slot >>> 5;
+        int shift = (slot & 31) << 1;
+        long mask = 3L << shift;
+        long bits = (long) state << shift;
+        long current;
+        do {
+            current = booleans.get(index);
+        } while (!booleans.compareAndSet(index, current, (current & ~mask) | bits));
+    }
+
+    private boolean casBooleanState(int slot, int expected, int state) {
+        int index = slot >>> 5;
+        int shift = (slot & 31) << 1;
+        long mask = 3L << shift;
+        while (true) {
+            long current = booleans.get(index);
+            if (((current & mask) >>> shift) != expected) {
+                return false;
+            }
+            if (booleans.compareAndSet(index, current, (current & ~mask) | ((long) state << shift))) {
+                return true;
+            }
+        }
+    }
+
+    // ---- numerics ----
+
+    boolean hasNumeric(int slot) {
+        return (numericStates.get(slot >>> 5) & (NUMERIC_PRESENT << ((slot & 31) << 1))) != 0;
+    }
+
+    long getLong(int slot) {
+        AtomicLongArray page = numericPages.get(slot >>> PAGE_SHIFT);
+        return page == null ? 0L : page.get(slot & PAGE_MASK);
+    }
+
+    void setLong(int slot, long value) {
+        AtomicLongArray page = numericPage(slot);
+        acquireNumeric(slot, false);
+        page.set(slot & PAGE_MASK, value);
+        releaseNumeric(slot, true);
+    }
+
+    long addAndGetLong(int slot, long delta) {
+        AtomicLongArray page = numericPage(slot);
+        acquireNumeric(slot, false);
+        // An absent slot holds 0, so the first delta creates the counter
+        long value = page.addAndGet(slot & PAGE_MASK, delta);
+        releaseNumeric(slot, true);
+        return value;
+    }
+
+    /**
+     * Adds a delta to an int counter, creating it with the delta if absent.
+     *
+     * @throws ArithmeticException if the result overflows an int; the counter is left unchanged
+     */
+    int addAndGetInt(int slot, int delta) {
+        AtomicLongArray page = numericPage(slot);
+        acquireNumeric(slot, false);
+        boolean present = hasNumeric(slot);
+        int value;
+        try {
+            value = Math.addExact((int) page.get(slot & PAGE_MASK), delta);
+        } catch (ArithmeticException e) {
+            releaseNumeric(slot, present);
+            throw e;
+        }
+        page.set(slot & PAGE_MASK, value);
+        releaseNumeric(slot, true);
+        return value;
+    }
+
+    private boolean casLong(int slot, long expected, long value) {
+        AtomicLongArray page = numericPage(slot);
+        if (!acquireNumeric(slot, true)) {
+            return false;
+        }
+        boolean swapped = page.compareAndSet(slot & PAGE_MASK, expected, value);
+        releaseNumeric(slot, true);
+        return swapped;
+    }
+
+    private boolean claimNumeric(int slot, long value) {
+        AtomicLongArray page = numericPage(slot);
+        int index = slot >>> 5;
+        int shift = (slot & 31) << 1;
+        long busy = NUMERIC_BUSY << shift;
+        long present = NUMERIC_PRESENT << shift;
+        while (true) {
+            long current = numericStates.get(index);
+            if ((current & present) != 0) {
+                return false;
+            }
+            if ((current & busy) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            // Claim the slot first, so only the winner writes the value before publishing presence
+            if (numericStates.compareAndSet(index, current, current | busy)) {
+                page.set(slot & PAGE_MASK, value);
+                releaseNumeric(slot, true);
+                return true;
+            }
+        }
+    }
+
+    private void clearNumeric(int slot) {
+        AtomicLongArray page = numericPages.get(slot >>> PAGE_SHIFT);
+        if (page == null) {
+            return;
+        }
+        if (acquireNumeric(slot, true)) {
+            // Readers see the slot absent from here on; zero it before another writer can claim it
+            page.set(slot & PAGE_MASK, 0L);
+            releaseNumeric(slot, false);
+        }
+    }
+
+    /**
+     * Sets the busy bit of a numeric slot, waiting for the current writer to release it.
+     * Writers hold the bit only for a single store, so the wait is a short spin.
+     *
+     * @param requirePresent whether to give up when the slot is absent
+     * @return false if the slot is absent and {@code requirePresent} is set
+     */
+    private boolean acquireNumeric(int slot, boolean requirePresent) {
+        int index = slot >>> 5;
+        int shift = (slot & 31) << 1;
+        long busy = NUMERIC_BUSY << shift;
+        long present = NUMERIC_PRESENT << shift;
+        while (true) {
+            long current = numericStates.get(index);
+            if ((current & busy) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            if (requirePresent && (current & present) == 0) {
+                return false;
+            }
+            if (numericStates.compareAndSet(index, current, current | busy)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Clears the busy bit of a numeric slot held by the caller and sets its presence.
+     */
+    private void releaseNumeric(int slot, boolean present) {
+        int index = slot >>> 5;
+        int shift = (slot & 31) << 1;
+        long mask = NUMERIC_STATE_MASK << shift;
+        long state = (present ? NUMERIC_PRESENT : 0L) << shift;
+        long current;
+        do {
+            current = numericStates.get(index);
+        } while (!numericStates.compareAndSet(index, current, (current & ~mask) | state));
+    }
+
+    private AtomicLongArray numericPage(int slot) {
+        int index = slot >>> PAGE_SHIFT;
+        AtomicLongArray page = numericPages.get(index);
+        if (page == null) {
+            numericPages.compareAndSet(index, null, new AtomicLongArray(PAGE_SIZE));
+            page = numericPages.get(index);
+        }
+        return page;
+    }
+
+    // ---- references ----
+
+    Object getReference(int slot) {
+        AtomicReferenceArray<Object> page = referencePages.get(slot >>> PAGE_SHIFT);
+        return page == null ? null : page.get(slot & PAGE_MASK);
+    }
+
+    void setReference(int slot, Object value) {
+        referencePage(slot).set(slot & PAGE_MASK, value);
+    }
+
+    private boolean casReference(int slot, Object expected, Object value) {
+        AtomicReferenceArray<Object> page = referencePage(slot);
+        int index = slot & PAGE_MASK;
+        while (true) {
+            Object current = page.get(index);
+            if (expected == null ? current != null : !expected.equals(current)) {
+                return false;
+            }
+            if (page.compareAndSet(index, current, value)) {
+                return true;
+            }
+        }
+    }
+
+    private AtomicReferenceArray<Object> referencePage(int slot) {
+        int index = slot >>> PAGE_SHIFT;
+        AtomicReferenceArray<Object> page = referencePages.get(index);
+        if (page == null) {
+            referencePages.compareAndSet(index, null, new AtomicReferenceArray<>(PAGE_SIZE));
+            page = referencePages.get(index);
+        }
+        return page;
+    }
+
+    // ---- boxed access, used by the string-keyed compatibility path ----
+
+    /**
+     * Checks whether a value is stored for a key.
+     */
+    boolean contains(TypedKey<?> key) {
+        switch (key.getKind()) {
+            case BOOLEAN:
+                return booleanState(key.getSlot()) != BOOLEAN_ABSENT;
+            case INT:
+            case LONG:
+                return hasNumeric(key.getSlot());
+            case REFERENCE:
+            default:
+                return getReference(key.getSlot()) != null;
+        }
+    }
+
+    /**
+     * Gets the value stored for a key, boxed.
+     *
+     * @return the value, or null if absent
+     */
+    Object getBoxed(TypedKey<?> key) {
+        int slot = key.getSlot();
+        switch (key.getKind()) {
+            case BOOLEAN:
+                int state = booleanState(slot);
+                return state == BOOLEAN_ABSENT ? null : Boolean.valueOf(state == BOOLEAN_TRUE);
+            case INT:
+                return hasNumeric(slot) ? Integer.valueOf((int) getLong(slot)) : null;
+            case LONG:
+                return hasNumeric(slot) ? Long.valueOf(getLong(slot)) : null;
+            case REFERENCE:
+            default:
+                return getReference(slot);
+        }
+    }
+
+    /**
+     * Stores a boxed value for a key.
+     *
+     * @param value the value, must not be null
+     * @throws IllegalArgumentException if the value does not match the key type
+     */
+    void setBoxed(TypedKey<?> key, Object value) {
+        Object checked = key.checkValue(value);
+        int slot = key.getSlot();
+        switch (key.getKind()) {
+            case BOOLEAN:
+                setBoolean(slot, (Boolean) checked);
+                break;
+            case INT:
+            case LONG:
+                setLong(slot, ((Number) checked).longValue());
+                break;
+            case REFERENCE:
+            default:
+                setReference(slot, checked);
+                break;
+        }
+    }
+
+    /**
+     * Atomically replaces the value of a key if it equals the expected one.
+     *
+     * @param expected the expected boxed value, or null to require that the key is absent
+     * @param value the new value, must not be null
+     * @return true if the value was replaced
+     * @throws IllegalArgumentException if the value does not match the key type
+     */
+    boolean compareAndSetBoxed(TypedKey<?> key, Object expected, Object value) {
+        Object checked = key.checkValue(value);
+        int slot = key.getSlot();
+        switch (key.getKind()) {
+            case BOOLEAN:
+                if (expected != null && !(expected instanceof Boolean)) {
+                    return false;
+                }
+                int expectedState = expected == null ? BOOLEAN_ABSENT
+                        : (Boolean) expected ? BOOLEAN_TRUE : BOOLEAN_FALSE;
+                return casBooleanState(slot, expectedState, (Boolean) checked ? BOOLEAN_TRUE : BOOLEAN_FALSE);
+            case INT:
+            case LONG:
+                long update = ((Number) checked).longValue();
+                if (expected == null) {
+                    return claimNumeric(slot, update);
+                }
+                return key.getType().isInstance(expected) && casLong(slot, ((Number) expected).longValue(), update);
+            case REFERENCE:
+            default:
+                return casReference(slot, expected, checked);
+        }
+    }
+
+    /**
+     * Removes the value stored for a key.
+     */
+    void remove(TypedKey<?> key) {
+        int slot = key.getSlot();
+        switch (key.getKind()) {
+            case BOOLEAN:
+                setBooleanState(slot, BOOLEAN_ABSENT);
+                break;
+            case INT:
+            case LONG:
+                clearNumeric(slot);
+                break;
+            case REFERENCE:
+            default:
+                AtomicReferenceArray<Object> page = referencePages.get(slot >>> PAGE_SHIFT);
+                if (page != null) {
+                    page.set(slot & PAGE_MASK, null);
+                }
+                break;
+        }
+    }
+
+    /**
+     * Visits every stored value, boxed, with its key. Only the state words and the pages in
+     * use are scanned, so the cost does not grow with the number of registered keys.
+     *
+     * @param action receives each key and its value
+     */
+    void forEach(BiConsumer<TypedKey<?>, Object> action) {
+        for (int i = 0; i < booleans.length(); i++) {
+            long word = booleans.get(i);
+            while (word != 0) {
+                int offset = Long.numberOfTrailingZeros(word) >>> 1;
+                int state = (int) (word >>> (offset << 1)) & 3;
+                word &= ~(3L << (offset << 1));
+                TypedKey<?> key = TypedKey.keyAt(Kind.BOOLEAN, (i << 5) + offset);
+                visit(key, Boolean.valueOf(state == BOOLEAN_TRUE), action);
+            }
+        }
+        for (int i = 0; i < numericStates.length(); i++) {
+            long word = numericStates.get(i) & NUMERIC_PRESENT_BITS;
+            while (word != 0) {
+                int offset = Long.numberOfTrailingZeros(word) >>> 1;
+                word &= ~(NUMERIC_PRESENT << (offset << 1));
+                TypedKey<?> key = TypedKey.keyAt(Kind.LONG, (i << 5) + offset);
+                // Read through the key: an int slot is boxed as Integer, a long slot as Long
+                visit(key, key == null ? null : getBoxed(key), action);
+            }
+        }
+        for (int i = 0; i < MAX_PAGES; i++) {
+            AtomicReferenceArray<Object> page = referencePages.get(i);
+            if (page == null) {
+                continue;
+            }
+            for (int j = 0; j < PAGE_SIZE; j++) {
+                Object value = page.get(j);
+                if (value != null) {
+                    visit(TypedKey.keyAt(Kind.REFERENCE, (i << PAGE_SHIFT) + j), value, action);
+                }
+            }
+        }
+    }
+
+    private static void visit(TypedKey<?> key, Object value, BiConsumer<TypedKey<?>, Object> action) {
+        if (key != null && value != null) {
+            action.accept(key, value);
+        }
+    }
+
+    /**
+     * Removes all stored values.
+     */
+    void clear() {
+        for (int i = 0; i < booleans.length(); i++) {
+            booleans.set(i, 0L);
+        }
+        for (int i = 0; i < numericStates.length(); i++) {
+            numericStates.set(i, 0L);
+        }
+        for (int i = 0; i < MAX_PAGES; i++) {
+            numericPages.set(i, null);
+            referencePages.set(i, null);
+        }
+    }
+}
@@ -0,0 +1,782 @@
+package org.zero2me.breezeflow.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import org.zero2me.breezeflow.common.ValidationUtils;
+
+/**
+ * Binary snapshot format for the state of a run: its {@link Facts} and {@link SessionContext}.
+ *
+ * A snapshot starts with a magic number and a format version, so snapshots written by an
+ * older version of this class stay readable. Values are tagged by type:
+ * <ul>
+ *   <li>primitives and their boxes are written without boxing overhead, integers as
+ *       variable-length numbers;</li>
+ *   <li>strings up to {@value #MAX_SHARED_LENGTH} characters, which includes all names, are
+ *       written once and referenced by index afterwards;</li>
+ *   <li>byte, int, long and double arrays, lists, sets and maps are written element by element;</li>
+ *   <li>user types are written by the {@link ValueCodec} registered for them;</li>
+ *   <li>other {@link Serializable} values fall back to Java serialization.</li>
+ * </ul>
+ * Snapshots may come from another process, so values written with Java serialization are
+ * only read back if a {@link #setSerialFilter(ObjectInputFilter) serial filter} allows their
+ * classes; without a filter reading them fails.
+ * The body can be compressed with Deflate. Lists, sets and maps are read back as
+ * {@link ArrayList}, {@link LinkedHashSet} and {@link LinkedHashMap}.
+ *
+ * Snapshots are written and read as streams, for example to hand state between processes.
+ * Reading builds the whole state in memory and reads ahead of the snapshot, so a snapshot
+ * must be the last data in its stream. Lengths in the snapshot are not trusted: arrays and
+ * collections grow with the data actually read, so a corrupt length fails with an
+ * {@link EOFException} instead of a huge allocation. A codec can be shared by threads once
+ * its user codecs are registered.
+ */
+public final class StateCodec {
+    /**
+     * Version of the format written by this class.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    /**
+     * Maximum length of strings that are written once and referenced afterwards.
+     */
+    public static final int MAX_SHARED_LENGTH = 256;
+
+    private static final int MAGIC = 0x42465353;
+    private static final int FLAG_COMPRESSED = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_SHARED_STRINGS = 1 << 16;
+
+    private static final byte NULL = 0;
+    private static final byte TRUE = 1;
+    private static final byte FALSE = 2;
+    private static final byte INT = 3;
+    private static final byte LONG = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte FLOAT = 6;
+    private static final byte SHORT = 7;
+    private static final byte BYTE = 8;
+    private static final byte CHAR = 9;
+    private static final byte STRING = 10;
+    private static final byte BYTES = 11;
+    private static final byte INTS = 12;
+    private static final byte LONGS = 13;
+    private static final byte DOUBLES = 14;
+    private static final byte LIST = 15;
+    private static final byte SET = 16;
+    private static final byte MAP = 17;
+    private static final byte CUSTOM = 18;
+    private static final byte SERIALIZED = 19;
+
+    /**
+     * Whether the body of written snapshots is compressed with Deflate.
+     * Reading detects compressed snapshots regardless of this setting.
+     */
+    @Getter
+    @Setter
+    private boolean compressed;
+
+    /**
+     * Filter deciding which classes may be read back from values written with Java
+     * serialization, for example an allow-list created with
+     * {@link ObjectInputFilter.Config#createFilter(String)}. Null, the default, rejects
+     * all such values.
+     */
+    @Getter
+    @Setter
+    private volatile ObjectInputFilter serialFilter;
+
+    private final Map<String, Registration<?>> codecsById = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Registration<?>> codecsByType = new ConcurrentHashMap<>();
+    private final List<Registration<?>> registrations = new CopyOnWriteArrayList<>();
+
+    /**
+     * Registers the codec for a user type. Values of the type and of its subtypes
+     * are written by the codec, the exact type taking precedence.
+     *
+     * @param typeId stable id stored with every value of the type
+     * @param type the type of the values
+     * @param codec the codec
+     * @param <T> the type of the values
+     * @return this codec
+     * @throws IllegalArgumentException if the type id or the type is already registered
+     */
+    public <T> StateCodec register(String typeId, Class<T> type, ValueCodec<T> codec) {
+        ValidationUtils.requireNonEmpty(typeId, "typeId");
+        ValidationUtils.requireNonNull(type, "type");
+        ValidationUtils.requireNonNull(codec, "codec");
+        Registration<T> registration = new Registration<>(typeId, type, codec);
+        if (codecsById.putIfAbsent(typeId, registration) != null) {
+            throw new IllegalArgumentException("Type id " + typeId + " is already registered");
+        }
+        if (codecsByType.putIfAbsent(type, registration) != null) {
+            codecsById.remove(typeId);
+            throw new IllegalArgumentException("Type " + type.getName() + " is already registered");
+        }
+        registrations.add(registration);
+        return this;
+    }
+
+    /**
+     * Writes a snapshot of the facts and session variables.
+     *
+     * @param facts the facts, may be null
+     * @param context the session context, may be null
+     * @param out the stream to write to, left open
+     * @throws IOException if writing fails or a value cannot be encoded
+     */
+    public void write(Facts facts, SessionContext context, OutputStream out) throws IOException {
+        writeMaps(facts != null ? facts.asMap() : null, context != null ? context.snapshot() : null, out, false);
+    }
+
+    /**
+     * Writes a snapshot of the facts and session variables into a byte array.
+     *
+     * @param facts the facts, may be null
+     * @param context the session context, may be null
+     * @return the snapshot
+     * @throws IOException if a value cannot be encoded
+     */
+    public byte[] toBytes(Facts facts, SessionContext context) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        write(facts, context, bytes);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads a snapshot, adding its facts and session variables to the given ones.
+     *
+     * @param in the stream to read from, left open; bytes after the snapshot may be consumed
+     * @param facts the facts to restore into, null to skip the facts
+     * @param context the session context to restore into, null to skip the variables
+     * @throws IOException if reading fails or the snapshot is invalid
+     */
+    public void read(InputStream in, Facts facts, SessionContext context) throws IOException {
+        List<Map<String, Object>> maps = readMaps(in);
+        if (facts != null) {
+            maps.get(0).forEach((name, value) -> {
+                if (value != null) {
+                    facts.put(name, value);
+                }
+            });
+        }
+        if (context != null) {
+            maps.get(1).forEach(context::setVariable);
+        }
+    }
+
+    /**
+     * Reads a snapshot from a byte array, adding its facts and session variables to the given ones.
+     *
+     * @param snapshot the snapshot
+     * @param facts the facts to restore into, null to skip the facts
+     * @param context the session context to restore into, null to skip the variables
+     * @throws IOException if the snapshot is invalid
+     */
+    public void fromBytes(byte[] snapshot, Facts facts, SessionContext context) throws IOException {
+        read(new ByteArrayInputStream(snapshot), facts, context);
+    }
+
+    /**
+     * Writes a snapshot of two variable maps, the facts followed by the session variables.
+     *
+     * @param readable whether to fail with a {@link NotSerializableException} on values this
+     *                 codec could not read back, those needing Java serialization while no
+     *                 serial filter is set
+     */
+    void writeMaps(Map<String, Object> facts, Map<String, Object> context, OutputStream out,
+                   boolean readable) throws IOException {
+        ValidationUtils.requireNonNull(out, "out");
+        byte[] header = new byte[6];
+        putInt(header, 0, MAGIC);
+        header[4] = (byte) FORMAT_VERSION;
+        header[5] = (byte) (compressed ? FLAG_COMPRESSED : 0);
+        out.write(header);
+
+        Deflater deflater = compressed ? new Deflater(Deflater.BEST_SPEED) : null;
+        try {
+            OutputStream body = deflater != null ? new DeflaterOutputStream(out, deflater, BUFFER_SIZE) : out;
+            Encoder encoder = new Encoder(body, readable && serialFilter == null);
+            encoder.section(facts);
+            encoder.section(context);
+            encoder.drain();
+            if (body instanceof DeflaterOutputStream) {
+                ((DeflaterOutputStream) body).finish();
+            }
+            out.flush();
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+    }
+
+    /**
+     * Reads a snapshot into two variable maps, the facts and the session variables.
+     */
+    List<Map<String, Object>> readMaps(InputStream in) throws IOException {
+        ValidationUtils.requireNonNull(in, "in");
+        byte[] header = new byte[6];
+        new DataInputStream(in).readFully(header);
+        if (getInt(header, 0) != MAGIC) {
+            throw new StreamCorruptedException("Not a state snapshot");
+        }
+        int version = header[4];
+        if (version < 1 || version > FORMAT_VERSION) {
+            throw new StreamCorruptedException(String.format(
+                    "Unsupported snapshot version %d, this reader supports up to %d", version, FORMAT_VERSION));
+        }
+
+        Inflater inflater = (header[5] & FLAG_COMPRESSED) != 0 ? new Inflater() : null;
+        try {
+            Decoder decoder = new Decoder(inflater != null ? new InflaterInputStream(in, inflater, BUFFER_SIZE) : in);
+            Map<String, Object> facts = decoder.section();
+            return List.of(facts, decoder.section());
+        } finally {
+            if (inflater != null) {
+                inflater.end();
+            }
+        }
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private static int getInt(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xff) << 24) | ((bytes[offset + 1] & 0xff) << 16)
+                | ((bytes[offset + 2] & 0xff) << 8) | (bytes[offset + 3] & 0xff);
+    }
+
+    /**
+     * Finds the codec for a user type, preferring an exact registration.
+     */
+    private Registration<?> codecFor(Class<?> type) {
+        if (registrations.isEmpty()) {
+            return null;
+        }
+        Registration<?> registration = codecsByType.get(type);
+        if (registration != null) {
+            return registration;
+        }
+        for (Registration<?> candidate : registrations) {
+            if (candidate.type.isAssignableFrom(type)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A user codec and the id it is registered under.
+     */
+    private static final class Registration<T> {
+        private final String typeId;
+        private final Class<T> type;
+        private final ValueCodec<T> codec;
+
+        Registration(String typeId, Class<T> type, ValueCodec<T> codec) {
+            this.typeId = typeId;
+            this.type = type;
+            this.codec = codec;
+        }
+
+        void write(Object value, DataOutputStream out) throws IOException {
+            codec.write(type.cast(value), out);
+        }
+    }
+
+    /**
+     * Buffered writer of one snapshot body.
+     */
+    private final class Encoder extends OutputStream {
+        private final OutputStream out;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int position;
+        private final Map<String, Integer> strings = new HashMap<>();
+        private final DataOutputStream data = new DataOutputStream(this);
+        private final boolean serializationDisabled;
+
+        Encoder(OutputStream out, boolean serializationDisabled) {
+            this.out = out;
+            this.serializationDisabled = serializationDisabled;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (position == buffer.length) {
+                drain();
+            }
+            buffer[position++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (length > buffer.length - position) {
+                drain();
+                if (length > buffer.length) {
+                    out.write(bytes, offset, length);
+                    return;
+                }
+            }
+            System.arraycopy(bytes, offset, buffer, position, length);
+            position += length;
+        }
+
+        void drain() throws IOException {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+
+        void section(Map<String, Object> variables) throws IOException {
+            if (variables == null) {
+                varint(0);
+                return;
+            }
+            varint(variables.size());
+            for (Map.Entry<String, Object> entry : variables.entrySet()) {
+                string(entry.getKey());
+                value(entry.getValue());
+            }
+        }
+
+        void varint(int value) throws IOException {
+            varlong(value & 0xffffffffL);
+        }
+
+        void varlong(long value) throws IOException {
+            while ((value & ~0x7fL) != 0) {
+                write((int) ((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void fixed64(long value) throws IOException {
+            if (buffer.length - position < 8) {
+                drain();
+            }
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (value >>> shift);
+            }
+        }
+
+        void string(String value) throws IOException {
+            boolean shared = value.length() <= MAX_SHARED_LENGTH;
+            if (shared) {
+                Integer index = strings.get(value);
+                if (index != null) {
+                    varint(index + 1);
+                    return;
+                }
+            }
+            varint(0);
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            varint(bytes.length);
+            write(bytes, 0, bytes.length);
+            if (shared && strings.size() < MAX_SHARED_STRINGS) {
+                strings.put(value, strings.size());
+            }
+        }
+
+        void value(Object value) throws IOException {
+            if (value == null) {
+                write(NULL);
+            } else if (value instanceof String) {
+                write(STRING);
+                string((String) value);
+            } else if (value instanceof Integer) {
+                write(INT);
+                int i = (Integer) value;
+                varint((i << 1) ^ (i >> 31));
+            } else if (value instanceof Long) {
+                write(LONG);
+                long l = (Long) value;
+                varlong((l << 1) ^ (l >> 63));
+            } else if (value instanceof Boolean) {
+                write((Boolean) value ? TRUE : FALSE);
+            } else if (value instanceof Double) {
+                write(DOUBLE);
+                fixed64(Double.doubleToLongBits((Double) value));
+            } else {
+                Registration<?> registration = codecFor(value.getClass());
+                if (registration != null) {
+                    write(CUSTOM);
+                    string(registration.typeId);
+                    registration.write(value, data);
+                } else {
+                    other(value);
+                }
+            }
+        }
+
+        private void other(Object value) throws IOException {
+            if (value instanceof Float) {
+                write(FLOAT);
+                data.writeFloat((Float) value);
+            } else if (value instanceof Short) {
+                write(SHORT);
+                data.writeShort((Short) value);
+            } else if (value instanceof Byte) {
+                write(BYTE);
+                write((Byte) value);
+            } else if (value instanceof Character) {
+                write(CHAR);
+                data.writeChar((Character) value);
+            } else if (value instanceof byte[]) {
+                byte[] bytes = (byte[]) value;
+                write(BYTES);
+                varint(bytes.length);
+                write(bytes, 0, bytes.length);
+            } else if (value instanceof int[]) {
+                int[] ints = (int[]) value;
+                write(INTS);
+                varint(ints.length);
+                for (int i : ints) {
+                    varint((i << 1) ^ (i >> 31));
+                }
+            } else if (value instanceof long[]) {
+                long[] longs = (long[]) value;
+                write(LONGS);
+                varint(longs.length);
+                for (long l : longs) {
+                    varlong((l << 1) ^ (l >> 63));
+                }
+            } else if (value instanceof double[]) {
+                double[] doubles = (double[]) value;
+                write(DOUBLES);
+                varint(doubles.length);
+                for (double d : doubles) {
+                    fixed64(Double.doubleToLongBits(d));
+                }
+            } else if (value instanceof Map) {
+                Map<?, ?> map = (Map<?, ?>) value;
+                write(MAP);
+                varint(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    value(entry.getKey());
+                    value(entry.getValue());
+                }
+            } else if (value instanceof Collection) {
+                Collection<?> collection = (Collection<?>) value;
+                write(value instanceof Set ? SET : LIST);
+                varint(collection.size());
+                for (Object element : collection) {
+                    value(element);
+                }
+            } else if (value instanceof Serializable) {
+                if (serializationDisabled) {
+                    throw new NotSerializableException(value.getClass().getName()
+                            + " has no registered codec and the codec has no serial filter to read it back");
+                }
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (ObjectOutputStream objects = new ObjectOutputStream(bytes)) {
+                    objects.writeObject(value);
+                }
+                write(SERIALIZED);
+                varint(bytes.size());
+                bytes.writeTo(this);
+            } else {
+                throw new NotSerializableException(value.getClass().getName() + " has no registered codec");
+            }
+        }
+    }
+
+    /**
+     * Buffered reader of one snapshot body.
+     */
+    private final class Decoder extends InputStream {
+        private final InputStream in;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int position;
+        private int limit;
+        private final List<String> strings = new ArrayList<>();
+        private final DataInputStream data = new DataInputStream(this);
+
+        Decoder(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (position == limit && !fill()) {
+                return -1;
+            }
+            return buffer[position++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (position == limit) {
+                if (length >= buffer.length) {
+                    return in.read(bytes, offset, length);
+                }
+                if (!fill()) {
+                    return -1;
+                }
+            }
+            int n = Math.min(length, limit - position);
+            System.arraycopy(buffer, position, bytes, offset, n);
+            position += n;
+            return n;
+        }
+
+        private boolean fill() throws IOException {
+            int n = in.read(buffer, 0, buffer.length);
+            position = 0;
+            limit = Math.max(n, 0);
+            return n > 0;
+        }
+
+        private int readByte() throws IOException {
+            int b = read();
+            if (b < 0) {
+                throw new EOFException("Truncated state snapshot");
+            }
+            return b;
+        }
+
+        Map<String, Object> section() throws IOException {
+            int size = varint();
+            int capacity = Math.min(size, BUFFER_SIZE);
+            Map<String, Object> variables = new HashMap<>(Math.max(16, (int) (capacity / 0.75f) + 1));
+            for (int i = 0; i < size; i++) {
+                String name = string();
+                variables.put(name, value());
+            }
+            return variables;
+        }
+
+        int varint() throws IOException {
+            long value = varlong();
+            if ((value >>> 32) != 0) {
+                throw new StreamCorruptedException("Invalid length in state snapshot");
+            }
+            return (int) value;
+        }
+
+        long varlong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new StreamCorruptedException("Invalid number in state snapshot");
+        }
+
+        long fixed64() throws IOException {
+            if (limit - position >= 8) {
+                long value = 0;
+                for (int i = 0; i < 8; i++) {
+                    value = (value << 8) | (buffer[position++] & 0xff);
+                }
+                return value;
+            }
+            return data.readLong();
+        }
+
+        private int length() throws IOException {
+            int length = varint();
+            if (length < 0) {
+                throw new StreamCorruptedException("Invalid length in state snapshot");
+            }
+            return length;
+        }
+
+        /**
+         * Reads a byte array of the given length, growing it with the bytes actually read.
+         */
+        private byte[] bytes(int length) throws IOException {
+            byte[] bytes = new byte[Math.min(length, BUFFER_SIZE)];
+            data.readFully(bytes);
+            while (bytes.length < length) {
+                int read = bytes.length;
+                bytes = Arrays.copyOf(bytes, grow(read, length));
+                data.readFully(bytes, read, bytes.length - read);
+            }
+            return bytes;
+        }
+
+        /**
+         * Gets the next capacity of an array being filled up to the given length.
+         */
+        private int grow(int capacity, int length) {
+            return (int) Math.min(length, 2L * capacity);
+        }
+
+        String string() throws IOException {
+            int index = varint();
+            if (index > 0) {
+                if (index > strings.size()) {
+                    throw new StreamCorruptedException("Invalid string reference in state snapshot");
+                }
+                return strings.get(index - 1);
+            }
+            String value = new String(bytes(length()), StandardCharsets.UTF_8);
+            if (value.length() <= MAX_SHARED_LENGTH && strings.size() < MAX_SHARED_STRINGS) {
+                strings.add(value);
+            }
+            return value;
+        }
+
+        Object value() throws IOException {
+            int tag = readByte();
+            switch (tag) {
+                case NULL:
+                    return null;
+                case TRUE:
+                    return Boolean.TRUE;
+                case FALSE:
+                    return Boolean.FALSE;
+                case INT: {
+                    int i = varint();
+                    return (i >>> 1) ^ -(i & 1);
+                }
+                case LONG: {
+                    long l = varlong();
+                    return (l >>> 1) ^ -(l & 1);
+                }
+                case DOUBLE:
+                    return Double.longBitsToDouble(fixed64());
+                case FLOAT:
+                    return data.readFloat();
+                case SHORT:
+                    return data.readShort();
+                case BYTE:
+                    return (byte) readByte();
+                case CHAR:
+                    return data.readChar();
+                case STRING:
+                    return string();
+                case BYTES:
+                    return bytes(length());
+                case INTS: {
+                    int length = length();
+                    int[] ints = new int[Math.min(length, BUFFER_SIZE)];
+                    for (int i = 0; i < length; i++) {
+                        if (i == ints.length) {
+                            ints = Arrays.copyOf(ints, grow(i, length));
+                        }
+                        int v = varint();
+                        ints[i] = (v >>> 1) ^ -(v & 1);
+                    }
+                    return ints;
+                }
+                case LONGS: {
+                    int length = length();
+                    long[] longs = new long[Math.min(length, BUFFER_SIZE)];
+                    for (int i = 0; i < length; i++) {
+                        if (i == longs.length) {
+                            longs = Arrays.copyOf(longs, grow(i, length));
+                        }
+                        long v = varlong();
+                        longs[i] = (v >>> 1) ^ -(v & 1);
+                    }
+                    return longs;
+                }
+                case DOUBLES: {
+                    int length = length();
+                    double[] doubles = new double[Math.min(length, BUFFER_SIZE)];
+                    for (int i = 0; i < length; i++) {
+                        if (i == doubles.length) {
+                            doubles = Arrays.copyOf(doubles, grow(i, length));
+                        }
+                        doubles[i] = Double.longBitsToDouble(fixed64());
+                    }
+                    return doubles;
+                }
+                case LIST: {
+                    int size = length();
+                    List<Object> list = new ArrayList<>(Math.min(size, BUFFER_SIZE));
+                    for (int i = 0; i < size; i++) {
+                        list.add(value());
+                    }
+                    return list;
+                }
+                case SET: {
+                    int size = length();
+                    Set<Object> set = new LinkedHashSet<>();
+                    for (int i = 0; i < size; i++) {
+                        set.add(value());
+                    }
+                    return set;
+                }
+                case MAP: {
+                    int size = length();
+                    Map<Object, Object> map = new LinkedHashMap<>();
+                    for (int i = 0; i < size; i++) {
+                        Object key = value();
+                        map.put(key, value());
+                    }
+                    return map;
+                }
+                case CUSTOM: {
+                    String typeId = string();
+                    Registration<?> registration = codecsById.get(typeId);
+                    if (registration == null) {
+                        throw new StreamCorruptedException("No codec registered for type id " + typeId);
+                    }
+                    return registration.codec.read(data);
+                }
+                case SERIALIZED: {
+                    byte[] bytes = bytes(length());
+                    ObjectInputFilter filter = serialFilter;
+                    if (filter == null) {
+                        throw new InvalidClassException("Java-serialized value in state snapshot, "
+                                + "set a serial filter on the codec to read it");
+                    }
+                    try (ObjectInputStream objects = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                        objects.setObjectInputFilter(filter);
+                        return objects.readObject();
+                    } catch (ClassNotFoundException e) {
+                        throw new StreamCorruptedException("Unknown class in state snapshot: " + e.getMessage());
+                    }
+                }
+                default:
+                    throw new StreamCorruptedException("Invalid value tag " + tag + " in state snapshot");
+            }
+        }
+    }
+}
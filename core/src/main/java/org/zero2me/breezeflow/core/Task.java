@@ -3,7 +3,21 @@ package org.zero2me.breezeflow.core;
 import lombok.Getter;
 import lombok.Setter;
 
-import java.util.UUID;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
 import org.slf4j.Logger;
 
@@ -18,14 +32,27 @@ import org.zero2me.breezeflow.common.LogFactory;
  * 
  * All concrete task implementations must extend this class and implement
  * the abstract methods to provide specific behavior.
+ *
+ * Tasks of a {@link WorkflowDefinition} are copied for every run (see
+ * {@link #copyForRun}). The copy is shallow; tasks keeping mutable fields should
+ * override {@link #copyFields()} to copy them.
  */
-public abstract class Task {
+public abstract class Task implements Cloneable {
     /**
      * Logger instance for this class.
      */
     protected Logger logger = LogFactory.getLogger(Task.class);
     
-    private final String SESSION_TERMINATED = "SYS_SESSION_TERMINATED";
+
+    /**
+     * Subject of the events published by plain tasks.
+     */
+    private static final String SUBJECT = "Task";
+
+    /**
+     * Retry delay from which a retry waiting on a thread of a bounded shared pool is logged.
+     */
+    private static final long BLOCKING_RETRY_WARN_MILLIS = 100L;
 
     /**
      * Unique identifier for this task instance.
@@ -41,6 +68,88 @@ public abstract class Task {
     @Setter
     private String name = "TASK";
     
+    /**
+     * Names of the facts that must be true before this task is triggered
+     * by a {@link ReactiveContainer}.
+     */
+    private Set<String> requiredFacts = Collections.emptySet();
+
+    /**
+     * Groups of facts of which at least one must be true before this task is triggered
+     * by a {@link ReactiveContainer}.
+     */
+    private List<Set<String>> requiredAnyFacts = Collections.emptyList();
+
+    /**
+     * Maximum execution time of this task in milliseconds, 0 for no limit.
+     */
+    @Getter
+    private long timeoutMillis;
+
+    /**
+     * Policy for retrying failed executions of this task, null for no retries.
+     */
+    @Getter
+    @Setter
+    private RetryPolicy retryPolicy;
+
+    /**
+     * Circuit breaker guarding executions of this task, usually shared by all tasks
+     * of the class (see {@link CircuitBreaker#of}), null for none.
+     */
+    @Getter
+    @Setter
+    private CircuitBreaker circuitBreaker;
+
+    /**
+     * Names of the session variables or facts this task's outputs depend on.
+     */
+    private List<String> inputKeys = Collections.emptyList();
+
+    /**
+     * Names of the session variables or facts this task produces.
+     */
+    private List<String> outputKeys = Collections.emptyList();
+
+    /**
+     * Cache of this task's outputs, usually shared across runs, null for none.
+     * Only used if outputs are declared.
+     */
+    @Getter
+    @Setter
+    private OutputCache outputCache;
+
+    /**
+     * Cancellation scope this task runs in, assigned by the parent container.
+     */
+    private CancellationToken cancellationToken;
+
+    /**
+     * Start time of the current execution, used for event durations.
+     */
+    private long startNanos;
+
+    /**
+     * Metrics of this task's name, looked up on first use.
+     */
+    private TaskMetrics metrics;
+
+    /**
+     * Task name {@link #metrics} was looked up for; differs from the metrics name once
+     * task names are recorded under {@link WorkflowMetrics#OTHER_TASKS}.
+     */
+    private String metricsName;
+
+    /**
+     * Span of the container running this task in a traced run, null if the run is not traced.
+     */
+    private TraceSpan parentSpan;
+
+    /**
+     * Span of the current execution, null if the run is not traced.
+     */
+    private TraceSpan span;
+
     /**
      * Facts repository for storing and retrieving workflow facts.
      */
@@ -101,13 +210,201 @@ public abstract class Task {
         this.listener = listener;
     }
 
+    /**
+     * Declares facts that must be true before this task is triggered.
+     * A {@link ReactiveContainer} fires the task as soon as all required facts
+     * are true, instead of relying on the task's position in the workflow.
+     *
+     * @param factNames names of the required facts
+     */
+    public void requireFacts(String... factNames) {
+        Set<String> merged = new LinkedHashSet<>(requiredFacts);
+        merged.addAll(Arrays.asList(factNames));
+        requiredFacts = Collections.unmodifiableSet(merged);
+    }
+
+    /**
+     * Gets the names of the facts that must be true before this task is triggered.
+     *
+     * @return an unmodifiable set of fact names, empty if the task has no requirements
+     */
+    public Set<String> getRequiredFacts() {
+        return requiredFacts;
+    }
+
+    /**
+     * Declares facts of which at least one must be true before this task is triggered.
+     * A {@link ReactiveContainer} fires the task as soon as one fact of every such group,
+     * and all facts declared through {@link #requireFacts(String...)}, are true.
+     *
+     * @param factNames names of the alternative facts
+     */
+    public void requireAnyFact(String... factNames) {
+        List<Set<String>> merged = new ArrayList<>(requiredAnyFacts);
+        merged.add(Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(factNames))));
+        requiredAnyFacts = Collections.unmodifiableList(merged);
+    }
+
+    /**
+     * Gets the groups of facts of which at least one must be true before this task is triggered.
+     *
+     * @return an unmodifiable list of fact groups, empty if the task declared none
+     */
+    public List<Set<String>> getRequiredAnyFacts() {
+        return requiredAnyFacts;
+    }
+
+    /**
+     * Declares the session variables or facts that the outputs of this task depend on.
+     * With an {@link OutputCache} set, executions with the same input values share
+     * their outputs.
+     *
+     * @param names names of the input variables or facts
+     */
+    public void declareInputs(String... names) {
+        inputKeys = merge(inputKeys, names);
+    }
+
+    /**
+     * Declares the session variables or facts this task produces.
+     * With an {@link OutputCache} set, these are cached after a successful execution
+     * and written from the cache instead of calling {@link #invoke()} on a hit. Lists,
+     * sets, maps and arrays are copied into and out of the cache; output values of other
+     * mutable types are shared by the runs that restore them and must not be modified.
+     *
+     * @param names names of the output variables or facts
+     */
+    public void declareOutputs(String... names) {
+        outputKeys = merge(outputKeys, names);
+    }
+
+    private static List<String> merge(List<String> declared, String[] names) {
+        Set<String> merged = new LinkedHashSet<>(declared);
+        merged.addAll(Arrays.asList(names));
+        return Collections.unmodifiableList(new ArrayList<>(merged));
+    }
+
+    /**
+     * Gets the names of the declared input variables or facts.
+     *
+     * @return an unmodifiable list of names, empty if none are declared
+     */
+    public List<String> getInputKeys() {
+        return inputKeys;
+    }
+
+    /**
+     * Gets the names of the declared output variables or facts.
+     *
+     * @return an unmodifiable list of names, empty if none are declared
+     */
+    public List<String> getOutputKeys() {
+        return outputKeys;
+    }
+
+    /**
+     * Limits the execution time of this task, including all tasks it contains.
+     * Children inherit the remaining budget, so a nested timeout only applies if it is
+     * tighter. When the deadline passes the task is cancelled and interrupted, a
+     * {@link WorkflowEventType#TASK_TIMEOUT} event is fired and the task fails with a
+     * {@link TaskTimeoutException}.
+     *
+     * @param timeout the timeout, 0 for no limit
+     * @param unit the time unit of the timeout
+     * @throws IllegalArgumentException if the timeout is negative
+     */
+    public void setTimeout(long timeout, TimeUnit unit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout cannot be negative");
+        }
+        this.timeoutMillis = unit.toMillis(timeout);
+    }
+
+    /**
+     * Gets the cancellation token of the scope this task runs in.
+     * Long-running tasks should poll it, e.g. with {@link CancellationToken#throwIfCancelled()}.
+     *
+     * @return the cancellation token
+     */
+    public CancellationToken getCancellationToken() {
+        if (cancellationToken == null) {
+            cancellationToken = new CancellationToken();
+        }
+        return cancellationToken;
+    }
+
+    /**
+     * Assigns the cancellation scope this task runs in.
+     *
+     * @param cancellationToken the token of the scope
+     */
+    void setCancellationToken(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+    }
+
+    /**
+     * Assigns the span this task is traced under.
+     *
+     * @param parentSpan the parent span, null if the run is not traced
+     */
+    void setParentSpan(TraceSpan parentSpan) {
+        this.parentSpan = parentSpan;
+    }
+
+    /**
+     * Prepares a child of this container to run: assigns its cancellation scope and
+     * makes the current execution of this container the parent of its span.
+     *
+     * @param child the child task
+     * @param scope the cancellation scope of the child
+     */
+    final void adopt(Task child, CancellationToken scope) {
+        child.cancellationToken = scope;
+        child.parentSpan = span;
+    }
+
+    /**
+     * Creates a copy of this task bound to the state of a new workflow run.
+     * The copy keeps the id, name and required facts of this task, so no reflection
+     * or id generation is needed. Containers override this method to copy their children.
+     *
+     * @param facts the facts repository of the run
+     * @param sessionContext the session context of the run
+     * @param sessionConfig the session configuration of the run
+     * @param listener the workflow listener of the run
+     * @return the copied task
+     */
+    Task copyForRun(Facts facts, SessionContext sessionContext,
+                    SessionConfig sessionConfig, WorkflowListener listener) {
+        Task copy;
+        try {
+            copy = (Task) clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException("Failed to copy task: " + name, e);
+        }
+        copy.cancellationToken = null;
+        copy.copyFields();
+        copy.inject(facts, sessionContext, sessionConfig, listener);
+        return copy;
+    }
+
+    /**
+     * Replaces the mutable fields of a copy made for a new workflow run with copies of
+     * their own. Called on the copy, which shares every field with the task it was copied
+     * from, before it is bound to the run; copies of one definition run concurrently.
+     * Subclasses holding collections, arrays or other mutable objects override this method,
+     * calling {@code super.copyFields()} first. The default implementation does nothing.
+     */
+    protected void copyFields() {
+    }
+
     /**
      * Generates a unique ID for this task.
      *
      * @return a unique task ID
      */
     private String genId() {
-        return "task_" + UUID.randomUUID();
+        return IdGenerator.next("task");
     }
 
     /**
@@ -124,27 +421,639 @@ public abstract class Task {
      * @throws WorkflowExecutionException if task execution fails
      */
     public final void run() throws WorkflowExecutionException {
-        Object terminated = sessionContext.getVariable(SESSION_TERMINATED);
-        if (terminated != null && (boolean)terminated) {
-            logger.info("task {}:{} skipped due to session termination", id, name);
+        if (!start()) {
             return;
         }
+        List<Object> cacheKey = cacheKey();
+        if (cacheKey != null && restoreOutputs(cacheKey)) {
+            return;
+        }
+        CancellationToken deadline = openDeadline();
+        try {
+            invokeWithPolicies(deadline);
+        } catch (Exception e) {
+            if (deadline != null && deadline.isTimedOut()) {
+                throw timedOut();
+            }
+            if (getCancellationToken().isCancelled()) {
+                cancelled(e);
+                return;
+            }
+            throw fail(e);
+        } finally {
+            closeDeadline(deadline);
+        }
+        if (deadline != null && deadline.isTimedOut()) {
+            throw timedOut();
+        }
+        if (cacheKey != null) {
+            outputCache.store(cacheKey, inputKeys, outputKeys, facts, sessionContext);
+        }
+        complete();
+    }
+
+    /**
+     * Executes this task without blocking on asynchronous work.
+     * The lifecycle is the same as {@link #run()}, but the execution step is
+     * {@link #invokeAsync()} and post-execution handling happens when its future completes.
+     *
+     * @return a future completed when the task has finished, or exceptionally with a
+     * {@link WorkflowExecutionException} if the task fails
+     */
+    public final CompletableFuture<Void> runAsync() {
+        return runAsync(WorkflowExecutors.getExecutor(sessionConfig));
+    }
+
+    /**
+     * Executes this task without blocking on asynchronous work, starting retries on the
+     * given executor.
+     *
+     * @param retryExecutor the executor starting the attempts after the first one
+     * @return a future completed when the task has finished, see {@link #runAsync()}
+     */
+    final CompletableFuture<Void> runAsync(Executor retryExecutor) {
+        List<Object> cacheKey;
+        try {
+            if (!start()) {
+                return CompletableFuture.completedFuture(null);
+            }
+            cacheKey = cacheKey();
+            if (cacheKey != null && restoreOutputs(cacheKey)) {
+                return CompletableFuture.completedFuture(null);
+            }
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(fail(e));
+        }
+        CancellationToken deadline = openDeadline();
+        return invokeAsyncWithPolicies(deadline, 1, retryExecutor).handle((result, error) -> {
+            closeDeadline(deadline);
+            if (deadline != null && deadline.isTimedOut()) {
+                throw new CompletionException(timedOut());
+            }
+            if (error != null) {
+                if (getCancellationToken().isCancelled()) {
+                    cancelled(unwrap(error));
+                    return null;
+                }
+                throw new CompletionException(fail(unwrap(error)));
+            }
+            if (cacheKey != null) {
+                outputCache.store(cacheKey, inputKeys, outputKeys, facts, sessionContext);
+            }
+            complete();
+            return null;
+        });
+    }
+
+    /**
+     * Calls {@link #invokeAsync()}, reporting a synchronous failure through the future.
+     */
+    private CompletableFuture<Void> invokeAsyncSafely() {
+        try {
+            return invokeAsync();
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Calls {@link #invokeAsync()} within a scope. The returned future completes as
+     * soon as the scope is cancelled, even if the asynchronous work never completes.
+     */
+    private CompletableFuture<Void> invokeAsyncWithin(CancellationToken deadline) {
+        AtomicReference<CompletableFuture<Void>> execution = new AtomicReference<>();
+        deadline.runInterruptibly(() -> execution.set(invokeAsyncSafely()));
+        CompletableFuture<Void> bounded = new CompletableFuture<>();
+        // Cancellation callbacks may run on the timer thread, so the continuation is handed off
+        Runnable abandon = () -> bounded.completeExceptionally(new CancellationException(deadline.getReason()));
+        CancellationToken.Registration expiry = deadline.onCancel(() -> {
+            try {
+                WorkflowExecutors.getExecutor(sessionConfig).execute(abandon);
+            } catch (RejectedExecutionException e) {
+                abandon.run();
+            }
+        });
+        execution.get().whenComplete((result, error) -> {
+            expiry.close();
+            if (error != null) {
+                bounded.completeExceptionally(error);
+            } else {
+                bounded.complete(result);
+            }
+        });
+        return bounded;
+    }
+
+    /**
+     * Starts a task asynchronously from a container.
+     * Non-blocking tasks are started on the current thread; other tasks are
+     * handed to the executor so that the current thread is never held by them,
+     * and are interrupted if their scope is cancelled while they run.
+     *
+     * @param task the task to start
+     * @param executor the executor for blocking tasks
+     * @return a future completed when the task has finished
+     */
+    static CompletableFuture<Void> startAsync(Task task, Executor executor) {
+        if (task.isNonBlocking()) {
+            return task.runAsync();
+        }
+        try {
+            CancellationToken token = task.getCancellationToken();
+            long queuedAt = System.nanoTime();
+            return CompletableFuture.supplyAsync(() -> {
+                WorkflowMetrics.getInstance().queueWait(queuedAt);
+                CompletableFuture<Void> result = new CompletableFuture<>();
+                token.runInterruptibly(() -> task.runAsync().whenComplete((value, error) -> {
+                    if (error != null) {
+                        result.completeExceptionally(error);
+                    } else {
+                        result.complete(value);
+                    }
+                }));
+                return result;
+            }, executor).thenCompose(Function.identity());
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Unwraps the exception reported by a completion stage.
+     *
+     * @param error the reported exception
+     * @return the underlying cause
+     */
+    static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException)
+                && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    /**
+     * Checks whether {@link #invokeAsync()} returns without blocking the calling thread.
+     *
+     * @return true if the task can be started on any thread
+     */
+    boolean isNonBlocking() {
+        return false;
+    }
+
+    /**
+     * Checks whether the children of this task may run concurrently, i.e. whether the
+     * task only completes when the slowest of its children has completed.
+     *
+     * @return true for containers running their children concurrently
+     */
+    boolean isConcurrent() {
+        return false;
+    }
+
+    /**
+     * Checks termination and preconditions and announces the start of this task.
+     *
+     * @return true if the task should be executed
+     */
+    private boolean start() {
+        span = null;
+        if (sessionContext.isTerminated()) {
+            logger.info("task {}:{} skipped due to session termination", id, name);
+            recordSkipped("session terminated");
+            return false;
+        }
+        if (getCancellationToken().isCancelled()) {
+            logger.info("task {}:{} skipped due to cancellation: {}", id, name, cancellationToken.getReason());
+            recordSkipped(cancellationToken.getReason());
+            return false;
+        }
 
         if (preCheck()) {
-            logger.info("task {}:{} start", id, name);
-            listener.notify(WorkflowEventType.TASK_STARTED, String.format("Task %s:%s started", id, name));
+            if (logger.isDebugEnabled()) {
+                logger.debug("task {}:{} start", id, name);
+            }
+            startNanos = System.nanoTime();
+            span = startSpan();
+            publish(WorkflowEventType.TASK_STARTED, SUBJECT);
+            return true;
+        }
+        logger.error("task {}:{} pre check failed", id, name);
+        recordSkipped("pre check failed");
+        return false;
+    }
+
+    /**
+     * Builds the output cache key of this execution from the current input values.
+     *
+     * @return the key, or null if outputs of this task are not cached
+     */
+    private List<Object> cacheKey() {
+        return outputCache != null && !outputKeys.isEmpty() ? OutputCache.keyOf(this) : null;
+    }
+
+    /**
+     * Completes this execution with cached outputs, if the cache holds them.
+     *
+     * @param cacheKey the key of this execution
+     * @return true if the outputs were restored and the task has completed
+     */
+    private boolean restoreOutputs(List<Object> cacheKey) {
+        if (!outputCache.restore(cacheKey, facts, sessionContext)) {
+            return false;
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("task {}:{} outputs restored from cache {}", id, name, outputCache.getName());
+        }
+        complete();
+        return true;
+    }
+
+    /**
+     * Gets the metrics of this task's name for recording.
+     *
+     * @return the metrics, or null if recording is disabled
+     */
+    private TaskMetrics metrics() {
+        TaskMetrics current = metrics;
+        if (current == null || !name.equals(metricsName)) {
+            current = WorkflowMetrics.getInstance().task(name);
+            metrics = current;
+            metricsName = name;
+        } else if (!WorkflowMetrics.getInstance().isEnabled()) {
+            return null;
+        }
+        return current;
+    }
+
+    private void recordSkipped(String reason) {
+        TaskMetrics current = metrics();
+        if (current != null) {
+            current.skipped();
+        }
+        TraceSpan skipped = startSpan();
+        if (skipped != null) {
+            skipped.end(TraceSpan.Outcome.SKIPPED, reason);
+        }
+    }
+
+    /**
+     * Starts the span of an execution of this task if the run is traced.
+     *
+     * @return the span, or null if the run is not traced
+     */
+    private TraceSpan startSpan() {
+        TraceSpan parent = parentSpan;
+        return parent != null ? parent.trace().startSpan(parent, getClass().getSimpleName(), name, id, isConcurrent()) : null;
+    }
+
+    /**
+     * Ends the span of the current execution if the run is traced.
+     *
+     * @param outcome how the execution ended
+     * @param detail failure message or cancellation reason, may be null
+     */
+    private void endSpan(TraceSpan.Outcome outcome, String detail) {
+        if (span != null) {
+            span.end(outcome, detail);
+        }
+    }
+
+    /**
+     * Calls {@link #invoke()} until it succeeds or the retry policy gives up.
+     * The calling thread waits between attempts; the wait ends early if the scope
+     * is cancelled. Containers start children with a retry policy through
+     * {@link #runAsync(Executor)} instead, so this wait only happens on the thread of a
+     * sequential container.
+     *
+     * @param deadline the deadline scope, may be null
+     */
+    private void invokeWithPolicies(CancellationToken deadline) {
+        for (int attempt = 1; ; attempt++) {
             try {
-                invoke();
-            } catch (Exception e) {
-                logger.error("task {}:{} failed: {}", id, name, e.getMessage());
-                listener.notify(WorkflowEventType.TASK_FAILED, String.format("Task %s:%s failed: %s", id, name, e.getMessage()));
-                throw new WorkflowExecutionException(String.format("Task %s:%s failed: %s", id, name, e.getMessage()));
-            }
-            listener.notify(WorkflowEventType.TASK_COMPLETED, String.format("Task %s:%s completed", id, name));
-            logger.info("task {}:{} completed", id, name);   
+                long permit = acquireCircuit();
+                try {
+                    if (deadline != null) {
+                        deadline.runInterruptibly(this::invoke);
+                    } else {
+                        invoke();
+                    }
+                } catch (RuntimeException e) {
+                    recordOutcome(e, deadline, permit);
+                    throw e;
+                }
+                recordOutcome(null, deadline, permit);
+                return;
+            } catch (RuntimeException e) {
+                long delay = retryDelay(attempt, e);
+                if (delay < 0) {
+                    throw e;
+                }
+                awaitRetry(delay);
+            }
+        }
+    }
+
+    /**
+     * Calls {@link #invokeAsync()} until its future succeeds or the retry policy gives up.
+     * Retries are scheduled on the shared timer and started on the shared executor,
+     * so no thread waits between attempts.
+     *
+     * @param deadline the deadline scope, may be null
+     * @param attempt the number of the attempt, starting at 1
+     * @param retryExecutor the executor starting the next attempt
+     * @return a future completed when the last attempt has completed
+     */
+    private CompletableFuture<Void> invokeAsyncWithPolicies(CancellationToken deadline, int attempt,
+                                                            Executor retryExecutor) {
+        CompletableFuture<Void> execution;
+        try {
+            long permit = acquireCircuit();
+            if (deadline != null) {
+                execution = invokeAsyncWithin(deadline);
+            } else if (attempt > 1) {
+                // Retries run on a new thread, which must stop when the scope is cancelled
+                execution = invokeAsyncWithin(getCancellationToken());
+            } else {
+                execution = invokeAsyncSafely();
+            }
+            if (circuitBreaker != null) {
+                execution = execution.whenComplete((result, error) -> recordOutcome(error, deadline, permit));
+            }
+        } catch (RuntimeException e) {
+            execution = CompletableFuture.failedFuture(e);
+        }
+        if (retryPolicy == null) {
+            return execution;
+        }
+        return execution.handle((result, error) -> {
+            if (error == null) {
+                return CompletableFuture.<Void>completedFuture(null);
+            }
+            long delay = retryDelay(attempt, unwrap(error));
+            if (delay < 0) {
+                return CompletableFuture.<Void>failedFuture(error);
+            }
+            return retryLater(delay, retryExecutor)
+                    .thenCompose(ignored -> invokeAsyncWithPolicies(deadline, attempt + 1, retryExecutor));
+        }).thenCompose(Function.identity());
+    }
+
+    /**
+     * Fails fast if the circuit breaker of this task is open.
+     *
+     * @return the permit of the execution, 0 without a circuit breaker
+     * @throws CircuitOpenException if the circuit is open
+     */
+    private long acquireCircuit() {
+        if (circuitBreaker == null) {
+            return 0L;
+        }
+        long permit = circuitBreaker.tryAcquire();
+        if (permit < 0) {
+            throw new CircuitOpenException(String.format("Circuit %s is open, task %s:%s short-circuited",
+                    circuitBreaker.getName(), id, name));
+        }
+        return permit;
+    }
+
+    /**
+     * Records the outcome of an execution in the circuit breaker. Executions stopped by
+     * a cancellation say nothing about the dependency, unless this task's own deadline passed.
+     *
+     * @param error the failure, or null on success
+     * @param deadline the deadline scope, may be null
+     * @param permit the permit returned by {@link #acquireCircuit()} for the execution
+     */
+    private void recordOutcome(Throwable error, CancellationToken deadline, long permit) {
+        if (circuitBreaker == null) {
+            return;
+        }
+        if (error == null) {
+            circuitBreaker.onSuccess(permit);
+        } else if (getCancellationToken().isCancelled() && (deadline == null || !deadline.isTimedOut())) {
+            circuitBreaker.onCancelled(permit);
         } else {
-            logger.error("task {}:{} pre check failed", id, name);
+            circuitBreaker.onFailure(permit);
+        }
+    }
+
+    /**
+     * Decides whether a failed attempt is retried.
+     * Failures are not retried once the scope is cancelled, or if the next attempt
+     * could not start before the deadline.
+     *
+     * @param attempt the number of the failed attempt
+     * @param error the failure
+     * @return the delay before the next attempt in milliseconds, or -1 to give up
+     */
+    private long retryDelay(int attempt, Throwable error) {
+        if (retryPolicy == null || getCancellationToken().isCancelled()) {
+            return -1L;
+        }
+        long delay = retryPolicy.nextDelayMillis(attempt, error);
+        if (delay < 0 || delay >= getCancellationToken().getRemaining(TimeUnit.MILLISECONDS)) {
+            return -1L;
+        }
+        logger.warn("task {}:{} attempt {} failed, retrying in {} ms: {}", id, name, attempt, delay, error.getMessage());
+        TaskMetrics current = metrics();
+        if (current != null) {
+            current.retried();
+        }
+        if (listener.isInterested(WorkflowEventType.TASK_RETRY)) {
+            publish(WorkflowEventType.TASK_RETRY, SUBJECT, error, String.format("attempt %d failed, next attempt in %d ms: %s",
+                    attempt, delay, error.getMessage()));
+        }
+        return delay;
+    }
+
+    /**
+     * Waits for the next attempt on the calling thread, without occupying a
+     * work-stealing pool thread. A long wait on a thread of another shared pool is
+     * logged, since nothing replaces that thread while it waits.
+     *
+     * @param delay the delay in milliseconds
+     * @throws java.util.concurrent.CancellationException if the scope is cancelled while waiting
+     */
+    private void awaitRetry(long delay) {
+        if (delay >= BLOCKING_RETRY_WARN_MILLIS && isBoundedPoolThread()) {
+            logger.warn("task {}:{} holds pool thread {} for a {} ms retry delay; run the workflow with runAsync() "
+                    + "or a work-stealing executor to release it", id, name, Thread.currentThread().getName(), delay);
+        }
+        CompletableFuture<Void> wakeUp = new CompletableFuture<>();
+        WheelTimer.Timeout timer = WheelTimer.shared().schedule(() -> wakeUp.complete(null), delay, TimeUnit.MILLISECONDS);
+        CancellationToken.Registration cancellation = getCancellationToken().onCancel(() -> wakeUp.complete(null));
+        try {
+            WorkflowExecutors.managedGet(wakeUp);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Retry wait failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Retry wait interrupted", e);
+        } finally {
+            timer.cancel();
+            cancellation.close();
         }
+        getCancellationToken().throwIfCancelled();
+    }
+
+    /**
+     * Checks whether the calling thread belongs to a fixed-size shared executor, which
+     * neither compensates for blocked threads nor grows.
+     */
+    private boolean isBoundedPoolThread() {
+        ExecutorType type = sessionConfig.getExecutorType();
+        if (type != null && type != ExecutorType.FIXED) {
+            return false;
+        }
+        String prefix = sessionConfig.getThreadNamePrefix();
+        return prefix != null && Thread.currentThread().getName().startsWith(prefix + "-");
+    }
+
+    /**
+     * Schedules the next attempt.
+     *
+     * @param delay the delay in milliseconds
+     * @param executor the executor starting the next attempt
+     * @return a future completed on the executor when the next attempt may start,
+     * or earlier if the scope is cancelled
+     */
+    private CompletableFuture<Void> retryLater(long delay, Executor executor) {
+        CompletableFuture<Void> wakeUp = new CompletableFuture<>();
+        Runnable resume = () -> {
+            try {
+                executor.execute(() -> wakeUp.complete(null));
+            } catch (RejectedExecutionException e) {
+                wakeUp.complete(null);
+            }
+        };
+        WheelTimer.Timeout timer = WheelTimer.shared().schedule(resume, delay, TimeUnit.MILLISECONDS);
+        CancellationToken.Registration cancellation = getCancellationToken().onCancel(resume);
+        return wakeUp.whenComplete((result, error) -> {
+            timer.cancel();
+            cancellation.dispose();
+        }).thenRun(() -> getCancellationToken().throwIfCancelled());
+    }
+
+    /**
+     * Opens the deadline scope of this task if it has a timeout. The scope becomes the
+     * task's cancellation token while it runs, so contained tasks inherit the deadline.
+     *
+     * @return the deadline scope, or null if the task has no timeout
+     */
+    private CancellationToken openDeadline() {
+        if (timeoutMillis <= 0) {
+            return null;
+        }
+        CancellationToken deadline = getCancellationToken().withTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+        cancellationToken = deadline;
+        return deadline;
+    }
+
+    /**
+     * Closes the deadline scope of this task and restores the scope it was assigned.
+     *
+     * @param deadline the deadline scope, may be null
+     */
+    private void closeDeadline(CancellationToken deadline) {
+        if (deadline != null) {
+            deadline.close();
+            cancellationToken = deadline.getParent();
+        }
+    }
+
+    /**
+     * Reports that this task exceeded its timeout.
+     *
+     * @return the exception to throw
+     */
+    private TaskTimeoutException timedOut() {
+        String message = String.format("Task %s:%s timed out after %d ms", id, name, timeoutMillis);
+        logger.error("task {}:{} timed out after {} ms", id, name, timeoutMillis);
+        publish(WorkflowEventType.TASK_TIMEOUT, SUBJECT, null, "exceeded " + timeoutMillis + " ms");
+        TaskMetrics current = metrics();
+        if (current != null) {
+            current.timedOut();
+        }
+        endSpan(TraceSpan.Outcome.TIMED_OUT, "exceeded " + timeoutMillis + " ms");
+        return new TaskTimeoutException(message);
+    }
+
+    /**
+     * Reports a failure of this task.
+     *
+     * @param e the failure
+     * @return the exception to throw
+     */
+    private WorkflowExecutionException fail(Throwable e) {
+        logger.error("task {}:{} failed: {}", id, name, e.getMessage());
+        publish(WorkflowEventType.TASK_FAILED, SUBJECT, e, e.getMessage());
+        TaskMetrics current = metrics();
+        if (current != null) {
+            current.failed();
+        }
+        endSpan(TraceSpan.Outcome.FAILED, e.getMessage());
+        return new WorkflowExecutionException(String.format("Task %s:%s failed: %s", id, name, e.getMessage()));
+    }
+
+    /**
+     * Reports that this task stopped because its scope was cancelled.
+     * This is not a failure: the failure that caused the cancellation, if any,
+     * is reported by the task that failed.
+     *
+     * @param e the exception the task stopped with
+     */
+    private void cancelled(Throwable e) {
+        logger.info("task {}:{} cancelled ({}): {}", id, name, cancellationToken.getReason(), e.getMessage());
+        publish(WorkflowEventType.TASK_CANCELLED, SUBJECT, e, cancellationToken.getReason());
+        TaskMetrics current = metrics();
+        if (current != null) {
+            current.cancelled();
+        }
+        endSpan(TraceSpan.Outcome.CANCELLED, cancellationToken.getReason());
+    }
+
+    /**
+     * Announces the completion of this task.
+     */
+    private void complete() {
+        publish(WorkflowEventType.TASK_COMPLETED, SUBJECT);
+        TaskMetrics current = metrics();
+        if (current != null) {
+            current.completed(System.nanoTime() - startNanos);
+        }
+        endSpan(TraceSpan.Outcome.COMPLETED, null);
+        if (logger.isDebugEnabled()) {
+            logger.debug("task {}:{} completed", id, name);
+        }
+    }
+
+    /**
+     * Publishes an event about this task if the listener is interested in its type.
+     *
+     * @param type the event type
+     * @param subject what the event is about, e.g. "Task" or "Parallel container"
+     */
+    final void publish(WorkflowEventType type, String subject) {
+        publish(type, subject, null, null);
+    }
+
+    /**
+     * Publishes an event about this task if the listener is interested in its type.
+     * The event is created without formatting; its description is rendered on demand.
+     *
+     * @param type the event type
+     * @param subject what the event is about, e.g. "Task" or "Parallel container"
+     * @param cause the failure that caused the event, may be null
+     * @param detail additional detail, may be null
+     */
+    final void publish(WorkflowEventType type, String subject, Throwable cause, String detail) {
+        if (listener == null || !listener.isInterested(type)) {
+            return;
+        }
+        long duration = type == WorkflowEventType.TASK_STARTED ? -1L : System.nanoTime() - startNanos;
+        listener.notify(new WorkflowEvent(type, subject, sessionContext != null ? sessionContext.getWorkflowId() : null,
+                id, name, detail, duration, cause));
     }
 
     /**
@@ -163,12 +1072,27 @@ public abstract class Task {
      */
     protected abstract void invoke();
 
+    /**
+     * Implements the execution logic of this task for {@link #runAsync()}.
+     * The default implementation calls {@link #invoke()} on the current thread;
+     * tasks waiting on asynchronous work should extend {@link AsyncTask} instead.
+     *
+     * @return a future completed when the execution has finished
+     */
+    protected CompletableFuture<Void> invokeAsync() {
+        invoke();
+        return CompletableFuture.completedFuture(null);
+    }
+
     /**
      * Gracefully terminates the current workflow session.
+     * Tasks that have not started are skipped, and tasks running in parallel
+     * are cancelled through the root {@link CancellationToken} of the run.
      */
     protected void terminate() {
-        listener.notify(WorkflowEventType.TERMINATION, String.format("Task %s:%s terminated", id, name));
+        publish(WorkflowEventType.TERMINATION, SUBJECT);
         logger.info("task {}:{} terminated", id, name);
-        sessionContext.setVariable(SESSION_TERMINATED, true);
+        sessionContext.setVariable(SessionContext.SESSION_TERMINATED, true);
+        getCancellationToken().root().cancel(String.format("terminated by task %s:%s", id, name));
     }
 }
@@ -0,0 +1,138 @@
+package org.zero2me.breezeflow.core;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Dispatches work items of a single container invocation to the shared executor
+ * and lets the invoking thread wait until all of them have finished.
+ *
+ * Work items may dispatch further work items while running. While waiting, the
+ * invoking thread runs dispatched items that no pool thread has picked up yet,
+ * so a container nested inside another container cannot starve a bounded pool.
+ *
+ * Tasks with a retry policy are run through their asynchronous lifecycle with the
+ * dispatcher as executor for the retries: no thread waits between attempts, and the
+ * next attempt is dispatched like any other work item.
+ */
+final class TaskDispatcher implements Executor {
+    /**
+     * Wake-up marker queued whenever a work item finishes.
+     */
+    private static final Runnable WAKE_UP = () -> { };
+
+    private final ExecutorService executor;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final BlockingQueue<Runnable> helpQueue = new LinkedBlockingQueue<>();
+
+    /**
+     * Creates a dispatcher for one container invocation.
+     *
+     * @param executor the executor to dispatch work items to
+     */
+    TaskDispatcher(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Dispatches a work item. Work items must not throw; failures are the
+     * responsibility of the caller.
+     *
+     * @param work the work item
+     */
+    void dispatch(Runnable work) {
+        inFlight.incrementAndGet();
+        long queuedAt = System.nanoTime();
+        FutureTask<Void> future = new FutureTask<>(() -> {
+            WorkflowMetrics.getInstance().queueWait(queuedAt);
+            try {
+                work.run();
+            } finally {
+                inFlight.decrementAndGet();
+                // Wake the waiting thread so it re-checks the in-flight count
+                helpQueue.add(WAKE_UP);
+            }
+        }, null);
+        helpQueue.add(future);
+        try {
+            executor.execute(future);
+        } catch (RejectedExecutionException e) {
+            // The executor is shutting down - the waiting thread runs the item from the help queue
+        }
+    }
+
+    /**
+     * Dispatches a work item, see {@link #dispatch(Runnable)}.
+     *
+     * @param work the work item
+     */
+    @Override
+    public void execute(Runnable work) {
+        dispatch(work);
+    }
+
+    /**
+     * Runs a task within a work item and reports its outcome. A task with a retry
+     * policy may still be in flight when this method returns; {@link #awaitIdle()}
+     * waits for it.
+     *
+     * @param task the task to run
+     * @param outcome called with null when the task has finished, or with its failure
+     */
+    void runTask(Task task, Consumer<Throwable> outcome) {
+        if (task.getRetryPolicy() != null) {
+            track(task.runAsync(this).whenComplete((result, error) ->
+                    outcome.accept(error != null ? Task.unwrap(error) : null)));
+            return;
+        }
+        Throwable failure = null;
+        try {
+            task.run();
+        } catch (Exception e) {
+            failure = e;
+        }
+        outcome.accept(failure);
+    }
+
+    /**
+     * Counts asynchronous work as in flight until its future completes.
+     * Must be called from a work item, so the count cannot drop to zero in between.
+     *
+     * @param future the future of the work
+     */
+    private void track(CompletableFuture<?> future) {
+        inFlight.incrementAndGet();
+        future.whenComplete((result, error) -> {
+            inFlight.decrementAndGet();
+            helpQueue.add(WAKE_UP);
+        });
+    }
+
+    /**
+     * Waits until every dispatched work item, including items dispatched while
+     * waiting, has finished. The calling thread helps with pending items.
+     *
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    void awaitIdle() throws InterruptedException {
+        while (inFlight.get() > 0) {
+            Runnable next;
+            try {
+                next = WorkflowExecutors.runBlocking(helpQueue::take);
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException("Unexpected failure while waiting for tasks", e);
+            }
+            // No-op if a pool thread has already started this item
+            next.run();
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package org.zero2me.breezeflow.core;
 
+import java.lang.reflect.Constructor;
+
 import org.zero2me.breezeflow.common.LogFactory;
 import lombok.Getter;
 import org.slf4j.Logger;
@@ -19,6 +21,20 @@ public class TaskFactory {
      */
     private Logger logger = LogFactory.getLogger(TaskFactory.class);
 
+    /**
+     * No-arg constructors of task classes, looked up once per class.
+     */
+    private static final ClassValue<Constructor<?>> constructors = new ClassValue<Constructor<?>>() {
+        @Override
+        protected Constructor<?> computeValue(Class<?> type) {
+            try {
+                return type.getDeclaredConstructor();
+            } catch (NoSuchMethodException e) {
+                return null;
+            }
+        }
+    };
+
     /**
      * Session configuration for tasks.
      */
@@ -74,7 +90,9 @@ public class TaskFactory {
 
         try {
             // Get the package-private constructor
-            newTask = taskClass.getDeclaredConstructor().newInstance();
+            Constructor<?> constructor = constructors.get(taskClass);
+            newTask = taskClass.cast(constructor != null
+                    ? constructor.newInstance() : taskClass.getDeclaredConstructor().newInstance());
             newTask.setName(name);
             newTask.inject(facts, sessionContext, sessionConfig, listener);
             logger.debug("Successfully built task: {} of type: {}", name, taskClass.getSimpleName());
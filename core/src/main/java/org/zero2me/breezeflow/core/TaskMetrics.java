@@ -0,0 +1,128 @@
+package org.zero2me.breezeflow.core;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.Getter;
+
+/**
+ * Execution metrics of all tasks sharing a name.
+ *
+ * Latencies of completed executions are recorded in a {@link LatencyHistogram};
+ * outcomes are counted with striped counters, so recording never locks.
+ */
+public final class TaskMetrics implements TaskMetricsMXBean {
+    @Getter
+    private final String name;
+
+    /**
+     * Latencies of completed executions.
+     */
+    @Getter
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+
+    TaskMetrics(String name) {
+        this.name = name;
+    }
+
+    void completed(long nanos) {
+        latency.record(nanos);
+    }
+
+    void failed() {
+        failed.increment();
+    }
+
+    void skipped() {
+        skipped.increment();
+    }
+
+    void cancelled() {
+        cancelled.increment();
+    }
+
+    void timedOut() {
+        timedOut.increment();
+    }
+
+    void retried() {
+        retries.increment();
+    }
+
+    @Override
+    public long getCompletedCount() {
+        return latency.getCount();
+    }
+
+    @Override
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * Gets the number of executions that did not start: {@link Task#preCheck()} returned false,
+     * the session was terminated or the task was cancelled before it started. Executions
+     * cancelled while running are counted by {@link #getCancelledCount()} instead.
+     *
+     * @return the number of skipped executions
+     */
+    @Override
+    public long getSkippedCount() {
+        return skipped.sum();
+    }
+
+    @Override
+    public long getCancelledCount() {
+        return cancelled.sum();
+    }
+
+    @Override
+    public long getTimedOutCount() {
+        return timedOut.sum();
+    }
+
+    @Override
+    public long getRetryCount() {
+        return retries.sum();
+    }
+
+    @Override
+    public double getMeanMillis() {
+        return latency.getMean(TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public double getP50Millis() {
+        return latency.getPercentile(50, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public double getP90Millis() {
+        return latency.getPercentile(90, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public double getP99Millis() {
+        return latency.getPercentile(99, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return latency.getMax(TimeUnit.MILLISECONDS);
+    }
+
+    void reset() {
+        latency.reset();
+        failed.reset();
+        skipped.reset();
+        cancelled.reset();
+        timedOut.reset();
+        retries.reset();
+    }
+}
@@ -0,0 +1,42 @@
+package org.zero2me.breezeflow.core;
+
+/**
+ * JMX view of the {@link TaskMetrics} of one task name.
+ */
+public interface TaskMetricsMXBean {
+    /** Name of the tasks. */
+    String getName();
+
+    /** Number of completed executions. */
+    long getCompletedCount();
+
+    /** Number of failed executions. */
+    long getFailedCount();
+
+    /** Number of executions that did not start: pre-check false, session terminated or cancelled before start. */
+    long getSkippedCount();
+
+    /** Number of executions stopped by a cancellation while running. */
+    long getCancelledCount();
+
+    /** Number of executions that exceeded their timeout. */
+    long getTimedOutCount();
+
+    /** Number of retried attempts. */
+    long getRetryCount();
+
+    /** Mean latency of completed executions in milliseconds. */
+    double getMeanMillis();
+
+    /** Median latency in milliseconds. */
+    double getP50Millis();
+
+    /** 90th percentile latency in milliseconds. */
+    double getP90Millis();
+
+    /** 99th percentile latency in milliseconds. */
+    double getP99Millis();
+
+    /** Maximum latency in milliseconds. */
+    double getMaxMillis();
+}
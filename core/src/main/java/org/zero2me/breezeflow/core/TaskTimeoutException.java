@@ -0,0 +1,18 @@
+package org.zero2me.breezeflow.core;
+
+/**
+ * Exception thrown when a task or workflow exceeds its deadline.
+ */
+public class TaskTimeoutException extends WorkflowExecutionException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a new TaskTimeoutException with the specified detail message.
+     *
+     * @param message the detail message
+     */
+    public TaskTimeoutException(String message) {
+        super(message);
+    }
+}
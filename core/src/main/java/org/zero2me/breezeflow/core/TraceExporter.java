@@ -0,0 +1,167 @@
+package org.zero2me.breezeflow.core;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renders {@link WorkflowTrace}s in the file formats of common trace viewers.
+ */
+final class TraceExporter {
+    private static final String SCOPE_NAME = "org.zero2me.breezeflow";
+
+    private TraceExporter() {
+        // Utility class - prevent instantiation
+    }
+
+    /**
+     * Renders a trace as Chrome trace-event JSON: one complete ("X") event per span,
+     * on the row of the thread it started on, plus thread name metadata.
+     *
+     * @param trace the trace
+     * @return the JSON document
+     */
+    static String chromeTrace(WorkflowTrace trace) {
+        List<TraceSpan> spans = trace.getSpans();
+        long origin = spans.isEmpty() ? 0L : spans.get(0).getStartEpochNanos();
+        Map<Long, String> threads = new LinkedHashMap<>();
+        StringBuilder json = new StringBuilder(256 + spans.size() * 256);
+        json.append("{\"displayTimeUnit\":\"ms\",\"otherData\":{\"traceId\":");
+        string(json, trace.getTraceId()).append(",\"workflowId\":");
+        string(json, trace.getWorkflowId()).append("},\"traceEvents\":[");
+        boolean first = true;
+        for (TraceSpan span : spans) {
+            threads.putIfAbsent(span.getThreadId(), span.getThreadName());
+            first = separator(json, first);
+            json.append("{\"ph\":\"X\",\"pid\":1,\"tid\":").append(span.getThreadId()).append(",\"name\":");
+            string(json, span.getName()).append(",\"cat\":");
+            string(json, span.getKind()).append(",\"ts\":");
+            micros(json, span.getStartEpochNanos() - origin).append(",\"dur\":");
+            micros(json, span.getEndNanos() - span.getStartNanos()).append(",\"args\":{\"id\":");
+            string(json, span.getSubjectId()).append(",\"spanId\":").append(span.getSpanId())
+                    .append(",\"parentSpanId\":").append(span.getParentSpanId()).append(",\"outcome\":");
+            string(json, span.getOutcome().name());
+            if (span.getDetail() != null) {
+                json.append(",\"detail\":");
+                string(json, span.getDetail());
+            }
+            json.append("}}");
+        }
+        for (Map.Entry<Long, String> thread : threads.entrySet()) {
+            first = separator(json, first);
+            json.append("{\"ph\":\"M\",\"pid\":1,\"tid\":").append(thread.getKey())
+                    .append(",\"name\":\"thread_name\",\"args\":{\"name\":");
+            string(json, thread.getValue()).append("}}");
+        }
+        return json.append("]}").toString();
+    }
+
+    /**
+     * Renders a trace as an OTLP/JSON {@code ExportTraceServiceRequest}.
+     *
+     * @param trace the trace
+     * @return the JSON document
+     */
+    static String otlpJson(WorkflowTrace trace) {
+        List<TraceSpan> spans = trace.getSpans();
+        StringBuilder json = new StringBuilder(256 + spans.size() * 512);
+        json.append("{\"resourceSpans\":[{\"resource\":{\"attributes\":[");
+        attribute(json, "service.name", "breezeflow").append("]},\"scopeSpans\":[{\"scope\":{\"name\":\"")
+                .append(SCOPE_NAME).append("\"},\"spans\":[");
+        boolean first = true;
+        for (TraceSpan span : spans) {
+            first = separator(json, first);
+            json.append("{\"traceId\":\"").append(trace.getTraceId())
+                    .append("\",\"spanId\":\"").append(spanId(span.getSpanId())).append('"');
+            if (span.getParentSpanId() != 0L) {
+                json.append(",\"parentSpanId\":\"").append(spanId(span.getParentSpanId())).append('"');
+            }
+            json.append(",\"name\":");
+            string(json, span.getName()).append(",\"kind\":1,\"startTimeUnixNano\":\"")
+                    .append(span.getStartEpochNanos()).append("\",\"endTimeUnixNano\":\"")
+                    .append(span.getEndEpochNanos()).append("\",\"attributes\":[");
+            attribute(json, "breezeflow.workflow.id", trace.getWorkflowId()).append(',');
+            attribute(json, "breezeflow.kind", span.getKind()).append(',');
+            attribute(json, "breezeflow.id", span.getSubjectId()).append(',');
+            attribute(json, "breezeflow.outcome", span.getOutcome().name()).append(',');
+            attribute(json, "thread.name", span.getThreadName()).append(',');
+            json.append("{\"key\":\"thread.id\",\"value\":{\"intValue\":\"").append(span.getThreadId())
+                    .append("\"}}],\"status\":{\"code\":").append(statusCode(span.getOutcome()));
+            if (span.getDetail() != null) {
+                json.append(",\"message\":");
+                string(json, span.getDetail());
+            }
+            json.append("}}");
+        }
+        return json.append("]}]}]}").toString();
+    }
+
+    /**
+     * Maps an outcome to an OTLP status code: 1 (OK), 2 (ERROR) or 0 (UNSET).
+     */
+    private static int statusCode(TraceSpan.Outcome outcome) {
+        switch (outcome) {
+            case COMPLETED:
+                return 1;
+            case FAILED:
+            case TIMED_OUT:
+                return 2;
+            default:
+                return 0;
+        }
+    }
+
+    private static String spanId(long id) {
+        return String.format("%016x", id);
+    }
+
+    private static boolean separator(StringBuilder json, boolean first) {
+        if (!first) {
+            json.append(',');
+        }
+        return false;
+    }
+
+    private static StringBuilder micros(StringBuilder json, long nanos) {
+        return json.append(nanos / 1000).append('.').append(String.format("%03d", Math.abs(nanos % 1000)));
+    }
+
+    private static StringBuilder attribute(StringBuilder json, String key, String value) {
+        json.append("{\"key\":\"").append(key).append("\",\"value\":{\"stringValue\":");
+        return string(json, value).append("}}");
+    }
+
+    private static StringBuilder string(StringBuilder json, String value) {
+        if (value == null) {
+            return json.append("null");
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        return json.append('"');
+    }
+}
@@ -0,0 +1,194 @@
+package org.zero2me.breezeflow.core;
+
+import java.util.concurrent.TimeUnit;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * A timed node of a {@link WorkflowTrace}: the execution of a workflow, container or task.
+ *
+ * Spans are created by the engine when a traced task starts and ended when it completes,
+ * fails, is cancelled or times out. Tasks skipped by their pre check or by a cancellation
+ * get a span of zero length.
+ */
+@Getter
+public final class TraceSpan {
+    /**
+     * How the traced execution ended.
+     */
+    public enum Outcome {
+        /** Still running when the trace was read. */
+        RUNNING,
+        /** Completed successfully. */
+        COMPLETED,
+        /** Failed with an exception. */
+        FAILED,
+        /** Stopped because its scope was cancelled. */
+        CANCELLED,
+        /** Stopped because its timeout elapsed. */
+        TIMED_OUT,
+        /** Not executed. */
+        SKIPPED
+    }
+
+    @Getter(AccessLevel.NONE)
+    private final WorkflowTrace trace;
+
+    /**
+     * Id of this span, unique within its trace.
+     */
+    private final long spanId;
+
+    /**
+     * Id of the parent span, or 0 for the root span.
+     */
+    private final long parentSpanId;
+
+    /**
+     * What was executed, e.g. "Workflow" or the simple name of the task class.
+     */
+    private final String kind;
+
+    /**
+     * Name of the workflow or task.
+     */
+    private final String name;
+
+    /**
+     * Id of the workflow or task.
+     */
+    private final String subjectId;
+
+    /**
+     * Whether the children of this span may run concurrently, as in a {@link ParallelContainer}.
+     */
+    private final boolean concurrent;
+
+    /**
+     * Name of the thread the execution started on.
+     */
+    private final String threadName;
+
+    /**
+     * Id of the thread the execution started on.
+     */
+    private final long threadId;
+
+    /**
+     * {@link System#nanoTime()} at which the execution started.
+     */
+    private final long startNanos;
+
+    @Getter(AccessLevel.NONE)
+    private volatile long endNanos;
+
+    @Getter(AccessLevel.NONE)
+    private volatile Outcome outcome;
+
+    /**
+     * Failure message or cancellation reason, may be null.
+     */
+    private volatile String detail;
+
+    TraceSpan(WorkflowTrace trace, long spanId, long parentSpanId, String kind, String name, String subjectId,
+              boolean concurrent) {
+        Thread thread = Thread.currentThread();
+        this.trace = trace;
+        this.spanId = spanId;
+        this.parentSpanId = parentSpanId;
+        this.kind = kind;
+        this.name = name;
+        this.subjectId = subjectId;
+        this.concurrent = concurrent;
+        this.threadName = thread.getName();
+        this.threadId = thread.getId();
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Gets the trace this span belongs to.
+     *
+     * @return the trace
+     */
+    WorkflowTrace trace() {
+        return trace;
+    }
+
+    /**
+     * Ends this span. Only the first call has an effect.
+     *
+     * @param outcome how the execution ended
+     * @param detail failure message or cancellation reason, may be null
+     */
+    synchronized void end(Outcome outcome, String detail) {
+        if (this.outcome != null) {
+            return;
+        }
+        this.endNanos = System.nanoTime();
+        this.detail = detail;
+        this.outcome = outcome;
+    }
+
+    /**
+     * Gets how the traced execution ended.
+     *
+     * @return the outcome, {@link Outcome#RUNNING} if the span has not ended yet
+     */
+    public Outcome getOutcome() {
+        Outcome current = outcome;
+        return current != null ? current : Outcome.RUNNING;
+    }
+
+    /**
+     * Checks whether this span has ended.
+     *
+     * @return true if ended
+     */
+    public boolean isEnded() {
+        return outcome != null;
+    }
+
+    /**
+     * Gets the {@link System#nanoTime()} at which the execution ended.
+     *
+     * @return the end time, or the current time if the span has not ended yet
+     */
+    public long getEndNanos() {
+        return outcome != null ? endNanos : System.nanoTime();
+    }
+
+    /**
+     * Gets the duration of the execution.
+     *
+     * @param unit the time unit of the result
+     * @return the duration, up to now if the span has not ended yet
+     */
+    public long getDuration(TimeUnit unit) {
+        return unit.convert(getEndNanos() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the wall-clock start time.
+     *
+     * @return the start time in nanoseconds since the epoch
+     */
+    public long getStartEpochNanos() {
+        return trace.toEpochNanos(startNanos);
+    }
+
+    /**
+     * Gets the wall-clock end time.
+     *
+     * @return the end time in nanoseconds since the epoch
+     */
+    public long getEndEpochNanos() {
+        return trace.toEpochNanos(getEndNanos());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s (%s) %s %d us", kind, name, subjectId, getOutcome(),
+                getDuration(TimeUnit.MICROSECONDS));
+    }
+}
@@ -0,0 +1,260 @@
+package org.zero2me.breezeflow.core;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Compile-time typed key for facts and session variables.
+ *
+ * A typed key is declared once, typically as a {@code static final} constant next to
+ * the tasks that use it, and is registered with a global key registry the first time
+ * it is created. Registration resolves the key to a slot, so reads and writes through
+ * typed keys are array-indexed, unboxed for primitives and free of casts.
+ * Boolean keys are packed two bits per key into a bitset.
+ *
+ * String-keyed access to a name that has been registered as a typed key is routed
+ * to the same slot, so both APIs always observe the same value. The registry is shared
+ * by the whole JVM, so registering a key reroutes that name in every {@link Facts} and
+ * {@link SessionContext}; the string-keyed views ({@link Facts#asMap()},
+ * {@link SessionContext#getContextData()}) still list the variable. A string-keyed write
+ * of a value of another type does not fail: the value is stored by name instead, and
+ * typed reads report the key as absent.
+ *
+ * @param <T> the (boxed) value type of the key
+ */
+public abstract class TypedKey<T> {
+
+    /**
+     * Storage kinds of typed keys.
+     */
+    public enum Kind {
+        /** Boolean value packed into a bitset. */
+        BOOLEAN,
+        /** Primitive int value. */
+        INT,
+        /** Primitive long value. */
+        LONG,
+        /** Object reference. */
+        REFERENCE
+    }
+
+    /**
+     * Registered keys by name.
+     */
+    private static final Map<String, TypedKey<?>> registry = new ConcurrentHashMap<>();
+
+    /**
+     * Registered keys by slot, per storage class, so stores can name their occupied slots.
+     */
+    private static final AtomicReferenceArray<TypedKey<?>> booleanKeys = new AtomicReferenceArray<>(SlotStore.MAX_SLOTS);
+    private static final AtomicReferenceArray<TypedKey<?>> numericKeys = new AtomicReferenceArray<>(SlotStore.MAX_SLOTS);
+    private static final AtomicReferenceArray<TypedKey<?>> referenceKeys = new AtomicReferenceArray<>(SlotStore.MAX_SLOTS);
+
+    /**
+     * Next free slot per storage class (booleans, numerics, references).
+     */
+    private static int nextBooleanSlot;
+    private static int nextNumericSlot;
+    private static int nextReferenceSlot;
+
+    private final String name;
+    private final Kind kind;
+    private final Class<T> type;
+    private final int slot;
+
+    TypedKey(String name, Kind kind, Class<T> type, int slot) {
+        this.name = name;
+        this.kind = kind;
+        this.type = type;
+        this.slot = slot;
+    }
+
+    /**
+     * Declares a boolean key.
+     *
+     * @param name the key name, must not be null
+     * @return the registered key
+     * @throws IllegalArgumentException if the name is already registered with a different type
+     */
+    public static BooleanKey booleanKey(String name) {
+        return register(name, Kind.BOOLEAN, Boolean.class);
+    }
+
+    /**
+     * Declares an int key.
+     *
+     * @param name the key name, must not be null
+     * @return the registered key
+     * @throws IllegalArgumentException if the name is already registered with a different type
+     */
+    public static IntKey intKey(String name) {
+        return register(name, Kind.INT, Integer.class);
+    }
+
+    /**
+     * Declares a long key.
+     *
+     * @param name the key name, must not be null
+     * @return the registered key
+     * @throws IllegalArgumentException if the name is already registered with a different type
+     */
+    public static LongKey longKey(String name) {
+        return register(name, Kind.LONG, Long.class);
+    }
+
+    /**
+     * Declares a reference key.
+     *
+     * @param name the key name, must not be null
+     * @param type the value type, must not be null
+     * @param <V> the value type
+     * @return the registered key
+     * @throws IllegalArgumentException if the name is already registered with a different type
+     */
+    public static <V> RefKey<V> refKey(String name, Class<V> type) {
+        Objects.requireNonNull(type, "type must not be null");
+        return register(name, Kind.REFERENCE, type);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static synchronized <K extends TypedKey<?>> K register(String name, Kind kind, Class<?> type) {
+        Objects.requireNonNull(name, "key name must not be null");
+        TypedKey<?> existing = registry.get(name);
+        if (existing != null) {
+            if (existing.kind != kind || existing.type != type) {
+                throw new IllegalArgumentException(String.format("Key %s is already registered as %s<%s>",
+                        name, existing.kind, existing.type.getSimpleName()));
+            }
+            return (K) existing;
+        }
+
+        TypedKey<?> key;
+        switch (kind) {
+            case BOOLEAN:
+                key = new BooleanKey(name, checkSlot(nextBooleanSlot++, name));
+                break;
+            case INT:
+                key = new IntKey(name, checkSlot(nextNumericSlot++, name));
+                break;
+            case LONG:
+                key = new LongKey(name, checkSlot(nextNumericSlot++, name));
+                break;
+            case REFERENCE:
+            default:
+                key = new RefKey<>(name, type, checkSlot(nextReferenceSlot++, name));
+                break;
+        }
+        slotKeys(kind).set(key.slot, key);
+        registry.put(name, key);
+        return (K) key;
+    }
+
+    private static int checkSlot(int slot, String name) {
+        if (slot >= SlotStore.MAX_SLOTS) {
+            throw new IllegalStateException("Too many typed keys registered, cannot register " + name);
+        }
+        return slot;
+    }
+
+    /**
+     * Looks up the typed key registered under a name.
+     *
+     * @param name the key name
+     * @return the registered key, or null if the name is not registered
+     */
+    static TypedKey<?> lookup(String name) {
+        return registry.get(name);
+    }
+
+    /**
+     * Looks up the typed key registered for a slot.
+     *
+     * @param kind the storage kind; int and long keys share the numeric slots
+     * @param slot the slot index
+     * @return the registered key, or null if the slot is not assigned
+     */
+    static TypedKey<?> keyAt(Kind kind, int slot) {
+        return slotKeys(kind).get(slot);
+    }
+
+    private static AtomicReferenceArray<TypedKey<?>> slotKeys(Kind kind) {
+        switch (kind) {
+            case BOOLEAN:
+                return booleanKeys;
+            case INT:
+            case LONG:
+                return numericKeys;
+            case REFERENCE:
+            default:
+                return referenceKeys;
+        }
+    }
+
+    /**
+     * Checks whether a value can be stored in this key's slot.
+     *
+     * @param value the value, must not be null
+     * @return true if the value has the key type
+     */
+    boolean accepts(Object value) {
+        return type.isInstance(value);
+    }
+
+    /**
+     * Checks that a value can be stored under this key.
+     *
+     * @param value the value, must not be null
+     * @return the value, cast to the key type
+     * @throws IllegalArgumentException if the value has the wrong type
+     */
+    T checkValue(Object value) {
+        if (!type.isInstance(value)) {
+            throw new IllegalArgumentException(String.format("Key %s expects %s but got %s",
+                    name, type.getSimpleName(), value.getClass().getSimpleName()));
+        }
+        return type.cast(value);
+    }
+
+    /**
+     * Get the key name.
+     * @return key name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the storage kind of the key.
+     * @return storage kind
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Get the (boxed) value type of the key.
+     * @return value type
+     */
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * Get the slot the key resolves to within its storage class.
+     * @return slot index
+     */
+    int getSlot() {
+        return slot;
+    }
+
+    @Override
+    public String toString() {
+        return "TypedKey{" +
+                "name='" + name + '\'' +
+                ", kind=" + kind +
+                ", slot=" + slot +
+                '}';
+    }
+}
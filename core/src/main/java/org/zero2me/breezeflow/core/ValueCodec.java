@@ -0,0 +1,35 @@
+package org.zero2me.breezeflow.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Encodes values of a user type for a {@link StateCodec}.
+ *
+ * A codec writes the fields of a value in a fixed order and reads them back in the
+ * same order. Codecs are registered under a type id that is stored with every value,
+ * so the id must stay stable for as long as snapshots written with it are read.
+ *
+ * @param <T> the type of the values
+ */
+public interface ValueCodec<T> {
+
+    /**
+     * Writes a value.
+     *
+     * @param value the value, never null
+     * @param out the output to write to
+     * @throws IOException if the value cannot be written
+     */
+    void write(T value, DataOutput out) throws IOException;
+
+    /**
+     * Reads a value written by {@link #write}.
+     *
+     * @param in the input to read from
+     * @return the value
+     * @throws IOException if the value cannot be read
+     */
+    T read(DataInput in) throws IOException;
+}
@@ -0,0 +1,57 @@
+package org.zero2me.breezeflow.core;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+
+import org.zero2me.breezeflow.common.LogFactory;
+import org.zero2me.breezeflow.common.NamedThreadFactory;
+
+/**
+ * Creates the executor backing {@link ExecutorType#VIRTUAL}.
+ *
+ * This is the Java 11 base version of the class. The multi-release JAR ships a
+ * Java 21 version under {@code META-INF/versions/21} that creates named virtual
+ * threads directly. When this base version is loaded it looks the virtual-thread
+ * executor up reflectively and falls back to a cached platform-thread pool on
+ * runtimes without virtual threads.
+ */
+final class VirtualThreadSupport {
+    /**
+     * Logger instance for this class.
+     */
+    private static final Logger logger = LogFactory.getLogger(VirtualThreadSupport.class);
+
+    private VirtualThreadSupport() {
+        // Utility class - prevent instantiation
+    }
+
+    /**
+     * Creates an executor that starts a new virtual thread for each task.
+     *
+     * @param threadNamePrefix the thread name prefix used by the fallback pool
+     * @param daemon whether the fallback pool creates daemon threads
+     * @return the created ExecutorService
+     */
+    static ExecutorService newExecutor(String threadNamePrefix, boolean daemon) {
+        try {
+            Method factory = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            logger.warn("Virtual threads are not available on Java {}, falling back to a cached thread pool",
+                    System.getProperty("java.version"));
+            return new ThreadPoolExecutor(
+                0,                           // core pool size
+                Integer.MAX_VALUE,           // maximum pool size
+                60L,                         // keep alive time
+                TimeUnit.SECONDS,            // time unit
+                new SynchronousQueue<>(),    // hand-off queue
+                new NamedThreadFactory(threadNamePrefix, daemon)
+            );
+        }
+    }
+}
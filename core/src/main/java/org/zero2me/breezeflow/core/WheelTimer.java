@@ -0,0 +1,159 @@
+package org.zero2me.breezeflow.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+
+import org.zero2me.breezeflow.common.LogFactory;
+import org.zero2me.breezeflow.common.NamedThreadFactory;
+
+/**
+ * Hashed wheel timer shared by all workflow runs for deadlines and delayed work.
+ *
+ * A single daemon thread advances a wheel of buckets one tick at a time and runs the
+ * timeouts expiring in the current bucket, so scheduling and cancelling are O(1) and
+ * thousands of pending deadlines cost no threads. Expiry is accurate to one tick.
+ * Timeout actions run on the timer thread and must be short; longer work should be
+ * handed to an executor. An action that throws, even an {@link Error}, is logged and
+ * does not stop the timer.
+ */
+final class WheelTimer {
+    /**
+     * Logger instance for this class.
+     */
+    private static final Logger logger = LogFactory.getLogger(WheelTimer.class);
+
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final int WHEEL_SIZE = 512;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final List<ArrayDeque<Timeout>> wheel = new ArrayList<>(WHEEL_SIZE);
+    private final long startNanos = System.nanoTime();
+    private long tick;
+
+    private WheelTimer() {
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel.add(new ArrayDeque<>());
+        }
+        new NamedThreadFactory("breezeflow-timer", true).newThread(this::work).start();
+    }
+
+    /**
+     * Gets the timer shared by all workflow runs, starting it on first use.
+     *
+     * @return the shared timer
+     */
+    static WheelTimer shared() {
+        return Holder.INSTANCE;
+    }
+
+    private static final class Holder {
+        private static final WheelTimer INSTANCE = new WheelTimer();
+    }
+
+    /**
+     * Schedules an action to run once after a delay.
+     *
+     * @param action the action to run on the timer thread
+     * @param delay the delay
+     * @param unit the time unit of the delay
+     * @return the handle of the scheduled action
+     */
+    Timeout schedule(Runnable action, long delay, TimeUnit unit) {
+        Timeout timeout = new Timeout(action, System.nanoTime() + Math.max(0L, unit.toNanos(delay)));
+        pending.add(timeout);
+        return timeout;
+    }
+
+    private void work() {
+        while (true) {
+            long deadline = startNanos + (tick + 1) * TICK_NANOS;
+            long sleep;
+            while ((sleep = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, sleep);
+            }
+            transferPending();
+            expire(wheel.get((int) (tick & WHEEL_MASK)));
+            tick++;
+        }
+    }
+
+    /**
+     * Moves newly scheduled timeouts into their buckets.
+     */
+    private void transferPending() {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.state.get() == Timeout.CANCELLED) {
+                continue;
+            }
+            // Ticks elapsed since start when the timeout expires, never earlier than the current tick
+            long expiryTick = Math.max(tick, (timeout.deadlineNanos - startNanos + TICK_NANOS - 1) / TICK_NANOS - 1);
+            timeout.rounds = (expiryTick - tick) / WHEEL_SIZE;
+            wheel.get((int) (expiryTick & WHEEL_MASK)).add(timeout);
+        }
+    }
+
+    private void expire(ArrayDeque<Timeout> bucket) {
+        Iterator<Timeout> iterator = bucket.iterator();
+        while (iterator.hasNext()) {
+            Timeout timeout = iterator.next();
+            if (timeout.state.get() == Timeout.CANCELLED) {
+                iterator.remove();
+            } else if (timeout.rounds > 0) {
+                timeout.rounds--;
+            } else {
+                iterator.remove();
+                timeout.expire();
+            }
+        }
+    }
+
+    /**
+     * Handle of a scheduled action.
+     */
+    static final class Timeout {
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final Runnable action;
+        private final long deadlineNanos;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        private long rounds;
+
+        private Timeout(Runnable action, long deadlineNanos) {
+            this.action = action;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        /**
+         * Cancels the action if it has not run yet.
+         *
+         * @return true if the action will not run
+         */
+        boolean cancel() {
+            return state.compareAndSet(PENDING, CANCELLED);
+        }
+
+        private void expire() {
+            if (state.compareAndSet(PENDING, EXPIRED)) {
+                try {
+                    action.run();
+                } catch (Throwable e) {
+                    // Keep the timer thread alive, the other pending actions still have to run
+                    logger.error("timer action failed", e);
+                }
+            }
+        }
+    }
+}
@@ -3,7 +3,14 @@ package org.zero2me.breezeflow.core;
 import lombok.AccessLevel;
 import lombok.Getter;
 
-import java.util.UUID;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
 
 import lombok.Setter;
 import org.slf4j.Logger;
@@ -18,7 +25,9 @@ import org.zero2me.breezeflow.common.LogFactory;
  * and coordinates task execution.
  * 
  * Workflows are typically extended by concrete implementations that define
- * specific task sequences in the buildWorkflow method.
+ * specific task sequences in the buildWorkflow method. Services running the same
+ * workflow many times should compile it once into a {@link WorkflowDefinition}
+ * and start runs from it.
  */
 public class Workflow {
     /**
@@ -51,6 +60,33 @@ public class Workflow {
     @Getter
     protected WorkflowListener listener = new DefaultWorkflowListener();
 
+    /**
+     * Root cancellation scope of this run. Cancelling it stops the run like
+     * {@link Task#terminate()}: running tasks are cancelled and the rest are skipped.
+     */
+    @Getter
+    private final CancellationToken cancellationToken = new CancellationToken();
+
+    /**
+     * Start time of the current run, used for event durations.
+     */
+    private long startNanos;
+
+    /**
+     * Span tree of the current run, null if the run is not sampled for tracing
+     * (see {@link SessionConfig#getTraceSampleRate()}).
+     */
+    @Getter
+    private volatile WorkflowTrace trace;
+
+    /**
+     * Journal recording the runs of this workflow, null if runs are not journaled.
+     * A journaled run that did not complete can be continued with {@link #resume()}.
+     */
+    @Getter
+    @Setter
+    private ExecutionJournal journal;
+
     /**
      * Root container for all tasks in this workflow.
      * All tasks are added to this container, which executes them sequentially.
@@ -89,12 +125,29 @@ public class Workflow {
         init();
     }
 
+    /**
+     * Package-private constructor - only WorkflowDefinition creates runs this way.
+     * The task tree is copied from the definition instead of being built.
+     *
+     * @param definition the compiled definition
+     * @param listener the workflow listener to use
+     */
+    Workflow(WorkflowDefinition definition, WorkflowListener listener) {
+        this.listener = listener;
+        this.sessionConfig = definition.getSessionConfig();
+        id = genId();
+        sessionContext.setWorkflowId(id);
+        taskFactory = new TaskFactory(facts, sessionContext, sessionConfig, listener);
+        rootContainer = definition.instantiate(facts, sessionContext, sessionConfig, listener);
+    }
+
     /**
      * Initializes this workflow.
      * Creates a task factory and root container for tasks.
      */
     private void init() {
         id = genId();
+        sessionContext.setWorkflowId(id);
         taskFactory = new TaskFactory(facts, sessionContext, sessionConfig, listener);
         rootContainer = (SequentialContainer)taskFactory.buildTask(SequentialContainer.class, "root_container");
         buildWorkflow();
@@ -106,7 +159,7 @@ public class Workflow {
      * @return a unique workflow ID
      */
     private String genId() {
-        return "workflow_" + UUID.randomUUID();
+        return IdGenerator.next("workflow");
     }
 
     /**
@@ -164,6 +217,28 @@ public class Workflow {
         rootContainer.addTask(task);
     }
 
+    /**
+     * Limits the execution time of this workflow. Every task inherits the remaining
+     * budget; when it runs out the running tasks are cancelled and the workflow fails
+     * with a {@link TaskTimeoutException} as cause.
+     *
+     * @param timeout the timeout, 0 for no limit
+     * @param unit the time unit of the timeout
+     * @throws IllegalArgumentException if the timeout is negative
+     */
+    public void setTimeout(long timeout, TimeUnit unit) {
+        rootContainer.setTimeout(timeout, unit);
+    }
+
+    /**
+     * Gets the maximum execution time of this workflow.
+     *
+     * @return the timeout in milliseconds, 0 for no limit
+     */
+    public long getTimeoutMillis() {
+        return rootContainer.getTimeoutMillis();
+    }
+
     /**
      * Builds the workflow by adding tasks.
      * This method is intended to be overridden by subclasses to define
@@ -180,18 +255,242 @@ public class Workflow {
      * @throws WorkflowExecutionException if workflow execution fails
      */
     public void run() throws WorkflowExecutionException {
-        logger.info("workflow {} started", id);
-        listener.notify(WorkflowEventType.WORKFLOW_STARTED, String.format("Workflow %s started", id));
-            
+        startJournal();
+        execute();
+    }
+
+    /**
+     * Continues the run recorded in the journal of this workflow after its last
+     * completed task. The facts, session variables and workflow id are restored from
+     * the journal and the tasks of the root container that already completed are not
+     * run again. A run that completed successfully is not repeated; if the journal
+     * holds no run, the workflow is run from the start.
+     *
+     * The workflow must be built with the same tasks as the journaled run.
+     *
+     * @throws WorkflowExecutionException if workflow execution fails
+     * @throws IllegalStateException if no journal is set or the journal does not match the tasks
+     */
+    public void resume() throws WorkflowExecutionException {
+        if (journal == null) {
+            throw new IllegalStateException("No journal set for workflow " + id);
+        }
+        ExecutionJournal.Recovery recovery = journal.recover();
+        if (recovery == null) {
+            run();
+            return;
+        }
+        if (recovery.isFinished() && recovery.isSucceeded()) {
+            logger.info("workflow {} already completed", recovery.getWorkflowId());
+            return;
+        }
+        List<String> completed = recovery.getCompletedTasks();
+        List<Task> tasks = rootContainer.getTasks();
+        if (completed.size() > tasks.size()) {
+            throw new IllegalStateException(String.format("Journal records %d completed tasks, workflow has %d",
+                    completed.size(), tasks.size()));
+        }
+        for (int i = 0; i < completed.size(); i++) {
+            if (!completed.get(i).equals(tasks.get(i).getName())) {
+                throw new IllegalStateException(String.format("Journal records task %s at position %d, workflow has %s",
+                        completed.get(i), i, tasks.get(i).getName()));
+            }
+        }
+
+        id = recovery.getWorkflowId();
+        sessionContext.setWorkflowId(id);
+        recovery.getFacts().forEach(facts::put);
+        recovery.getContext().forEach(sessionContext::setVariable);
+        trackChanges(true);
+        logger.info("workflow {} resumes after {} completed tasks", id, completed.size());
+        journal.continueRun();
+        rootContainer.startFrom(completed.size(), new JournalCheckpoint());
+        execute();
+    }
+
+    /**
+     * Runs the root container and reports the outcome.
+     *
+     * @throws WorkflowExecutionException if workflow execution fails
+     */
+    private void execute() throws WorkflowExecutionException {
+        start();
+        rootContainer.setCancellationToken(cancellationToken);
+        rootContainer.setParentSpan(trace != null ? trace.getRoot() : null);
         try {
             rootContainer.run();
         } catch (Exception e) {
-            logger.error("workflow {} failed: {}", id, e.getMessage());
-            listener.notify(WorkflowEventType.WORKFLOW_FAILED, String.format("Workflow %s failed: %s", id, e.getMessage()));
-            throw new WorkflowExecutionException(String.format("Workflow %s failed: %s", id, e.getMessage()), e);
+            throw fail(e);
+        }
+        complete();
+    }
+
+    /**
+     * Executes this workflow without blocking the calling thread.
+     * Containers compose the completions of their children, so no thread is held
+     * while asynchronous tasks (see {@link AsyncTask}) are in flight; blocking tasks
+     * run on the shared executor.
+     *
+     * @return a future completed when the workflow has finished, or exceptionally
+     * with a {@link WorkflowExecutionException} if it fails
+     */
+    public CompletableFuture<Void> runAsync() {
+        try {
+            startJournal();
+            start();
+            rootContainer.setCancellationToken(cancellationToken);
+            rootContainer.setParentSpan(trace != null ? trace.getRoot() : null);
+            return Task.startAsync(rootContainer, WorkflowExecutors.getExecutor(sessionConfig))
+                    .handle((result, error) -> {
+                        if (error != null) {
+                            throw new CompletionException(fail(Task.unwrap(error)));
+                        }
+                        complete();
+                        return null;
+                    });
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(fail(e));
+        }
+    }
+
+    /**
+     * Records the start of a run in the journal, if any, and runs the root
+     * container from its first task.
+     */
+    private void startJournal() {
+        if (journal == null) {
+            rootContainer.startFrom(0, null);
+            return;
+        }
+        trackChanges(true);
+        journal.startRun(id, facts.asMap(), sessionContext.snapshot());
+        rootContainer.startFrom(0, new JournalCheckpoint());
+    }
+
+    /**
+     * Starts or stops tracking the facts and session variables written by the tasks,
+     * so that a journal checkpoint records only those.
+     */
+    private void trackChanges(boolean enabled) {
+        facts.trackChanges(enabled);
+        sessionContext.trackChanges(enabled);
+    }
+
+    /**
+     * Records each completed task of the root container in the journal together with
+     * the facts and session variables it wrote or removed.
+     */
+    private final class JournalCheckpoint implements IntConsumer {
+        private final List<Task> tasks = new ArrayList<>(rootContainer.getTasks());
+
+        @Override
+        public void accept(int index) {
+            List<String> removedFacts = new ArrayList<>();
+            Map<String, Object> changedFacts = new HashMap<>();
+            for (String name : facts.drainChanges()) {
+                Object value = facts.get(name);
+                if (value == null) {
+                    removedFacts.add(name);
+                } else {
+                    changedFacts.put(name, value);
+                }
+            }
+            List<String> removedContext = new ArrayList<>();
+            Map<String, Object> changedContext = new HashMap<>();
+            for (String name : sessionContext.drainChanges()) {
+                Object value = sessionContext.getVariable(name);
+                if (value == null) {
+                    removedContext.add(name);
+                } else {
+                    changedContext.put(name, value);
+                }
+            }
+            journal.taskCompleted(index, tasks.get(index).getName(),
+                    removedFacts, changedFacts, removedContext, changedContext);
+        }
+    }
+
+    /**
+     * Announces the start of this workflow.
+     */
+    private void start() {
+        logger.info("workflow {} started", id);
+        startNanos = System.nanoTime();
+        trace = null;
+        if (WorkflowTrace.sample(sessionConfig.getTraceSampleRate())) {
+            WorkflowTrace sampled = new WorkflowTrace(id);
+            sampled.startSpan(null, "Workflow", getClass().getSimpleName(), id, false);
+            trace = sampled;
         }
+        publish(WorkflowEventType.WORKFLOW_STARTED, null);
+        WorkflowMetrics.getInstance().workflowStarted();
+    }
 
-        listener.notify(WorkflowEventType.WORKFLOW_COMPLETED, String.format("Workflow %s completed", id));
+    /**
+     * Reports a failure of this workflow.
+     *
+     * @param e the failure
+     * @return the exception to throw
+     */
+    private WorkflowExecutionException fail(Throwable e) {
+        logger.error("workflow {} failed: {}", id, e.getMessage());
+        publish(WorkflowEventType.WORKFLOW_FAILED, e);
+        WorkflowMetrics.getInstance().workflowFailed();
+        if (journal != null) {
+            journal.runFinished(false);
+            trackChanges(false);
+        }
+        finishTrace(TraceSpan.Outcome.FAILED, e.getMessage());
+        return new WorkflowExecutionException(String.format("Workflow %s failed: %s", id, e.getMessage()), e);
+    }
+
+    /**
+     * Announces the completion of this workflow.
+     */
+    private void complete() {
+        publish(WorkflowEventType.WORKFLOW_COMPLETED, null);
+        WorkflowMetrics.getInstance().workflowCompleted(System.nanoTime() - startNanos);
+        if (journal != null) {
+            journal.runFinished(true);
+            trackChanges(false);
+        }
+        finishTrace(TraceSpan.Outcome.COMPLETED, null);
         logger.info("workflow {} completed", id);
     }
+
+    /**
+     * Ends the root span of a traced run and hands the trace to the configured consumer.
+     *
+     * @param outcome how the run ended
+     * @param detail failure message, may be null
+     */
+    private void finishTrace(TraceSpan.Outcome outcome, String detail) {
+        WorkflowTrace finished = trace;
+        if (finished == null) {
+            return;
+        }
+        finished.getRoot().end(outcome, detail);
+        if (sessionConfig.getTraceConsumer() != null) {
+            try {
+                sessionConfig.getTraceConsumer().accept(finished);
+            } catch (RuntimeException e) {
+                logger.warn("trace consumer failed for workflow {}: {}", id, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Publishes an event about this workflow if the listener is interested in its type.
+     *
+     * @param type the event type
+     * @param cause the failure that caused the event, may be null
+     */
+    private void publish(WorkflowEventType type, Throwable cause) {
+        if (!listener.isInterested(type)) {
+            return;
+        }
+        long duration = type == WorkflowEventType.WORKFLOW_STARTED ? -1L : System.nanoTime() - startNanos;
+        listener.notify(new WorkflowEvent(type, "Workflow", id, null, null,
+                cause != null ? cause.getMessage() : null, duration, cause));
+    }
 }
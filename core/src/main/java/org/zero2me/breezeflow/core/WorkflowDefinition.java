@@ -0,0 +1,133 @@
+package org.zero2me.breezeflow.core;
+
+import java.util.Objects;
+
+import lombok.Getter;
+import org.slf4j.Logger;
+
+import org.zero2me.breezeflow.common.LogFactory;
+
+/**
+ * Immutable, compiled form of a workflow.
+ *
+ * A WorkflowDefinition builds the task tree of a workflow once and keeps it as a
+ * template that is never executed. Each call to {@link #newRun()} copies the template
+ * into a lightweight {@link Workflow} with its own {@link Facts} and {@link SessionContext},
+ * without reflection, id generation or calling {@code buildWorkflow()} again. A definition
+ * is thread-safe and can start any number of concurrent runs.
+ *
+ * The definition keeps its own copy of the workflow's {@link SessionConfig}, and every run
+ * starts with a copy of it, so changing the configuration of a run affects neither the
+ * definition nor other runs. Tasks must keep their per-run state in the facts and session
+ * context (or copy it in {@link Task#copyFields()}).
+ */
+public final class WorkflowDefinition {
+    /**
+     * Logger instance for this class.
+     */
+    private static final Logger logger = LogFactory.getLogger(WorkflowDefinition.class);
+
+    /**
+     * Name of the definition, taken from the compiled workflow class.
+     */
+    @Getter
+    private final String name;
+
+    /**
+     * Session configuration copied into every run.
+     */
+    private final SessionConfig sessionConfig;
+
+    /**
+     * Listener used by runs started without an explicit listener.
+     */
+    @Getter
+    private final WorkflowListener listener;
+
+    /**
+     * Template task tree, copied for every run and never executed itself.
+     */
+    private final SequentialContainer template;
+
+    private WorkflowDefinition(String name, SessionConfig sessionConfig, WorkflowListener listener,
+                               SequentialContainer template) {
+        this.name = name;
+        this.sessionConfig = sessionConfig;
+        this.listener = listener;
+        this.template = template;
+    }
+
+    /**
+     * Compiles a definition by instantiating the given workflow class once.
+     *
+     * @param workflowClass the workflow class, must have a public no-arg constructor
+     * @return the compiled definition
+     * @throws RuntimeException if the workflow cannot be instantiated
+     */
+    public static WorkflowDefinition compile(Class<? extends Workflow> workflowClass) {
+        Objects.requireNonNull(workflowClass, "workflowClass must not be null");
+        Workflow workflow;
+        try {
+            workflow = workflowClass.getDeclaredConstructor().newInstance();
+        } catch (Exception ex) {
+            logger.error("Failed to compile workflow {}: {}", workflowClass.getSimpleName(), ex.getMessage(), ex);
+            throw new RuntimeException("Failed to compile workflow: " + workflowClass.getSimpleName(), ex);
+        }
+        return compile(workflow);
+    }
+
+    /**
+     * Compiles a definition from an already built workflow.
+     * The workflow's task tree is copied, so the workflow itself remains usable
+     * and later changes to it do not affect the definition.
+     *
+     * @param workflow the built workflow
+     * @return the compiled definition
+     */
+    public static WorkflowDefinition compile(Workflow workflow) {
+        Objects.requireNonNull(workflow, "workflow must not be null");
+        SessionConfig config = workflow.getSessionConfig().copy();
+        WorkflowListener workflowListener = workflow.getListener();
+        SequentialContainer template = workflow.getRootContainer()
+                .copyForRun(new Facts(), new SessionContext(), config, workflowListener);
+        logger.info("Compiled workflow definition {}", workflow.getClass().getSimpleName());
+        return new WorkflowDefinition(workflow.getClass().getSimpleName(), config, workflowListener, template);
+    }
+
+    /**
+     * Creates a new run of this definition using the definition's listener.
+     *
+     * @return a workflow ready to be seeded and run
+     */
+    public Workflow newRun() {
+        return newRun(listener);
+    }
+
+    /**
+     * Creates a new run of this definition.
+     *
+     * @param runListener the listener for the run, must not be null
+     * @return a workflow ready to be seeded and run
+     */
+    public Workflow newRun(WorkflowListener runListener) {
+        Objects.requireNonNull(runListener, "listener must not be null");
+        return new Workflow(this, runListener);
+    }
+
+    /**
+     * Gets the session configuration of the definition.
+     *
+     * @return a copy of the configuration, changes to it do not affect the definition
+     */
+    public SessionConfig getSessionConfig() {
+        return sessionConfig.copy();
+    }
+
+    /**
+     * Copies the template task tree, bound to the state of a run.
+     */
+    SequentialContainer instantiate(Facts facts, SessionContext sessionContext, SessionConfig runConfig,
+                                    WorkflowListener runListener) {
+        return template.copyForRun(facts, sessionContext, runConfig, runListener);
+    }
+}
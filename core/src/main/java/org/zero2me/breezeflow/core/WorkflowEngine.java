@@ -0,0 +1,336 @@
+package org.zero2me.breezeflow.core;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import lombok.Getter;
+import org.slf4j.Logger;
+
+import org.zero2me.breezeflow.common.LogFactory;
+import org.zero2me.breezeflow.common.NamedThreadFactory;
+import org.zero2me.breezeflow.common.ValidationUtils;
+
+/**
+ * Executes many workflow runs concurrently with admission control.
+ *
+ * A WorkflowEngine accepts run submissions and executes them on its own bounded set of
+ * run threads, at most {@link EngineConfig#getMaxConcurrentRuns()} at a time. Runs that
+ * cannot start immediately wait in a bounded submission queue; once the queue is full
+ * the configured {@link RejectionPolicy} decides whether to reject, shed, block or run on
+ * the caller. Every submission returns a future completed with the run's outcome, so the
+ * engine never grows threads or memory without bound under bursts.
+ *
+ * Parallel work inside the runs is still executed by the shared executors of
+ * {@link WorkflowExecutors}.
+ */
+public class WorkflowEngine {
+    /**
+     * Logger instance for this class.
+     */
+    private static final Logger logger = LogFactory.getLogger(WorkflowEngine.class);
+
+    /**
+     * Interval at which a submission blocked by {@link RejectionPolicy#BLOCK} re-checks
+     * whether the engine was shut down.
+     */
+    private static final long BLOCK_RECHECK_MILLIS = 100L;
+
+    /**
+     * Configuration of this engine.
+     */
+    @Getter
+    private final EngineConfig config;
+
+    /**
+     * Executor running the workflow runs.
+     */
+    private final ThreadPoolExecutor executor;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Creates an engine with the default configuration.
+     */
+    public WorkflowEngine() {
+        this(new EngineConfig());
+    }
+
+    /**
+     * Creates an engine.
+     *
+     * @param config the engine configuration
+     * @throws IllegalArgumentException if the configuration is invalid
+     */
+    public WorkflowEngine(EngineConfig config) {
+        ValidationUtils.requireNonNull(config, "config");
+        ValidationUtils.requirePositive(config.getMaxConcurrentRuns(), "maxConcurrentRuns");
+        if (config.getQueueCapacity() < 0) {
+            throw new IllegalArgumentException("queueCapacity cannot be negative");
+        }
+        this.config = config;
+
+        BlockingQueue<Runnable> queue = config.getQueueCapacity() == 0
+                ? new SynchronousQueue<>() : new ArrayBlockingQueue<>(config.getQueueCapacity());
+        this.executor = new ThreadPoolExecutor(
+            config.getMaxConcurrentRuns(),   // core pool size
+            config.getMaxConcurrentRuns(),   // maximum pool size
+            60L,                             // keep alive time
+            TimeUnit.SECONDS,                // time unit
+            queue,                           // bounded submission queue
+            new NamedThreadFactory(config.getThreadNamePrefix(), config.isDaemonThreads()),
+            new AdmissionHandler()           // rejection policy
+        );
+        this.executor.allowCoreThreadTimeOut(true);
+        logger.info("Created workflow engine with {} run slots and queue capacity {}",
+                config.getMaxConcurrentRuns(), config.getQueueCapacity());
+    }
+
+    /**
+     * Submits a workflow for execution.
+     *
+     * @param workflow the workflow to run
+     * @return a future completed with the workflow when the run succeeds, or exceptionally
+     * with a {@link WorkflowExecutionException} if it fails or a
+     * {@link RejectedExecutionException} if it is rejected
+     */
+    public CompletableFuture<Workflow> submit(Workflow workflow) {
+        ValidationUtils.requireNonNull(workflow, "workflow");
+        submitted.increment();
+        RunTask task = new RunTask(workflow);
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            reject(task, e.getMessage());
+        }
+        return task.future;
+    }
+
+    /**
+     * Submits a new run of a workflow definition.
+     *
+     * @param definition the workflow definition
+     * @return the future of the run, see {@link #submit(Workflow)}
+     */
+    public CompletableFuture<Workflow> submit(WorkflowDefinition definition) {
+        ValidationUtils.requireNonNull(definition, "definition");
+        return submit(definition.newRun());
+    }
+
+    /**
+     * Submits a new run of a workflow definition after seeding its state.
+     *
+     * @param definition the workflow definition
+     * @param seed callback initializing the facts and session context of the run
+     * @return the future of the run, see {@link #submit(Workflow)}
+     */
+    public CompletableFuture<Workflow> submit(WorkflowDefinition definition, Consumer<Workflow> seed) {
+        ValidationUtils.requireNonNull(definition, "definition");
+        ValidationUtils.requireNonNull(seed, "seed");
+        Workflow workflow = definition.newRun();
+        seed.accept(workflow);
+        return submit(workflow);
+    }
+
+    /**
+     * Stops accepting new runs. Queued and running runs are still executed.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        logger.info("Workflow engine shut down");
+    }
+
+    /**
+     * Stops accepting new runs and fails the futures of all queued runs.
+     * Running runs are interrupted.
+     */
+    public void shutdownNow() {
+        for (Runnable queued : executor.shutdownNow()) {
+            reject((RunTask) queued, "engine was shut down");
+        }
+        logger.info("Workflow engine shut down immediately");
+    }
+
+    /**
+     * Waits for all runs to finish after a shutdown.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the time unit of the timeout argument
+     * @return true if all runs finished, false if the timeout elapsed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Gets the number of runs currently executing.
+     *
+     * @return the number of active runs
+     */
+    public int getActiveRuns() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * Gets the number of runs waiting in the submission queue.
+     *
+     * @return the number of queued runs
+     */
+    public int getQueuedRuns() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Gets the number of runs submitted so far.
+     *
+     * @return the number of submitted runs
+     */
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    /**
+     * Gets the number of runs that completed successfully.
+     *
+     * @return the number of completed runs
+     */
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    /**
+     * Gets the number of runs that failed.
+     *
+     * @return the number of failed runs
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * Gets the number of runs that were rejected or shed.
+     *
+     * @return the number of rejected runs
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Fails the future of a run that will not be executed.
+     */
+    private void reject(RunTask task, String reason) {
+        rejected.increment();
+        logger.warn("workflow {} rejected: {}", task.workflow.getId(), reason);
+        task.future.completeExceptionally(new RejectedExecutionException(
+                String.format("Workflow %s rejected: %s", task.workflow.getId(), reason)));
+    }
+
+    /**
+     * Waits for queue space and enqueues a run, for the {@link RejectionPolicy#BLOCK} policy.
+     * Putting into the queue directly bypasses the pool's own checks, so the wait gives up
+     * when the engine is shut down, and a worker is started if all of them have timed out.
+     */
+    private void block(RunTask task, ThreadPoolExecutor pool) {
+        BlockingQueue<Runnable> queue = pool.getQueue();
+        try {
+            while (!queue.offer(task, BLOCK_RECHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (pool.isShutdown()) {
+                    reject(task, "engine is shut down");
+                    return;
+                }
+                ensureWorker(pool);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            reject(task, "interrupted while waiting for queue space");
+            return;
+        }
+        if (pool.isShutdown() && queue.remove(task)) {
+            reject(task, "engine is shut down");
+            return;
+        }
+        ensureWorker(pool);
+    }
+
+    private static void ensureWorker(ThreadPoolExecutor pool) {
+        if (pool.getPoolSize() == 0) {
+            pool.prestartCoreThread();
+        }
+    }
+
+    /**
+     * A submitted workflow run and its future.
+     */
+    private final class RunTask implements Runnable {
+        private final Workflow workflow;
+        private final CompletableFuture<Workflow> future = new CompletableFuture<>();
+
+        RunTask(Workflow workflow) {
+            this.workflow = workflow;
+        }
+
+        @Override
+        public void run() {
+            if (future.isDone()) {
+                // Cancelled while queued
+                return;
+            }
+            try {
+                workflow.run();
+                completed.increment();
+                future.complete(workflow);
+            } catch (WorkflowExecutionException | RuntimeException e) {
+                failed.increment();
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Applies the configured rejection policy when the submission queue is full.
+     */
+    private final class AdmissionHandler implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor pool) {
+            RunTask task = (RunTask) runnable;
+            if (pool.isShutdown()) {
+                reject(task, "engine is shut down");
+                return;
+            }
+            switch (config.getRejectionPolicy()) {
+                case CALLER_RUNS:
+                    task.run();
+                    break;
+                case BLOCK:
+                    block(task, pool);
+                    break;
+                case DISCARD_OLDEST:
+                    Runnable oldest = pool.getQueue().poll();
+                    if (oldest == null) {
+                        // Nothing queued to shed, e.g. with queue capacity 0: executing again would recurse
+                        reject(task, "no queued run to shed");
+                        break;
+                    }
+                    reject((RunTask) oldest, "shed by a newer submission");
+                    pool.execute(task);
+                    break;
+                case ABORT:
+                default:
+                    reject(task, "submission queue is full");
+                    break;
+            }
+        }
+    }
+}
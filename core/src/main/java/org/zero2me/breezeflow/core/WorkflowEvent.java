@@ -0,0 +1,141 @@
+package org.zero2me.breezeflow.core;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * A workflow or task event delivered to a {@link WorkflowListener}.
+ *
+ * Events carry their data as fields and render the human-readable description only
+ * when {@link #getDescription()} is called, so publishing an event costs one small
+ * allocation and no string formatting.
+ */
+@Getter
+public final class WorkflowEvent {
+    /**
+     * Type of the event.
+     */
+    private final WorkflowEventType type;
+
+    /**
+     * What the event is about, e.g. "Task", "Parallel container" or "Workflow".
+     */
+    private final String subject;
+
+    /**
+     * Id of the workflow run, or null if unknown.
+     */
+    private final String workflowId;
+
+    /**
+     * Id of the task, or null for workflow events.
+     */
+    private final String taskId;
+
+    /**
+     * Name of the task, or null for workflow events.
+     */
+    private final String taskName;
+
+    /**
+     * Additional detail, e.g. a failure message or a cancellation reason, may be null.
+     */
+    private final String detail;
+
+    /**
+     * Wall-clock time of the event in milliseconds since the epoch.
+     */
+    private final long timestampMillis;
+
+    /**
+     * Time since the subject started in nanoseconds, or -1 if not applicable.
+     */
+    private final long durationNanos;
+
+    /**
+     * Failure that caused the event, may be null.
+     */
+    private final Throwable cause;
+
+    @Getter(AccessLevel.NONE)
+    private String description;
+
+    WorkflowEvent(WorkflowEventType type, String subject, String workflowId, String taskId, String taskName,
+                  String detail, long durationNanos, Throwable cause) {
+        this.type = type;
+        this.subject = subject;
+        this.workflowId = workflowId;
+        this.taskId = taskId;
+        this.taskName = taskName;
+        this.detail = detail;
+        this.timestampMillis = System.currentTimeMillis();
+        this.durationNanos = durationNanos;
+        this.cause = cause;
+    }
+
+    /**
+     * Creates an event from an already rendered description.
+     *
+     * @param type the event type
+     * @param description the description
+     * @return the event
+     */
+    static WorkflowEvent rendered(WorkflowEventType type, String description) {
+        WorkflowEvent event = new WorkflowEvent(type, null, null, null, null, null, -1L, null);
+        event.description = description;
+        return event;
+    }
+
+    /**
+     * Gets the human-readable description of this event, rendering it on first use,
+     * e.g. {@code "Task task_1:load failed: file not found"}.
+     *
+     * @return the description
+     */
+    public String getDescription() {
+        String rendered = description;
+        if (rendered == null) {
+            StringBuilder builder = new StringBuilder(64).append(subject).append(' ');
+            if (taskId != null) {
+                builder.append(taskId).append(':').append(taskName);
+            } else {
+                builder.append(workflowId);
+            }
+            builder.append(' ').append(verb(type));
+            if (detail != null) {
+                builder.append(": ").append(detail);
+            }
+            rendered = builder.toString();
+            description = rendered;
+        }
+        return rendered;
+    }
+
+    private static String verb(WorkflowEventType type) {
+        switch (type) {
+            case WORKFLOW_STARTED:
+            case TASK_STARTED:
+                return "started";
+            case WORKFLOW_COMPLETED:
+            case TASK_COMPLETED:
+                return "completed";
+            case WORKFLOW_FAILED:
+            case TASK_FAILED:
+                return "failed";
+            case TASK_CANCELLED:
+                return "cancelled";
+            case TASK_TIMEOUT:
+                return "timed out";
+            case TASK_RETRY:
+                return "retrying";
+            case TERMINATION:
+            default:
+                return "terminated";
+        }
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + getDescription();
+    }
+}
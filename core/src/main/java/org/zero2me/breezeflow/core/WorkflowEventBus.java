@@ -0,0 +1,312 @@
+package org.zero2me.breezeflow.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import lombok.Getter;
+import org.slf4j.Logger;
+
+import org.zero2me.breezeflow.common.LogFactory;
+import org.zero2me.breezeflow.common.NamedThreadFactory;
+import org.zero2me.breezeflow.common.ValidationUtils;
+
+/**
+ * Listener delivering workflow events to several listeners asynchronously.
+ *
+ * Each subscribed listener gets a pre-allocated, lock-free ring buffer and its own
+ * delivery thread, which drains the buffer in batches (see
+ * {@link WorkflowListener#handleBatch}). Publishing a task event only claims a slot in
+ * the buffers of the interested listeners, so a slow listener never runs on a task
+ * thread; when a listener falls behind and its buffer fills up, its
+ * {@link OverflowPolicy} decides whether the publisher waits or events are dropped.
+ *
+ * A bus is passed to a workflow like any other listener and can be shared by many runs.
+ */
+public class WorkflowEventBus extends WorkflowListener {
+    /**
+     * Logger instance for this class.
+     */
+    private static final Logger logger = LogFactory.getLogger(WorkflowEventBus.class);
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * Union of the interests of all subscribed listeners, indexed by ordinal.
+     */
+    private volatile boolean[] interests = new boolean[WorkflowEventType.values().length];
+
+    /**
+     * Subscribes a listener with the default configuration.
+     *
+     * @param listener the listener
+     * @return the subscription
+     */
+    public Subscription subscribe(WorkflowListener listener) {
+        return subscribe(listener, new EventBusConfig());
+    }
+
+    /**
+     * Subscribes a listener.
+     *
+     * @param listener the listener
+     * @param config the buffering configuration of the listener
+     * @return the subscription
+     * @throws IllegalArgumentException if the configuration is invalid
+     */
+    public Subscription subscribe(WorkflowListener listener, EventBusConfig config) {
+        ValidationUtils.requireNonNull(listener, "listener");
+        ValidationUtils.requireNonNull(config, "config");
+        ValidationUtils.requirePositive(config.getBufferSize(), "bufferSize");
+        ValidationUtils.requirePositive(config.getBatchSize(), "batchSize");
+        ValidationUtils.requirePositive(config.getSampleRate(), "sampleRate");
+        Subscription subscription = new Subscription(listener, config);
+        subscriptions.add(subscription);
+        updateInterests();
+        subscription.start();
+        return subscription;
+    }
+
+    private void updateInterests() {
+        boolean[] union = new boolean[WorkflowEventType.values().length];
+        for (Subscription subscription : subscriptions) {
+            for (WorkflowEventType type : WorkflowEventType.values()) {
+                union[type.ordinal()] |= subscription.listener.isInterested(type);
+            }
+        }
+        interests = union;
+    }
+
+    @Override
+    public boolean isInterested(WorkflowEventType type) {
+        return interests[type.ordinal()];
+    }
+
+    /**
+     * Publishes an event to the buffers of all interested listeners.
+     *
+     * @param event the workflow event
+     */
+    @Override
+    public void notify(WorkflowEvent event) {
+        for (Subscription subscription : subscriptions) {
+            if (subscription.listener.isInterested(event.getType())) {
+                subscription.publish(event);
+            }
+        }
+    }
+
+    /**
+     * Waits until every event published so far has been handled.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the time unit of the timeout argument
+     * @return true if all events were handled, false if the timeout elapsed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean flush(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Subscription subscription : subscriptions) {
+            if (!subscription.awaitHandled(subscription.tail.get(), deadline)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Unsubscribes all listeners after delivering the events already buffered.
+     */
+    public void close() {
+        for (Subscription subscription : subscriptions) {
+            subscription.close();
+        }
+    }
+
+    /**
+     * A listener subscribed to the bus, with its ring buffer and delivery thread.
+     *
+     * The buffer is a bounded multi-producer, single-consumer ring: every slot carries a
+     * sequence number telling whether it is free for the producer claiming that position
+     * or filled for the consumer, so producers only contend on one counter and the
+     * delivery thread never takes a lock.
+     */
+    public final class Subscription {
+        @Getter
+        private final WorkflowListener listener;
+        private final OverflowPolicy overflowPolicy;
+        private final int batchSize;
+        private final int sampleRate;
+        private final int capacity;
+        private final int mask;
+        private final AtomicReferenceArray<WorkflowEvent> slots;
+        private final AtomicLongArray sequences;
+        private final AtomicLong tail = new AtomicLong();
+        private final AtomicLong sampleCounter = new AtomicLong();
+        private final LongAdder dropped = new LongAdder();
+        private final Thread consumer;
+        private volatile long head;
+        private volatile boolean waiting;
+        private volatile boolean closed;
+
+        private Subscription(WorkflowListener listener, EventBusConfig config) {
+            this.listener = listener;
+            this.overflowPolicy = config.getOverflowPolicy();
+            this.batchSize = config.getBatchSize();
+            this.sampleRate = config.getSampleRate();
+            int size = Integer.highestOneBit(Math.max(2, config.getBufferSize() - 1)) << 1;
+            this.capacity = size;
+            this.mask = size - 1;
+            this.slots = new AtomicReferenceArray<>(size);
+            this.sequences = new AtomicLongArray(size);
+            for (int i = 0; i < size; i++) {
+                sequences.set(i, i);
+            }
+            this.consumer = new NamedThreadFactory(config.getThreadNamePrefix(), true).newThread(this::deliver);
+        }
+
+        private void start() {
+            consumer.start();
+        }
+
+        /**
+         * Gets the number of events dropped because the listener fell behind.
+         *
+         * @return the number of dropped events
+         */
+        public long getDroppedCount() {
+            return dropped.sum();
+        }
+
+        /**
+         * Gets the number of events waiting to be delivered.
+         *
+         * @return the number of buffered events
+         */
+        public int getBufferedCount() {
+            return (int) Math.max(0L, tail.get() - head);
+        }
+
+        /**
+         * Unsubscribes the listener after delivering the events already buffered.
+         */
+        public void close() {
+            if (subscriptions.remove(this)) {
+                updateInterests();
+            }
+            closed = true;
+            LockSupport.unpark(consumer);
+        }
+
+        private void publish(WorkflowEvent event) {
+            if (closed) {
+                return;
+            }
+            if (overflowPolicy == OverflowPolicy.SAMPLE && !isFailure(event.getType())
+                    && tail.get() - head > capacity / 2
+                    && sampleCounter.incrementAndGet() % sampleRate != 0) {
+                dropped.increment();
+                return;
+            }
+            int spins = 0;
+            while (!offer(event)) {
+                if (overflowPolicy != OverflowPolicy.BLOCK || closed) {
+                    dropped.increment();
+                    return;
+                }
+                // Wait for the delivery thread to free a slot
+                if (++spins < 100) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(10_000L);
+                }
+            }
+            if (waiting) {
+                LockSupport.unpark(consumer);
+            }
+        }
+
+        private boolean isFailure(WorkflowEventType type) {
+            return type == WorkflowEventType.TASK_FAILED || type == WorkflowEventType.WORKFLOW_FAILED
+                    || type == WorkflowEventType.TASK_TIMEOUT;
+        }
+
+        /**
+         * Claims the next slot and fills it.
+         *
+         * @return false if the buffer is full
+         */
+        private boolean offer(WorkflowEvent event) {
+            long position = tail.get();
+            while (true) {
+                int index = (int) (position & mask);
+                long difference = sequences.get(index) - position;
+                if (difference == 0) {
+                    if (tail.compareAndSet(position, position + 1)) {
+                        slots.lazySet(index, event);
+                        // Publish the slot to the consumer
+                        sequences.set(index, position + 1);
+                        return true;
+                    }
+                    position = tail.get();
+                } else if (difference < 0) {
+                    return false;
+                } else {
+                    position = tail.get();
+                }
+            }
+        }
+
+        private void deliver() {
+            List<WorkflowEvent> batch = new ArrayList<>(batchSize);
+            while (true) {
+                long position = head;
+                while (batch.size() < batchSize) {
+                    int index = (int) (position & mask);
+                    if (sequences.get(index) != position + 1) {
+                        break;
+                    }
+                    batch.add(slots.get(index));
+                    slots.lazySet(index, null);
+                    // Free the slot for the producer one lap ahead
+                    sequences.set(index, position + capacity);
+                    position++;
+                }
+                if (!batch.isEmpty()) {
+                    listener.notifyBatch(batch);
+                    batch.clear();
+                    head = position;
+                    continue;
+                }
+                if (closed && tail.get() == head) {
+                    logger.debug("event delivery to {} stopped", listener.getClass().getSimpleName());
+                    return;
+                }
+                waiting = true;
+                if (sequences.get((int) (position & mask)) != position + 1) {
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(1));
+                }
+                waiting = false;
+            }
+        }
+
+        private boolean awaitHandled(long position, long deadline) throws InterruptedException {
+            while (head < position) {
+                if (System.nanoTime() >= deadline) {
+                    return false;
+                }
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                LockSupport.parkNanos(100_000L);
+            }
+            return true;
+        }
+    }
+}
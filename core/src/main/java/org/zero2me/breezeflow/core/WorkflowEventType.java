@@ -34,6 +34,21 @@ public enum WorkflowEventType {
      * Event fired when a task fails during execution.
      */
     TASK_FAILED,
+
+    /**
+     * Event fired when a running task is stopped because its scope was cancelled.
+     */
+    TASK_CANCELLED,
+
+    /**
+     * Event fired when a task or workflow exceeds its timeout.
+     */
+    TASK_TIMEOUT,
+
+    /**
+     * Event fired when a failed task is scheduled for another attempt.
+     */
+    TASK_RETRY,
     
     /**
      * Event fired when a workflow or task is terminated prematurely.
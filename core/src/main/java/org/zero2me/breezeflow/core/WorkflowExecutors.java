@@ -0,0 +1,327 @@
+package org.zero2me.breezeflow.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+
+import org.zero2me.breezeflow.common.LogFactory;
+import org.zero2me.breezeflow.common.NamedThreadFactory;
+
+/**
+ * Engine-owned registry of the executors used for parallel task execution.
+ *
+ * Executors are created lazily on first use and shared by every container and
+ * workflow run whose {@link SessionConfig} resolves to the same executor settings,
+ * so thread creation is paid once instead of on every parallel block.
+ * Executors owned by the registry are shut down gracefully by {@link #shutdown()}
+ * or by a JVM shutdown hook; caller-supplied executors are never shut down.
+ */
+public final class WorkflowExecutors {
+    /**
+     * Logger instance for this class.
+     */
+    private static final Logger logger = LogFactory.getLogger(WorkflowExecutors.class);
+
+    /**
+     * Configuration used when a task runs without an injected session configuration.
+     */
+    private static final SessionConfig DEFAULT_CONFIG = new SessionConfig();
+
+    /**
+     * Shared executors keyed by their settings.
+     */
+    private static final Map<ExecutorKey, ExecutorService> executors = new ConcurrentHashMap<>();
+
+    /**
+     * Whether the JVM shutdown hook has been registered.
+     */
+    private static final AtomicBoolean shutdownHookInstalled = new AtomicBoolean(false);
+
+    /**
+     * Grace period applied by {@link #shutdown()}, taken from the configuration
+     * that most recently created a shared executor.
+     */
+    private static volatile long shutdownTimeoutMillis = DEFAULT_CONFIG.getShutdownTimeoutMillis();
+
+    private WorkflowExecutors() {
+        // Utility class - prevent instantiation
+    }
+
+    /**
+     * Gets the shared executor matching the given configuration, creating it if needed.
+     *
+     * @param sessionConfig the session configuration, may be null to use the defaults
+     * @return the shared executor
+     * @throws IllegalStateException if a custom executor is requested but not configured
+     */
+    public static ExecutorService getExecutor(SessionConfig sessionConfig) {
+        SessionConfig config = sessionConfig != null ? sessionConfig : DEFAULT_CONFIG;
+        if (config.getExecutorType() == ExecutorType.CUSTOM) {
+            ExecutorService custom = config.getCustomExecutor();
+            if (custom == null) {
+                throw new IllegalStateException("executorType is CUSTOM but no customExecutor is configured");
+            }
+            return custom;
+        }
+
+        ExecutorKey key = ExecutorKey.of(config);
+        ExecutorService executor = executors.get(key);
+        if (executor == null || executor.isShutdown()) {
+            if (executor != null) {
+                // Someone shut the shared executor down behind our back - replace it
+                executors.remove(key, executor);
+            }
+            shutdownTimeoutMillis = config.getShutdownTimeoutMillis();
+            executor = executors.computeIfAbsent(key, WorkflowExecutors::createExecutor);
+        }
+        return executor;
+    }
+
+    /**
+     * Gets the executors currently owned by the registry.
+     *
+     * @return a snapshot of the shared executors
+     */
+    static Collection<ExecutorService> sharedExecutors() {
+        return new ArrayList<>(executors.values());
+    }
+
+    /**
+     * Gracefully shuts down all executors owned by the registry, waiting up to
+     * the configured shutdown timeout for running tasks to finish.
+     * Executors are re-created on the next call to {@link #getExecutor(SessionConfig)}.
+     */
+    public static void shutdown() {
+        shutdown(shutdownTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Gracefully shuts down all executors owned by the registry.
+     * Running tasks are given the specified time to finish before the executors
+     * are forcibly shut down.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the time unit of the timeout argument
+     */
+    public static void shutdown(long timeout, TimeUnit unit) {
+        List<ExecutorService> owned = new ArrayList<>();
+        for (ExecutorKey key : new ArrayList<>(executors.keySet())) {
+            ExecutorService executor = executors.remove(key);
+            if (executor != null) {
+                executor.shutdown();
+                owned.add(executor);
+            }
+        }
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (ExecutorService executor : owned) {
+            try {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || !executor.awaitTermination(remaining, TimeUnit.NANOSECONDS)) {
+                    executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (!owned.isEmpty()) {
+            logger.info("Shut down {} shared executor(s)", owned.size());
+        }
+    }
+
+    /**
+     * Runs a blocking operation from a task.
+     * When called on a fork/join worker thread the call is wrapped in
+     * {@link ForkJoinPool#managedBlock}, letting a work-stealing pool add a
+     * compensating thread while this one is blocked (for example on I/O).
+     * On any other thread the operation is simply called.
+     *
+     * @param operation the blocking operation
+     * @param <T> the result type
+     * @return the result of the operation
+     * @throws Exception if the operation fails
+     */
+    public static <T> T runBlocking(Callable<T> operation) throws Exception {
+        if (!(Thread.currentThread() instanceof ForkJoinWorkerThread)) {
+            return operation.call();
+        }
+        CallableBlocker<T> blocker = new CallableBlocker<>(operation);
+        ForkJoinPool.managedBlock(blocker);
+        if (blocker.failure != null) {
+            throw blocker.failure;
+        }
+        return blocker.result;
+    }
+
+    /**
+     * Waits for a future, using managed blocking when called on a fork/join worker thread.
+     *
+     * @param future the future to wait for
+     * @param <T> the result type
+     * @return the result of the future
+     * @throws ExecutionException if the computation failed
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     */
+    static <T> T managedGet(Future<T> future) throws ExecutionException, InterruptedException {
+        if (!future.isDone() && Thread.currentThread() instanceof ForkJoinWorkerThread) {
+            ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                @Override
+                public boolean block() throws InterruptedException {
+                    try {
+                        future.get();
+                    } catch (ExecutionException | CancellationException e) {
+                        // Reported by the get() below
+                    }
+                    return true;
+                }
+
+                @Override
+                public boolean isReleasable() {
+                    return future.isDone();
+                }
+            });
+        }
+        return future.get();
+    }
+
+    /**
+     * Creates a new executor for the given settings.
+     *
+     * @param key the executor settings
+     * @return the created ExecutorService
+     */
+    private static ExecutorService createExecutor(ExecutorKey key) {
+        installShutdownHook();
+        NamedThreadFactory threadFactory = new NamedThreadFactory(key.threadNamePrefix, key.daemon);
+        logger.info("Creating shared {} executor with size: {}", key.type, key.poolSize);
+        switch (key.type) {
+            case CACHED:
+                return new ThreadPoolExecutor(
+                    0,                           // core pool size
+                    Integer.MAX_VALUE,           // maximum pool size
+                    60L,                         // keep alive time
+                    TimeUnit.SECONDS,            // time unit
+                    new SynchronousQueue<>(),    // hand-off queue
+                    threadFactory
+                );
+            case VIRTUAL:
+                return VirtualThreadSupport.newExecutor(key.threadNamePrefix, key.daemon);
+            case WORK_STEALING:
+                return new ForkJoinPool(key.poolSize, threadFactory, null, false);
+            case FIXED:
+            default:
+                return new ThreadPoolExecutor(
+                    key.poolSize,                // core pool size
+                    key.poolSize,                // maximum pool size
+                    60L,                         // keep alive time
+                    TimeUnit.SECONDS,            // time unit
+                    new LinkedBlockingQueue<>(), // work queue
+                    threadFactory,
+                    new ThreadPoolExecutor.CallerRunsPolicy() // rejection policy
+                );
+        }
+    }
+
+    /**
+     * Registers a JVM shutdown hook that gracefully stops the shared executors.
+     */
+    private static void installShutdownHook() {
+        if (shutdownHookInstalled.compareAndSet(false, true)) {
+            Runtime.getRuntime().addShutdownHook(
+                    new Thread(WorkflowExecutors::shutdown, "breezeflow-executor-shutdown"));
+        }
+    }
+
+    /**
+     * Managed blocker calling a blocking operation exactly once.
+     */
+    private static final class CallableBlocker<T> implements ForkJoinPool.ManagedBlocker {
+        private final Callable<T> operation;
+        private T result;
+        private Exception failure;
+        private boolean done;
+
+        CallableBlocker(Callable<T> operation) {
+            this.operation = operation;
+        }
+
+        @Override
+        public boolean block() {
+            if (!done) {
+                try {
+                    result = operation.call();
+                } catch (Exception e) {
+                    failure = e;
+                }
+                done = true;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return done;
+        }
+    }
+
+    /**
+     * Identifies a shared executor by the settings that shape it.
+     */
+    private static final class ExecutorKey {
+        private final ExecutorType type;
+        private final int poolSize;
+        private final String threadNamePrefix;
+        private final boolean daemon;
+
+        private ExecutorKey(ExecutorType type, int poolSize, String threadNamePrefix, boolean daemon) {
+            this.type = type;
+            this.poolSize = poolSize;
+            this.threadNamePrefix = threadNamePrefix;
+            this.daemon = daemon;
+        }
+
+        static ExecutorKey of(SessionConfig config) {
+            int poolSize = config.getThreadPoolSize();
+            if (poolSize <= 0) {
+                poolSize = Runtime.getRuntime().availableProcessors();
+            }
+            ExecutorType type = config.getExecutorType() != null ? config.getExecutorType() : ExecutorType.FIXED;
+            String prefix = config.getThreadNamePrefix() != null ? config.getThreadNamePrefix() : "breezeflow-parallel";
+            // Cached and virtual-thread executors are unbounded, so the configured size does not distinguish them
+            boolean unbounded = type == ExecutorType.CACHED || type == ExecutorType.VIRTUAL;
+            return new ExecutorKey(type, unbounded ? 0 : poolSize, prefix, config.isDaemonThreads());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            ExecutorKey that = (ExecutorKey) o;
+            return poolSize == that.poolSize && daemon == that.daemon
+                    && type == that.type && threadNamePrefix.equals(that.threadNamePrefix);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, poolSize, threadNamePrefix, daemon);
+        }
+    }
+}
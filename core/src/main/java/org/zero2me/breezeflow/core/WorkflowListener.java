@@ -1,5 +1,8 @@
 package org.zero2me.breezeflow.core;
 
+import java.util.Arrays;
+import java.util.List;
+
 import org.slf4j.Logger;
 
 import org.zero2me.breezeflow.common.LogFactory;
@@ -11,35 +14,133 @@ import org.zero2me.breezeflow.common.LogFactory;
  * workflow start/completion, task execution, and failures. Implementations can
  * provide custom handling for these events, such as logging, monitoring, or
  * triggering external systems.
+ *
+ * Listeners override either {@link #handle(WorkflowEvent)} to receive structured
+ * events, or {@link #handle(WorkflowEventType, String)} to receive rendered
+ * descriptions. A listener interested in a few event types only should declare them
+ * through the constructor; events of other types are then never created.
  */
 public abstract class WorkflowListener {
     /**
      * Logger instance for this class.
      */
     private Logger logger = LogFactory.getLogger(WorkflowListener.class);
-    
+
+    /**
+     * Event types this listener handles, indexed by ordinal.
+     */
+    private final boolean[] interests = new boolean[WorkflowEventType.values().length];
+
+    /**
+     * Creates a listener handling all event types.
+     */
+    protected WorkflowListener() {
+        Arrays.fill(interests, true);
+    }
+
+    /**
+     * Creates a listener handling the given event types only.
+     *
+     * @param interests the event types to handle
+     */
+    protected WorkflowListener(WorkflowEventType... interests) {
+        for (WorkflowEventType type : interests) {
+            this.interests[type.ordinal()] = true;
+        }
+    }
+
+    /**
+     * Checks whether this listener handles events of a type.
+     * Publishers check this before creating an event.
+     *
+     * @param type the event type
+     * @return true if events of the type are handled
+     */
+    public boolean isInterested(WorkflowEventType type) {
+        return interests[type.ordinal()];
+    }
+
+    /**
+     * Notifies the listener of a workflow event.
+     * This method safely calls the handle method and catches any exceptions.
+     *
+     * @param event the workflow event
+     */
+    public void notify(WorkflowEvent event) {
+        if (!isInterested(event.getType())) {
+            return;
+        }
+        try {
+            handle(event);
+        } catch (Exception e) {
+            logger.error("handle event {} failed: {}", event.getType(), event.getDescription(), e);
+        }
+    }
+
+    /**
+     * Notifies the listener of a batch of workflow events, in publishing order.
+     * Called by {@link WorkflowEventBus}; this method safely calls handleBatch and
+     * catches any exceptions.
+     *
+     * @param events the workflow events
+     */
+    public void notifyBatch(List<WorkflowEvent> events) {
+        try {
+            handleBatch(events);
+        } catch (Exception e) {
+            logger.error("handle batch of {} events failed", events.size(), e);
+        }
+    }
+
     /**
      * Notifies the listener of a workflow event.
-     * This method safely calls the abstract handle method and catches any exceptions.
+     * This method safely calls the handle method and catches any exceptions.
      * 
      * @param event the type of workflow event
      * @param description a description of the event
      */
     public void notify(WorkflowEventType event, String description) {
-        try {
-            handle(event, description);
-        } catch (Exception e) {
-            logger.error("handle event {} failed: {}", event, description, e);
+        if (isInterested(event)) {
+            notify(WorkflowEvent.rendered(event, description));
+        }
+    }
+
+    /**
+     * Handles a workflow event.
+     * The default implementation renders the event and passes it to
+     * {@link #handle(WorkflowEventType, String)}.
+     *
+     * @param event the workflow event
+     * @throws Exception if an error occurs while handling the event
+     */
+    protected void handle(WorkflowEvent event) throws Exception {
+        handle(event.getType(), event.getDescription());
+    }
+
+    /**
+     * Handles a batch of workflow events delivered by a {@link WorkflowEventBus}.
+     * The default implementation handles the events one by one; listeners writing to
+     * external systems can override it to write a whole batch at once.
+     *
+     * @param events the workflow events, in publishing order
+     * @throws Exception if an error occurs while handling the events
+     */
+    protected void handleBatch(List<WorkflowEvent> events) throws Exception {
+        for (WorkflowEvent event : events) {
+            notify(event);
         }
     }
 
     /**
      * Handles a workflow event.
      * Implementations should provide specific behavior for different event types.
+     * The default implementation does nothing.
      * 
      * @param event the type of workflow event
      * @param description a description of the event
      * @throws Exception if an error occurs while handling the event
      */
-    protected abstract void handle(WorkflowEventType event, String description) throws Exception;
+    protected void handle(WorkflowEventType event, String description) throws Exception {
+        // Leave to the subclass to handle the event
+    }
 }
@@ -0,0 +1,292 @@
+package org.zero2me.breezeflow.core;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import lombok.Getter;
+import org.slf4j.Logger;
+
+import org.zero2me.breezeflow.common.LogFactory;
+
+/**
+ * Engine-wide execution metrics.
+ *
+ * Every task execution is recorded in the {@link TaskMetrics} of its task name, every
+ * workflow run in the workflow counters and latency histogram, and every child handed
+ * to a shared executor in the queue wait histogram. Utilization of the shared executors
+ * is read from the pools on demand. Recording uses striped counters and lock-free
+ * histograms only.
+ *
+ * The metrics are available through this class (pull API) and as MXBeans under the
+ * {@code org.zero2me.breezeflow} JMX domain. Recording can be turned off with
+ * {@link #setEnabled(boolean)}.
+ *
+ * Task metrics and their MBeans are kept for the lifetime of the JVM, one per task name.
+ * Once {@link #getMaxTaskNames()} names are tracked, tasks with further names are recorded
+ * under {@link #OTHER_TASKS}, so generated task names cannot grow the registry without bound.
+ */
+public final class WorkflowMetrics implements WorkflowMetricsMXBean {
+    /**
+     * Logger instance for this class.
+     */
+    private static final Logger logger = LogFactory.getLogger(WorkflowMetrics.class);
+
+    static final String JMX_DOMAIN = "org.zero2me.breezeflow";
+
+    /**
+     * Name under which tasks are recorded once the maximum number of task names is reached.
+     */
+    public static final String OTHER_TASKS = "(other)";
+
+    private static final WorkflowMetrics INSTANCE = new WorkflowMetrics();
+
+    private final ConcurrentHashMap<String, TaskMetrics> tasks = new ConcurrentHashMap<>();
+
+    /**
+     * Latencies of workflow runs.
+     */
+    @Getter
+    private final LatencyHistogram workflowLatency = new LatencyHistogram();
+
+    /**
+     * Time children waited between being handed to a shared executor and starting.
+     */
+    @Getter
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+
+    private final LongAdder workflowsStarted = new LongAdder();
+    private final LongAdder workflowsFailed = new LongAdder();
+    private volatile boolean enabled = true;
+    private volatile int maxTaskNames = 1024;
+
+    private WorkflowMetrics() {
+        register(JMX_DOMAIN + ":type=WorkflowMetrics", this);
+    }
+
+    /**
+     * Gets the engine-wide metrics.
+     *
+     * @return the metrics
+     */
+    public static WorkflowMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Gets the metrics of a task name.
+     *
+     * @param name the task name
+     * @return the metrics, or null if no task with this name has run
+     */
+    public TaskMetrics getTaskMetrics(String name) {
+        return tasks.get(name);
+    }
+
+    /**
+     * Gets the metrics of all task names.
+     *
+     * @return an unmodifiable view of the task metrics
+     */
+    public Collection<TaskMetrics> getAllTaskMetrics() {
+        return Collections.unmodifiableCollection(tasks.values());
+    }
+
+    @Override
+    public List<String> getTaskNames() {
+        return new ArrayList<>(tasks.keySet());
+    }
+
+    @Override
+    public int getMaxTaskNames() {
+        return maxTaskNames;
+    }
+
+    @Override
+    public void setMaxTaskNames(int maxTaskNames) {
+        if (maxTaskNames < 1) {
+            throw new IllegalArgumentException("maxTaskNames must be at least 1");
+        }
+        this.maxTaskNames = maxTaskNames;
+    }
+
+    /**
+     * Gets the metrics of a task name for recording, creating them on first use.
+     * Once the maximum number of task names is reached, new names get the metrics
+     * of {@link #OTHER_TASKS}.
+     *
+     * @param name the task name
+     * @return the metrics, or null if recording is disabled
+     */
+    TaskMetrics task(String name) {
+        if (!enabled) {
+            return null;
+        }
+        TaskMetrics metrics = tasks.get(name);
+        if (metrics == null) {
+            if (tasks.size() >= maxTaskNames) {
+                if (!tasks.containsKey(OTHER_TASKS)) {
+                    logger.warn("{} task names tracked, recording further task names as {}", maxTaskNames, OTHER_TASKS);
+                }
+                name = OTHER_TASKS;
+            }
+            metrics = tasks.computeIfAbsent(name, TaskMetrics::new);
+            register(JMX_DOMAIN + ":type=TaskMetrics,name=" + ObjectName.quote(name), metrics);
+        }
+        return metrics;
+    }
+
+    void workflowStarted() {
+        if (enabled) {
+            workflowsStarted.increment();
+        }
+    }
+
+    void workflowCompleted(long nanos) {
+        if (enabled) {
+            workflowLatency.record(nanos);
+        }
+    }
+
+    void workflowFailed() {
+        if (enabled) {
+            workflowsFailed.increment();
+        }
+    }
+
+    /**
+     * Records how long a child waited for a pool thread.
+     *
+     * @param queuedAtNanos the {@link System#nanoTime()} at which the child was handed to the executor
+     */
+    void queueWait(long queuedAtNanos) {
+        if (enabled) {
+            queueWait.record(System.nanoTime() - queuedAtNanos);
+        }
+    }
+
+    @Override
+    public long getWorkflowsStarted() {
+        return workflowsStarted.sum();
+    }
+
+    @Override
+    public long getWorkflowsCompleted() {
+        return workflowLatency.getCount();
+    }
+
+    @Override
+    public long getWorkflowsFailed() {
+        return workflowsFailed.sum();
+    }
+
+    @Override
+    public double getWorkflowP50Millis() {
+        return workflowLatency.getPercentile(50, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public double getWorkflowP99Millis() {
+        return workflowLatency.getPercentile(99, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public double getQueueWaitP50Millis() {
+        return queueWait.getPercentile(50, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public double getQueueWaitP99Millis() {
+        return queueWait.getPercentile(99, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public double getQueueWaitMaxMillis() {
+        return queueWait.getMax(TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public int getPoolSize() {
+        int size = 0;
+        for (ExecutorService executor : WorkflowExecutors.sharedExecutors()) {
+            if (executor instanceof ThreadPoolExecutor) {
+                size += ((ThreadPoolExecutor) executor).getPoolSize();
+            } else if (executor instanceof ForkJoinPool) {
+                size += ((ForkJoinPool) executor).getPoolSize();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public int getActiveThreads() {
+        int active = 0;
+        for (ExecutorService executor : WorkflowExecutors.sharedExecutors()) {
+            if (executor instanceof ThreadPoolExecutor) {
+                active += ((ThreadPoolExecutor) executor).getActiveCount();
+            } else if (executor instanceof ForkJoinPool) {
+                active += ((ForkJoinPool) executor).getActiveThreadCount();
+            }
+        }
+        return active;
+    }
+
+    @Override
+    public long getQueuedTasks() {
+        long queued = 0;
+        for (ExecutorService executor : WorkflowExecutors.sharedExecutors()) {
+            if (executor instanceof ThreadPoolExecutor) {
+                queued += ((ThreadPoolExecutor) executor).getQueue().size();
+            } else if (executor instanceof ForkJoinPool) {
+                ForkJoinPool pool = (ForkJoinPool) executor;
+                queued += pool.getQueuedSubmissionCount() + pool.getQueuedTaskCount();
+            }
+        }
+        return queued;
+    }
+
+    @Override
+    public void reset() {
+        for (TaskMetrics metrics : tasks.values()) {
+            metrics.reset();
+        }
+        workflowLatency.reset();
+        queueWait.reset();
+        workflowsStarted.reset();
+        workflowsFailed.reset();
+    }
+
+    static void register(String name, Object bean) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(name);
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(bean, objectName);
+            }
+        } catch (Exception | LinkageError e) {
+            // JMX is optional - the pull API keeps working
+            logger.warn("Failed to register MBean {}: {}", name, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package org.zero2me.breezeflow.core;
+
+import java.util.List;
+
+/**
+ * JMX view of the engine-wide {@link WorkflowMetrics}.
+ */
+public interface WorkflowMetricsMXBean {
+    /** Whether metrics are recorded. */
+    boolean isEnabled();
+
+    /** Turns metric recording on or off. */
+    void setEnabled(boolean enabled);
+
+    /** Names of the tasks with metrics. */
+    List<String> getTaskNames();
+
+    /** Maximum number of task names with their own metrics. */
+    int getMaxTaskNames();
+
+    /** Sets the maximum number of task names with their own metrics. */
+    void setMaxTaskNames(int maxTaskNames);
+
+    /** Number of workflow runs started. */
+    long getWorkflowsStarted();
+
+    /** Number of workflow runs completed. */
+    long getWorkflowsCompleted();
+
+    /** Number of workflow runs failed. */
+    long getWorkflowsFailed();
+
+    /** Median workflow run latency in milliseconds. */
+    double getWorkflowP50Millis();
+
+    /** 99th percentile workflow run latency in milliseconds. */
+    double getWorkflowP99Millis();
+
+    /** Median time tasks waited for a pool thread in milliseconds. */
+    double getQueueWaitP50Millis();
+
+    /** 99th percentile time tasks waited for a pool thread in milliseconds. */
+    double getQueueWaitP99Millis();
+
+    /** Maximum time a task waited for a pool thread in milliseconds. */
+    double getQueueWaitMaxMillis();
+
+    /** Number of threads in the shared executors. */
+    int getPoolSize();
+
+    /** Number of threads of the shared executors running tasks. */
+    int getActiveThreads();
+
+    /** Number of tasks waiting in the shared executors. */
+    long getQueuedTasks();
+
+    /** Forgets all recorded metrics. */
+    void reset();
+}
@@ -0,0 +1,204 @@
+package org.zero2me.breezeflow.core;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.Getter;
+
+/**
+ * Span tree of one sampled workflow run.
+ *
+ * The root span covers the workflow; every container and task executed during the run
+ * adds a span whose parent is the container that ran it, whichever pool thread it ran on.
+ * Runs are sampled according to {@link SessionConfig#getTraceSampleRate()}, so unsampled
+ * runs pay a single null check per task. A finished trace is available from
+ * {@link Workflow#getTrace()} and is passed to {@link SessionConfig#getTraceConsumer()}.
+ *
+ * Traces can be exported as Chrome trace-event JSON (chrome://tracing, Perfetto) or as
+ * OTLP/JSON (OpenTelemetry collectors, Jaeger, Tempo).
+ */
+public final class WorkflowTrace {
+    /**
+     * Id of the traced workflow run.
+     */
+    @Getter
+    private final String workflowId;
+
+    /**
+     * Random 128-bit trace id as 32 lowercase hex digits.
+     */
+    @Getter
+    private final String traceId;
+
+    private final long anchorEpochNanos;
+    private final long anchorNanos;
+    private final AtomicLong nextSpanId = new AtomicLong();
+    private final Queue<TraceSpan> spans = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger spanCount = new AtomicInteger();
+    private volatile TraceSpan root;
+
+    /**
+     * Child spans by parent span id, built on the first {@link #getChildren(TraceSpan)}
+     * call and rebuilt only if spans were added since.
+     */
+    private volatile ChildIndex childIndex;
+
+    WorkflowTrace(String workflowId) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        this.workflowId = workflowId;
+        this.traceId = String.format("%016x%016x", random.nextLong(), random.nextLong());
+        this.anchorEpochNanos = System.currentTimeMillis() * 1_000_000L;
+        this.anchorNanos = System.nanoTime();
+    }
+
+    /**
+     * Decides whether a run is traced.
+     *
+     * @param sampleRate fraction of runs to trace, between 0 and 1
+     * @return true if the run is traced
+     */
+    static boolean sample(double sampleRate) {
+        return sampleRate >= 1.0 || (sampleRate > 0.0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    /**
+     * Starts a span on the current thread.
+     *
+     * @param parent the parent span, null for the root span
+     * @param kind what is executed
+     * @param name name of the workflow or task
+     * @param subjectId id of the workflow or task
+     * @param concurrent whether the children of the span may run concurrently
+     * @return the started span
+     */
+    TraceSpan startSpan(TraceSpan parent, String kind, String name, String subjectId, boolean concurrent) {
+        TraceSpan span = new TraceSpan(this, nextSpanId.incrementAndGet(),
+                parent != null ? parent.getSpanId() : 0L, kind, name, subjectId, concurrent);
+        if (parent == null) {
+            root = span;
+        }
+        spans.add(span);
+        spanCount.incrementAndGet();
+        return span;
+    }
+
+    /**
+     * Converts a {@link System#nanoTime()} reading to wall-clock time.
+     */
+    long toEpochNanos(long nanos) {
+        return anchorEpochNanos + (nanos - anchorNanos);
+    }
+
+    /**
+     * Gets the span of the workflow.
+     *
+     * @return the root span
+     */
+    public TraceSpan getRoot() {
+        return root;
+    }
+
+    /**
+     * Gets all spans ordered by start time.
+     *
+     * @return a snapshot of the spans
+     */
+    public List<TraceSpan> getSpans() {
+        List<TraceSpan> snapshot = new ArrayList<>(spans);
+        snapshot.sort(Comparator.comparingLong(TraceSpan::getStartNanos));
+        return snapshot;
+    }
+
+    /**
+     * Gets the direct children of a span ordered by start time.
+     *
+     * @param parent the parent span
+     * @return an unmodifiable list of the child spans
+     */
+    public List<TraceSpan> getChildren(TraceSpan parent) {
+        ChildIndex index = childIndex;
+        int count = spanCount.get();
+        if (index == null || index.spanCount != count) {
+            index = new ChildIndex(count, getSpans());
+            childIndex = index;
+        }
+        return index.children.getOrDefault(parent.getSpanId(), Collections.emptyList());
+    }
+
+    /**
+     * Renders this trace as Chrome trace-event JSON.
+     *
+     * @return the JSON document
+     */
+    public String toChromeTrace() {
+        return TraceExporter.chromeTrace(this);
+    }
+
+    /**
+     * Renders this trace as an OTLP/JSON export request.
+     *
+     * @return the JSON document
+     */
+    public String toOtlpJson() {
+        return TraceExporter.otlpJson(this);
+    }
+
+    /**
+     * Writes this trace as Chrome trace-event JSON.
+     *
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void writeChromeTrace(Path file) throws IOException {
+        write(file, toChromeTrace());
+    }
+
+    /**
+     * Writes this trace as an OTLP/JSON export request.
+     *
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void writeOtlpJson(Path file) throws IOException {
+        write(file, toOtlpJson());
+    }
+
+    private static void write(Path file, String json) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(json);
+        }
+    }
+
+    /**
+     * Child spans by parent span id, each list ordered by start time.
+     */
+    private static final class ChildIndex {
+        /**
+         * Number of spans added when the index was built; the index holds at least these.
+         */
+        private final int spanCount;
+        private final Map<Long, List<TraceSpan>> children = new HashMap<>();
+
+        ChildIndex(int spanCount, List<TraceSpan> sortedSpans) {
+            this.spanCount = spanCount;
+            for (TraceSpan span : sortedSpans) {
+                children.computeIfAbsent(span.getParentSpanId(), k -> new ArrayList<>()).add(span);
+            }
+            children.replaceAll((parent, spans) -> Collections.unmodifiableList(spans));
+        }
+    }
+}
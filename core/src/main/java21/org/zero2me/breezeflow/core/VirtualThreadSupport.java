@@ -0,0 +1,29 @@
+package org.zero2me.breezeflow.core;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates the executor backing {@link ExecutorType#VIRTUAL}.
+ *
+ * This is the Java 21 version of the class, packaged under
+ * {@code META-INF/versions/21} of the multi-release JAR.
+ */
+final class VirtualThreadSupport {
+
+    private VirtualThreadSupport() {
+        // Utility class - prevent instantiation
+    }
+
+    /**
+     * Creates an executor that starts a new, named virtual thread for each task.
+     *
+     * @param threadNamePrefix the thread name prefix
+     * @param daemon ignored, virtual threads are always daemon threads
+     * @return the created ExecutorService
+     */
+    static ExecutorService newExecutor(String threadNamePrefix, boolean daemon) {
+        return Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name(threadNamePrefix + "-", 1).factory());
+    }
+}
@@ -0,0 +1,105 @@
+package org.zero2me.breezeflow.core;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+class AsyncTaskTest {
+
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "async-test-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Completes after a delay without holding any thread, like a non-blocking I/O call.
+     */
+    public static class DelayedTask extends AsyncTask {
+        @Override
+        protected boolean preCheck() {
+            return true;
+        }
+
+        @Override
+        protected CompletableFuture<Void> invokeAsync() {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            timer.schedule(() -> {
+                facts.increment("DONE");
+                future.complete(null);
+            }, 200, TimeUnit.MILLISECONDS);
+            return future;
+        }
+    }
+
+    public static class FailingAsyncTask extends AsyncTask {
+        @Override
+        protected boolean preCheck() {
+            return true;
+        }
+
+        @Override
+        protected CompletableFuture<Void> invokeAsync() {
+            return CompletableFuture.failedFuture(new IllegalStateException("boom"));
+        }
+    }
+
+    private static Workflow singleThreadWorkflow() {
+        Workflow workflow = new Workflow();
+        workflow.getSessionConfig().setThreadPoolSize(1);
+        workflow.getSessionConfig().setThreadNamePrefix("async-test");
+        return workflow;
+    }
+
+    @Test
+    void testParallelAsyncTasksDoNotHoldThreads() throws Exception {
+        Workflow workflow = singleThreadWorkflow();
+        ParallelContainer parallel = (ParallelContainer) workflow.buildTask(ParallelContainer.class, "parallel");
+        for (int i = 0; i < 8; i++) {
+            parallel.addTask(workflow.buildTask(DelayedTask.class, "delayed" + i));
+        }
+        DagContainer dag = (DagContainer) workflow.buildTask(DagContainer.class, "dag");
+        Task first = workflow.buildTask(DelayedTask.class, "first");
+        dag.addTask(first);
+        dag.addTask(parallel, first);
+        workflow.addTask(dag);
+
+        long start = System.nanoTime();
+        CompletableFuture<Void> result = workflow.runAsync();
+        result.get(10, TimeUnit.SECONDS);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        Assertions.assertEquals(9L, ((Number) workflow.getFacts().get("DONE")).longValue(), "All tasks should complete");
+        Assertions.assertTrue(elapsedMillis < 1000,
+                "Eight delayed tasks on a one-thread pool should overlap, took " + elapsedMillis + " ms");
+    }
+
+    @Test
+    void testAsyncTaskRunsSynchronously() throws WorkflowExecutionException {
+        Workflow workflow = singleThreadWorkflow();
+        workflow.addTask(DelayedTask.class);
+        workflow.run();
+
+        Assertions.assertEquals(1L, ((Number) workflow.getFacts().get("DONE")).longValue(),
+                "run() should wait for the asynchronous work");
+    }
+
+    @Test
+    void testAsyncFailureFailsWorkflowFuture() {
+        Workflow workflow = singleThreadWorkflow();
+        ParallelContainer parallel = (ParallelContainer) workflow.buildTask(ParallelContainer.class, "parallel");
+        parallel.addTask(workflow.buildTask(DelayedTask.class, "delayed"));
+        parallel.addTask(workflow.buildTask(FailingAsyncTask.class, "failing"));
+        workflow.addTask(parallel);
+
+        ExecutionException failure = Assertions.assertThrows(ExecutionException.class,
+                () -> workflow.runAsync().get(10, TimeUnit.SECONDS));
+        Assertions.assertTrue(failure.getCause() instanceof WorkflowExecutionException,
+                "Workflow future should fail with WorkflowExecutionException");
+    }
+}
@@ -0,0 +1,142 @@
+package org.zero2me.breezeflow.core;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+class CancellationTest {
+
+    /**
+     * Blocks for a long time unless interrupted by a cancellation.
+     */
+    public static class SleepingTask extends Task {
+        @Override
+        protected boolean preCheck() {
+            return true;
+        }
+
+        @Override
+        protected void invoke() {
+            try {
+                Thread.sleep(5000);
+                facts.put("SLEPT", Boolean.TRUE);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("sleep interrupted", e);
+            }
+        }
+    }
+
+    public static class FailingTask extends Task {
+        @Override
+        protected boolean preCheck() {
+            return true;
+        }
+
+        @Override
+        protected void invoke() {
+            sleepQuietly();
+            throw new IllegalStateException("boom");
+        }
+    }
+
+    public static class TerminatingTask extends Task {
+        @Override
+        protected boolean preCheck() {
+            return true;
+        }
+
+        @Override
+        protected void invoke() {
+            sleepQuietly();
+            terminate();
+        }
+    }
+
+    private static void sleepQuietly() {
+        try {
+            Thread.sleep(100);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Workflow parallelWorkflow(Class<? extends Task> trigger, List<WorkflowEventType> events) {
+        Workflow workflow = new Workflow(new WorkflowListener() {
+            @Override
+            protected void handle(WorkflowEventType event, String description) {
+                synchronized (events) {
+                    events.add(event);
+                }
+            }
+        });
+        workflow.getSessionConfig().setThreadPoolSize(4);
+        workflow.getSessionConfig().setThreadNamePrefix("cancellation-test");
+        ParallelContainer parallel = (ParallelContainer) workflow.buildTask(ParallelContainer.class, "parallel");
+        parallel.addTask(workflow.buildTask(SleepingTask.class, "sleeper"));
+        parallel.addTask(workflow.buildTask(trigger, "trigger"));
+        workflow.addTask(parallel);
+        return workflow;
+    }
+
+    @Test
+    void testFailureCancelsParallelSiblings() {
+        List<WorkflowEventType> events = new ArrayList<>();
+        Workflow workflow = parallelWorkflow(FailingTask.class, events);
+
+        long start = System.nanoTime();
+        Assertions.assertThrows(WorkflowExecutionException.class, workflow::run,
+                "The sibling failure should still fail the workflow");
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        Assertions.assertTrue(elapsedMillis < 2000,
+                "The sleeping sibling should be interrupted, took " + elapsedMillis + " ms");
+        Assertions.assertNull(workflow.getFacts().get("SLEPT"), "The sleeping sibling should not finish");
+        synchronized (events) {
+            Assertions.assertTrue(events.contains(WorkflowEventType.TASK_CANCELLED),
+                    "The interrupted sibling should be reported as cancelled");
+        }
+    }
+
+    @Test
+    void testTerminateCancelsRunningTasks() throws WorkflowExecutionException {
+        List<WorkflowEventType> events = new ArrayList<>();
+        Workflow workflow = parallelWorkflow(TerminatingTask.class, events);
+
+        long start = System.nanoTime();
+        workflow.run();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        Assertions.assertTrue(elapsedMillis < 2000,
+                "Terminate should interrupt the sleeping task, took " + elapsedMillis + " ms");
+        Assertions.assertTrue(workflow.getCancellationToken().isCancelled(), "The run should be cancelled");
+        synchronized (events) {
+            Assertions.assertFalse(events.contains(WorkflowEventType.WORKFLOW_FAILED),
+                    "A terminated workflow should not fail");
+        }
+    }
+
+    @Test
+    void testTokenHierarchy() {
+        CancellationToken root = new CancellationToken();
+        CancellationToken first = root.child();
+        CancellationToken second = root.child();
+        CancellationToken nested = first.child();
+
+        Assertions.assertTrue(first.cancel("first failed"), "First cancel should succeed");
+        Assertions.assertFalse(first.cancel("again"), "Second cancel should be a no-op");
+        Assertions.assertTrue(nested.isCancelled(), "Nested scope should be cancelled with its parent");
+        Assertions.assertFalse(root.isCancelled(), "Cancelling a child should not cancel the root");
+        Assertions.assertFalse(second.isCancelled(), "Cancelling a child should not cancel its siblings");
+
+        second.close();
+        root.cancel("stopped");
+        Assertions.assertFalse(second.isCancelled(), "A closed scope should be detached from its parent");
+        Assertions.assertSame(root, nested.root(), "root() should return the top of the hierarchy");
+        Assertions.assertThrows(CancellationException.class, root::throwIfCancelled);
+    }
+}
@@ -0,0 +1,138 @@
+package org.zero2me.breezeflow.core;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+class ChannelTest {
+
+    private static final int RECORDS = 10_000;
+    private static final AtomicLong sum = new AtomicLong();
+    private static final AtomicInteger maxBuffered = new AtomicInteger();
+
+    public static class ProducerTask extends Task {
+        @Override
+        protected boolean preCheck() {
+            return true;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void invoke() {
+            Channel<Integer> channel = (Channel<Integer>) sessionContext.getVariable("RECORDS");
+            boolean failing = Boolean.TRUE.equals(sessionContext.getVariable("FAIL_PRODUCER"));
+            try {
+                for (int i = 1; i <= RECORDS; i++) {
+                    if (failing && i == RECORDS / 2) {
+                        throw new IllegalStateException("source broken");
+                    }
+                    channel.send(i);
+                    maxBuffered.accumulateAndGet(channel.size(), Math::max);
+                }
+                channel.close();
+            } catch (RuntimeException e) {
+                channel.fail(e);
+                throw e;
+            }
+        }
+    }
+
+    public static class ConsumerTask extends Task {
+        @Override
+        protected boolean preCheck() {
+            return true;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void invoke() {
+            Channel<Integer> channel = (Channel<Integer>) sessionContext.getVariable("RECORDS");
+            boolean failing = Boolean.TRUE.equals(sessionContext.getVariable("FAIL_CONSUMER"));
+            channel.forEach(record -> {
+                if (failing) {
+                    throw new IllegalStateException("sink broken");
+                }
+                sum.addAndGet(record);
+            });
+        }
+    }
+
+    private static Workflow pipeline(String failing) {
+        Workflow workflow = pipeline(4, 3, false);
+        if (failing != null) {
+            workflow.getSessionContext().setVariable(failing, true);
+        }
+        return workflow;
+    }
+
+    private static Workflow pipeline(int threads, int consumers, boolean consumersFirst) {
+        sum.set(0);
+        maxBuffered.set(0);
+        Workflow workflow = new Workflow();
+        workflow.getSessionConfig().setThreadPoolSize(threads);
+        workflow.getSessionConfig().setThreadNamePrefix("channel-test-" + threads);
+        workflow.getSessionContext().setVariable("RECORDS", new Channel<Integer>(4));
+        ParallelContainer parallel = (ParallelContainer) workflow.buildTask(ParallelContainer.class, "pipeline");
+        if (!consumersFirst) {
+            parallel.addTask(workflow.buildTask(ProducerTask.class, "producer"));
+        }
+        for (int i = 0; i < consumers; i++) {
+            parallel.addTask(workflow.buildTask(ConsumerTask.class, "consumer" + i));
+        }
+        if (consumersFirst) {
+            parallel.addTask(workflow.buildTask(ProducerTask.class, "producer"));
+        }
+        workflow.addTask(parallel);
+        return workflow;
+    }
+
+    @Test
+    void testRecordsAreConsumedOnceWithBoundedBuffer() {
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(30), () -> pipeline(null).run());
+        Assertions.assertEquals((long) RECORDS * (RECORDS + 1) / 2, sum.get(), "Every record should be consumed once");
+        Assertions.assertTrue(maxBuffered.get() <= 4, "The channel should never buffer more than its capacity");
+    }
+
+    @Test
+    void testPipelineCompletesWithFewerThreadsThanStages() {
+        for (boolean consumersFirst : new boolean[] {false, true}) {
+            Assertions.assertTimeoutPreemptively(Duration.ofSeconds(30), () -> pipeline(1, 1, consumersFirst).run(),
+                    "The calling thread should run the stage the single pool thread has not started");
+            Assertions.assertEquals((long) RECORDS * (RECORDS + 1) / 2, sum.get());
+        }
+
+        Workflow workStealing = pipeline(1, 3, false);
+        workStealing.getSessionConfig().setExecutorType(ExecutorType.WORK_STEALING);
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(30), () -> workStealing.run(),
+                "Blocked stages should let the work-stealing pool start threads for the others");
+        Assertions.assertEquals((long) RECORDS * (RECORDS + 1) / 2, sum.get());
+    }
+
+    @Test
+    void testFailuresEndTheStream() {
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            Assertions.assertThrows(WorkflowExecutionException.class, () -> pipeline("FAIL_PRODUCER").run(),
+                    "A producer failure should fail the pipeline");
+            Assertions.assertThrows(WorkflowExecutionException.class, () -> pipeline("FAIL_CONSUMER").run(),
+                    "Failing consumers should not leave the producer blocked");
+        });
+
+        Channel<String> channel = new Channel<>(2);
+        channel.send("a");
+        channel.close();
+        Assertions.assertThrows(ChannelClosedException.class, () -> channel.send("b"));
+        Assertions.assertEquals("a", channel.receive(), "Buffered records should survive close");
+        Assertions.assertNull(channel.receive(), "End of stream should be signalled with null");
+        Assertions.assertTrue(channel.isDrained());
+
+        Channel<String> failed = new Channel<>(2);
+        failed.send("a");
+        IllegalStateException cause = new IllegalStateException("broken");
+        failed.fail(cause);
+        ChannelClosedException error = Assertions.assertThrows(ChannelClosedException.class, failed::receive);
+        Assertions.assertSame(cause, error.getCause(), "Consumers should see the producer failure");
+    }
+}
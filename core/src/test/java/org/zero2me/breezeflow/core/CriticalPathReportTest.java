@@ -0,0 +1,90 @@
+package org.zero2me.breezeflow.core;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+class CriticalPathReportTest {
+
+    /**
+     * Sleeps for the number of milliseconds in its name after the colon, e.g. "slow:60".
+     */
+    public static class SleepingTask extends Task {
+        @Override
+        protected boolean preCheck() {
+            return true;
+        }
+
+        @Override
+        protected void invoke() {
+            try {
+                Thread.sleep(Long.parseLong(getName().substring(getName().indexOf(':') + 1)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static Workflow tracedWorkflow(int threads) {
+        Workflow workflow = new Workflow();
+        workflow.getSessionConfig().setThreadPoolSize(threads);
+        workflow.getSessionConfig().setThreadNamePrefix("critical-path-test-" + threads);
+        workflow.getSessionConfig().setTraceSampleRate(1.0);
+        return workflow;
+    }
+
+    private static TraceSpan span(WorkflowTrace trace, String name) {
+        return trace.getSpans().stream().filter(s -> s.getName().equals(name)).findFirst()
+                .orElseThrow(() -> new AssertionError("no span " + name));
+    }
+
+    @Test
+    void testSlowBranchIsCriticalAndFastBranchHasSlack() throws WorkflowExecutionException {
+        Workflow workflow = tracedWorkflow(4);
+        ParallelContainer parallel = (ParallelContainer) workflow.buildTask(ParallelContainer.class, "branches");
+        parallel.addTask(workflow.buildTask(SleepingTask.class, "slow:80"));
+        parallel.addTask(workflow.buildTask(SleepingTask.class, "fast:10"));
+        workflow.addTask(parallel);
+        workflow.addTask(SleepingTask.class, "after:10");
+        workflow.run();
+
+        CriticalPathReport report = CriticalPathReport.analyze(workflow.getTrace());
+        WorkflowTrace trace = workflow.getTrace();
+        Assertions.assertTrue(report.isCritical(span(trace, "slow:80")), "The slow branch bounded the run");
+        Assertions.assertTrue(report.isCritical(span(trace, "after:10")), "The task after the join is on the path");
+        Assertions.assertFalse(report.isCritical(span(trace, "fast:10")), "The fast branch is not on the path");
+        Assertions.assertTrue(report.getSlack(span(trace, "fast:10"), TimeUnit.MILLISECONDS) >= 50,
+                "The fast branch could have been delayed: " + report);
+        Assertions.assertTrue(report.getMaxSpeedup() < 1.3, "More threads would not help: " + report);
+
+        CriticalPathReport.ContainerUtilization branches = report.getConcurrentContainers().get(0);
+        Assertions.assertEquals("branches", branches.getSpan().getName());
+        Assertions.assertTrue(branches.getIdle(TimeUnit.MILLISECONDS) >= 50,
+                "The thread of the fast branch sat idle: " + branches);
+
+        String dot = report.toDot();
+        Assertions.assertTrue(dot.startsWith("digraph"));
+        Assertions.assertTrue(dot.contains("color=red"), "The critical path should be highlighted");
+        Assertions.assertTrue(dot.contains("slack"), "Off-path spans should show their slack");
+    }
+
+    @Test
+    void testThreadStarvedContainerPredictsSpeedup() throws WorkflowExecutionException {
+        Workflow workflow = tracedWorkflow(1);
+        ParallelContainer parallel = (ParallelContainer) workflow.buildTask(ParallelContainer.class, "starved");
+        for (int i = 0; i < 6; i++) {
+            parallel.addTask(workflow.buildTask(SleepingTask.class, "leaf" + i + ":30"));
+        }
+        workflow.addTask(parallel);
+        workflow.run();
+
+        CriticalPathReport report = CriticalPathReport.analyze(workflow.getTrace());
+        Assertions.assertTrue(report.getIdealLatency(TimeUnit.MILLISECONDS) < 60,
+                "With unlimited threads the leaves would run at once: " + report);
+        Assertions.assertTrue(report.getMaxSpeedup() >= 2.0, "More threads should help: " + report);
+        Assertions.assertTrue(report.getCriticalPath().stream().filter(s -> s.getName().startsWith("leaf")).count() >= 2,
+                "Leaves queued behind each other should all be on the path: " + report);
+        Assertions.assertTrue(report.toString().contains("Critical path:"));
+    }
+}
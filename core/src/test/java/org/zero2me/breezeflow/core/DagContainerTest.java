@@ -0,0 +1,93 @@
+package org.zero2me.breezeflow.core;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+class DagContainerTest {
+
+    public static class RecordTask extends Task {
+        static final List<String> order = new CopyOnWriteArrayList<>();
+
+        @Override
+        protected boolean preCheck() {
+            return true;
+        }
+
+        @Override
+        protected void invoke() {
+            order.add(getName());
+        }
+    }
+
+    public static class FailingTask extends Task {
+        @Override
+        protected boolean preCheck() {
+            return true;
+        }
+
+        @Override
+        protected void invoke() {
+            throw new IllegalStateException("boom");
+        }
+    }
+
+    @Test
+    void testTasksRunAfterTheirDependencies() throws WorkflowExecutionException {
+        Workflow workflow = new Workflow();
+        DagContainer dag = (DagContainer) workflow.buildTask(DagContainer.class, "dag");
+        Task read = workflow.buildTask(RecordTask.class, "read");
+        Task left = workflow.buildTask(RecordTask.class, "left");
+        Task right = workflow.buildTask(RecordTask.class, "right");
+        Task join = workflow.buildTask(RecordTask.class, "join");
+        dag.addTask(read);
+        dag.addTask(left, read);
+        dag.addTask(right, read);
+        dag.addTask(join, left, right);
+        workflow.addTask(dag);
+
+        RecordTask.order.clear();
+        workflow.run();
+
+        List<String> order = RecordTask.order;
+        Assertions.assertEquals(4, order.size(), "All tasks should have run once");
+        Assertions.assertEquals("read", order.get(0), "Root task should run first");
+        Assertions.assertEquals("join", order.get(3), "Join task should run after both branches");
+    }
+
+    @Test
+    void testCycleIsRejectedAtBuildTime() {
+        Workflow workflow = new Workflow();
+        DagContainer dag = (DagContainer) workflow.buildTask(DagContainer.class, "dag");
+        Task a = workflow.buildTask(RecordTask.class, "a");
+        Task b = workflow.buildTask(RecordTask.class, "b");
+        Task c = workflow.buildTask(RecordTask.class, "c");
+        dag.addTask(a);
+        dag.addTask(b, a);
+        dag.addTask(c, b);
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> dag.addDependency(a, c),
+                "A dependency closing a cycle should be rejected");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> dag.addDependency(a, a),
+                "A self dependency should be rejected");
+    }
+
+    @Test
+    void testFailureStopsDependentTasks() {
+        Workflow workflow = new Workflow();
+        DagContainer dag = (DagContainer) workflow.buildTask(DagContainer.class, "dag");
+        Task failing = workflow.buildTask(FailingTask.class, "failing");
+        Task dependent = workflow.buildTask(RecordTask.class, "dependent");
+        dag.addTask(failing);
+        dag.addTask(dependent, failing);
+        workflow.addTask(dag);
+
+        RecordTask.order.clear();
+        Assertions.assertThrows(WorkflowExecutionException.class, workflow::run,
+                "A failing task should fail the workflow");
+        Assertions.assertFalse(RecordTask.order.contains("dependent"),
+                "Tasks depending on a failed task should not run");
+    }
+}
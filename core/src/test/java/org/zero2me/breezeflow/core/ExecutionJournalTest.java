@@ -0,0 +1,253 @@
+package org.zero2me.breezeflow.core;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+class ExecutionJournalTest {
+
+    private static final Map<String, AtomicInteger> runs = new ConcurrentHashMap<>();
+    private static volatile String failingTask;
+
+    public static class CountingTask extends Task {
+        @Override
+        protected boolean preCheck() {
+            return true;
+        }
+
+        @Override
+        protected void invoke() {
+            runs.computeIfAbsent(getName(), k -> new AtomicInteger()).incrementAndGet();
+            if (getName().equals(failingTask)) {
+                throw new IllegalStateException("crash in " + getName());
+            }
+            facts.put(getName(), true);
+            sessionContext.setVariable("last", getName());
+            Integer count = (Integer) sessionContext.getVariable("count");
+            sessionContext.setVariable("count", count == null ? 1 : count + 1);
+        }
+    }
+
+    public static class AppendingTask extends Task {
+        @Override
+        protected boolean preCheck() {
+            return true;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void invoke() {
+            if (getName().equals(failingTask)) {
+                throw new IllegalStateException("crash in " + getName());
+            }
+            // Mutates the list in place and sets it again, as the journal requires
+            List<String> visited = (List<String>) sessionContext.getVariable("visited");
+            visited.add(getName());
+            sessionContext.setVariable("visited", visited);
+            facts.remove("pending");
+        }
+    }
+
+    static final class Receipt implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final String task;
+
+        Receipt(String task) {
+            this.task = task;
+        }
+    }
+
+    public static class ReceiptTask extends Task {
+        @Override
+        protected boolean preCheck() {
+            return true;
+        }
+
+        @Override
+        protected void invoke() {
+            runs.computeIfAbsent(getName(), k -> new AtomicInteger()).incrementAndGet();
+            if (getName().equals(failingTask)) {
+                throw new IllegalStateException("crash in " + getName());
+            }
+            sessionContext.setVariable("receipt_" + getName(), new Receipt(getName()));
+        }
+    }
+
+    @BeforeEach
+    void reset() {
+        runs.clear();
+        failingTask = null;
+    }
+
+    private static Workflow journaledWorkflow(ExecutionJournal journal, int taskCount) {
+        Workflow workflow = new Workflow();
+        for (int i = 0; i < taskCount; i++) {
+            workflow.addTask(CountingTask.class, "step" + i);
+        }
+        workflow.setJournal(journal);
+        return workflow;
+    }
+
+    private static int runCount(String task) {
+        AtomicInteger count = runs.get(task);
+        return count == null ? 0 : count.get();
+    }
+
+    @Test
+    void testResumeSkipsCompletedTasks(@TempDir Path dir) throws Exception {
+        String workflowId;
+        try (ExecutionJournal journal = ExecutionJournal.open(dir)) {
+            Workflow workflow = journaledWorkflow(journal, 3);
+            workflow.getFacts().put("input", 42L);
+            workflowId = workflow.getId();
+            failingTask = "step1";
+            Assertions.assertThrows(WorkflowExecutionException.class, workflow::run);
+        }
+
+        // A new process builds the workflow again and resumes it from the journal
+        failingTask = null;
+        try (ExecutionJournal journal = ExecutionJournal.open(dir)) {
+            Assertions.assertThrows(IllegalStateException.class, () -> journaledWorkflow(journal, 0).resume(),
+                    "A workflow with different tasks should not resume the journal");
+
+            Workflow resumed = journaledWorkflow(journal, 3);
+            resumed.resume();
+
+            Assertions.assertEquals(workflowId, resumed.getId(), "The resumed run should keep its workflow id");
+            Assertions.assertEquals(1, runCount("step0"), "Completed tasks should not run again");
+            Assertions.assertEquals(2, runCount("step1"), "The failed task should run again");
+            Assertions.assertEquals(1, runCount("step2"));
+            Assertions.assertEquals(Long.valueOf(42L), resumed.getFacts().get("input"), "Initial facts should be restored");
+            Assertions.assertTrue(resumed.getFacts().isTrue("step0"), "Facts of completed tasks should be restored");
+            Assertions.assertEquals(3, resumed.getSessionContext().getVariable("count"));
+            Assertions.assertEquals("step2", resumed.getSessionContext().getVariable("last"));
+
+            // A completed run is not repeated
+            journaledWorkflow(journal, 3).resume();
+            Assertions.assertEquals(1, runCount("step2"));
+        }
+    }
+
+    @Test
+    void testResumeRestoresValuesMutatedInPlace(@TempDir Path dir) throws Exception {
+        try (ExecutionJournal journal = ExecutionJournal.open(dir)) {
+            Workflow workflow = new Workflow();
+            workflow.addTask(AppendingTask.class, "first");
+            workflow.addTask(AppendingTask.class, "second");
+            workflow.setJournal(journal);
+            workflow.getSessionContext().setVariable("visited", new ArrayList<>());
+            workflow.getFacts().put("pending", true);
+            failingTask = "second";
+            Assertions.assertThrows(WorkflowExecutionException.class, workflow::run);
+        }
+
+        try (ExecutionJournal journal = ExecutionJournal.open(dir)) {
+            ExecutionJournal.Recovery recovery = journal.recover();
+            Assertions.assertEquals(List.of("first"), recovery.getContext().get("visited"),
+                    "The list should be recorded with the element added by the completed task");
+            Assertions.assertFalse(recovery.getFacts().containsKey("pending"), "The removed fact should be recorded");
+        }
+    }
+
+    @Test
+    void testResumeWithSerializableValue(@TempDir Path dir) throws Exception {
+        for (boolean filtered : new boolean[] {false, true}) {
+            runs.clear();
+            Path journalDir = dir.resolve(filtered ? "filtered" : "unfiltered");
+            JournalConfig config = new JournalConfig();
+            if (filtered) {
+                config.getCodec().setSerialFilter(
+                        ObjectInputFilter.Config.createFilter(Receipt.class.getName() + ";java.lang.*;!*"));
+            }
+            try (ExecutionJournal journal = ExecutionJournal.open(journalDir, config)) {
+                failingTask = "second";
+                Assertions.assertThrows(WorkflowExecutionException.class, () -> receiptWorkflow(journal).run());
+            }
+
+            failingTask = null;
+            try (ExecutionJournal journal = ExecutionJournal.open(journalDir, config)) {
+                Workflow resumed = receiptWorkflow(journal);
+                resumed.resume();
+
+                Assertions.assertEquals(filtered ? 1 : 2, runCount("first"), filtered
+                        ? "With a serial filter the completed task should not run again"
+                        : "Without a serial filter the journal should stop recording and repeat the task");
+                Assertions.assertEquals("first",
+                        ((Receipt) resumed.getSessionContext().getVariable("receipt_first")).task);
+            }
+        }
+    }
+
+    private static Workflow receiptWorkflow(ExecutionJournal journal) {
+        Workflow workflow = new Workflow();
+        workflow.addTask(ReceiptTask.class, "first");
+        workflow.addTask(ReceiptTask.class, "second");
+        workflow.setJournal(journal);
+        return workflow;
+    }
+
+    @Test
+    void testRecoveryAcrossSegmentsIgnoresTornRecord(@TempDir Path dir) throws Exception {
+        JournalConfig config = new JournalConfig();
+        config.setSegmentSize(512);
+        try (ExecutionJournal journal = ExecutionJournal.open(dir, config)) {
+            failingTask = "step15";
+            Assertions.assertThrows(WorkflowExecutionException.class, () -> journaledWorkflow(journal, 20).run());
+        }
+
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(dir)) {
+            segments = files.sorted().collect(Collectors.toList());
+        }
+        Assertions.assertTrue(segments.size() > 1, "Records should span several segments: " + segments);
+        tearLastRecord(segments.get(segments.size() - 1));
+
+        failingTask = null;
+        try (ExecutionJournal journal = ExecutionJournal.open(dir, config)) {
+            Workflow resumed = journaledWorkflow(journal, 20);
+            resumed.resume();
+
+            for (int i = 0; i < 15; i++) {
+                Assertions.assertEquals(1, runCount("step" + i), "step" + i + " should not run again");
+            }
+            Assertions.assertEquals(2, runCount("step15"));
+            Assertions.assertEquals(20, resumed.getSessionContext().getVariable("count"));
+        }
+    }
+
+    /**
+     * Corrupts the payload of the last record, as a crash in the middle of a write would.
+     */
+    private static void tearLastRecord(Path segment) throws IOException {
+        byte[] bytes = Files.readAllBytes(segment);
+        int position = 0;
+        int last = -1;
+        while (position + 8 <= bytes.length) {
+            int length = ((bytes[position] & 0xff) << 24) | ((bytes[position + 1] & 0xff) << 16)
+                    | ((bytes[position + 2] & 0xff) << 8) | (bytes[position + 3] & 0xff);
+            if (length <= 0) {
+                break;
+            }
+            last = position;
+            position += 8 + length;
+        }
+        Assertions.assertTrue(last >= 0, "The last segment should hold a record");
+        bytes[last + 8] ^= 0x7f;
+        Files.write(segment, bytes);
+    }
+}
@@ -0,0 +1,106 @@
+package org.zero2me.breezeflow.core;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class FactsTest {
+
+    @Test
+    void testPutReplacesFactWithSameName() {
+        Facts facts = new Facts();
+        facts.put("DONE", false);
+        facts.put("DONE", true);
+
+        Assertions.assertTrue(facts.isTrue("DONE"), "Later put should replace the earlier value");
+        Assertions.assertEquals(1, facts.asMap().size(), "Facts should be unique by name");
+    }
+
+    @Test
+    void testAtomicOperations() {
+        Facts facts = new Facts();
+
+        Assertions.assertNull(facts.putIfAbsent("OWNER", "a"), "First putIfAbsent should add the fact");
+        Assertions.assertEquals("a", facts.putIfAbsent("OWNER", "b"), "Second putIfAbsent should keep the fact");
+
+        Assertions.assertFalse(facts.compareAndSet("OWNER", "b", "c"), "CAS with a wrong expected value should fail");
+        Assertions.assertTrue(facts.compareAndSet("OWNER", "a", "c"), "CAS with the current value should succeed");
+        Assertions.assertEquals("c", facts.get("OWNER"));
+
+        Assertions.assertEquals("c-d", facts.merge("OWNER", "d", (current, value) -> current + "-" + value));
+        Assertions.assertNull(facts.compute("OWNER", (name, current) -> null), "Null from compute should remove");
+        Assertions.assertNull(facts.getFact("OWNER"));
+    }
+
+    @Test
+    void testConcurrentCountersAreExact() throws InterruptedException {
+        Facts facts = new Facts();
+        int threads = 8;
+        int increments = 10_000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < increments; i++) {
+                    facts.increment("COUNT");
+                    facts.put("FACT_" + (i % 100), i);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        Assertions.assertEquals((long) threads * increments, ((Number) facts.get("COUNT")).longValue(),
+                "No increment should be lost under contention");
+        Assertions.assertEquals(101, facts.asMap().size(), "Each fact name should be stored once");
+    }
+
+    @Test
+    void testContendedCompareAndSetHasOneWinner() throws InterruptedException {
+        int threads = 8;
+        for (int round = 0; round < 200; round++) {
+            Facts facts = new Facts();
+            facts.put("OWNER", "initial");
+            AtomicInteger winners = new AtomicInteger();
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                String candidate = "owner-" + t;
+                Thread worker = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    if (facts.compareAndSet("OWNER", "initial", candidate)) {
+                        winners.incrementAndGet();
+                    }
+                });
+                worker.start();
+                workers.add(worker);
+            }
+            start.countDown();
+            for (Thread worker : workers) {
+                worker.join();
+            }
+
+            Assertions.assertEquals(1, winners.get(), "Exactly one CAS from the same expected value should win");
+            Assertions.assertNotEquals("initial", facts.get("OWNER"));
+        }
+    }
+}
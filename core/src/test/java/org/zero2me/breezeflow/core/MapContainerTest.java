@@ -0,0 +1,145 @@
+package org.zero2me.breezeflow.core;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+class MapContainerTest {
+
+    public static class SquareSumTask extends ChunkTask<Integer, Long> {
+        @Override
+        protected Long process(List<Integer> chunk) {
+            long sum = 0;
+            for (int value : chunk) {
+                sum += (long) value * value;
+            }
+            return sum;
+        }
+    }
+
+    public static class UpperCaseTask extends ChunkTask<String, List<String>> {
+        @Override
+        protected List<String> process(List<String> chunk) {
+            if (chunk.contains("poison")) {
+                throw new IllegalStateException("poisoned chunk");
+            }
+            return chunk.stream().map(String::toUpperCase).collect(Collectors.toList());
+        }
+    }
+
+    public static class TerminatingCountTask extends ChunkTask<Integer, Long> {
+        @Override
+        protected Long process(List<Integer> chunk) {
+            if (chunk.contains(2)) {
+                terminate();
+            }
+            return (long) chunk.size();
+        }
+    }
+
+    private static MapContainer addMap(Workflow workflow) {
+        workflow.getSessionConfig().setThreadPoolSize(4);
+        MapContainer map = (MapContainer) workflow.buildTask(MapContainer.class, "map");
+        workflow.addTask(map);
+        return map;
+    }
+
+    @Test
+    void testRangeIsReducedInChunks() throws WorkflowExecutionException {
+        Workflow workflow = new Workflow();
+        MapContainer map = addMap(workflow);
+        map.setRange(0, 100_000);
+        map.setTemplate((ChunkTask<?, ?>) workflow.buildTask(SquareSumTask.class, "square_sum"));
+        map.<Long>setReducer(Long::sum);
+        map.setOutput("SUM_OF_SQUARES");
+
+        workflow.run();
+
+        long expected = IntStream.range(0, 100_000).mapToLong(i -> (long) i * i).sum();
+        Assertions.assertEquals(expected, workflow.getSessionContext().getVariable("SUM_OF_SQUARES"));
+        TaskMetrics metrics = WorkflowMetrics.getInstance().getTaskMetrics("square_sum");
+        Assertions.assertTrue(metrics.getCompletedCount() > 1, "The range should be split into several chunks");
+        Assertions.assertTrue(metrics.getCompletedCount() <= 100, "Chunks should not be created per element");
+    }
+
+    @Test
+    void testUnboundedPoolDoesNotSplitPerElement() throws WorkflowExecutionException {
+        Workflow workflow = new Workflow();
+        MapContainer map = addMap(workflow);
+        workflow.getSessionConfig().setExecutorType(ExecutorType.CACHED);
+        map.setRange(0, 100_000);
+        map.setTemplate((ChunkTask<?, ?>) workflow.buildTask(SquareSumTask.class, "cached_square_sum"));
+        map.<Long>setReducer(Long::sum);
+        map.setOutput("SUM_OF_SQUARES");
+
+        workflow.run();
+
+        long expected = IntStream.range(0, 100_000).mapToLong(i -> (long) i * i).sum();
+        Assertions.assertEquals(expected, workflow.getSessionContext().getVariable("SUM_OF_SQUARES"));
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        long chunks = WorkflowMetrics.getInstance().getTaskMetrics("cached_square_sum").getCompletedCount();
+        Assertions.assertTrue(chunks > 1, "The range should be split into several chunks");
+        Assertions.assertTrue(chunks <= (threads + 1) * 4L,
+                "A cached pool should not split the range per element, got " + chunks + " chunks");
+    }
+
+    @Test
+    void testPartialResultsKeepInputOrder() throws WorkflowExecutionException {
+        Workflow workflow = new Workflow();
+        MapContainer map = addMap(workflow);
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            words.add("w" + i);
+        }
+        workflow.getSessionContext().setVariable("WORDS", words);
+        map.setInput("WORDS");
+        map.setChunkSize(3);
+        map.setTemplate((ChunkTask<?, ?>) workflow.buildTask(UpperCaseTask.class, "upper"));
+        map.setOutput("UPPER");
+
+        workflow.run();
+
+        @SuppressWarnings("unchecked")
+        List<List<String>> partials = (List<List<String>>) workflow.getSessionContext().getVariable("UPPER");
+        Assertions.assertEquals(4, partials.size(), "Ten elements in chunks of three give four partial results");
+        Assertions.assertEquals(words.stream().map(String::toUpperCase).collect(Collectors.toList()),
+                partials.stream().flatMap(List::stream).collect(Collectors.toList()));
+
+        words.set(7, "poison");
+        Workflow failingWorkflow = new Workflow();
+        MapContainer failing = addMap(failingWorkflow);
+        failingWorkflow.getSessionContext().setVariable("WORDS", words);
+        failing.setInput("WORDS");
+        failing.setTemplate((ChunkTask<?, ?>) failingWorkflow.buildTask(UpperCaseTask.class, "upper"));
+        failing.setOutput("UPPER");
+        Assertions.assertThrows(WorkflowExecutionException.class, failingWorkflow::run,
+                "A failing chunk should fail the container");
+        Assertions.assertNull(failingWorkflow.getSessionContext().getVariable("UPPER"));
+    }
+
+    @Test
+    void testTerminatedMapDoesNotStoreIncompleteResult() throws WorkflowExecutionException {
+        for (boolean reduced : new boolean[] {false, true}) {
+            Workflow workflow = new Workflow();
+            workflow.getSessionConfig().setThreadPoolSize(1);
+            MapContainer map = (MapContainer) workflow.buildTask(MapContainer.class, "map");
+            workflow.addTask(map);
+            map.setRange(0, 50);
+            map.setChunkSize(1);
+            map.setTemplate((ChunkTask<?, ?>) workflow.buildTask(TerminatingCountTask.class, "terminating_count"));
+            if (reduced) {
+                map.<Long>setReducer(Long::sum);
+            }
+            map.setOutput("OUT");
+
+            workflow.run();
+
+            Assertions.assertNull(workflow.getSessionContext().getVariable("OUT"),
+                    "A map with skipped chunks should not store a result");
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package org.zero2me.breezeflow.core;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class OutputCacheTest {
+
+    private static final AtomicInteger invocations = new AtomicInteger();
+
+    public static class WordCountTask extends Task {
+        @Override
+        protected boolean preCheck() {
+            return true;
+        }
+
+        @Override
+        protected void invoke() {
+            invocations.incrementAndGet();
+            String content = (String) sessionContext.getVariable("CONTENT");
+            sessionContext.setVariable("WORD_COUNT", content.split("\\s+").length);
+            facts.put("COUNTED", true);
+        }
+    }
+
+    public static class ListSizeTask extends Task {
+        @Override
+        protected boolean preCheck() {
+            return true;
+        }
+
+        @Override
+        protected void invoke() {
+            invocations.incrementAndGet();
+            List<?> words = (List<?>) sessionContext.getVariable("WORDS");
+            sessionContext.setVariable("SIZE", words.size());
+        }
+    }
+
+    public static class TokensTask extends Task {
+        @Override
+        protected boolean preCheck() {
+            return true;
+        }
+
+        @Override
+        protected void invoke() {
+            invocations.incrementAndGet();
+            int[] lengths = (int[]) sessionContext.getVariable("LENGTHS");
+            List<String> tokens = new ArrayList<>();
+            for (int length : lengths) {
+                tokens.add("x".repeat(length));
+            }
+            sessionContext.setVariable("TOKENS", tokens);
+        }
+    }
+
+    @BeforeEach
+    void reset() {
+        invocations.set(0);
+    }
+
+    private static Workflow countingWorkflow(OutputCache cache, String content) {
+        Workflow workflow = new Workflow();
+        workflow.getSessionContext().setVariable("CONTENT", content);
+        Task task = workflow.addTask(WordCountTask.class, "count_words");
+        task.declareInputs("CONTENT");
+        task.declareOutputs("WORD_COUNT", "COUNTED");
+        task.setOutputCache(cache);
+        return workflow;
+    }
+
+    @Test
+    void testHitSkipsInvoke() throws Exception {
+        OutputCache cache = OutputCache.of("output-cache-test-hit");
+
+        countingWorkflow(cache, "one two three").run();
+        Workflow cached = countingWorkflow(cache, "one two three");
+        cached.run();
+        Assertions.assertEquals(1, invocations.get(), "The second run should be answered from the cache");
+        Assertions.assertEquals(3, cached.getSessionContext().getVariable("WORD_COUNT"));
+        Assertions.assertTrue(cached.getFacts().isTrue("COUNTED"), "Output facts should be restored");
+
+        Workflow other = countingWorkflow(cache, "one two");
+        other.runAsync().get();
+        Assertions.assertEquals(2, invocations.get(), "Different inputs should miss");
+        Assertions.assertEquals(2, other.getSessionContext().getVariable("WORD_COUNT"));
+
+        Assertions.assertEquals(1, cache.getHitCount());
+        Assertions.assertEquals(2, cache.getMissCount());
+        Assertions.assertEquals(2, cache.getSize());
+        Assertions.assertEquals(1.0 / 3, cache.getHitRate(), 1e-9);
+    }
+
+    @Test
+    void testWeightBoundAndExpiry() throws Exception {
+        CacheConfig bounded = new CacheConfig();
+        // Every entry weighs only its fixed overhead, so the cache keeps the most recent entry
+        bounded.setWeigher(outputs -> 0);
+        bounded.setMaximumWeight(200);
+        OutputCache lru = OutputCache.of("output-cache-test-lru", bounded);
+        countingWorkflow(lru, "a").run();
+        countingWorkflow(lru, "b").run();
+        countingWorkflow(lru, "a").run();
+        Assertions.assertEquals(3, invocations.get(), "The least recently used entry should have been evicted");
+        Assertions.assertEquals(1, lru.getSize());
+        Assertions.assertTrue(lru.getWeight() <= lru.getMaximumWeight());
+        Assertions.assertEquals(2, lru.getEvictionCount());
+
+        CacheConfig expiring = new CacheConfig();
+        expiring.setTtlMillis(20);
+        OutputCache ttl = OutputCache.of("output-cache-test-ttl", expiring);
+        countingWorkflow(ttl, "x y").run();
+        Thread.sleep(40);
+        countingWorkflow(ttl, "x y").run();
+        Assertions.assertEquals(5, invocations.get(), "Expired entries should not be used");
+        Assertions.assertEquals(1, ttl.getExpiredCount());
+    }
+
+    @Test
+    void testInputsAreCopiedAndWeighed() throws Exception {
+        OutputCache cache = OutputCache.of("output-cache-test-inputs");
+        List<String> words = new ArrayList<>(Arrays.asList("a", "b"));
+        sizeWorkflow(cache, words).run();
+        // Mutating the input afterwards must not change the cached key
+        words.add("c");
+
+        sizeWorkflow(cache, new ArrayList<>(Arrays.asList("a", "b"))).run();
+        Assertions.assertEquals(1, invocations.get(), "An equal input should hit the entry of the mutated one");
+
+        OutputCache weighed = OutputCache.of("output-cache-test-input-weight");
+        String document = "x".repeat(10_000);
+        countingWorkflow(weighed, document).run();
+        Assertions.assertTrue(weighed.getWeight() >= 2L * document.length(),
+                "The weight should include the input values, was " + weighed.getWeight());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testOutputsAreCopiedAndArraysComparedByContent() throws Exception {
+        OutputCache cache = OutputCache.of("output-cache-test-outputs");
+        Workflow first = tokensWorkflow(cache, new int[] {1, 2});
+        first.run();
+        ((List<String>) first.getSessionContext().getVariable("TOKENS")).add("mutated");
+
+        Workflow second = tokensWorkflow(cache, new int[] {1, 2});
+        second.run();
+        Assertions.assertEquals(1, invocations.get(), "An equal array input should hit the entry");
+        List<String> restored = (List<String>) second.getSessionContext().getVariable("TOKENS");
+        Assertions.assertEquals(Arrays.asList("x", "xx"), restored,
+                "Changes made by the producing run should not reach the cache");
+        restored.clear();
+
+        Workflow third = tokensWorkflow(cache, new int[] {1, 2});
+        third.run();
+        Assertions.assertEquals(Arrays.asList("x", "xx"), third.getSessionContext().getVariable("TOKENS"),
+                "Changes made by a restoring run should not reach the cache");
+        Assertions.assertEquals(1, invocations.get());
+    }
+
+    private static Workflow tokensWorkflow(OutputCache cache, int[] lengths) {
+        Workflow workflow = new Workflow();
+        workflow.getSessionContext().setVariable("LENGTHS", lengths);
+        Task task = workflow.addTask(TokensTask.class, "tokens");
+        task.declareInputs("LENGTHS");
+        task.declareOutputs("TOKENS");
+        task.setOutputCache(cache);
+        return workflow;
+    }
+
+    private static Workflow sizeWorkflow(OutputCache cache, List<String> words) {
+        Workflow workflow = new Workflow();
+        workflow.getSessionContext().setVariable("WORDS", words);
+        Task task = workflow.addTask(ListSizeTask.class, "list_size");
+        task.declareInputs("WORDS");
+        task.declareOutputs("SIZE");
+        task.setOutputCache(cache);
+        return workflow;
+    }
+}
@@ -0,0 +1,92 @@
+package org.zero2me.breezeflow.core;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+class ReactiveContainerTest {
+
+    /**
+     * Records its name and sets the fact {@code <name>_DONE}.
+     */
+    public static class SetFactTask extends Task {
+        static final List<String> order = new CopyOnWriteArrayList<>();
+
+        @Override
+        protected boolean preCheck() {
+            return true;
+        }
+
+        @Override
+        protected void invoke() {
+            order.add(getName());
+            facts.put(getName() + "_DONE", true);
+        }
+    }
+
+    @Test
+    void testTasksFireWhenRequiredFactsBecomeTrue() throws WorkflowExecutionException {
+        Workflow workflow = new Workflow();
+        ReactiveContainer reactive = (ReactiveContainer) workflow.buildTask(ReactiveContainer.class, "reactive");
+
+        Task last = workflow.buildTask(SetFactTask.class, "last");
+        last.requireFacts("first_DONE", "second_DONE");
+        Task second = workflow.buildTask(SetFactTask.class, "second");
+        second.requireFacts("first_DONE");
+        Task first = workflow.buildTask(SetFactTask.class, "first");
+
+        // Added in reverse order on purpose
+        reactive.addTask(last);
+        reactive.addTask(second);
+        reactive.addTask(first);
+        workflow.addTask(reactive);
+
+        SetFactTask.order.clear();
+        workflow.run();
+
+        Assertions.assertEquals(List.of("first", "second", "last"), SetFactTask.order,
+                "Tasks should fire in the order their required facts become true");
+    }
+
+    @Test
+    void testTaskWithUnmetFactsIsSkipped() throws WorkflowExecutionException {
+        Workflow workflow = new Workflow();
+        ReactiveContainer reactive = (ReactiveContainer) workflow.buildTask(ReactiveContainer.class, "reactive");
+
+        Task blocked = workflow.buildTask(SetFactTask.class, "blocked");
+        blocked.requireFacts("NEVER_SET");
+        reactive.addTask(blocked);
+        reactive.addTask(workflow.buildTask(SetFactTask.class, "free"));
+        workflow.addTask(reactive);
+
+        SetFactTask.order.clear();
+        workflow.run();
+
+        Assertions.assertEquals(List.of("free"), SetFactTask.order,
+                "Only the task without unmet requirements should run");
+    }
+
+    @Test
+    void testTaskFiresWhenAnyAlternativeFactIsTrue() throws WorkflowExecutionException {
+        Workflow workflow = new Workflow();
+        ReactiveContainer reactive = (ReactiveContainer) workflow.buildTask(ReactiveContainer.class, "reactive");
+
+        Task summary = workflow.buildTask(SetFactTask.class, "summary");
+        summary.requireAnyFact("first_DONE", "NEVER_SET");
+        summary.requireFacts("first_DONE");
+        Task blocked = workflow.buildTask(SetFactTask.class, "blocked");
+        blocked.requireAnyFact("NEVER_SET", "ALSO_NEVER_SET");
+        reactive.addTask(summary);
+        reactive.addTask(blocked);
+        reactive.addTask(workflow.buildTask(SetFactTask.class, "first"));
+        workflow.addTask(reactive);
+
+        SetFactTask.order.clear();
+        workflow.run();
+
+        Assertions.assertEquals(List.of("first", "summary"), SetFactTask.order,
+                "One true fact of the group should be enough to fire the task");
+    }
+}
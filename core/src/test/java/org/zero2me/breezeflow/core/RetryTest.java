@@ -0,0 +1,209 @@
+package org.zero2me.breezeflow.core;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class RetryTest {
+
+    /**
+     * Fails with a transient error until the FAILURES fact is used up.
+     */
+    public static class FlakyTask extends Task {
+        @Override
+        protected boolean preCheck() {
+            return true;
+        }
+
+        @Override
+        protected void invoke() {
+            long attempt = facts.increment("ATTEMPTS");
+            Object failures = facts.get("FAILURES");
+            if (failures != null && attempt <= ((Number) failures).longValue()) {
+                throw new IllegalStateException("transient failure " + attempt);
+            }
+        }
+    }
+
+    public static class BrokenDependencyTask extends Task {
+        static final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        protected boolean preCheck() {
+            return true;
+        }
+
+        @Override
+        protected void invoke() {
+            calls.incrementAndGet();
+            throw new IllegalStateException("dependency down");
+        }
+    }
+
+    /**
+     * Only used as the key of its own circuit breaker.
+     */
+    public static class SlowDependencyTask extends Task {
+        @Override
+        protected boolean preCheck() {
+            return true;
+        }
+
+        @Override
+        protected void invoke() {
+        }
+    }
+
+    private static Workflow flakyWorkflow(int failures, RetryPolicy policy, List<WorkflowEventType> events) {
+        Workflow workflow = new Workflow(new WorkflowListener() {
+            @Override
+            protected void handle(WorkflowEventType event, String description) {
+                synchronized (events) {
+                    events.add(event);
+                }
+            }
+        });
+        workflow.getSessionConfig().setThreadNamePrefix("retry-test");
+        workflow.getFacts().put("FAILURES", failures);
+        workflow.addTask(FlakyTask.class, "flaky").setRetryPolicy(policy);
+        return workflow;
+    }
+
+    private static long attempts(Workflow workflow) {
+        return ((Number) workflow.getFacts().get("ATTEMPTS")).longValue();
+    }
+
+    @Test
+    void testTransientFailureIsRetried() throws WorkflowExecutionException {
+        List<WorkflowEventType> events = new ArrayList<>();
+        RetryPolicy policy = new RetryPolicy();
+        policy.setInitialBackoffMillis(10);
+        Workflow workflow = flakyWorkflow(2, policy, events);
+
+        workflow.run();
+
+        Assertions.assertEquals(3, attempts(workflow), "The task should succeed on the third attempt");
+        synchronized (events) {
+            Assertions.assertEquals(2, events.stream().filter(WorkflowEventType.TASK_RETRY::equals).count(),
+                    "Each retry should be announced");
+            Assertions.assertFalse(events.contains(WorkflowEventType.TASK_FAILED), "No failure should be reported");
+        }
+    }
+
+    @Test
+    void testRetriesAreBoundedAndFiltered() {
+        RetryPolicy policy = new RetryPolicy();
+        policy.setInitialBackoffMillis(10);
+        Workflow exhausted = flakyWorkflow(5, policy, new ArrayList<>());
+        Assertions.assertThrows(WorkflowExecutionException.class, exhausted::run, "Retries should give up");
+        Assertions.assertEquals(3, attempts(exhausted), "Only maxAttempts attempts should be made");
+
+        RetryPolicy filtered = new RetryPolicy().retryOn(IllegalArgumentException.class);
+        Workflow notRetryable = flakyWorkflow(1, filtered, new ArrayList<>());
+        Assertions.assertThrows(WorkflowExecutionException.class, notRetryable::run,
+                "A non-retryable failure should fail immediately");
+        Assertions.assertEquals(1, attempts(notRetryable), "A non-retryable failure should not be retried");
+    }
+
+    @Test
+    void testAsyncRetry() throws Exception {
+        RetryPolicy policy = new RetryPolicy();
+        policy.setInitialBackoffMillis(10);
+        Workflow workflow = flakyWorkflow(2, policy, new ArrayList<>());
+
+        workflow.runAsync().get(5, TimeUnit.SECONDS);
+
+        Assertions.assertEquals(3, attempts(workflow), "The task should succeed on the third attempt");
+    }
+
+    @Test
+    void testRetryingChildDoesNotHoldPoolThread() throws Exception {
+        RetryPolicy policy = new RetryPolicy();
+        policy.setInitialBackoffMillis(1000);
+        policy.setJitter(0.0);
+        Workflow workflow = new Workflow();
+        workflow.getSessionConfig().setThreadPoolSize(1);
+        workflow.getSessionConfig().setThreadNamePrefix("retry-pool-test");
+        workflow.getFacts().put("FAILURES", 2);
+        ParallelContainer parallel = (ParallelContainer) workflow.buildTask(ParallelContainer.class, "parallel");
+        for (int i = 0; i < 2; i++) {
+            Task flaky = workflow.buildTask(FlakyTask.class, "flaky" + i);
+            flaky.setRetryPolicy(policy);
+            parallel.addTask(flaky);
+        }
+        workflow.addTask(parallel);
+
+        CompletableFuture<Void> run = CompletableFuture.runAsync(() -> {
+            try {
+                workflow.run();
+            } catch (WorkflowExecutionException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        long waitUntil = System.currentTimeMillis() + 5000;
+        while (workflow.getFacts().get("ATTEMPTS") == null || attempts(workflow) < 2) {
+            Assertions.assertTrue(System.currentTimeMillis() < waitUntil, "Both first attempts should run");
+            Thread.sleep(5);
+        }
+        CompletableFuture<Void> probe = CompletableFuture.runAsync(() -> { },
+                WorkflowExecutors.getExecutor(workflow.getSessionConfig()));
+        probe.get(500, TimeUnit.MILLISECONDS);
+
+        run.get(10, TimeUnit.SECONDS);
+        Assertions.assertEquals(4, attempts(workflow), "Each child should succeed on its second attempt");
+    }
+
+    @Test
+    void testCircuitOpensAfterConsecutiveFailures() {
+        CircuitBreakerConfig config = new CircuitBreakerConfig();
+        config.setFailureThreshold(2);
+        config.setOpenDurationMillis(60000);
+        CircuitBreaker breaker = CircuitBreaker.of(BrokenDependencyTask.class, config);
+        Assertions.assertSame(breaker, CircuitBreaker.of(BrokenDependencyTask.class),
+                "The breaker should be shared by the task class");
+
+        for (int run = 0; run < 3; run++) {
+            Workflow workflow = new Workflow();
+            workflow.addTask(BrokenDependencyTask.class).setCircuitBreaker(breaker);
+            Assertions.assertThrows(WorkflowExecutionException.class, workflow::run);
+        }
+
+        Assertions.assertEquals(2, BrokenDependencyTask.calls.get(), "The third run should be short-circuited");
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, breaker.getState(), "The circuit should be open");
+        breaker.reset();
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(), "Reset should close the circuit");
+    }
+
+    @Test
+    void testLateSuccessDoesNotCloseOpenCircuit() {
+        CircuitBreakerConfig config = new CircuitBreakerConfig();
+        config.setFailureThreshold(1);
+        config.setOpenDurationMillis(60000);
+        CircuitBreaker breaker = CircuitBreaker.of(SlowDependencyTask.class, config);
+
+        long slowCall = breaker.tryAcquire();
+        breaker.onFailure(breaker.tryAcquire());
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        breaker.onSuccess(slowCall);
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, breaker.getState(),
+                "A call started before the circuit opened should not close it");
+        Assertions.assertTrue(breaker.tryAcquire() < 0, "The circuit should still short-circuit calls");
+    }
+
+    @Test
+    void testPolicyRejectsInvalidSettings() {
+        RetryPolicy policy = new RetryPolicy();
+        Assertions.assertThrows(IllegalArgumentException.class, () -> policy.setMaxAttempts(0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> policy.setJitter(1.5));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> policy.setJitter(Double.NaN));
+        policy.setJitter(0.0);
+        policy.setMaxAttempts(1);
+        Assertions.assertEquals(-1L, policy.nextDelayMillis(1, new IllegalStateException()),
+                "A single attempt should never be retried");
+    }
+}
@@ -0,0 +1,176 @@
+package org.zero2me.breezeflow.core;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputFilter;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+class StateCodecTest {
+
+    private static final IntKey RETRIES = TypedKey.intKey("codec_test_retries");
+
+    static final class Point {
+        final int x;
+        final int y;
+
+        Point(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    static final class Label implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final String text;
+
+        Label(String text) {
+            this.text = text;
+        }
+    }
+
+    static final class PointCodec implements ValueCodec<Point> {
+        @Override
+        public void write(Point value, DataOutput out) throws IOException {
+            out.writeInt(value.x);
+            out.writeInt(value.y);
+        }
+
+        @Override
+        public Point read(DataInput in) throws IOException {
+            return new Point(in.readInt(), in.readInt());
+        }
+    }
+
+    private static Facts sampleFacts() {
+        Facts facts = new Facts();
+        facts.put("flag", true);
+        facts.put("count", -7);
+        facts.put("total", 1L << 40);
+        facts.put("ratio", 0.25d);
+        facts.put("label", "café");
+        facts.put("ratioF", 1.5f);
+        facts.put("letter", 'z');
+        facts.put("bytes", new byte[] {1, 2, 3});
+        facts.put("ints", new int[] {-1, 0, Integer.MAX_VALUE});
+        facts.put("list", Arrays.asList("a", 1, null, Collections.singletonMap("k", 2L)));
+        facts.put("point", new Point(3, 4));
+        facts.put(RETRIES, 5);
+        return facts;
+    }
+
+    @Test
+    void testRoundTrip() throws IOException {
+        for (boolean compressed : new boolean[] {false, true}) {
+            StateCodec codec = new StateCodec().register("test.point", Point.class, new PointCodec());
+            codec.setCompressed(compressed);
+            SessionContext context = new SessionContext();
+            context.setVariable("user", "alice");
+            context.setVariable("attempt", 2);
+
+            byte[] snapshot = codec.toBytes(sampleFacts(), context);
+            Facts facts = new Facts();
+            SessionContext restoredContext = new SessionContext();
+            codec.fromBytes(snapshot, facts, restoredContext);
+
+            Assertions.assertTrue(facts.isTrue("flag"));
+            Assertions.assertEquals(Integer.valueOf(-7), facts.get("count"));
+            Assertions.assertEquals(Long.valueOf(1L << 40), facts.get("total"));
+            Assertions.assertEquals(Double.valueOf(0.25d), facts.get("ratio"));
+            Assertions.assertEquals("café", facts.get("label"));
+            Assertions.assertEquals(Float.valueOf(1.5f), facts.get("ratioF"));
+            Assertions.assertEquals(Character.valueOf('z'), facts.get("letter"));
+            Assertions.assertArrayEquals(new byte[] {1, 2, 3}, facts.<byte[]>get("bytes"));
+            Assertions.assertArrayEquals(new int[] {-1, 0, Integer.MAX_VALUE}, facts.<int[]>get("ints"));
+            Assertions.assertEquals(Arrays.asList("a", 1, null, Collections.singletonMap("k", 2L)), facts.get("list"));
+            Point point = facts.get("point");
+            Assertions.assertEquals(3, point.x);
+            Assertions.assertEquals(4, point.y);
+            Assertions.assertEquals(5, facts.get(RETRIES), "Typed facts should be restored into their slots");
+            Assertions.assertEquals("alice", restoredContext.getVariable("user"));
+            Assertions.assertEquals(2, restoredContext.getVariable("attempt"));
+        }
+    }
+
+    @Test
+    void testRepeatedStringsAreWrittenOnce() throws IOException {
+        StateCodec codec = new StateCodec();
+        String status = "status-value-that-repeats";
+        List<String> repeated = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            repeated.add(new String(status.toCharArray()));
+        }
+        Facts facts = new Facts();
+        facts.put("statuses", repeated);
+
+        byte[] snapshot = codec.toBytes(facts, null);
+        Assertions.assertTrue(snapshot.length < 100 * status.length() / 4,
+                "Repeated strings should be referenced, snapshot has " + snapshot.length + " bytes");
+    }
+
+    @Test
+    void testInvalidInput() throws IOException {
+        StateCodec codec = new StateCodec();
+        Facts facts = new Facts();
+        facts.put("thread", new Object());
+        Assertions.assertThrows(NotSerializableException.class, () -> codec.toBytes(facts, null),
+                "Values without codec that are not serializable should be rejected");
+
+        Facts points = new Facts();
+        points.put("point", new Point(1, 2));
+        byte[] snapshot = new StateCodec().register("test.point", Point.class, new PointCodec()).toBytes(points, null);
+        Assertions.assertThrows(StreamCorruptedException.class, () -> codec.fromBytes(snapshot, new Facts(), null),
+                "Reading a user type without its codec should fail");
+
+        byte[] future = snapshot.clone();
+        future[4] = (byte) (StateCodec.FORMAT_VERSION + 1);
+        Assertions.assertThrows(StreamCorruptedException.class, () -> codec.fromBytes(future, new Facts(), null),
+                "Snapshots of a newer format should be rejected");
+        Assertions.assertThrows(StreamCorruptedException.class,
+                () -> codec.fromBytes("not a snapshot".getBytes(), new Facts(), null));
+    }
+
+    @Test
+    void testSerializedValuesRequireFilter() throws IOException {
+        Facts facts = new Facts();
+        facts.put("label", new Label("hello"));
+        byte[] snapshot = new StateCodec().toBytes(facts, null);
+
+        StateCodec codec = new StateCodec();
+        Assertions.assertThrows(InvalidClassException.class, () -> codec.fromBytes(snapshot, new Facts(), null),
+                "Java-serialized values should be rejected without a serial filter");
+
+        codec.setSerialFilter(ObjectInputFilter.Config.createFilter("java.lang.*;!*"));
+        Assertions.assertThrows(InvalidClassException.class, () -> codec.fromBytes(snapshot, new Facts(), null),
+                "Classes outside the allow-list should be rejected");
+
+        codec.setSerialFilter(ObjectInputFilter.Config.createFilter(Label.class.getName() + ";java.lang.*;!*"));
+        Facts restored = new Facts();
+        codec.fromBytes(snapshot, restored, null);
+        Assertions.assertEquals("hello", restored.<Label>get("label").text);
+    }
+
+    @Test
+    void testCorruptLengthDoesNotAllocate() {
+        StateCodec codec = new StateCodec();
+        // Byte, int, long and double arrays claiming Integer.MAX_VALUE elements with no data behind them
+        for (byte tag : new byte[] {11, 12, 13, 14}) {
+            byte[] snapshot = {0x42, 0x46, 0x53, 0x53, (byte) StateCodec.FORMAT_VERSION, 0,
+                    1, 0, 1, 'v', tag, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x07, 1, 2};
+            Assertions.assertThrows(EOFException.class, () -> codec.fromBytes(snapshot, new Facts(), null),
+                    "A length beyond the data should fail at the end of the input");
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package org.zero2me.breezeflow.core;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+class TimeoutTest {
+
+    public static class SleepingTask extends Task {
+        @Override
+        protected boolean preCheck() {
+            return true;
+        }
+
+        @Override
+        protected void invoke() {
+            facts.put("REMAINING_MS", getCancellationToken().getRemaining(TimeUnit.MILLISECONDS));
+            try {
+                Thread.sleep(5000);
+                facts.put("SLEPT", Boolean.TRUE);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("sleep interrupted", e);
+            }
+        }
+    }
+
+    /**
+     * Asynchronous task whose future never completes.
+     */
+    public static class HangingAsyncTask extends AsyncTask {
+        @Override
+        protected boolean preCheck() {
+            return true;
+        }
+
+        @Override
+        protected CompletableFuture<Void> invokeAsync() {
+            return new CompletableFuture<>();
+        }
+    }
+
+    private static Workflow recordingWorkflow(List<WorkflowEventType> events) {
+        Workflow workflow = new Workflow(new WorkflowListener() {
+            @Override
+            protected void handle(WorkflowEventType event, String description) {
+                synchronized (events) {
+                    events.add(event);
+                }
+            }
+        });
+        workflow.getSessionConfig().setThreadPoolSize(4);
+        workflow.getSessionConfig().setThreadNamePrefix("timeout-test");
+        return workflow;
+    }
+
+    private static long elapsedMillis(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    @Test
+    void testTaskTimeoutInterruptsTask() {
+        List<WorkflowEventType> events = new ArrayList<>();
+        Workflow workflow = recordingWorkflow(events);
+        workflow.addTask(SleepingTask.class, "sleeper").setTimeout(100, TimeUnit.MILLISECONDS);
+
+        long start = System.nanoTime();
+        Assertions.assertThrows(WorkflowExecutionException.class, workflow::run, "A timed out task should fail");
+        long elapsed = elapsedMillis(start);
+
+        Assertions.assertTrue(elapsed < 2000, "The task should be interrupted at its deadline, took " + elapsed + " ms");
+        Assertions.assertNull(workflow.getFacts().get("SLEPT"), "The task should not finish");
+        synchronized (events) {
+            Assertions.assertTrue(events.contains(WorkflowEventType.TASK_TIMEOUT), "A timeout event should be fired");
+        }
+    }
+
+    @Test
+    void testWorkflowDeadlinePropagatesToParallelTasks() {
+        List<WorkflowEventType> events = new ArrayList<>();
+        Workflow workflow = recordingWorkflow(events);
+        ParallelContainer parallel = (ParallelContainer) workflow.buildTask(ParallelContainer.class, "parallel");
+        parallel.addTask(workflow.buildTask(SleepingTask.class, "first"));
+        Task second = workflow.buildTask(SleepingTask.class, "second");
+        // Looser than the workflow budget, so the inherited deadline applies
+        second.setTimeout(10, TimeUnit.SECONDS);
+        parallel.addTask(second);
+        workflow.addTask(parallel);
+        workflow.setTimeout(200, TimeUnit.MILLISECONDS);
+
+        long start = System.nanoTime();
+        WorkflowExecutionException failure = Assertions.assertThrows(WorkflowExecutionException.class, workflow::run);
+        long elapsed = elapsedMillis(start);
+
+        Assertions.assertTrue(failure.getCause() instanceof TaskTimeoutException,
+                "The workflow should fail with a timeout");
+        Assertions.assertTrue(elapsed < 2000, "Running tasks should be cancelled at the deadline, took " + elapsed + " ms");
+        long remaining = ((Number) workflow.getFacts().get("REMAINING_MS")).longValue();
+        Assertions.assertTrue(remaining <= 200, "Tasks should see the remaining workflow budget, saw " + remaining + " ms");
+        synchronized (events) {
+            Assertions.assertEquals(1, events.stream().filter(WorkflowEventType.TASK_TIMEOUT::equals).count(),
+                    "Only the workflow deadline should time out");
+            Assertions.assertTrue(events.contains(WorkflowEventType.TASK_CANCELLED),
+                    "The running tasks should be cancelled");
+        }
+    }
+
+    @Test
+    void testAsyncTimeoutCompletesWithoutTheWork() {
+        List<WorkflowEventType> events = new ArrayList<>();
+        Workflow workflow = recordingWorkflow(events);
+        workflow.addTask(HangingAsyncTask.class, "hanging").setTimeout(100, TimeUnit.MILLISECONDS);
+
+        ExecutionException failure = Assertions.assertThrows(ExecutionException.class,
+                () -> workflow.runAsync().get(5, TimeUnit.SECONDS), "The run should fail at the deadline");
+        Assertions.assertTrue(failure.getCause() instanceof WorkflowExecutionException,
+                "Workflow future should fail with WorkflowExecutionException");
+    }
+
+    @Test
+    void testTimerRunsAndCancelsActions() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        WheelTimer.Timeout timeout = WheelTimer.shared().schedule(cancelled::countDown, 50, TimeUnit.MILLISECONDS);
+        WheelTimer.shared().schedule(fired::countDown, 50, TimeUnit.MILLISECONDS);
+
+        Assertions.assertTrue(timeout.cancel(), "A pending action should be cancellable");
+        Assertions.assertTrue(fired.await(2, TimeUnit.SECONDS), "The scheduled action should run");
+        Assertions.assertFalse(cancelled.await(100, TimeUnit.MILLISECONDS), "A cancelled action should not run");
+    }
+
+    @Test
+    void testTimerSurvivesThrowingAction() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        WheelTimer.shared().schedule(() -> {
+            throw new AssertionError("expected by the test");
+        }, 10, TimeUnit.MILLISECONDS);
+        WheelTimer.shared().schedule(fired::countDown, 60, TimeUnit.MILLISECONDS);
+
+        Assertions.assertTrue(fired.await(2, TimeUnit.SECONDS), "An Error thrown by an action should not stop the timer");
+    }
+}
@@ -0,0 +1,121 @@
+package org.zero2me.breezeflow.core;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+class TracingTest {
+
+    public static class SleepingTask extends Task {
+        @Override
+        protected boolean preCheck() {
+            return true;
+        }
+
+        @Override
+        protected void invoke() {
+            try {
+                Thread.sleep(30);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public static class FailingTask extends Task {
+        @Override
+        protected boolean preCheck() {
+            return true;
+        }
+
+        @Override
+        protected void invoke() {
+            throw new IllegalStateException("boom \"quoted\"");
+        }
+    }
+
+    private static Workflow tracedWorkflow(double sampleRate) {
+        Workflow workflow = new Workflow();
+        workflow.getSessionConfig().setThreadPoolSize(4);
+        workflow.getSessionConfig().setThreadNamePrefix("tracing-test");
+        workflow.getSessionConfig().setTraceSampleRate(sampleRate);
+        ParallelContainer parallel = (ParallelContainer) workflow.buildTask(ParallelContainer.class, "fan_out");
+        parallel.addTask(workflow.buildTask(SleepingTask.class, "left"));
+        parallel.addTask(workflow.buildTask(SleepingTask.class, "right"));
+        workflow.addTask(parallel);
+        return workflow;
+    }
+
+    @Test
+    void testSpanTreeFollowsTheTaskTree() throws WorkflowExecutionException {
+        Workflow workflow = tracedWorkflow(1.0);
+        List<WorkflowTrace> consumed = new ArrayList<>();
+        workflow.getSessionConfig().setTraceConsumer(consumed::add);
+
+        workflow.run();
+
+        WorkflowTrace trace = workflow.getTrace();
+        Assertions.assertNotNull(trace, "A fully sampled run should be traced");
+        Assertions.assertEquals(1, consumed.size(), "The finished trace should be handed to the consumer");
+        Assertions.assertEquals(5, trace.getSpans().size(), "Workflow, root container, parallel container and two tasks");
+
+        TraceSpan root = trace.getRoot();
+        Assertions.assertEquals("Workflow", root.getKind());
+        Assertions.assertEquals(TraceSpan.Outcome.COMPLETED, root.getOutcome());
+        TraceSpan rootContainer = trace.getChildren(root).get(0);
+        TraceSpan parallel = trace.getChildren(rootContainer).get(0);
+        Assertions.assertEquals("fan_out", parallel.getName());
+        List<TraceSpan> leaves = trace.getChildren(parallel);
+        Assertions.assertEquals(2, leaves.size(), "Both children should be attached to the parallel container");
+        Assertions.assertSame(leaves, trace.getChildren(parallel), "The child index should be built once");
+        for (TraceSpan leaf : leaves) {
+            Assertions.assertEquals(TraceSpan.Outcome.COMPLETED, leaf.getOutcome());
+            Assertions.assertTrue(leaf.getThreadName().startsWith("tracing-test") || leaf.getThreadName().equals(
+                    Thread.currentThread().getName()), "Spans should record their thread: " + leaf.getThreadName());
+            Assertions.assertTrue(leaf.getDuration(TimeUnit.MILLISECONDS) >= 25, "Spans should be timed");
+            Assertions.assertTrue(leaf.getStartNanos() >= parallel.getStartNanos()
+                    && leaf.getEndNanos() <= parallel.getEndNanos(), "Children should nest inside their parent");
+        }
+    }
+
+    @Test
+    void testUnsampledRunsAreNotTraced() throws WorkflowExecutionException {
+        Workflow workflow = tracedWorkflow(0.0);
+        workflow.run();
+        Assertions.assertNull(workflow.getTrace(), "Tracing should be off by default");
+    }
+
+    @Test
+    void testExportFormats(@TempDir Path dir) throws IOException {
+        Workflow workflow = new Workflow();
+        workflow.getSessionConfig().setTraceSampleRate(1.0);
+        workflow.addTask(FailingTask.class, "failing");
+        Assertions.assertThrows(WorkflowExecutionException.class, workflow::run);
+
+        WorkflowTrace trace = workflow.getTrace();
+        Assertions.assertEquals(TraceSpan.Outcome.FAILED, trace.getRoot().getOutcome());
+
+        Path chrome = dir.resolve("trace.json");
+        trace.writeChromeTrace(chrome);
+        String chromeJson = Files.readString(chrome);
+        Assertions.assertTrue(chromeJson.startsWith("{\"displayTimeUnit\""));
+        Assertions.assertTrue(chromeJson.contains("\"ph\":\"X\""), "Spans should be complete events");
+        Assertions.assertTrue(chromeJson.contains("\"name\":\"thread_name\""), "Threads should be named");
+        Assertions.assertTrue(chromeJson.contains("boom \\\"quoted\\\""), "Details should be escaped");
+
+        Path otlp = dir.resolve("trace.otlp.json");
+        trace.writeOtlpJson(otlp);
+        String otlpJson = Files.readString(otlp);
+        Assertions.assertTrue(otlpJson.startsWith("{\"resourceSpans\""));
+        Assertions.assertTrue(otlpJson.contains("\"traceId\":\"" + trace.getTraceId() + "\""));
+        Assertions.assertTrue(otlpJson.contains("\"parentSpanId\":\"0000000000000001\""), "Children should reference the root");
+        Assertions.assertTrue(otlpJson.contains("\"status\":{\"code\":2"), "Failures should have an error status");
+    }
+}
@@ -0,0 +1,165 @@
+package org.zero2me.breezeflow.core;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class TypedKeyTest {
+
+    private static final BooleanKey DONE = TypedKey.booleanKey("TYPED_TEST_DONE");
+    private static final IntKey COUNT = TypedKey.intKey("TYPED_TEST_COUNT");
+    private static final LongKey TOTAL = TypedKey.longKey("TYPED_TEST_TOTAL");
+    private static final RefKey<String> CONTENT = TypedKey.refKey("TYPED_TEST_CONTENT", String.class);
+
+    @Test
+    void testRegistrationIsIdempotentAndTypeChecked() {
+        Assertions.assertSame(COUNT, TypedKey.intKey("TYPED_TEST_COUNT"), "Same name and type should return the same key");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> TypedKey.longKey("TYPED_TEST_COUNT"),
+                "Re-declaring a name with another type should fail");
+    }
+
+    @Test
+    void testStringWriteOfAnotherTypeFallsBackToName() {
+        Facts facts = new Facts();
+        facts.put(COUNT, 3);
+        facts.put("TYPED_TEST_COUNT", 5L);
+        Assertions.assertEquals(5L, (long) facts.<Long>get("TYPED_TEST_COUNT"), "Mismatched value should be kept by name");
+        Assertions.assertEquals(0, facts.get(COUNT), "Typed read should treat it as absent");
+        Assertions.assertEquals(6L, facts.addAndGet("TYPED_TEST_COUNT", 1), "Counter should continue on the stored value");
+        Assertions.assertEquals(1, facts.asMap().size());
+
+        facts.put("TYPED_TEST_COUNT", 7);
+        Assertions.assertEquals(7, facts.get(COUNT), "A value of the key type should move back to the slot");
+
+        SessionContext context = new SessionContext();
+        context.setVariable(CONTENT, "doc");
+        context.setVariable("TYPED_TEST_CONTENT", 42L);
+        Assertions.assertEquals(42L, context.getVariable("TYPED_TEST_CONTENT"));
+        Assertions.assertNull(context.getVariable(CONTENT), "Typed read should ignore a value of another type");
+        Assertions.assertEquals(42L, context.snapshot().get("TYPED_TEST_CONTENT"));
+    }
+
+    @Test
+    void testTypedAndStringAccessShareStorage() {
+        Facts facts = new Facts();
+        Assertions.assertFalse(facts.isTrue(DONE), "Absent boolean fact should not be true");
+        facts.put(DONE, true);
+        facts.put(COUNT, 42);
+        facts.put(CONTENT, "hello");
+
+        Assertions.assertEquals(Boolean.TRUE, facts.get("TYPED_TEST_DONE"), "String read should see typed write");
+        Assertions.assertEquals(42, (int) facts.<Integer>get("TYPED_TEST_COUNT"));
+        Assertions.assertEquals("hello", facts.get(CONTENT));
+
+        facts.put("TYPED_TEST_DONE", false);
+        Assertions.assertFalse(facts.isTrue(DONE), "Typed read should see string write");
+        Assertions.assertEquals(3, facts.asMap().size(), "Typed facts should be listed once");
+
+        Assertions.assertEquals(45L, facts.addAndGet("TYPED_TEST_COUNT", 3), "String counter should use the slot");
+        Assertions.assertEquals(10L, facts.addAndGet(TOTAL, 10L));
+        facts.remove("TYPED_TEST_COUNT");
+        Assertions.assertFalse(facts.contains(COUNT), "Removed fact should be absent");
+        Assertions.assertEquals(0, facts.get(COUNT));
+    }
+
+    @Test
+    void testSessionContextTypedVariables() {
+        SessionContext context = new SessionContext();
+        // Value stored by name before the key is consulted is still visible through the key
+        context.setVariable("TYPED_TEST_TOTAL", 7L);
+        Assertions.assertEquals(7L, context.getVariable(TOTAL));
+
+        context.setVariable(COUNT, 5);
+        context.setVariable(CONTENT, "doc");
+        Assertions.assertEquals(5, context.getVariable("TYPED_TEST_COUNT"));
+        Assertions.assertTrue(context.hasVariable(CONTENT));
+        Assertions.assertEquals("doc", context.snapshot().get("TYPED_TEST_CONTENT"));
+
+        context.setVariable(CONTENT, null);
+        Assertions.assertNull(context.getVariable(CONTENT), "Null should remove a reference variable");
+    }
+
+    @Test
+    void testContextDataShowsTypedVariables() {
+        SessionContext context = new SessionContext();
+        context.setVariable(COUNT, 5);
+        context.setVariable(DONE, true);
+        context.setVariable("plain", "value");
+        Map<String, Object> data = context.getContextData();
+        Assertions.assertEquals(5, data.get("TYPED_TEST_COUNT"), "View should include typed variables");
+        Assertions.assertEquals(3, data.size());
+        Assertions.assertEquals(context.snapshot(), data);
+
+        data.remove("TYPED_TEST_COUNT");
+        Assertions.assertFalse(context.hasVariable(COUNT), "Removing through the view should remove the slot");
+        data.put("TYPED_TEST_CONTENT", "doc");
+        Assertions.assertEquals("doc", context.getVariable(CONTENT), "Writing through the view should fill the slot");
+
+        SessionContext other = new SessionContext();
+        other.setVariable(DONE, true);
+        other.setVariable("plain", "value");
+        Assertions.assertNotEquals(context, other, "Typed variables should take part in equality");
+        other.setVariable(CONTENT, "doc");
+        Assertions.assertEquals(context, other);
+        Assertions.assertEquals(context.hashCode(), other.hashCode());
+    }
+
+    @Test
+    void testIntCounterOverflowLeavesValue() {
+        Facts facts = new Facts();
+        facts.put(COUNT, Integer.MAX_VALUE - 1);
+        Assertions.assertEquals(Integer.MAX_VALUE, facts.addAndGet(COUNT, 1));
+        Assertions.assertThrows(ArithmeticException.class, () -> facts.addAndGet(COUNT, 1));
+        Assertions.assertEquals(Integer.MAX_VALUE, facts.get(COUNT), "Overflow should not store a truncated value");
+        Assertions.assertEquals(Integer.MAX_VALUE, facts.asMap().get("TYPED_TEST_COUNT"));
+
+        Facts empty = new Facts();
+        Assertions.assertThrows(ArithmeticException.class, () -> {
+            empty.addAndGet(COUNT, Integer.MIN_VALUE);
+            empty.addAndGet(COUNT, -1);
+        });
+        Assertions.assertEquals(Integer.MIN_VALUE, empty.get(COUNT));
+    }
+
+    @Test
+    void testContendedNumericClaimKeepsWinnerValue() throws InterruptedException {
+        int threads = 8;
+        Facts facts = new Facts();
+        for (int round = 0; round < 200; round++) {
+            facts.remove(COUNT);
+            AtomicInteger winner = new AtomicInteger(-1);
+            AtomicInteger winners = new AtomicInteger();
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int candidate = t;
+                Thread worker = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    if (facts.putIfAbsent("TYPED_TEST_COUNT", candidate) == null) {
+                        winner.set(candidate);
+                        winners.incrementAndGet();
+                    }
+                });
+                worker.start();
+                workers.add(worker);
+            }
+            start.countDown();
+            for (Thread worker : workers) {
+                worker.join();
+            }
+
+            Assertions.assertEquals(1, winners.get(), "Exactly one claim of an absent slot should win");
+            Assertions.assertEquals(winner.get(), facts.get(COUNT), "The slot should hold the winner's value");
+        }
+    }
+}
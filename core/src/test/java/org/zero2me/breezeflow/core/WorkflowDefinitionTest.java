@@ -0,0 +1,154 @@
+package org.zero2me.breezeflow.core;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class WorkflowDefinitionTest {
+
+    public static class CountTask extends Task {
+        @Override
+        protected boolean preCheck() {
+            return true;
+        }
+
+        @Override
+        protected void invoke() {
+            facts.increment("COUNT");
+            String seed = (String) sessionContext.getVariable("SEED");
+            sessionContext.setVariable("RESULT", seed + "-done");
+        }
+    }
+
+    public static class CollectingTask extends Task {
+        private List<String> seen = new ArrayList<>();
+
+        @Override
+        protected boolean preCheck() {
+            return true;
+        }
+
+        @Override
+        protected void invoke() {
+            seen.add((String) sessionContext.getVariable("SEED"));
+            sessionContext.setVariable("SEEN", new ArrayList<>(seen));
+        }
+
+        @Override
+        protected void copyFields() {
+            super.copyFields();
+            seen = new ArrayList<>(seen);
+        }
+    }
+
+    public static class CountingWorkflow extends Workflow {
+        static final AtomicInteger builds = new AtomicInteger();
+
+        @Override
+        protected void buildWorkflow() {
+            builds.incrementAndGet();
+            addTask(CountTask.class, "first");
+            DagContainer dag = (DagContainer) buildTask(DagContainer.class, "dag");
+            Task a = buildTask(CountTask.class, "a");
+            Task b = buildTask(CountTask.class, "b");
+            dag.addTask(a);
+            dag.addTask(b, a);
+            addTask(dag);
+        }
+    }
+
+    @Test
+    void testRunsShareDefinitionButNotState() throws WorkflowExecutionException {
+        CountingWorkflow.builds.set(0);
+        WorkflowDefinition definition = WorkflowDefinition.compile(CountingWorkflow.class);
+
+        Workflow first = definition.newRun();
+        Workflow second = definition.newRun();
+        first.getSessionContext().setVariable("SEED", "one");
+        second.getSessionContext().setVariable("SEED", "two");
+        first.run();
+        second.run();
+
+        Assertions.assertEquals(1, CountingWorkflow.builds.get(), "buildWorkflow should run once per definition");
+        Assertions.assertEquals(3L, ((Number) first.getFacts().get("COUNT")).longValue(), "Each run executes every task");
+        Assertions.assertEquals(3L, ((Number) second.getFacts().get("COUNT")).longValue(), "Runs must not share facts");
+        Assertions.assertEquals("two-done", second.getSessionContext().getVariable("RESULT"));
+        Assertions.assertNotEquals(first.getId(), second.getId(), "Each run has its own id");
+
+        Task firstTask = first.getRootContainer().getTasks().get(0);
+        Task secondTask = second.getRootContainer().getTasks().get(0);
+        Assertions.assertNotSame(firstTask, secondTask, "Runs must not share task instances");
+        Assertions.assertEquals(firstTask.getId(), secondTask.getId(), "Task ids come from the definition");
+    }
+
+    @Test
+    void testCopiedFieldsAreNotShared() throws WorkflowExecutionException {
+        Workflow source = new Workflow();
+        ParallelContainer parallel = (ParallelContainer) source.buildTask(ParallelContainer.class, "parallel");
+        parallel.addTask(source.buildTask(CollectingTask.class, "collect"));
+        source.addTask(parallel);
+        WorkflowDefinition definition = WorkflowDefinition.compile(source);
+
+        for (String seed : List.of("one", "two")) {
+            Workflow run = definition.newRun();
+            run.getSessionContext().setVariable("SEED", seed);
+            run.run();
+            Assertions.assertEquals(List.of(seed), run.getSessionContext().getVariable("SEEN"),
+                    "Each run should start from its own copy of the task fields");
+        }
+    }
+
+    @Test
+    void testRunsDoNotShareSessionConfig() {
+        CountingWorkflow source = new CountingWorkflow();
+        source.getSessionConfig().setThreadPoolSize(3);
+        WorkflowDefinition definition = WorkflowDefinition.compile(source);
+        source.getSessionConfig().setThreadPoolSize(5);
+
+        Workflow first = definition.newRun();
+        Workflow second = definition.newRun();
+        first.getSessionConfig().setThreadPoolSize(8);
+        first.getSessionConfig().setTraceSampleRate(1.0);
+
+        Assertions.assertEquals(3, definition.getSessionConfig().getThreadPoolSize(),
+                "Later changes to the source workflow must not affect the definition");
+        Assertions.assertEquals(3, second.getSessionConfig().getThreadPoolSize(), "Runs must not share the config");
+        Assertions.assertEquals(0.0, second.getSessionConfig().getTraceSampleRate());
+        definition.getSessionConfig().setThreadPoolSize(9);
+        Assertions.assertEquals(3, definition.newRun().getSessionConfig().getThreadPoolSize(),
+                "The definition config is read-only");
+    }
+
+    @Test
+    void testConcurrentRuns() throws InterruptedException {
+        WorkflowDefinition definition = WorkflowDefinition.compile(new CountingWorkflow());
+        int runs = 16;
+        CountDownLatch done = new CountDownLatch(runs);
+        List<Workflow> workflows = new ArrayList<>();
+        AtomicInteger failures = new AtomicInteger();
+        for (int i = 0; i < runs; i++) {
+            Workflow run = definition.newRun();
+            workflows.add(run);
+            new Thread(() -> {
+                try {
+                    run.run();
+                } catch (WorkflowExecutionException e) {
+                    failures.incrementAndGet();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+
+        Assertions.assertEquals(0, failures.get(), "No run should fail");
+        for (Workflow run : workflows) {
+            Assertions.assertEquals(3L, ((Number) run.getFacts().get("COUNT")).longValue(),
+                    "Every run should count only its own tasks");
+        }
+    }
+}
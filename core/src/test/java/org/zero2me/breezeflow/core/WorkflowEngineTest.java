@@ -0,0 +1,161 @@
+package org.zero2me.breezeflow.core;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class WorkflowEngineTest {
+
+    public static class GatedTask extends Task {
+        static volatile CountDownLatch gate = new CountDownLatch(0);
+        static final AtomicInteger running = new AtomicInteger();
+        static final AtomicInteger maxRunning = new AtomicInteger();
+
+        @Override
+        protected boolean preCheck() {
+            return true;
+        }
+
+        @Override
+        protected void invoke() {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                gate.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+    }
+
+    public static class FailingTask extends Task {
+        @Override
+        protected boolean preCheck() {
+            return true;
+        }
+
+        @Override
+        protected void invoke() {
+            throw new IllegalStateException("boom");
+        }
+    }
+
+    private static Workflow gatedWorkflow() {
+        Workflow workflow = new Workflow();
+        workflow.addTask(GatedTask.class);
+        return workflow;
+    }
+
+    private static EngineConfig config(int runs, int queue, RejectionPolicy policy) {
+        EngineConfig config = new EngineConfig();
+        config.setMaxConcurrentRuns(runs);
+        config.setQueueCapacity(queue);
+        config.setRejectionPolicy(policy);
+        return config;
+    }
+
+    @Test
+    void testConcurrencyCapAndAbortWhenQueueIsFull() throws Exception {
+        WorkflowEngine engine = new WorkflowEngine(config(2, 2, RejectionPolicy.ABORT));
+        GatedTask.gate = new CountDownLatch(1);
+        GatedTask.maxRunning.set(0);
+
+        List<CompletableFuture<Workflow>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(engine.submit(gatedWorkflow()));
+        }
+        ExecutionException rejected = Assertions.assertThrows(ExecutionException.class, () -> futures.get(4).get());
+        Assertions.assertTrue(rejected.getCause() instanceof RejectedExecutionException,
+                "Submission beyond slots and queue should be rejected");
+
+        GatedTask.gate.countDown();
+        for (int i = 0; i < 4; i++) {
+            Assertions.assertNotNull(futures.get(i).get(10, TimeUnit.SECONDS), "Admitted runs should complete");
+        }
+        Assertions.assertTrue(GatedTask.maxRunning.get() <= 2, "No more than two runs should execute at once");
+        Assertions.assertEquals(4, engine.getCompletedCount());
+        Assertions.assertEquals(1, engine.getRejectedCount());
+        engine.shutdown();
+        Assertions.assertTrue(engine.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testDiscardOldestShedsQueuedRun() throws Exception {
+        WorkflowEngine engine = new WorkflowEngine(config(1, 1, RejectionPolicy.DISCARD_OLDEST));
+        GatedTask.gate = new CountDownLatch(1);
+
+        CompletableFuture<Workflow> running = engine.submit(gatedWorkflow());
+        CompletableFuture<Workflow> oldest = engine.submit(gatedWorkflow());
+        CompletableFuture<Workflow> newest = engine.submit(gatedWorkflow());
+
+        Assertions.assertTrue(oldest.isCompletedExceptionally(), "Oldest queued run should be shed");
+        GatedTask.gate.countDown();
+        Assertions.assertNotNull(running.get(10, TimeUnit.SECONDS));
+        Assertions.assertNotNull(newest.get(10, TimeUnit.SECONDS), "Newest run should still execute");
+        engine.shutdown();
+    }
+
+    @Test
+    void testDiscardOldestWithoutQueueRejects() throws Exception {
+        WorkflowEngine engine = new WorkflowEngine(config(1, 0, RejectionPolicy.DISCARD_OLDEST));
+        GatedTask.gate = new CountDownLatch(1);
+
+        CompletableFuture<Workflow> running = engine.submit(gatedWorkflow());
+        CompletableFuture<Workflow> newest = engine.submit(gatedWorkflow());
+
+        ExecutionException rejected = Assertions.assertThrows(ExecutionException.class,
+                () -> newest.get(10, TimeUnit.SECONDS));
+        Assertions.assertTrue(rejected.getCause() instanceof RejectedExecutionException,
+                "Without a queued run to shed the new run should be rejected");
+        GatedTask.gate.countDown();
+        Assertions.assertNotNull(running.get(10, TimeUnit.SECONDS));
+        engine.shutdown();
+    }
+
+    @Test
+    void testBlockedSubmissionIsRejectedOnShutdown() throws Exception {
+        WorkflowEngine engine = new WorkflowEngine(config(1, 1, RejectionPolicy.BLOCK));
+        GatedTask.gate = new CountDownLatch(1);
+
+        CompletableFuture<Workflow> running = engine.submit(gatedWorkflow());
+        CompletableFuture<Workflow> queued = engine.submit(gatedWorkflow());
+        CompletableFuture<CompletableFuture<Workflow>> blocked =
+                CompletableFuture.supplyAsync(() -> engine.submit(gatedWorkflow()));
+        Thread.sleep(200);
+        Assertions.assertFalse(blocked.isDone(), "Submission should block while the queue is full");
+
+        engine.shutdown();
+        ExecutionException rejected = Assertions.assertThrows(ExecutionException.class,
+                () -> blocked.get(10, TimeUnit.SECONDS).get(10, TimeUnit.SECONDS));
+        Assertions.assertTrue(rejected.getCause() instanceof RejectedExecutionException,
+                "A submission blocked across shutdown should be rejected, not stranded in the queue");
+
+        GatedTask.gate.countDown();
+        Assertions.assertNotNull(running.get(10, TimeUnit.SECONDS));
+        Assertions.assertNotNull(queued.get(10, TimeUnit.SECONDS), "Runs queued before shutdown should still run");
+        Assertions.assertTrue(engine.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testFailedRunCompletesFutureExceptionally() {
+        WorkflowEngine engine = new WorkflowEngine(config(1, 10, RejectionPolicy.ABORT));
+        Workflow workflow = new Workflow();
+        workflow.addTask(FailingTask.class);
+
+        ExecutionException failure = Assertions.assertThrows(ExecutionException.class,
+                () -> engine.submit(workflow).get(10, TimeUnit.SECONDS));
+        Assertions.assertTrue(failure.getCause() instanceof WorkflowExecutionException,
+                "Run failure should be reported through the future");
+        Assertions.assertEquals(1, engine.getFailedCount());
+        engine.shutdown();
+    }
+}
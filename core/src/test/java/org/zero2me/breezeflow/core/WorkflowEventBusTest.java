@@ -0,0 +1,126 @@
+package org.zero2me.breezeflow.core;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+class WorkflowEventBusTest {
+
+    public static class NoopTask extends Task {
+        @Override
+        protected boolean preCheck() {
+            return true;
+        }
+
+        @Override
+        protected void invoke() {
+            // nothing to do
+        }
+    }
+
+    static class CollectingListener extends WorkflowListener {
+        final List<WorkflowEvent> events = new ArrayList<>();
+        final List<String> threads = new ArrayList<>();
+        volatile CountDownLatch gate;
+
+        CollectingListener(WorkflowEventType... interests) {
+            super(interests);
+        }
+
+        @Override
+        protected void handleBatch(List<WorkflowEvent> batch) throws Exception {
+            CountDownLatch current = gate;
+            if (current != null) {
+                current.await();
+            }
+            synchronized (this) {
+                threads.add(Thread.currentThread().getName());
+            }
+            super.handleBatch(batch);
+        }
+
+        @Override
+        protected synchronized void handle(WorkflowEvent event) {
+            events.add(event);
+        }
+    }
+
+    private static Workflow workflowWithTasks(WorkflowListener listener, int tasks) {
+        Workflow workflow = new Workflow(listener);
+        for (int i = 0; i < tasks; i++) {
+            workflow.addTask(NoopTask.class, "noop" + i);
+        }
+        return workflow;
+    }
+
+    @Test
+    void testEventsAreDeliveredToAllListenersInOrder() throws Exception {
+        WorkflowEventBus bus = new WorkflowEventBus();
+        CollectingListener all = new CollectingListener(WorkflowEventType.values());
+        CollectingListener workflowOnly = new CollectingListener(
+                WorkflowEventType.WORKFLOW_STARTED, WorkflowEventType.WORKFLOW_COMPLETED);
+        bus.subscribe(all);
+        bus.subscribe(workflowOnly);
+
+        Workflow workflow = workflowWithTasks(bus, 10);
+        workflow.run();
+        Assertions.assertTrue(bus.flush(5, TimeUnit.SECONDS), "All events should be delivered");
+        bus.close();
+
+        synchronized (all) {
+            // Ten tasks and the root container (as a task and as a container) start and complete,
+            // plus workflow start and completion
+            Assertions.assertEquals(26, all.events.size(), "Every event should be delivered");
+            Assertions.assertEquals(WorkflowEventType.WORKFLOW_STARTED, all.events.get(0).getType());
+            Assertions.assertEquals(WorkflowEventType.WORKFLOW_COMPLETED, all.events.get(25).getType());
+            Assertions.assertFalse(all.threads.contains(Thread.currentThread().getName()),
+                    "Events should be handled on the delivery thread");
+        }
+        synchronized (workflowOnly) {
+            Assertions.assertEquals(2, workflowOnly.events.size(), "Only the declared events should be delivered");
+        }
+    }
+
+    @Test
+    void testDropPolicyDoesNotBlockPublishers() throws Exception {
+        WorkflowEventBus bus = new WorkflowEventBus();
+        CollectingListener slow = new CollectingListener(WorkflowEventType.values());
+        slow.gate = new CountDownLatch(1);
+        EventBusConfig config = new EventBusConfig();
+        config.setBufferSize(8);
+        config.setOverflowPolicy(OverflowPolicy.DROP);
+        WorkflowEventBus.Subscription subscription = bus.subscribe(slow, config);
+
+        long start = System.nanoTime();
+        workflowWithTasks(bus, 50).run();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        Assertions.assertTrue(elapsedMillis < 5000, "A stalled listener should not block the run");
+        Assertions.assertTrue(subscription.getDroppedCount() > 0, "Events beyond the buffer should be dropped");
+        slow.gate.countDown();
+        Assertions.assertTrue(bus.flush(5, TimeUnit.SECONDS), "Buffered events should be delivered");
+        bus.close();
+        synchronized (slow) {
+            Assertions.assertEquals(106 - subscription.getDroppedCount(), slow.events.size(),
+                    "Every event not dropped should be delivered");
+        }
+    }
+
+    @Test
+    void testBusInterestIsUnionOfListeners() {
+        WorkflowEventBus bus = new WorkflowEventBus();
+        Assertions.assertFalse(bus.isInterested(WorkflowEventType.TASK_FAILED), "An empty bus wants no events");
+
+        WorkflowEventBus.Subscription subscription = bus.subscribe(new CollectingListener(WorkflowEventType.TASK_FAILED));
+        Assertions.assertTrue(bus.isInterested(WorkflowEventType.TASK_FAILED));
+        Assertions.assertFalse(bus.isInterested(WorkflowEventType.TASK_STARTED),
+                "Events no listener wants should not be created");
+
+        subscription.close();
+        Assertions.assertFalse(bus.isInterested(WorkflowEventType.TASK_FAILED), "Closed listeners should be removed");
+    }
+}
@@ -0,0 +1,105 @@
+package org.zero2me.breezeflow.core;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class WorkflowEventTest {
+
+    public static class NoopTask extends Task {
+        @Override
+        protected boolean preCheck() {
+            return true;
+        }
+
+        @Override
+        protected void invoke() {
+            // nothing to do
+        }
+    }
+
+    public static class FailingTask extends Task {
+        @Override
+        protected boolean preCheck() {
+            return true;
+        }
+
+        @Override
+        protected void invoke() {
+            throw new IllegalStateException("boom");
+        }
+    }
+
+    static class RecordingListener extends WorkflowListener {
+        final List<WorkflowEvent> events = new ArrayList<>();
+
+        RecordingListener(WorkflowEventType... interests) {
+            super(interests);
+        }
+
+        RecordingListener() {
+            super();
+        }
+
+        @Override
+        protected synchronized void handle(WorkflowEvent event) {
+            events.add(event);
+        }
+    }
+
+    @Test
+    void testStructuredTaskEvents() throws WorkflowExecutionException {
+        RecordingListener listener = new RecordingListener();
+        Workflow workflow = new Workflow(listener);
+        Task task = workflow.addTask(NoopTask.class, "noop");
+        workflow.run();
+
+        WorkflowEvent completed = listener.events.stream()
+                .filter(event -> event.getType() == WorkflowEventType.TASK_COMPLETED && task.getId().equals(event.getTaskId()))
+                .findFirst().orElseThrow(() -> new AssertionError("Task completion should be published"));
+        Assertions.assertEquals("noop", completed.getTaskName(), "Event should carry the task name");
+        Assertions.assertEquals(workflow.getId(), completed.getWorkflowId(), "Event should carry the workflow id");
+        Assertions.assertTrue(completed.getDurationNanos() >= 0, "Completion should carry the duration");
+        Assertions.assertEquals("Task " + task.getId() + ":noop completed", completed.getDescription(),
+                "Description should be rendered on demand");
+
+        WorkflowEvent last = listener.events.get(listener.events.size() - 1);
+        Assertions.assertEquals(WorkflowEventType.WORKFLOW_COMPLETED, last.getType(), "Workflow completion should be last");
+        Assertions.assertEquals("Workflow " + workflow.getId() + " completed", last.getDescription());
+    }
+
+    @Test
+    void testListenerInterestFiltering() {
+        RecordingListener listener = new RecordingListener(WorkflowEventType.TASK_FAILED);
+        Workflow workflow = new Workflow(listener);
+        workflow.addTask(NoopTask.class, "noop");
+        workflow.addTask(FailingTask.class, "failing");
+
+        Assertions.assertThrows(WorkflowExecutionException.class, workflow::run);
+
+        Assertions.assertFalse(listener.events.isEmpty(), "Failures should be delivered");
+        for (WorkflowEvent event : listener.events) {
+            Assertions.assertEquals(WorkflowEventType.TASK_FAILED, event.getType(), "Only failures should be delivered");
+        }
+        Assertions.assertTrue(listener.events.get(0).getCause() instanceof IllegalStateException,
+                "The failure should carry its cause");
+    }
+
+    @Test
+    void testLegacyListenerReceivesDescriptions() throws WorkflowExecutionException {
+        List<String> descriptions = new ArrayList<>();
+        Workflow workflow = new Workflow(new WorkflowListener() {
+            @Override
+            protected void handle(WorkflowEventType event, String description) {
+                descriptions.add(event + " " + description);
+            }
+        });
+        Task task = workflow.addTask(NoopTask.class, "noop");
+        workflow.run();
+
+        Assertions.assertTrue(descriptions.contains("TASK_STARTED Task " + task.getId() + ":noop started"),
+                "String listeners should keep receiving rendered descriptions");
+    }
+}
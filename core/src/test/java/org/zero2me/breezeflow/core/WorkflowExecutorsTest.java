@@ -0,0 +1,154 @@
+package org.zero2me.breezeflow.core;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+class WorkflowExecutorsTest {
+
+    public static class RecordThreadTask extends Task {
+        static final Set<String> threads = ConcurrentHashMap.newKeySet();
+
+        @Override
+        protected boolean preCheck() {
+            return true;
+        }
+
+        @Override
+        protected void invoke() {
+            threads.add(Thread.currentThread().getName());
+        }
+    }
+
+    @Test
+    void testExecutorIsSharedAcrossConfigs() {
+        SessionConfig first = new SessionConfig();
+        SessionConfig second = new SessionConfig();
+
+        Assertions.assertSame(WorkflowExecutors.getExecutor(first), WorkflowExecutors.getExecutor(second),
+                "Configs with equal executor settings should share one executor");
+
+        second.setThreadPoolSize(3);
+        Assertions.assertNotSame(WorkflowExecutors.getExecutor(first), WorkflowExecutors.getExecutor(second),
+                "Configs with different pool sizes should not share an executor");
+    }
+
+    @Test
+    void testCustomExecutorIsUsedAndNotShutDown() {
+        ExecutorService custom = Executors.newSingleThreadExecutor();
+        try {
+            SessionConfig config = new SessionConfig();
+            config.setExecutorType(ExecutorType.CUSTOM);
+            config.setCustomExecutor(custom);
+
+            Assertions.assertSame(custom, WorkflowExecutors.getExecutor(config));
+            // shutdown() stops exactly the registry-owned executors; calling it here would stop
+            // the shared pools of other tests, so check ownership instead
+            Assertions.assertFalse(WorkflowExecutors.sharedExecutors().contains(custom),
+                    "Caller-supplied executors must not be owned, and so not shut down, by the registry");
+            Assertions.assertFalse(custom.isShutdown());
+        } finally {
+            custom.shutdownNow();
+        }
+    }
+
+    @Test
+    void testNestedParallelContainersCompleteOnSingleThreadPool() throws WorkflowExecutionException {
+        Workflow workflow = new Workflow();
+        workflow.getSessionConfig().setThreadPoolSize(1);
+        workflow.getSessionConfig().setThreadNamePrefix("nested-test");
+
+        ParallelContainer outer = (ParallelContainer) workflow.buildTask(ParallelContainer.class, "outer");
+        for (int i = 0; i < 3; i++) {
+            ParallelContainer inner = (ParallelContainer) workflow.buildTask(ParallelContainer.class, "inner" + i);
+            for (int j = 0; j < 3; j++) {
+                inner.addTask(workflow.buildTask(RecordThreadTask.class, "leaf" + i + j));
+            }
+            outer.addTask(inner);
+        }
+        workflow.addTask(outer);
+
+        RecordThreadTask.threads.clear();
+        workflow.run();
+
+        Assertions.assertFalse(RecordThreadTask.threads.isEmpty(), "Leaf tasks should have run");
+        for (String thread : RecordThreadTask.threads) {
+            Assertions.assertTrue(thread.equals("main") || thread.startsWith("nested-test-"),
+                    "Leaf tasks should run on the caller or the shared pool, but ran on " + thread);
+        }
+    }
+
+    public static class FailingTask extends Task {
+        @Override
+        protected boolean preCheck() {
+            return true;
+        }
+
+        @Override
+        protected void invoke() {
+            throw new IllegalStateException("boom");
+        }
+    }
+
+    @Test
+    void testWorkStealingRunsNestedContainersOnPoolThreads() throws WorkflowExecutionException {
+        Workflow workflow = new Workflow();
+        workflow.getSessionConfig().setExecutorType(ExecutorType.WORK_STEALING);
+        workflow.getSessionConfig().setThreadPoolSize(2);
+        workflow.getSessionConfig().setThreadNamePrefix("fj-test");
+
+        ParallelContainer outer = (ParallelContainer) workflow.buildTask(ParallelContainer.class, "outer");
+        for (int i = 0; i < 4; i++) {
+            ParallelContainer inner = (ParallelContainer) workflow.buildTask(ParallelContainer.class, "inner" + i);
+            for (int j = 0; j < 4; j++) {
+                inner.addTask(workflow.buildTask(RecordThreadTask.class, "leaf" + i + j));
+            }
+            outer.addTask(inner);
+        }
+        workflow.addTask(outer);
+
+        RecordThreadTask.threads.clear();
+        workflow.run();
+
+        Assertions.assertFalse(RecordThreadTask.threads.isEmpty(), "Leaf tasks should have run");
+        for (String thread : RecordThreadTask.threads) {
+            Assertions.assertTrue(thread.startsWith("fj-test-"),
+                    "Leaf tasks should run on the work-stealing pool, but ran on " + thread);
+        }
+    }
+
+    @Test
+    void testWorkStealingPropagatesChildFailure() {
+        Workflow workflow = new Workflow();
+        workflow.getSessionConfig().setExecutorType(ExecutorType.WORK_STEALING);
+
+        ParallelContainer parallel = (ParallelContainer) workflow.buildTask(ParallelContainer.class, "parallel");
+        parallel.addTask(workflow.buildTask(RecordThreadTask.class, "ok"));
+        parallel.addTask(workflow.buildTask(FailingTask.class, "failing"));
+        workflow.addTask(parallel);
+
+        Assertions.assertThrows(WorkflowExecutionException.class, workflow::run,
+                "A failing child should fail the workflow");
+    }
+
+    @Test
+    void testVirtualExecutorRunsManyBlockingTasks() throws WorkflowExecutionException {
+        Workflow workflow = new Workflow();
+        workflow.getSessionConfig().setExecutorType(ExecutorType.VIRTUAL);
+
+        ParallelContainer parallel = (ParallelContainer) workflow.buildTask(ParallelContainer.class, "parallel");
+        for (int i = 0; i < 50; i++) {
+            parallel.addTask(workflow.buildTask(RecordThreadTask.class, "leaf" + i));
+        }
+        workflow.addTask(parallel);
+
+        RecordThreadTask.threads.clear();
+        workflow.run();
+
+        Assertions.assertFalse(RecordThreadTask.threads.isEmpty(), "Leaf tasks should have run");
+    }
+}
@@ -0,0 +1,148 @@
+package org.zero2me.breezeflow.core;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+class WorkflowMetricsTest {
+
+    public static class SleepingTask extends Task {
+        @Override
+        protected boolean preCheck() {
+            return true;
+        }
+
+        @Override
+        protected void invoke() {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public static class FailingTask extends Task {
+        @Override
+        protected boolean preCheck() {
+            return true;
+        }
+
+        @Override
+        protected void invoke() {
+            throw new IllegalStateException("boom");
+        }
+    }
+
+    public static class SkippedTask extends Task {
+        @Override
+        protected boolean preCheck() {
+            return false;
+        }
+
+        @Override
+        protected void invoke() {
+        }
+    }
+
+    private static Workflow newWorkflow() {
+        Workflow workflow = new Workflow();
+        workflow.getSessionConfig().setThreadPoolSize(4);
+        workflow.getSessionConfig().setThreadNamePrefix("metrics-test");
+        return workflow;
+    }
+
+    @Test
+    void testTaskOutcomesAndLatencies() throws WorkflowExecutionException {
+        WorkflowMetrics metrics = WorkflowMetrics.getInstance();
+        long started = metrics.getWorkflowsStarted();
+        long failed = metrics.getWorkflowsFailed();
+
+        for (int i = 0; i < 5; i++) {
+            Workflow workflow = newWorkflow();
+            ParallelContainer parallel = (ParallelContainer) workflow.buildTask(ParallelContainer.class, "metrics-parallel");
+            parallel.addTask(workflow.buildTask(SleepingTask.class, "metrics-sleeper"));
+            parallel.addTask(workflow.buildTask(SleepingTask.class, "metrics-sleeper"));
+            workflow.addTask(parallel);
+            workflow.addTask(SkippedTask.class, "metrics-skipped");
+            workflow.run();
+        }
+        Workflow failing = newWorkflow();
+        failing.addTask(FailingTask.class, "metrics-failing");
+        Assertions.assertThrows(WorkflowExecutionException.class, failing::run, "The workflow should fail");
+
+        TaskMetrics sleeper = metrics.getTaskMetrics("metrics-sleeper");
+        Assertions.assertNotNull(sleeper, "Metrics should be kept per task name");
+        Assertions.assertEquals(10, sleeper.getCompletedCount(), "Every execution should be counted");
+        Assertions.assertTrue(sleeper.getP50Millis() >= 15, "The median should reflect the sleep: " + sleeper.getP50Millis());
+        Assertions.assertTrue(sleeper.getP99Millis() >= sleeper.getP50Millis(), "Percentiles should be ordered");
+        Assertions.assertTrue(sleeper.getMaxMillis() >= sleeper.getP99Millis() * 0.9, "The max should bound the p99");
+        Assertions.assertEquals(5, metrics.getTaskMetrics("metrics-parallel").getCompletedCount());
+        Assertions.assertEquals(5, metrics.getTaskMetrics("metrics-skipped").getSkippedCount(),
+                "Tasks failing their pre check should be counted as skipped");
+        Assertions.assertEquals(1, metrics.getTaskMetrics("metrics-failing").getFailedCount());
+        Assertions.assertTrue(metrics.getTaskNames().contains("metrics-failing"));
+
+        Assertions.assertEquals(6, metrics.getWorkflowsStarted() - started);
+        Assertions.assertEquals(1, metrics.getWorkflowsFailed() - failed);
+        Assertions.assertTrue(metrics.getQueueWait().getCount() >= 10, "Children handed to the pool should record queue wait");
+        Assertions.assertTrue(metrics.getPoolSize() > 0, "The shared pool should be visible");
+    }
+
+    @Test
+    void testRecordingCanBeDisabled() throws WorkflowExecutionException {
+        WorkflowMetrics metrics = WorkflowMetrics.getInstance();
+        Workflow workflow = newWorkflow();
+        workflow.addTask(SleepingTask.class, "metrics-disabled");
+        metrics.setEnabled(false);
+        try {
+            workflow.run();
+        } finally {
+            metrics.setEnabled(true);
+        }
+        Assertions.assertNull(metrics.getTaskMetrics("metrics-disabled"), "Nothing should be recorded while disabled");
+    }
+
+    @Test
+    void testMetricsAreExposedThroughJmx() throws Exception {
+        Workflow workflow = newWorkflow();
+        workflow.addTask(SleepingTask.class, "metrics-jmx");
+        workflow.run();
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName engine = new ObjectName("org.zero2me.breezeflow:type=WorkflowMetrics");
+        ObjectName task = new ObjectName("org.zero2me.breezeflow:type=TaskMetrics,name=" + ObjectName.quote("metrics-jmx"));
+        Assertions.assertTrue(server.isRegistered(engine), "The engine metrics should be registered");
+        Assertions.assertTrue(server.isRegistered(task), "The task metrics should be registered");
+        Assertions.assertEquals(1L, server.getAttribute(task, "CompletedCount"));
+        Assertions.assertTrue((Long) server.getAttribute(engine, "WorkflowsStarted") >= 1);
+        Assertions.assertTrue(WorkflowMetrics.getInstance().getTaskMetrics("metrics-jmx").getLatency()
+                .getPercentile(50, TimeUnit.MILLISECONDS) > 0);
+    }
+
+    @Test
+    void testTaskNamesAreBounded() throws WorkflowExecutionException {
+        WorkflowMetrics metrics = WorkflowMetrics.getInstance();
+        int previous = metrics.getMaxTaskNames();
+        try {
+            metrics.setMaxTaskNames(metrics.getTaskNames().size() + 1);
+            Workflow workflow = newWorkflow();
+            for (int i = 0; i < 3; i++) {
+                workflow.addTask(SkippedTask.class, "metrics-generated-" + i);
+            }
+            workflow.run();
+
+            Assertions.assertNotNull(metrics.getTaskMetrics("metrics-generated-0"), "The first new name fits the bound");
+            Assertions.assertNull(metrics.getTaskMetrics("metrics-generated-1"), "Names beyond the bound get no metrics");
+            Assertions.assertTrue(metrics.getTaskMetrics(WorkflowMetrics.OTHER_TASKS).getSkippedCount() >= 2,
+                    "Names beyond the bound should be recorded together");
+        } finally {
+            metrics.setMaxTaskNames(previous);
+        }
+    }
+}
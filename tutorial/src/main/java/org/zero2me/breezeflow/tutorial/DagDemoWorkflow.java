@@ -0,0 +1,63 @@
+package org.zero2me.breezeflow.tutorial;
+
+import org.zero2me.breezeflow.core.DagContainer;
+import org.zero2me.breezeflow.core.Task;
+import org.zero2me.breezeflow.core.Workflow;
+import org.zero2me.breezeflow.core.WorkflowExecutionException;
+import org.zero2me.breezeflow.tutorial.tasks.ReadDocumentTask;
+import org.zero2me.breezeflow.tutorial.tasks.CalculateWordCountTask;
+import org.zero2me.breezeflow.tutorial.tasks.FindKeywordCountTask;
+import org.zero2me.breezeflow.tutorial.tasks.PrintSummaryTask;
+import org.zero2me.breezeflow.tutorial.tasks.SendEmailTask;
+
+/**
+ * DagDemoWorkflow runs the same tasks as {@link DemoWorkflow} in a DagContainer,
+ * with explicit dependencies instead of nested containers:
+ *
+ *   read_document
+ *     ├─ calc_word_count    (depends on read_document)
+ *     └─ find_keyword_count (depends on read_document)
+ *   print_summary           (depends on calc_word_count, find_keyword_count)
+ *   send_email              (depends on print_summary)
+ *
+ * Each task is dispatched as soon as its own dependencies complete, so no task
+ * waits on a container barrier it does not actually depend on.
+ */
+public class DagDemoWorkflow extends Workflow {
+
+	public DagDemoWorkflow() {
+		super();
+	}
+
+	@Override
+	public void buildWorkflow() {
+		DagContainer dag = (DagContainer)buildTask(DagContainer.class, "document_dag");
+
+		Task read = buildTask(ReadDocumentTask.class, "read_document");
+		Task wordCount = buildTask(CalculateWordCountTask.class, "calc_word_count");
+		Task keywordCount = buildTask(FindKeywordCountTask.class, "find_keyword_count");
+		Task summary = buildTask(PrintSummaryTask.class, "print_summary");
+		Task email = buildTask(SendEmailTask.class, "send_email");
+
+		dag.addTask(read);
+		dag.addTask(wordCount, read);
+		dag.addTask(keywordCount, read);
+		dag.addTask(summary, wordCount, keywordCount);
+		dag.addTask(email, summary);
+		addTask(dag);
+	}
+
+	/**
+	 * Convenience main method to run the DAG demo workflow.
+	 */
+	public static void main(String[] args) {
+		DagDemoWorkflow workflow = new DagDemoWorkflow();
+		workflow.getSessionContext().setVariable("SEARCH_KEY", "license");
+
+		try {
+			workflow.run();
+		} catch (WorkflowExecutionException e) {
+			System.err.println("Workflow failed: " + e.getMessage());
+		}
+	}
+}
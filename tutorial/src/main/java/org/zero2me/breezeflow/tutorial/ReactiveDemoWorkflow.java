@@ -0,0 +1,58 @@
+package org.zero2me.breezeflow.tutorial;
+
+import org.zero2me.breezeflow.core.ReactiveContainer;
+import org.zero2me.breezeflow.core.Workflow;
+import org.zero2me.breezeflow.core.WorkflowExecutionException;
+import org.zero2me.breezeflow.tutorial.tasks.ReadDocumentTask;
+import org.zero2me.breezeflow.tutorial.tasks.CalculateWordCountTask;
+import org.zero2me.breezeflow.tutorial.tasks.FindKeywordCountTask;
+import org.zero2me.breezeflow.tutorial.tasks.PrintSummaryTask;
+import org.zero2me.breezeflow.tutorial.tasks.SendEmailTask;
+
+/**
+ * ReactiveDemoWorkflow runs the same tasks as {@link DemoWorkflow} in a ReactiveContainer.
+ *
+ * The tasks are added in no particular order. Each one fires as soon as the facts it
+ * requires become true:
+ *
+ *   read_document       (no requirements, fires immediately)
+ *   calc_word_count     requires DOC_PROCESS_DONE
+ *   find_keyword_count  requires DOC_PROCESS_DONE
+ *   print_summary       requires DOC_CAL_WORD_COUNT_DONE or FIND_KEYWORD_DONE
+ *   send_email          requires PRINT_SUMMARY_DONE
+ */
+public class ReactiveDemoWorkflow extends Workflow {
+
+	public ReactiveDemoWorkflow() {
+		super();
+	}
+
+	@Override
+	public void buildWorkflow() {
+		ReactiveContainer reactive = (ReactiveContainer)buildTask(ReactiveContainer.class, "document_reactive");
+
+		// Order does not matter - tasks are triggered by facts
+		reactive.addTask(buildTask(SendEmailTask.class, "send_email"));
+
+		reactive.addTask(buildTask(PrintSummaryTask.class, "print_summary"));
+
+		reactive.addTask(buildTask(FindKeywordCountTask.class, "find_keyword_count"));
+		reactive.addTask(buildTask(CalculateWordCountTask.class, "calc_word_count"));
+		reactive.addTask(buildTask(ReadDocumentTask.class, "read_document"));
+		addTask(reactive);
+	}
+
+	/**
+	 * Convenience main method to run the reactive demo workflow.
+	 */
+	public static void main(String[] args) {
+		ReactiveDemoWorkflow workflow = new ReactiveDemoWorkflow();
+		workflow.getSessionContext().setVariable("SEARCH_KEY", "license");
+
+		try {
+			workflow.run();
+		} catch (WorkflowExecutionException e) {
+			System.err.println("Workflow failed: " + e.getMessage());
+		}
+	}
+}
@@ -1,6 +1,10 @@
 package org.zero2me.breezeflow.tutorial.tasks;
 
+import org.zero2me.breezeflow.core.BooleanKey;
+import org.zero2me.breezeflow.core.IntKey;
+import org.zero2me.breezeflow.core.RefKey;
 import org.zero2me.breezeflow.core.Task;
+import org.zero2me.breezeflow.core.TypedKey;
 
 /**
  * Task that calculates word count from previously read document content.
@@ -11,23 +15,24 @@ import org.zero2me.breezeflow.core.Task;
  *  - Calculate word count (splitting on whitespace).
  *  - Store count in SessionContext under key "DOC_CONTENT_COUNT".
  *  - Set fact "DOC_CAL_WORD_COUNT_DONE" to true.
+ * Facts and variables are accessed through typed keys, so no boxing or casts are needed.
  */
 public class CalculateWordCountTask extends Task {
 
-	private static final String DOC_DONE_FACT = "DOC_PROCESS_DONE";
-	private static final String DOC_CONTENT_KEY = "DOC_CONTENT";
-	private static final String DOC_CONTENT_COUNT_KEY = "DOC_CONTENT_COUNT";
-	private static final String WORD_COUNT_DONE_FACT = "DOC_CAL_WORD_COUNT_DONE";
+	private static final BooleanKey DOC_DONE_FACT = TypedKey.booleanKey("DOC_PROCESS_DONE");
+	private static final RefKey<String> DOC_CONTENT_KEY = TypedKey.refKey("DOC_CONTENT", String.class);
+	private static final IntKey DOC_CONTENT_COUNT_KEY = TypedKey.intKey("DOC_CONTENT_COUNT");
+	private static final BooleanKey WORD_COUNT_DONE_FACT = TypedKey.booleanKey("DOC_CAL_WORD_COUNT_DONE");
 
 	// Package-private constructor (TaskFactory usage pattern)
 	public CalculateWordCountTask() {
+		requireFacts(DOC_DONE_FACT.getName());
 	}
 
 	@Override
 	protected boolean preCheck() {
-		Boolean done = facts.get(DOC_DONE_FACT);
-		if (done == null || !done) {
-			logger.warn("CalculateWordCountTask {}: preCheck failed - '{}' fact missing or false", getId(), DOC_DONE_FACT);
+		if (!facts.isTrue(DOC_DONE_FACT)) {
+			logger.warn("CalculateWordCountTask {}: preCheck failed - '{}' fact missing or false", getId(), DOC_DONE_FACT.getName());
       		facts.put(WORD_COUNT_DONE_FACT, false);
 			return false;
 		}
@@ -37,7 +42,7 @@ public class CalculateWordCountTask extends Task {
 
 	@Override
 	protected void invoke() {
-		String content = (String) sessionContext.getVariable(DOC_CONTENT_KEY);
+		String content = sessionContext.getVariable(DOC_CONTENT_KEY);
 		if (content == null) {
 		  logger.warn("CalculateWordCountTask {}: DOC_CONTENT is null in session context", getId());
 		  facts.put(WORD_COUNT_DONE_FACT, false);
@@ -23,7 +23,9 @@ public class FindKeywordCountTask extends Task {
 	private static final String DONE_FACT = "FIND_KEYWORD_DONE";
 
 	// Package-private constructor (TaskFactory usage pattern)
-	public FindKeywordCountTask() {}
+	public FindKeywordCountTask() {
+		requireFacts(DOC_DONE_FACT);
+	}
 
 	@Override
 	protected boolean preCheck() {
@@ -23,7 +23,9 @@ public class PrintSummaryTask extends Task {
   	private static final String TASK_SUMMARY_KEY = "TASK_SUMMARY";
 
 	// Package-private constructor
-	public PrintSummaryTask() {}
+	public PrintSummaryTask() {
+		requireAnyFact(WORD_COUNT_DONE_FACT, KEYWORD_DONE_FACT);
+	}
 
 	@Override
 	protected boolean preCheck() {
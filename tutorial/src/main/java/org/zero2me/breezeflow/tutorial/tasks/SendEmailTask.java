@@ -16,7 +16,9 @@ public class SendEmailTask extends Task {
 	private static final String EMAIL_SENT_DONE_FACT = "EMAIL_SENT_DONE";
 
 	// Package-private constructor
-	public SendEmailTask() {}
+	public SendEmailTask() {
+		requireFacts(SUMMARY_DONE_FACT);
+	}
 
 	@Override
 	protected boolean preCheck() {